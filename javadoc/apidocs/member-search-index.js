@@ -0,0 +1 @@
+memberSearchIndex = [{"p":"ocado.model","c":"Money","l":"add(Money)","u":"add(ocado.model.Money)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"add(Order)","u":"add(ocado.model.Order)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"addAll(ArrayOrderTable)","u":"addAll(ocado.utils.ArrayOrderTable)"},{"p":"ocado.optimization","c":"PaymentListener.Allocation","l":"Allocation(String, Money)","u":"%3Cinit%3E(java.lang.String,ocado.model.Money)"},{"p":"ocado.optimization","c":"PaymentListener.Allocation","l":"amount()"},{"p":"ocado.model","c":"Money","l":"applyDiscount(int)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"ArrayOrderTable()","u":"%3Cinit%3E()"},{"p":"ocado.model","c":"Money","l":"basisPointsOf(String)","u":"basisPointsOf(java.lang.String)"},{"p":"ocado.batch","c":"BatchOptimizer","l":"BatchOptimizer(String, int)","u":"%3Cinit%3E(java.lang.String,int)"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"BEAM_SEARCH"},{"p":"ocado.optimization","c":"BeamSearchSolver","l":"BeamSearchSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.optimization","c":"BeamSearchSolver","l":"BeamSearchSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod, int, ForkJoinPool)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod,int,java.util.concurrent.ForkJoinPool)"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"BEST_CARD_FOR_REST"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"BEST_DISCOUNT"},{"p":"ocado.utils","c":"BinaryOrderFile","l":"BinaryOrderFile()","u":"%3Cinit%3E()"},{"p":"ocado.optimization","c":"BranchAndBoundSolver","l":"BranchAndBoundSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.optimization","c":"BranchAndBoundSolver","l":"BranchAndBoundSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod, ForkJoinPool)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod,java.util.concurrent.ForkJoinPool)"},{"p":"ocado.cache","c":"CachingSolver","l":"CachingSolver(ResultCache, String, List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(ocado.cache.ResultCache,java.lang.String,java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.optimization","c":"LocalSearchSolver","l":"cancel()"},{"p":"ocado.metrics","c":"DecisionTrace","l":"CAPACITY_PROPERTY"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"CARD_CARD_TIE"},{"p":"ocado.utils","c":"CardIndex","l":"CardIndex(Collection<PaymentMethod>)","u":"%3Cinit%3E(java.util.Collection)"},{"p":"ocado.model","c":"CardRegistry","l":"CardRegistry(Map<String, PaymentMethod>)","u":"%3Cinit%3E(java.util.Map)"},{"p":"ocado.model","c":"Order","l":"chargePaymentsMethod(String, long)","u":"chargePaymentsMethod(java.lang.String,long)"},{"p":"ocado.model","c":"OrderView","l":"chargePaymentsMethod(String, long)","u":"chargePaymentsMethod(java.lang.String,long)"},{"p":"ocado.metrics","c":"DecisionTrace","l":"clear()"},{"p":"ocado.model","c":"Order","l":"clearPayments()"},{"p":"ocado.batch","c":"TextResultSink","l":"close()"},{"p":"ocado.utils","c":"DecompressingInputStream","l":"close()"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"close()"},{"p":"ocado.model","c":"Money","l":"compareTo(Money)","u":"compareTo(ocado.model.Money)"},{"p":"ocado.optimization","c":"DiscountBound","l":"compute(Money)","u":"compute(ocado.model.Money)"},{"p":"ocado.scenario","c":"WalletSnapshot","l":"contains(String)","u":"contains(java.lang.String)"},{"p":"ocado.utils","c":"BinaryOrderFile","l":"convert(File, File)","u":"convert(java.io.File,java.io.File)"},{"p":"ocado.metrics","c":"DecisionTrace","l":"count()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"count(OptimizerMetrics.Branch)","u":"count(ocado.metrics.OptimizerMetrics.Branch)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"countRun()"},{"p":"ocado.model","c":"Money","l":"covers(Money, int)","u":"covers(ocado.model.Money,int)"},{"p":"ocado.model","c":"Money","l":"coversShare(long, long, int)","u":"coversShare(long,long,int)"},{"p":"ocado.optimization","c":"ExpenseSolver","l":"create(String, List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"create(java.lang.String,java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.metrics","c":"DecisionTrace","l":"DecisionTrace()","u":"%3Cinit%3E()"},{"p":"ocado.metrics","c":"DecisionTrace","l":"DecisionTrace(int)","u":"%3Cinit%3E(int)"},{"p":"ocado.optimization","c":"DecomposingSolver","l":"DecomposingSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.optimization","c":"DecomposingSolver","l":"DecomposingSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod, ForkJoinPool)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod,java.util.concurrent.ForkJoinPool)"},{"p":"ocado.utils","c":"DecompressingInputStream","l":"DecompressingInputStream(File)","u":"%3Cinit%3E(java.io.File)"},{"p":"ocado.model","c":"PaymentMethod","l":"decrementOrdersAmount()"},{"p":"ocado.optimization","c":"LocalSearchSolver","l":"DEFAULT_BUDGET"},{"p":"ocado.metrics","c":"DecisionTrace","l":"DEFAULT_CAPACITY"},{"p":"ocado.stream","c":"StreamingOptimizer","l":"DEFAULT_LINGER"},{"p":"ocado.optimization","c":"BeamSearchSolver","l":"DEFAULT_WIDTH"},{"p":"ocado.stream","c":"StreamingOptimizer","l":"DEFAULT_WINDOW"},{"p":"ocado.scenario","c":"ScenarioResult","l":"discount()"},{"p":"ocado.model","c":"Money","l":"discounted(long, long)","u":"discounted(long,long)"},{"p":"ocado.model","c":"Money","l":"discountMultiplier(int)"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"diskHits()"},{"p":"ocado.metrics","c":"DecisionTrace","l":"dump(Path, IntFunction<String>, IntFunction<String>)","u":"dump(java.nio.file.Path,java.util.function.IntFunction,java.util.function.IntFunction)"},{"p":"ocado.optimization","c":"ExpenseOptimizer","l":"dumpTrace(Path)","u":"dumpTrace(java.nio.file.Path)"},{"p":"ocado.metrics","c":"DecisionTrace","l":"ENABLED"},{"p":"ocado.batch","c":"BatchOptimizer.Summary","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.batch","c":"TenantInput","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.batch","c":"TenantResult","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.cache","c":"InputKey","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.model","c":"Money","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.optimization","c":"PaymentListener.Allocation","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.scenario","c":"ScenarioResult","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.scenario","c":"WalletSnapshot.Wallet","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.server","c":"OptimizationRequest","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.utils","c":"ParallelJsonLoader.Input","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"ocado.batch","c":"TenantResult.Status","l":"ERROR"},{"p":"ocado.scenario","c":"ScenarioResult","l":"error()"},{"p":"ocado.batch","c":"TenantResult","l":"error(String, String)","u":"error(java.lang.String,java.lang.String)"},{"p":"ocado.scenario","c":"ScenarioEvaluator","l":"evaluate(List<Scenario>)","u":"evaluate(java.util.List)"},{"p":"ocado.scenario","c":"ScenarioEvaluator","l":"evaluate(Scenario)","u":"evaluate(ocado.scenario.Scenario)"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"evictions()"},{"p":"ocado.optimization","c":"ExpenseOptimizer","l":"ExpenseOptimizer(List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.optimization","c":"ExpenseOptimizer","l":"ExpenseOptimizer(OrderTable, Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(ocado.model.OrderTable,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.utils","c":"BinaryOrderFile","l":"EXTENSION"},{"p":"ocado.batch","c":"BatchOptimizer.Summary","l":"failed()"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"FEWER_ORDERS"},{"p":"ocado.metrics","c":"DecisionTrace","l":"FILE_PROPERTY"},{"p":"ocado.metrics","c":"DecisionTrace","l":"file()"},{"p":"ocado.optimization","c":"IncrementalOptimizer","l":"finalizePayments()"},{"p":"ocado.utils","c":"OptimizerUtils","l":"findBestCardToPayRest(List<PaymentMethod>)","u":"findBestCardToPayRest(java.util.List)"},{"p":"ocado.utils","c":"CardIndex","l":"findBestCardToPayRest(long)"},{"p":"ocado.utils","c":"CardIndex","l":"findBestCardToPayRest(Money)","u":"findBestCardToPayRest(ocado.model.Money)"},{"p":"ocado.utils","c":"CardIndex","l":"findBestCardWithMaxLimit()"},{"p":"ocado.utils","c":"OptimizerUtils","l":"findLowestDiscountMethods(List<PaymentMethod>)","u":"findLowestDiscountMethods(java.util.List)"},{"p":"ocado.utils","c":"OptimizerUtils","l":"findOptimalCard(List<PaymentMethod>)","u":"findOptimalCard(java.util.List)"},{"p":"ocado.utils","c":"OptimizerUtils","l":"findOptimalCard(PaymentMethod[], int)","u":"findOptimalCard(ocado.model.PaymentMethod[],int)"},{"p":"ocado.utils","c":"OptimizerUtils","l":"findWithMaxLimit(List<PaymentMethod>)","u":"findWithMaxLimit(java.util.List)"},{"p":"ocado.utils","c":"OptimizerUtils","l":"findWithMinLimit(List<PaymentMethod>)","u":"findWithMinLimit(java.util.List)"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"FIRST_LISTED"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"flush()"},{"p":"ocado.scenario","c":"ScenarioEvaluator","l":"formatTable(List<ScenarioResult>)","u":"formatTable(java.util.List)"},{"p":"ocado.model","c":"Money","l":"FULL_BASIS_POINTS"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"FULL_POINTS"},{"p":"ocado.optimization","c":"DiscountBound","l":"gapPercent(Money, Money)","u":"gapPercent(ocado.model.Money,ocado.model.Money)"},{"p":"ocado.cache","c":"ResultCache","l":"get(InputKey)","u":"get(ocado.cache.InputKey)"},{"p":"ocado.model","c":"CardRegistry","l":"get(int)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getBranchCounts()"},{"p":"ocado.metrics","c":"OptimizerMetricsMXBean","l":"getBranchCounts()"},{"p":"ocado.metrics","c":"Histogram","l":"getBuckets()"},{"p":"ocado.scenario","c":"WalletSnapshot","l":"getCardIds()"},{"p":"ocado.model","c":"Money","l":"getCents()"},{"p":"ocado.optimization","c":"DecomposingSolver","l":"getComponentCount()"},{"p":"ocado.metrics","c":"Histogram","l":"getCount()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getCount(OptimizerMetrics.Branch)","u":"getCount(ocado.metrics.OptimizerMetrics.Branch)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getHistogram(OptimizerMetrics.Phase)","u":"getHistogram(ocado.metrics.OptimizerMetrics.Phase)"},{"p":"ocado.model","c":"OrderView","l":"getId()"},{"p":"ocado.model","c":"OrderTable","l":"getId(int)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"getId(int)"},{"p":"ocado.utils","c":"MappedOrderTable","l":"getId(int)"},{"p":"ocado.optimization","c":"LocalSearchSolver","l":"getImprovements()"},{"p":"ocado.optimization","c":"LocalSearchSolver","l":"getIterations()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getJson()"},{"p":"ocado.metrics","c":"OptimizerMetricsMXBean","l":"getJson()"},{"p":"ocado.model","c":"PaymentMethod","l":"getLimit()"},{"p":"ocado.scenario","c":"WalletSnapshot","l":"getLimit(String)","u":"getLimit(java.lang.String)"},{"p":"ocado.scenario","c":"Scenario","l":"getLimits()"},{"p":"ocado.metrics","c":"Histogram","l":"getMax()"},{"p":"ocado.model","c":"PaymentMethod","l":"getMoneyBack(long)"},{"p":"ocado.model","c":"PaymentMethod","l":"getMoneyBack(Money)","u":"getMoneyBack(ocado.model.Money)"},{"p":"ocado.scenario","c":"Scenario","l":"getName()"},{"p":"ocado.utils","c":"JsonProcessor","l":"getOrdersAsList(File)","u":"getOrdersAsList(java.io.File)"},{"p":"ocado.utils","c":"JsonProcessor","l":"getOrdersAsList(File, Map<String, Integer>)","u":"getOrdersAsList(java.io.File,java.util.Map)"},{"p":"ocado.utils","c":"ParallelJsonLoader","l":"getOrdersAsList(File, Map<String, Integer>)","u":"getOrdersAsList(java.io.File,java.util.Map)"},{"p":"ocado.utils","c":"JsonProcessor","l":"getOrdersAsTable(File, Map<String, Integer>)","u":"getOrdersAsTable(java.io.File,java.util.Map)"},{"p":"ocado.utils","c":"ParallelJsonLoader","l":"getOrdersAsTable(File, Map<String, Integer>)","u":"getOrdersAsTable(java.io.File,java.util.Map)"},{"p":"ocado.optimization","c":"IncrementalOptimizer","l":"getPaidOrders()"},{"p":"ocado.utils","c":"JsonProcessor","l":"getPaymentsAsList(File)","u":"getPaymentsAsList(java.io.File)"},{"p":"ocado.utils","c":"JsonProcessor","l":"getPaymentsAsMap(File, List<Order>)","u":"getPaymentsAsMap(java.io.File,java.util.List)"},{"p":"ocado.utils","c":"JsonProcessor","l":"getPaymentsAsMap(File, Map<String, Integer>)","u":"getPaymentsAsMap(java.io.File,java.util.Map)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getPhaseCounts()"},{"p":"ocado.metrics","c":"OptimizerMetricsMXBean","l":"getPhaseCounts()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getPhaseMaxNanos()"},{"p":"ocado.metrics","c":"OptimizerMetricsMXBean","l":"getPhaseMaxNanos()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getPhaseTotalNanos()"},{"p":"ocado.metrics","c":"OptimizerMetricsMXBean","l":"getPhaseTotalNanos()"},{"p":"ocado.scenario","c":"WalletSnapshot","l":"getPointsId()"},{"p":"ocado.server","c":"OptimizationServer","l":"getPort()"},{"p":"ocado.model","c":"Order","l":"getPromotion(int)"},{"p":"ocado.model","c":"OrderView","l":"getPromotion(int)"},{"p":"ocado.model","c":"Order","l":"getPromotionCard(int, CardRegistry)","u":"getPromotionCard(int,ocado.model.CardRegistry)"},{"p":"ocado.model","c":"OrderView","l":"getPromotionCard(int, CardRegistry)","u":"getPromotionCard(int,ocado.model.CardRegistry)"},{"p":"ocado.model","c":"Order","l":"getPromotionCount()"},{"p":"ocado.model","c":"OrderView","l":"getPromotionCount()"},{"p":"ocado.model","c":"OrderTable","l":"getPromotionCount(int)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"getPromotionCount(int)"},{"p":"ocado.utils","c":"MappedOrderTable","l":"getPromotionCount(int)"},{"p":"ocado.model","c":"OrderTable","l":"getPromotionIndex(int, int)","u":"getPromotionIndex(int,int)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"getPromotionIndex(int, int)","u":"getPromotionIndex(int,int)"},{"p":"ocado.utils","c":"MappedOrderTable","l":"getPromotionIndex(int, int)","u":"getPromotionIndex(int,int)"},{"p":"ocado.model","c":"OrderTable","l":"getPromotionName(int)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"getPromotionName(int)"},{"p":"ocado.utils","c":"MappedOrderTable","l":"getPromotionName(int)"},{"p":"ocado.model","c":"OrderTable","l":"getPromotionNameCount()"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"getPromotionNameCount()"},{"p":"ocado.utils","c":"MappedOrderTable","l":"getPromotionNameCount()"},{"p":"ocado.optimization","c":"DecomposingSolver","l":"getRetriedCount()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"getRuns()"},{"p":"ocado.metrics","c":"OptimizerMetricsMXBean","l":"getRuns()"},{"p":"ocado.model","c":"PaymentMethod","l":"getSpending()"},{"p":"ocado.cache","c":"ResultCache","l":"getStats()"},{"p":"ocado.metrics","c":"Histogram","l":"getSum()"},{"p":"ocado.optimization","c":"DiscountBound","l":"getTotalValue()"},{"p":"ocado.model","c":"OrderView","l":"getValue()"},{"p":"ocado.model","c":"OrderView","l":"getValueCents()"},{"p":"ocado.model","c":"OrderTable","l":"getValueCents(int)"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"getValueCents(int)"},{"p":"ocado.utils","c":"MappedOrderTable","l":"getValueCents(int)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"global()"},{"p":"ocado.optimization","c":"DecomposingSolver","l":"hasFallenBack()"},{"p":"ocado.cache","c":"InputKey","l":"hash()"},{"p":"ocado.batch","c":"BatchOptimizer.Summary","l":"hashCode()"},{"p":"ocado.batch","c":"TenantInput","l":"hashCode()"},{"p":"ocado.batch","c":"TenantResult","l":"hashCode()"},{"p":"ocado.cache","c":"InputKey","l":"hashCode()"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"hashCode()"},{"p":"ocado.model","c":"Money","l":"hashCode()"},{"p":"ocado.optimization","c":"PaymentListener.Allocation","l":"hashCode()"},{"p":"ocado.scenario","c":"ScenarioResult","l":"hashCode()"},{"p":"ocado.scenario","c":"WalletSnapshot.Wallet","l":"hashCode()"},{"p":"ocado.server","c":"OptimizationRequest","l":"hashCode()"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"hashCode()"},{"p":"ocado.utils","c":"ParallelJsonLoader.Input","l":"hashCode()"},{"p":"ocado.metrics","c":"Histogram","l":"Histogram()","u":"%3Cinit%3E()"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"hitRatio()"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"hits()"},{"p":"ocado.optimization","c":"IncrementalOptimizer","l":"IncrementalOptimizer(Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.model","c":"PaymentMethod","l":"incrementOrdersAmount()"},{"p":"ocado.model","c":"CardRegistry","l":"indexNames(OrderTable)","u":"indexNames(ocado.model.OrderTable)"},{"p":"ocado.model","c":"CardRegistry","l":"indexOf(String)","u":"indexOf(java.lang.String)"},{"p":"ocado.utils","c":"ParallelJsonLoader.Input","l":"Input(List<Order>, OrderTable, Map<String, PaymentMethod>)","u":"%3Cinit%3E(java.util.List,ocado.model.OrderTable,java.util.Map)"},{"p":"ocado.cache","c":"InputKey","l":"InputKey(String)","u":"%3Cinit%3E(java.lang.String)"},{"p":"ocado.utils","c":"BinaryOrderFile","l":"isBinary(File)","u":"isBinary(java.io.File)"},{"p":"ocado.model","c":"CardRegistry","l":"isFor(Map<String, PaymentMethod>)","u":"isFor(java.util.Map)"},{"p":"ocado.cache","c":"CachingSolver","l":"isHit()"},{"p":"ocado.model","c":"Money","l":"isNegative()"},{"p":"ocado.utils","c":"JsonProcessor","l":"JsonProcessor()","u":"%3Cinit%3E()"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"LARGEST_LIMIT"},{"p":"ocado.cache","c":"ResultCache.Policy","l":"LFU"},{"p":"ocado.utils","c":"ParallelJsonLoader","l":"load(File, File, boolean)","u":"load(java.io.File,java.io.File,boolean)"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"LOCAL_SEARCH"},{"p":"ocado.optimization","c":"LocalSearchSolver","l":"LocalSearchSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.optimization","c":"LocalSearchSolver","l":"LocalSearchSolver(List<Order>, Map<String, PaymentMethod>, PaymentMethod, Duration, long)","u":"%3Cinit%3E(java.util.List,java.util.Map,ocado.model.PaymentMethod,java.time.Duration,long)"},{"p":"ocado.cache","c":"ResultCache.Policy","l":"LRU"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"MAIN_LOOP"},{"p":"ocado","c":"Main","l":"Main()","u":"%3Cinit%3E()"},{"p":"ocado","c":"Main","l":"main(String[])","u":"main(java.lang.String[])"},{"p":"ocado.utils","c":"BinaryOrderFile","l":"map(File)","u":"map(java.io.File)"},{"p":"ocado.scenario","c":"WalletSnapshot","l":"materialize(Scenario)","u":"materialize(ocado.scenario.Scenario)"},{"p":"ocado.optimization","c":"BeamSearchSolver","l":"MAX_WIDTH"},{"p":"ocado.batch","c":"TenantResult","l":"message()"},{"p":"ocado.optimization","c":"PaymentListener.Allocation","l":"method()"},{"p":"ocado.batch","c":"TenantResult","l":"methods()"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"misses()"},{"p":"ocado.scenario","c":"ScenarioResult","l":"name()"},{"p":"ocado.scenario","c":"Scenario","l":"named(String)","u":"named(java.lang.String)"},{"p":"ocado.optimization","c":"ExpenseSolver","l":"NAMES"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"NdjsonResultWriter(OutputStream)","u":"%3Cinit%3E(java.io.OutputStream)"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"NO_CANDIDATE"},{"p":"ocado.metrics","c":"DecisionTrace","l":"NO_CARD"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"NO_PROMOTION_CARD"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"OBJECT_NAME"},{"p":"ocado.optimization","c":"DiscountBound","l":"of(List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"of(java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.scenario","c":"WalletSnapshot","l":"of(Map<String, PaymentMethod>, PaymentMethod)","u":"of(java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.optimization","c":"DiscountBound","l":"of(OrderTable, Map<String, PaymentMethod>, PaymentMethod)","u":"of(ocado.model.OrderTable,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.model","c":"Money","l":"of(String)","u":"of(java.lang.String)"},{"p":"ocado.cache","c":"InputKey","l":"of(String, List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"of(java.lang.String,java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.model","c":"Money","l":"ofCents(long)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"open(File)","u":"open(java.io.File)"},{"p":"ocado.server","c":"OptimizationRequest","l":"OptimizationRequest(List<Order>, List<PaymentMethod>)","u":"%3Cinit%3E(java.util.List,java.util.List)"},{"p":"ocado.server","c":"OptimizationServer","l":"OptimizationServer(int)","u":"%3Cinit%3E(int)"},{"p":"ocado.server","c":"OptimizationServer","l":"OptimizationServer(int, ResultCache)","u":"%3Cinit%3E(int,ocado.cache.ResultCache)"},{"p":"ocado.cache","c":"CachingSolver","l":"optimize()"},{"p":"ocado.optimization","c":"BeamSearchSolver","l":"optimize()"},{"p":"ocado.optimization","c":"BranchAndBoundSolver","l":"optimize()"},{"p":"ocado.optimization","c":"DecomposingSolver","l":"optimize()"},{"p":"ocado.optimization","c":"ExpenseOptimizer","l":"optimize()"},{"p":"ocado.optimization","c":"ExpenseSolver","l":"optimize()"},{"p":"ocado.optimization","c":"LocalSearchSolver","l":"optimize()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"OptimizerMetrics()","u":"%3Cinit%3E()"},{"p":"ocado.utils","c":"OptimizerUtils","l":"OptimizerUtils()","u":"%3Cinit%3E()"},{"p":"ocado.model","c":"Order","l":"Order(String, String, List<String>)","u":"%3Cinit%3E(java.lang.String,java.lang.String,java.util.List)"},{"p":"ocado.optimization","c":"PaymentListener","l":"orderPaid(String, Money, List<PaymentListener.Allocation>)","u":"orderPaid(java.lang.String,ocado.model.Money,java.util.List)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"orderPaid(String, Money, List<PaymentListener.Allocation>)","u":"orderPaid(java.lang.String,ocado.model.Money,java.util.List)"},{"p":"ocado.batch","c":"BatchOptimizer","l":"ORDERS_FILE_NAME"},{"p":"ocado.batch","c":"TenantResult","l":"orders()"},{"p":"ocado.server","c":"OptimizationRequest","l":"orders()"},{"p":"ocado.utils","c":"ParallelJsonLoader.Input","l":"orders()"},{"p":"ocado.batch","c":"TenantInput","l":"ordersFile()"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"paid()"},{"p":"ocado.utils","c":"ParallelJsonLoader","l":"ParallelJsonLoader()","u":"%3Cinit%3E()"},{"p":"ocado.utils","c":"ParallelJsonLoader","l":"ParallelJsonLoader(ForkJoinPool, int)","u":"%3Cinit%3E(java.util.concurrent.ForkJoinPool,int)"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"PARSE"},{"p":"ocado.scenario","c":"Scenario","l":"parse(String, WalletSnapshot)","u":"parse(java.lang.String,ocado.scenario.WalletSnapshot)"},{"p":"ocado.utils","c":"OptimizerUtils","l":"pay(PaymentMethod, long)","u":"pay(ocado.model.PaymentMethod,long)"},{"p":"ocado.utils","c":"OptimizerUtils","l":"pay(PaymentMethod, Money)","u":"pay(ocado.model.PaymentMethod,ocado.model.Money)"},{"p":"ocado.utils","c":"OptimizerUtils","l":"pay(PaymentMethod, OrderView)","u":"pay(ocado.model.PaymentMethod,ocado.model.OrderView)"},{"p":"ocado.model","c":"PaymentMethod","l":"PaymentMethod(String, String)","u":"%3Cinit%3E(java.lang.String,java.lang.String)"},{"p":"ocado.model","c":"PaymentMethod","l":"PaymentMethod(String, String, String)","u":"%3Cinit%3E(java.lang.String,java.lang.String,java.lang.String)"},{"p":"ocado.server","c":"OptimizationRequest","l":"paymentMethods()"},{"p":"ocado.batch","c":"BatchOptimizer","l":"PAYMENTS_FILE_NAME"},{"p":"ocado.scenario","c":"WalletSnapshot.Wallet","l":"payments()"},{"p":"ocado.utils","c":"ParallelJsonLoader.Input","l":"payments()"},{"p":"ocado.batch","c":"TenantInput","l":"paymentsFile()"},{"p":"ocado.model","c":"Money","l":"percent(int)"},{"p":"ocado.model","c":"Money","l":"percentOf(long, int)","u":"percentOf(long,int)"},{"p":"ocado.metrics","c":"DecisionTrace","l":"POINTS"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"POINTS_10"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"POINTS_10_MAX_LIMIT"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"POINTS_OVER_CARD"},{"p":"ocado.scenario","c":"WalletSnapshot.Wallet","l":"pointsMethod()"},{"p":"ocado.optimization","c":"PaymentListener","l":"pointsMoved(String, String, Money)","u":"pointsMoved(java.lang.String,java.lang.String,ocado.model.Money)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"pointsMoved(String, String, Money)","u":"pointsMoved(java.lang.String,java.lang.String,ocado.model.Money)"},{"p":"ocado.model","c":"PaymentMethod","l":"printSpending()"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"PROMOTION_CARD"},{"p":"ocado.cache","c":"ResultCache","l":"put(InputKey, byte[])","u":"put(ocado.cache.InputKey,byte[])"},{"p":"ocado.utils","c":"RadixSorter","l":"RadixSorter()","u":"%3Cinit%3E()"},{"p":"ocado.utils","c":"DecompressingInputStream","l":"read()"},{"p":"ocado.utils","c":"DecompressingInputStream","l":"read(byte[], int, int)","u":"read(byte[],int,int)"},{"p":"ocado.batch","c":"BatchOptimizer","l":"readInputs(File)","u":"readInputs(java.io.File)"},{"p":"ocado.utils","c":"JsonProcessor","l":"readOrderLines(InputStream, Consumer<Order>)","u":"readOrderLines(java.io.InputStream,java.util.function.Consumer)"},{"p":"ocado.utils","c":"JsonProcessor","l":"readOrders(File, Consumer<Order>)","u":"readOrders(java.io.File,java.util.function.Consumer)"},{"p":"ocado.metrics","c":"Histogram","l":"record(long)"},{"p":"ocado.metrics","c":"DecisionTrace","l":"record(long, OptimizerMetrics.Branch, DecisionTrace.Reason, int, long, int[], int)","u":"record(long,ocado.metrics.OptimizerMetrics.Branch,ocado.metrics.DecisionTrace.Reason,int,long,int[],int)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"recordSince(OptimizerMetrics.Phase, long)","u":"recordSince(ocado.metrics.OptimizerMetrics.Phase,long)"},{"p":"ocado.utils","c":"CardIndex","l":"refresh(int)"},{"p":"ocado.utils","c":"CardIndex","l":"refresh(PaymentMethod)","u":"refresh(ocado.model.PaymentMethod)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"registerMBean()"},{"p":"ocado.cache","c":"ResultCache","l":"remove(InputKey)","u":"remove(ocado.cache.InputKey)"},{"p":"ocado.metrics","c":"Histogram","l":"reset()"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"reset()"},{"p":"ocado.metrics","c":"OptimizerMetricsMXBean","l":"reset()"},{"p":"ocado.cache","c":"ResultCache","l":"ResultCache(int, ResultCache.Policy)","u":"%3Cinit%3E(int,ocado.cache.ResultCache.Policy)"},{"p":"ocado.cache","c":"ResultCache","l":"ResultCache(int, ResultCache.Policy, Path)","u":"%3Cinit%3E(int,ocado.cache.ResultCache.Policy,java.nio.file.Path)"},{"p":"ocado.model","c":"Money","l":"roundHalfUp(long, long)","u":"roundHalfUp(long,long)"},{"p":"ocado.stream","c":"StreamingOptimizer","l":"run(InputStream, NdjsonResultWriter)","u":"run(java.io.InputStream,ocado.utils.NdjsonResultWriter)"},{"p":"ocado.batch","c":"BatchOptimizer","l":"run(Stream<TenantInput>, ResultSink)","u":"run(java.util.stream.Stream,ocado.batch.ResultSink)"},{"p":"ocado.scenario","c":"ScenarioEvaluator","l":"ScenarioEvaluator(OrderTable, WalletSnapshot)","u":"%3Cinit%3E(ocado.model.OrderTable,ocado.scenario.WalletSnapshot)"},{"p":"ocado.scenario","c":"ScenarioEvaluator","l":"ScenarioEvaluator(OrderTable, WalletSnapshot, ForkJoinPool)","u":"%3Cinit%3E(ocado.model.OrderTable,ocado.scenario.WalletSnapshot,java.util.concurrent.ForkJoinPool)"},{"p":"ocado.scenario","c":"ScenarioResult","l":"ScenarioResult(String, boolean, Money, Map<String, Money>, String)","u":"%3Cinit%3E(java.lang.String,boolean,ocado.model.Money,java.util.Map,java.lang.String)"},{"p":"ocado.model","c":"PaymentMethod","l":"setDiscount(int)"},{"p":"ocado.model","c":"PaymentMethod","l":"setLimit(Money)","u":"setLimit(ocado.model.Money)"},{"p":"ocado.optimization","c":"ExpenseOptimizer","l":"setMetrics(OptimizerMetrics)","u":"setMetrics(ocado.metrics.OptimizerMetrics)"},{"p":"ocado.optimization","c":"ExpenseOptimizer","l":"setPaymentListener(PaymentListener)","u":"setPaymentListener(ocado.optimization.PaymentListener)"},{"p":"ocado.optimization","c":"IncrementalOptimizer","l":"setPaymentListener(PaymentListener)","u":"setPaymentListener(ocado.optimization.PaymentListener)"},{"p":"ocado.batch","c":"BatchOptimizer","l":"setResultCache(ResultCache)","u":"setResultCache(ocado.cache.ResultCache)"},{"p":"ocado.model","c":"PaymentMethod","l":"setSpending(Money)","u":"setSpending(ocado.model.Money)"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"size()"},{"p":"ocado.model","c":"CardRegistry","l":"size()"},{"p":"ocado.model","c":"OrderTable","l":"size()"},{"p":"ocado.utils","c":"ArrayOrderTable","l":"size()"},{"p":"ocado.utils","c":"MappedOrderTable","l":"size()"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"SMALLER_LIMIT"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"snapshot()"},{"p":"ocado.batch","c":"BatchOptimizer","l":"solve(TenantInput)","u":"solve(ocado.batch.TenantInput)"},{"p":"ocado.batch","c":"TenantResult.Status","l":"SOLVED"},{"p":"ocado.batch","c":"BatchOptimizer.Summary","l":"solved()"},{"p":"ocado.scenario","c":"ScenarioResult","l":"solved()"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"solved()"},{"p":"ocado.server","c":"OptimizationServer","l":"SOLVERS"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"SORT"},{"p":"ocado.utils","c":"RadixSorter","l":"sortByValue(List<Order>)","u":"sortByValue(java.util.List)"},{"p":"ocado.utils","c":"RadixSorter","l":"sortByValue(OrderTable)","u":"sortByValue(ocado.model.OrderTable)"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"SPEND_REMAINING_POINTS"},{"p":"ocado.model","c":"PaymentMethod","l":"spend(long)"},{"p":"ocado.model","c":"PaymentMethod","l":"spend(Money)","u":"spend(ocado.model.Money)"},{"p":"ocado.scenario","c":"ScenarioResult","l":"spending()"},{"p":"ocado.server","c":"OptimizationServer","l":"start()"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"Stats(long, long, long, long, int)","u":"%3Cinit%3E(long,long,long,long,int)"},{"p":"ocado.batch","c":"TenantResult","l":"status()"},{"p":"ocado.server","c":"OptimizationServer","l":"stop()"},{"p":"ocado.metrics","c":"DecisionTrace","l":"STORED_CANDIDATES"},{"p":"ocado.stream","c":"StreamingOptimizer","l":"StreamingOptimizer(Map<String, PaymentMethod>, PaymentMethod, int, Duration)","u":"%3Cinit%3E(java.util.Map,ocado.model.PaymentMethod,int,java.time.Duration)"},{"p":"ocado.optimization","c":"IncrementalOptimizer","l":"submit(List<Order>)","u":"submit(java.util.List)"},{"p":"ocado.optimization","c":"IncrementalOptimizer","l":"submit(Order)","u":"submit(ocado.model.Order)"},{"p":"ocado.model","c":"Money","l":"subtract(Money)","u":"subtract(ocado.model.Money)"},{"p":"ocado.batch","c":"BatchOptimizer.Summary","l":"Summary(int, int, int)","u":"%3Cinit%3E(int,int,int)"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"Summary(int, int, int)","u":"%3Cinit%3E(int,int,int)"},{"p":"ocado.utils","c":"ParallelJsonLoader.Input","l":"table()"},{"p":"ocado.batch","c":"TenantInput","l":"tenantId()"},{"p":"ocado.batch","c":"TenantResult","l":"tenantId()"},{"p":"ocado.batch","c":"TenantInput","l":"TenantInput(String, File, File)","u":"%3Cinit%3E(java.lang.String,java.io.File,java.io.File)"},{"p":"ocado.batch","c":"TenantResult","l":"TenantResult(String, TenantResult.Status, String, List<Order>, List<PaymentMethod>)","u":"%3Cinit%3E(java.lang.String,ocado.batch.TenantResult.Status,java.lang.String,java.util.List,java.util.List)"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"TERMINATED"},{"p":"ocado.batch","c":"TextResultSink","l":"TextResultSink(Writer)","u":"%3Cinit%3E(java.io.Writer)"},{"p":"ocado.model","c":"OrderTable","l":"toOrders()"},{"p":"ocado.utils","c":"JsonProcessor","l":"toPaymentsMap(List<PaymentMethod>, List<Order>)","u":"toPaymentsMap(java.util.List,java.util.List)"},{"p":"ocado.utils","c":"JsonProcessor","l":"toPaymentsMap(List<PaymentMethod>, Map<String, Integer>)","u":"toPaymentsMap(java.util.List,java.util.Map)"},{"p":"ocado.batch","c":"TextResultSink","l":"toStandardOutput()"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"toStandardOutput()"},{"p":"ocado.batch","c":"BatchOptimizer.Summary","l":"toString()"},{"p":"ocado.batch","c":"TenantInput","l":"toString()"},{"p":"ocado.batch","c":"TenantResult","l":"toString()"},{"p":"ocado.cache","c":"InputKey","l":"toString()"},{"p":"ocado.cache","c":"ResultCache.Stats","l":"toString()"},{"p":"ocado.model","c":"Money","l":"toString()"},{"p":"ocado.optimization","c":"PaymentListener.Allocation","l":"toString()"},{"p":"ocado.scenario","c":"ScenarioResult","l":"toString()"},{"p":"ocado.scenario","c":"WalletSnapshot.Wallet","l":"toString()"},{"p":"ocado.server","c":"OptimizationRequest","l":"toString()"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"toString()"},{"p":"ocado.utils","c":"ParallelJsonLoader.Input","l":"toString()"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"unpaid()"},{"p":"ocado.batch","c":"TenantResult.Status","l":"UNSOLVED"},{"p":"ocado.batch","c":"BatchOptimizer.Summary","l":"unsolved()"},{"p":"ocado.model","c":"Order","l":"usePaymentsMethod(String, long)","u":"usePaymentsMethod(java.lang.String,long)"},{"p":"ocado.model","c":"OrderView","l":"usePaymentsMethod(String, long)","u":"usePaymentsMethod(java.lang.String,long)"},{"p":"ocado.model","c":"Order","l":"usePaymentsMethod(String, Money)","u":"usePaymentsMethod(java.lang.String,ocado.model.Money)"},{"p":"ocado.model","c":"OrderView","l":"usePaymentsMethod(String, Money)","u":"usePaymentsMethod(java.lang.String,ocado.model.Money)"},{"p":"ocado.batch","c":"TenantResult.Status","l":"valueOf(String)","u":"valueOf(java.lang.String)"},{"p":"ocado.cache","c":"ResultCache.Policy","l":"valueOf(String)","u":"valueOf(java.lang.String)"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"valueOf(String)","u":"valueOf(java.lang.String)"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"valueOf(String)","u":"valueOf(java.lang.String)"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"valueOf(String)","u":"valueOf(java.lang.String)"},{"p":"ocado.batch","c":"TenantResult.Status","l":"values()"},{"p":"ocado.cache","c":"ResultCache.Policy","l":"values()"},{"p":"ocado.metrics","c":"DecisionTrace.Reason","l":"values()"},{"p":"ocado.metrics","c":"OptimizerMetrics.Branch","l":"values()"},{"p":"ocado.metrics","c":"OptimizerMetrics.Phase","l":"values()"},{"p":"ocado.scenario","c":"WalletSnapshot.Wallet","l":"Wallet(Map<String, PaymentMethod>, PaymentMethod)","u":"%3Cinit%3E(java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.stream","c":"StreamingOptimizer.Summary","l":"windows()"},{"p":"ocado.scenario","c":"Scenario","l":"withLimit(String, Money)","u":"withLimit(java.lang.String,ocado.model.Money)"},{"p":"ocado.utils","c":"BinaryOrderFile","l":"write(OrderTable, File)","u":"write(ocado.model.OrderTable,java.io.File)"},{"p":"ocado.batch","c":"ResultSink","l":"write(TenantResult)","u":"write(ocado.batch.TenantResult)"},{"p":"ocado.batch","c":"TextResultSink","l":"write(TenantResult)","u":"write(ocado.batch.TenantResult)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"writeFailure(String)","u":"writeFailure(java.lang.String)"},{"p":"ocado.metrics","c":"OptimizerMetrics","l":"writeJson(OutputStream)","u":"writeJson(java.io.OutputStream)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"writeOrder(Order)","u":"writeOrder(ocado.model.Order)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"writeResult(boolean, List<Order>, Map<String, PaymentMethod>, PaymentMethod)","u":"writeResult(boolean,java.util.List,java.util.Map,ocado.model.PaymentMethod)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"writeStatus(boolean)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"writeTotals(PaymentMethod, Collection<PaymentMethod>)","u":"writeTotals(ocado.model.PaymentMethod,java.util.Collection)"},{"p":"ocado.utils","c":"NdjsonResultWriter","l":"writeUnpaid(Order)","u":"writeUnpaid(ocado.model.Order)"},{"p":"ocado.model","c":"Money","l":"ZERO"}];updateSearchResults();
\ No newline at end of file
@@ -0,0 +1 @@
+packageSearchIndex = [{"l":"All Packages","u":"allpackages-index.html"},{"l":"ocado"},{"l":"ocado.batch"},{"l":"ocado.cache"},{"l":"ocado.metrics"},{"l":"ocado.model"},{"l":"ocado.optimization"},{"l":"ocado.scenario"},{"l":"ocado.server"},{"l":"ocado.stream"},{"l":"ocado.utils"}];updateSearchResults();
\ No newline at end of file
@@ -0,0 +1 @@
+typeSearchIndex = [{"l":"All Classes and Interfaces","u":"allclasses-index.html"},{"p":"ocado.optimization","l":"PaymentListener.Allocation"},{"p":"ocado.utils","l":"ArrayOrderTable"},{"p":"ocado.batch","l":"BatchOptimizer"},{"p":"ocado.optimization","l":"BeamSearchSolver"},{"p":"ocado.utils","l":"BinaryOrderFile"},{"p":"ocado.metrics","l":"OptimizerMetrics.Branch"},{"p":"ocado.optimization","l":"BranchAndBoundSolver"},{"p":"ocado.cache","l":"CachingSolver"},{"p":"ocado.utils","l":"CardIndex"},{"p":"ocado.model","l":"CardRegistry"},{"p":"ocado.metrics","l":"DecisionTrace"},{"p":"ocado.optimization","l":"DecomposingSolver"},{"p":"ocado.utils","l":"DecompressingInputStream"},{"p":"ocado.optimization","l":"DiscountBound"},{"p":"ocado.optimization","l":"ExpenseOptimizer"},{"p":"ocado.optimization","l":"ExpenseSolver"},{"p":"ocado.metrics","l":"Histogram"},{"p":"ocado.optimization","l":"IncrementalOptimizer"},{"p":"ocado.utils","l":"ParallelJsonLoader.Input"},{"p":"ocado.cache","l":"InputKey"},{"p":"ocado.utils","l":"JsonProcessor"},{"p":"ocado.optimization","l":"LocalSearchSolver"},{"p":"ocado","l":"Main"},{"p":"ocado.utils","l":"MappedOrderTable"},{"p":"ocado.model","l":"Money"},{"p":"ocado.utils","l":"NdjsonResultWriter"},{"p":"ocado.server","l":"OptimizationRequest"},{"p":"ocado.server","l":"OptimizationServer"},{"p":"ocado.metrics","l":"OptimizerMetrics"},{"p":"ocado.metrics","l":"OptimizerMetricsMXBean"},{"p":"ocado.utils","l":"OptimizerUtils"},{"p":"ocado.model","l":"Order"},{"p":"ocado.model","l":"OrderTable"},{"p":"ocado.model","l":"OrderView"},{"p":"ocado.utils","l":"ParallelJsonLoader"},{"p":"ocado.optimization","l":"PaymentListener"},{"p":"ocado.model","l":"PaymentMethod"},{"p":"ocado.metrics","l":"OptimizerMetrics.Phase"},{"p":"ocado.cache","l":"ResultCache.Policy"},{"p":"ocado.utils","l":"RadixSorter"},{"p":"ocado.metrics","l":"DecisionTrace.Reason"},{"p":"ocado.cache","l":"ResultCache"},{"p":"ocado.batch","l":"ResultSink"},{"p":"ocado.scenario","l":"Scenario"},{"p":"ocado.scenario","l":"ScenarioEvaluator"},{"p":"ocado.scenario","l":"ScenarioResult"},{"p":"ocado.cache","l":"ResultCache.Stats"},{"p":"ocado.batch","l":"TenantResult.Status"},{"p":"ocado.stream","l":"StreamingOptimizer"},{"p":"ocado.batch","l":"BatchOptimizer.Summary"},{"p":"ocado.stream","l":"StreamingOptimizer.Summary"},{"p":"ocado.batch","l":"TenantInput"},{"p":"ocado.batch","l":"TenantResult"},{"p":"ocado.batch","l":"TextResultSink"},{"p":"ocado.scenario","l":"WalletSnapshot.Wallet"},{"p":"ocado.scenario","l":"WalletSnapshot"}];updateSearchResults();
\ No newline at end of file
@@ -0,0 +1,67 @@
+package ocado.benchmark;
+
+import ocado.model.Money;
+import ocado.model.PaymentMethod;
+import ocado.utils.CardIndex;
+import ocado.utils.OptimizerUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of choosing the card to pay the rest of an order: the stream based
+ * {@link OptimizerUtils#findBestCardToPayRest(List)} over the cards with a sufficient limit,
+ * compared with a {@link CardIndex} query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardSelectionBenchmark {
+    /** Number of prepared query limits, a power of two */
+    private static final int QUERIES = 1024;
+
+    @Param({"10", "100", "1000"})
+    private int cardCount;
+
+    private final OptimizerUtils utils = new OptimizerUtils();
+
+    private List<PaymentMethod> methods;
+
+    private CardIndex cardIndex;
+
+    private final Money[] minLimits = new Money[QUERIES];
+
+    private int query;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        methods = new ArrayList<>();
+        for (int i = 0; i < cardCount; i++) {
+            PaymentMethod pm = new PaymentMethod("CARD" + i, String.valueOf(random.nextInt(21)), String.valueOf(random.nextInt(10_000)));
+            pm.setOrdersAmount(random.nextInt(4));
+            methods.add(pm);
+        }
+        cardIndex = new CardIndex(methods);
+        for (int i = 0; i < QUERIES; i++) {
+            minLimits[i] = Money.ofCents(random.nextInt(1_000_000));
+        }
+    }
+
+    @Benchmark
+    public PaymentMethod streams() {
+        Money minLimit = minLimits[query++ & (QUERIES - 1)];
+        return utils.findBestCardToPayRest(methods.stream().filter(p -> p.getLimit().compareTo(minLimit) >= 0).toList());
+    }
+
+    @Benchmark
+    public PaymentMethod cardIndex() {
+        return cardIndex.findBestCardToPayRest(minLimits[query++ & (QUERIES - 1)]);
+    }
+}
@@ -0,0 +1,300 @@
+package ocado.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded generator of input file pairs in the format of the application, of any size up to tens of millions of orders.<br>
+ * Unlike {@link SyntheticData}, nothing is kept in memory: every order is written as soon as it is drawn, and the total
+ * value the limits depend on is calculated by a first pass over the same seeded values. The distributions:
+ * <ul>
+ *   <li>order values are log-normal around a median (most orders small, a long tail of large ones) or uniform up to
+ *   twice the median</li>
+ *   <li>the number of promotions of an order is Poisson-distributed around a mean fan-out, and the cards are drawn
+ *   with Zipf popularity, so a few cards are promoted in most orders</li>
+ *   <li>the card limits together cover a given multiple of the total value, the largest limit being up to a given
+ *   spread times the smallest one</li>
+ *   <li>the points limit is a given fraction of the total value</li>
+ * </ul>
+ *
+ * @param seed the random seed
+ * @param orderCount the number of orders
+ * @param cardCount the number of cards (without PUNKTY)
+ * @param valueDistribution the distribution of the order values
+ * @param medianValueCents the median order value in cents
+ * @param meanPromotions the mean number of promotions of an order
+ * @param cardSkew the exponent of the Zipf popularity of the cards, 0 for equally popular cards
+ * @param limitCoverage the sum of the card limits as a multiple of the total value of the orders
+ * @param limitSpread the ratio of the largest to the smallest card limit, at least 1
+ * @param pointsLimitRatio the PUNKTY limit as a fraction of the total value of the orders
+ */
+public record DatasetGenerator(long seed, int orderCount, int cardCount, ValueDistribution valueDistribution,
+                               long medianValueCents, double meanPromotions, double cardSkew, double limitCoverage,
+                               double limitSpread, double pointsLimitRatio) {
+    /**
+     * Distribution of the order values.
+     */
+    public enum ValueDistribution {
+        /** Uniform from 1.00 to twice the median */
+        UNIFORM,
+        /** Log-normal around the median */
+        LOG_NORMAL
+    }
+
+    /** Standard deviation of the logarithm of log-normal values */
+    private static final double LOG_NORMAL_SIGMA = 0.8;
+
+    /** Smallest order value in cents */
+    private static final long MIN_VALUE_CENTS = 100;
+
+    /** Discount of PUNKTY */
+    private static final String POINTS_DISCOUNT = "15";
+
+    /**
+     * Compact constructor validating the parameters.
+     */
+    public DatasetGenerator {
+        if (orderCount < 0 || cardCount < 1 || medianValueCents < MIN_VALUE_CENTS || meanPromotions < 0 || cardSkew < 0
+                || limitCoverage < 0 || limitSpread < 1 || pointsLimitRatio < 0) {
+            throw new IllegalArgumentException("Invalid data set parameters");
+        }
+    }
+
+    /**
+     * Creates a generator with the default distributions: 20 cards, log-normal values around 150.00, 1.5 promotions
+     * per order with Zipf popularity, card limits covering twice the total value with a spread of 4, and points
+     * worth 10% of the total value.
+     *
+     * @param seed the random seed
+     * @param orderCount the number of orders
+     * @return the generator
+     */
+    public static DatasetGenerator of(long seed, int orderCount) {
+        return new DatasetGenerator(seed, orderCount, 20, ValueDistribution.LOG_NORMAL, 15_000, 1.5, 1, 2, 4, 0.1);
+    }
+
+    /**
+     * Creates a generator with some parameters replaced by options: {@code cards}, {@code values}
+     * ({@code uniform|lognormal}), {@code median} (an amount), {@code promotions}, {@code skew}, {@code coverage},
+     * {@code spread} and {@code points}. Other options are ignored.
+     *
+     * @param options the options by name
+     * @return the changed generator
+     * @throws IllegalArgumentException if an option has an invalid value
+     */
+    public DatasetGenerator withOptions(Map<String, String> options) throws IllegalArgumentException {
+        try {
+            return new DatasetGenerator(seed, orderCount,
+                    options.containsKey("cards") ? Integer.parseInt(options.get("cards")) : cardCount,
+                    options.containsKey("values") ? parseDistribution(options.get("values")) : valueDistribution,
+                    options.containsKey("median") ? new BigDecimal(options.get("median")).movePointRight(2).longValueExact() : medianValueCents,
+                    options.containsKey("promotions") ? Double.parseDouble(options.get("promotions")) : meanPromotions,
+                    options.containsKey("skew") ? Double.parseDouble(options.get("skew")) : cardSkew,
+                    options.containsKey("coverage") ? Double.parseDouble(options.get("coverage")) : limitCoverage,
+                    options.containsKey("spread") ? Double.parseDouble(options.get("spread")) : limitSpread,
+                    options.containsKey("points") ? Double.parseDouble(options.get("points")) : pointsLimitRatio);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid data set option: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a generator of another data set with the same distributions.
+     *
+     * @param seed the random seed
+     * @param orderCount the number of orders
+     * @return the changed generator
+     */
+    public DatasetGenerator withSize(long seed, int orderCount) {
+        return new DatasetGenerator(seed, orderCount, cardCount, valueDistribution, medianValueCents, meanPromotions,
+                cardSkew, limitCoverage, limitSpread, pointsLimitRatio);
+    }
+
+    /**
+     * Writes the orders and the payment methods.
+     *
+     * @param ordersFile the target orders file
+     * @param paymentsFile the target payment methods file
+     * @throws IOException if a file write error occurs
+     */
+    public void write(File ordersFile, File paymentsFile) throws IOException {
+        // The values are drawn again from the same seed while writing, so they need not be kept.
+        long totalCents = 0;
+        Random values = new Random(seed);
+        for (int i = 0; i < orderCount; i++) {
+            totalCents += nextValue(values);
+        }
+        writeOrders(ordersFile);
+        writePayments(paymentsFile, totalCents);
+    }
+
+    /**
+     * Writes the orders.
+     *
+     * @param file the target file
+     * @throws IOException if a file write error occurs
+     */
+    private void writeOrders(File file) throws IOException {
+        Random values = new Random(seed);
+        Random promotions = new Random(seed + 1);
+        double[] popularity = cumulativePopularity();
+        boolean[] promoted = new boolean[cardCount];
+        int[] cards = new int[cardCount];
+        try (JsonGenerator generator = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int i = 0; i < orderCount; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("id", "ORDER" + i);
+                generator.writeStringField("value", BigDecimal.valueOf(nextValue(values), 2).toPlainString());
+                // Popular cards are drawn again and again, so an order gets its distinct cards out of a few more draws.
+                int promotionCount = Math.min(nextPoisson(promotions), cardCount);
+                int drawn = 0;
+                for (int attempt = 0; attempt < 4 * promotionCount && drawn < promotionCount; attempt++) {
+                    int card = Arrays.binarySearch(popularity, promotions.nextDouble());
+                    card = card >= 0 ? card + 1 : -card - 1;
+                    card = Math.min(card, cardCount - 1);
+                    if (!promoted[card]) {
+                        promoted[card] = true;
+                        cards[drawn++] = card;
+                    }
+                }
+                generator.writeArrayFieldStart("promotions");
+                for (int k = 0; k < drawn; k++) {
+                    generator.writeString("CARD" + cards[k]);
+                    promoted[cards[k]] = false;
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes the payment methods.
+     *
+     * @param file the target file
+     * @param totalCents the total value of the orders in cents
+     * @throws IOException if a file write error occurs
+     */
+    private void writePayments(File file, long totalCents) throws IOException {
+        Random random = new Random(seed + 2);
+        double[] weights = new double[cardCount];
+        double weightSum = 0;
+        for (int c = 0; c < cardCount; c++) {
+            weights[c] = Math.pow(limitSpread, random.nextDouble());
+            weightSum += weights[c];
+        }
+        try (JsonGenerator generator = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int c = 0; c < cardCount; c++) {
+                long limit = (long) (totalCents * limitCoverage * weights[c] / weightSum);
+                writeMethod(generator, "CARD" + c, String.valueOf(random.nextInt(21)), limit);
+            }
+            writeMethod(generator, "PUNKTY", POINTS_DISCOUNT, (long) (totalCents * pointsLimitRatio));
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes a payment method.
+     *
+     * @param generator the JSON generator
+     * @param id the identifier
+     * @param discount the discount in percent
+     * @param limitCents the limit in cents
+     * @throws IOException if a file write error occurs
+     */
+    private static void writeMethod(JsonGenerator generator, String id, String discount, long limitCents) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", id);
+        generator.writeStringField("discount", discount);
+        generator.writeStringField("limit", BigDecimal.valueOf(limitCents, 2).toPlainString());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Draws the value of an order.
+     *
+     * @param random the random generator of the values
+     * @return the value in cents
+     */
+    private long nextValue(Random random) {
+        if (valueDistribution == ValueDistribution.UNIFORM) {
+            return MIN_VALUE_CENTS + random.nextLong(2 * medianValueCents - MIN_VALUE_CENTS + 1);
+        }
+        long cents = Math.round(medianValueCents * Math.exp(LOG_NORMAL_SIGMA * random.nextGaussian()));
+        return Math.clamp(cents, MIN_VALUE_CENTS, 100 * medianValueCents);
+    }
+
+    /**
+     * Draws a number from the Poisson distribution with the mean number of promotions, by multiplying uniform numbers.
+     *
+     * @param random the random generator
+     * @return the number
+     */
+    private int nextPoisson(Random random) {
+        double threshold = Math.exp(-meanPromotions);
+        int count = 0;
+        double product = random.nextDouble();
+        while (product > threshold) {
+            count++;
+            product *= random.nextDouble();
+        }
+        return count;
+    }
+
+    /**
+     * Calculates the cumulative Zipf distribution of the cards, the first card being the most popular.
+     *
+     * @return the probability of drawing any of the first {@code c + 1} cards at index {@code c}
+     */
+    private double[] cumulativePopularity() {
+        double[] cumulative = new double[cardCount];
+        double sum = 0;
+        for (int c = 0; c < cardCount; c++) {
+            sum += Math.pow(c + 1, -cardSkew);
+            cumulative[c] = sum;
+        }
+        for (int c = 0; c < cardCount; c++) {
+            cumulative[c] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Describes the distributions, e.g. for a report.
+     *
+     * @return the description
+     */
+    public String describe() {
+        return String.format(Locale.ROOT, "cards=%d values=%s median=%s promotions=%.2f skew=%.2f coverage=%.2f spread=%.2f points=%.3f",
+                cardCount, valueDistribution == ValueDistribution.UNIFORM ? "uniform" : "lognormal",
+                BigDecimal.valueOf(medianValueCents, 2).toPlainString(), meanPromotions, cardSkew, limitCoverage,
+                limitSpread, pointsLimitRatio);
+    }
+
+    /**
+     * Parses the name of a distribution of the order values.
+     *
+     * @param name the name
+     * @return the distribution
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    private static ValueDistribution parseDistribution(String name) throws IllegalArgumentException {
+        return switch (name) {
+            case "uniform" -> ValueDistribution.UNIFORM;
+            case "lognormal" -> ValueDistribution.LOG_NORMAL;
+            default -> throw new IllegalArgumentException("Unknown value distribution: " + name);
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package ocado.benchmark;
+
+import ocado.metrics.DecisionTrace;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ExpenseOptimizer#optimize()} with the {@link DecisionTrace} disabled and enabled.<br>
+ * The switch is a constant of the JVM, so both benchmarks run the same code in forks started with and without the
+ * {@value DecisionTrace#FILE_PROPERTY} property. With tracing disabled, the JIT removes the tracing blocks and the
+ * result matches {@link OptimizerBenchmark} with the same parameters; the enabled fork shows the cost of recording.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DecisionTraceBenchmark {
+    @Param({"100000"})
+    private int orderCount;
+
+    @Param({"10", "200"})
+    private int cardCount;
+
+    private SyntheticData data;
+
+    private ExpenseOptimizer optimizer;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        data = new SyntheticData(42, orderCount, cardCount, 1, 0.05);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        List<Order> orders = data.createOrders();
+        Map<String, PaymentMethod> payments = data.createPayments(orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        optimizer = new ExpenseOptimizer(orders, payments, pointsMethod);
+    }
+
+    @Benchmark
+    @Fork(1)
+    public boolean traceDisabled() {
+        return optimizer.optimize();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + DecisionTrace.FILE_PROPERTY + "=decision-trace.txt")
+    public boolean traceEnabled() {
+        return optimizer.optimize();
+    }
+}
@@ -0,0 +1,75 @@
+package ocado.benchmark;
+
+import ocado.model.Order;
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+import ocado.utils.BinaryOrderFile;
+import ocado.utils.JsonProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of reading synthetic input files with {@link JsonProcessor}, including orders converted
+ * into a {@link BinaryOrderFile}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonProcessorBenchmark {
+    @Param({"1000", "100000"})
+    private int orderCount;
+
+    @Param({"10", "200"})
+    private int cardCount;
+
+    private File ordersFile;
+
+    private File paymentsFile;
+
+    private File binaryOrdersFile;
+
+    private final Map<String, Integer> promotionCounts = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        SyntheticData data = new SyntheticData(42, orderCount, cardCount, 2, 0.1);
+        ordersFile = File.createTempFile("orders", ".json");
+        paymentsFile = File.createTempFile("paymentmethods", ".json");
+        data.writeOrders(ordersFile);
+        data.writePayments(paymentsFile);
+        binaryOrdersFile = File.createTempFile("orders", BinaryOrderFile.EXTENSION);
+        BinaryOrderFile.convert(ordersFile, binaryOrdersFile);
+        JsonProcessor.getOrdersAsList(ordersFile, promotionCounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        ordersFile.delete();
+        paymentsFile.delete();
+        binaryOrdersFile.delete();
+    }
+
+    @Benchmark
+    public List<Order> getOrdersAsList() throws IOException {
+        return JsonProcessor.getOrdersAsList(ordersFile);
+    }
+
+    @Benchmark
+    public OrderTable getOrdersAsTable() throws IOException {
+        return JsonProcessor.getOrdersAsTable(binaryOrdersFile, new HashMap<>());
+    }
+
+    @Benchmark
+    public Map<String, PaymentMethod> getPaymentsAsMap() throws IOException {
+        return JsonProcessor.getPaymentsAsMap(paymentsFile, promotionCounts);
+    }
+}
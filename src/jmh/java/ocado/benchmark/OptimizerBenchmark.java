@@ -0,0 +1,56 @@
+package ocado.benchmark;
+
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ExpenseOptimizer#optimize()} on synthetic data sets.<br>
+ * The optimizer changes the orders and the wallet, so a fresh copy is created before every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OptimizerBenchmark {
+    @Param({"1000", "100000"})
+    private int orderCount;
+
+    @Param({"10", "200"})
+    private int cardCount;
+
+    @Param({"1", "3"})
+    private int promotionsPerOrder;
+
+    @Param({"0.05", "0.5"})
+    private double pointsLimitRatio;
+
+    private SyntheticData data;
+
+    private ExpenseOptimizer optimizer;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        data = new SyntheticData(42, orderCount, cardCount, promotionsPerOrder, pointsLimitRatio);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        List<Order> orders = data.createOrders();
+        Map<String, PaymentMethod> payments = data.createPayments(orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        optimizer = new ExpenseOptimizer(orders, payments, pointsMethod);
+    }
+
+    @Benchmark
+    public boolean optimize() {
+        return optimizer.optimize();
+    }
+}
@@ -0,0 +1,194 @@
+package ocado.benchmark;
+
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import ocado.utils.JsonProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Scaling suite running {@link JsonProcessor} and {@link ExpenseOptimizer} on data sets of the
+ * {@link DatasetGenerator} from a thousand to ten million orders, the way the application reads and solves them.<br>
+ * Every size is run with a few seeds and reported as a CSV row: the median parse and optimize times, the throughput,
+ * the peak heap of the run and how many data sets were solved. A size that runs out of memory is reported as such and
+ * ends the suite, marking the memory ceiling of the given heap. Options, in the form {@code --name=value}:
+ * <ul>
+ *   <li>{@code --sizes=<n>,<n>...} - the numbers of orders, from 1000 to 10000000 in powers of ten by default</li>
+ *   <li>{@code --seeds=<n>} - the number of data sets of every size, 3 by default</li>
+ *   <li>{@code --output=<file>} - the CSV report, {@code target/scaling/scaling.csv} by default</li>
+ *   <li>{@code --dir=<directory>} - the directory of the generated files, {@code target/scaling} by default</li>
+ *   <li>the options of {@link DatasetGenerator#withOptions(Map)}</li>
+ * </ul>
+ */
+public final class ScalingSuite {
+    /** Header of the CSV report */
+    private static final String HEADER = "orders,runs,solved,solved_rate,parse_ms,optimize_ms,orders_per_second,peak_heap_mb,status";
+
+    /** Default numbers of orders */
+    private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    /**
+     * Private constructor, the suite is only run from {@link #main(String[])}.
+     */
+    private ScalingSuite() {
+    }
+
+    /**
+     * Runs the suite.
+     *
+     * @param args the options
+     * @throws IOException if a file read or write error occurs
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(separator < 0 ? arg.substring(2) : arg.substring(2, separator),
+                    separator < 0 ? "" : arg.substring(separator + 1));
+        }
+        int[] sizes = options.containsKey("sizes")
+                ? Arrays.stream(options.get("sizes").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray()
+                : DEFAULT_SIZES;
+        int seeds = Integer.parseInt(options.getOrDefault("seeds", "3"));
+        if (seeds < 1) {
+            throw new IllegalArgumentException("At least one seed is needed");
+        }
+        File directory = new File(options.getOrDefault("dir", "target/scaling"));
+        File output = new File(options.getOrDefault("output", new File(directory, "scaling.csv").getPath()));
+        DatasetGenerator generator = DatasetGenerator.of(0, 0).withOptions(options);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        System.out.println("Data sets: " + generator.describe() + ", max heap "
+                + Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB");
+        try (PrintWriter report = new PrintWriter(output, StandardCharsets.UTF_8)) {
+            report.println(HEADER);
+            System.out.println(HEADER);
+            for (int size : sizes) {
+                String row = runSize(generator, size, seeds, directory);
+                report.println(row);
+                report.flush();
+                System.out.println(row);
+                if (row.endsWith("out_of_memory")) {
+                    break;
+                }
+            }
+        }
+        System.out.println("Report written to " + output);
+    }
+
+    /**
+     * Runs all data sets of a size.
+     *
+     * @param generator the generator with the distributions of the data sets
+     * @param size the number of orders
+     * @param seeds the number of data sets
+     * @param directory the directory of the generated files
+     * @return the CSV row
+     * @throws IOException if a file read or write error occurs
+     */
+    private static String runSize(DatasetGenerator generator, int size, int seeds, File directory) throws IOException {
+        File ordersFile = new File(directory, "orders-" + size + ".json");
+        File paymentsFile = new File(directory, "paymentmethods-" + size + ".json");
+        long[] parseNanos = new long[seeds];
+        long[] optimizeNanos = new long[seeds];
+        long peakHeap = 0;
+        int solved = 0;
+        String status = "ok";
+        try {
+            for (int seed = 0; seed < seeds; seed++) {
+                generator.withSize(seed, size).write(ordersFile, paymentsFile);
+                System.gc();
+                resetPeakHeap();
+
+                long start = System.nanoTime();
+                Map<String, Integer> promotionCounts = new HashMap<>();
+                OrderTable table = JsonProcessor.getOrdersAsTable(ordersFile, promotionCounts);
+                Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(paymentsFile, promotionCounts);
+                PaymentMethod pointsMethod = payments.remove("PUNKTY");
+                long parsed = System.nanoTime();
+                try {
+                    if (new ExpenseOptimizer(table, payments, pointsMethod).optimize()) {
+                        solved++;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // The greedy algorithm reports some orders it cannot pay with an exception, which counts as unsolved too.
+                }
+                long optimized = System.nanoTime();
+
+                parseNanos[seed] = parsed - start;
+                optimizeNanos[seed] = optimized - parsed;
+                peakHeap = Math.max(peakHeap, peakHeap());
+            }
+        } catch (OutOfMemoryError e) {
+            status = "out_of_memory";
+        } finally {
+            ordersFile.delete();
+            paymentsFile.delete();
+        }
+        if (!status.equals("ok")) {
+            return String.format(Locale.ROOT, "%d,%d,,,,,,,%s", size, seeds, status);
+        }
+
+        double parseMillis = median(parseNanos) / 1e6;
+        double optimizeMillis = median(optimizeNanos) / 1e6;
+        return String.format(Locale.ROOT, "%d,%d,%d,%.3f,%.1f,%.1f,%.0f,%.1f,%s", size, seeds, solved,
+                (double) solved / seeds, parseMillis, optimizeMillis, size / ((parseMillis + optimizeMillis) / 1e3),
+                peakHeap / (1024.0 * 1024.0), status);
+    }
+
+    /**
+     * Resets the peak usage of the heap memory pools.
+     */
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the peak usages of the heap memory pools since the last reset, an upper estimate of the peak
+     * heap as the pools may peak at different times.
+     *
+     * @return the peak heap in bytes
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Returns the median of measurements.
+     *
+     * @param values the measurements
+     * @return the median
+     */
+    private static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+}
@@ -0,0 +1,67 @@
+package ocado.benchmark;
+
+import ocado.server.OptimizationServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of {@link OptimizationServer} with small synthetic customers, sent by a local {@link HttpClient}
+ * from several threads over keep-alive connections. The server and the client share the JVM, so the warmup is longer
+ * to compile both of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 6, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ServerBenchmark {
+    @Param({"10", "100"})
+    private int orderCount;
+
+    private OptimizationServer server;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        SyntheticData data = new SyntheticData(42, orderCount, 5, 2, 0.1);
+        File ordersFile = File.createTempFile("orders", ".json");
+        File paymentsFile = File.createTempFile("paymentmethods", ".json");
+        data.writeOrders(ordersFile);
+        data.writePayments(paymentsFile);
+        String body = "{\"orders\":" + Files.readString(ordersFile.toPath())
+                + ",\"paymentMethods\":" + Files.readString(paymentsFile.toPath()) + "}";
+        ordersFile.delete();
+        paymentsFile.delete();
+
+        server = new OptimizationServer(0);
+        server.start();
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/optimize"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        client.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public String optimize() throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
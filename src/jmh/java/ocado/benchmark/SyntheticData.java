@@ -0,0 +1,148 @@
+package ocado.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded generator of synthetic orders and wallets used by the benchmarks.
+ */
+public class SyntheticData {
+    /** Identifiers of the orders */
+    private final String[] orderIds;
+
+    /** Values of the orders */
+    private final String[] orderValues;
+
+    /** Promotions of the orders */
+    private final List<List<String>> promotions = new ArrayList<>();
+
+    /** Payment methods as (id, discount, limit) triples, including PUNKTY */
+    private final List<String[]> methods = new ArrayList<>();
+
+    /**
+     * Generates a data set.
+     *
+     * @param seed the random seed
+     * @param orderCount the number of orders
+     * @param cardCount the number of cards (without PUNKTY)
+     * @param promotionsPerOrder the number of promotions listed by every order
+     * @param pointsLimitRatio the PUNKTY limit as a fraction of the total value of all orders
+     */
+    public SyntheticData(long seed, int orderCount, int cardCount, int promotionsPerOrder, double pointsLimitRatio) {
+        Random random = new Random(seed);
+        orderIds = new String[orderCount];
+        orderValues = new String[orderCount];
+
+        long totalCents = 0;
+        for (int i = 0; i < orderCount; i++) {
+            long cents = 500 + random.nextInt(50_000);
+            totalCents += cents;
+            orderIds[i] = "ORDER" + i;
+            orderValues[i] = BigDecimal.valueOf(cents, 2).toString();
+
+            List<String> orderPromotions = new ArrayList<>();
+            for (int j = 0; j < Math.min(promotionsPerOrder, cardCount); j++) {
+                orderPromotions.add("CARD" + random.nextInt(cardCount));
+            }
+            promotions.add(orderPromotions);
+        }
+
+        // Cards together can pay for all orders with some margin, the limits of single cards vary up to 4 times.
+        long averageLimit = totalCents * 6 / 5 / cardCount;
+        for (int i = 0; i < cardCount; i++) {
+            long limit = averageLimit / 2 + (long) (random.nextDouble() * averageLimit * 3 / 2);
+            String discount = random.nextInt(4) == 0 ? "10" : String.valueOf(random.nextInt(21));
+            methods.add(new String[] {"CARD" + i, discount, BigDecimal.valueOf(limit, 2).toString()});
+        }
+        methods.add(new String[] {"PUNKTY", "15", BigDecimal.valueOf((long) (totalCents * pointsLimitRatio), 2).toString()});
+    }
+
+    /**
+     * Creates a fresh list of orders.
+     *
+     * @return the list of {@link Order}
+     */
+    public List<Order> createOrders() {
+        List<Order> orders = new ArrayList<>(orderIds.length);
+        for (int i = 0; i < orderIds.length; i++) {
+            orders.add(new Order(orderIds[i], orderValues[i], promotions.get(i)));
+        }
+        return orders;
+    }
+
+    /**
+     * Creates a fresh wallet with order counts taken from the given orders, the same way
+     * {@link ocado.utils.JsonProcessor#getPaymentsAsMap(File, List)} does.
+     *
+     * @param orders the orders of the data set
+     * @return the map of {@link PaymentMethod} including PUNKTY
+     */
+    public Map<String, PaymentMethod> createPayments(List<Order> orders) {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        for (String[] method : methods) {
+            payments.put(method[0], new PaymentMethod(method[0], method[1], method[2]));
+        }
+        for (Order order : orders) {
+            for (String s : order.getPromotions()) {
+                payments.get(s).incrementOrdersAmount();
+            }
+        }
+        return payments;
+    }
+
+    /**
+     * Writes the orders as a JSON file in the input format of the application.
+     *
+     * @param file the target file
+     * @throws IOException if a file write error occurs
+     */
+    public void writeOrders(File file) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int i = 0; i < orderIds.length; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("id", orderIds[i]);
+                generator.writeStringField("value", orderValues[i]);
+                generator.writeArrayFieldStart("promotions");
+                for (String s : promotions.get(i)) {
+                    generator.writeString(s);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes the payment methods as a JSON file in the input format of the application.
+     *
+     * @param file the target file
+     * @throws IOException if a file write error occurs
+     */
+    public void writePayments(File file) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (String[] method : methods) {
+                generator.writeStartObject();
+                generator.writeStringField("id", method[0]);
+                generator.writeStringField("discount", method[1]);
+                generator.writeStringField("limit", method[2]);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
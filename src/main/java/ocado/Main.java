@@ -1,39 +1,184 @@
 package ocado;
 
+import ocado.batch.BatchOptimizer;
+import ocado.batch.ResultSink;
+import ocado.batch.TenantInput;
+import ocado.batch.TextResultSink;
+import ocado.cache.CachingSolver;
+import ocado.cache.ResultCache;
+import ocado.metrics.DecisionTrace;
+import ocado.metrics.OptimizerMetrics;
+import ocado.model.Money;
 import ocado.model.Order;
+import ocado.model.OrderTable;
 import ocado.model.PaymentMethod;
+import ocado.optimization.BeamSearchSolver;
+import ocado.optimization.DiscountBound;
 import ocado.optimization.ExpenseOptimizer;
+import ocado.optimization.ExpenseSolver;
+import ocado.optimization.LocalSearchSolver;
+import ocado.scenario.Scenario;
+import ocado.scenario.ScenarioEvaluator;
+import ocado.scenario.WalletSnapshot;
+import ocado.server.OptimizationServer;
+import ocado.stream.StreamingOptimizer;
+import ocado.utils.BinaryOrderFile;
 import ocado.utils.JsonProcessor;
+import ocado.utils.NdjsonResultWriter;
+import ocado.utils.ParallelJsonLoader;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /**
  * Main application class responsible for launching the payment optimization process.
  */
 public class Main {
+    /** Default port of the HTTP service */
+    private static final int DEFAULT_PORT = 8080;
+
+    /** Default number of results held in memory by the cache */
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /** Names of the accepted options, in the order they are documented in {@link #main(String[])} */
+    private static final List<String> OPTIONS = List.of("solver", "budget", "width", "batch", "output", "threads",
+            "convert", "ndjson", "stdin", "serve", "metrics", "jmx", "trace", "cache", "cache-policy", "cache-dir",
+            "scenarios");
+
     /**
      * Main method launching the application.
      *
-     * @param args Input arguments: paths to JSON files containing orders and payment methods
+     * @param args Input arguments: paths to JSON files containing orders and payment methods, optionally preceded
+     *             by options in the form {@code --name=value}. The orders file may also be a binary order file
+     *             (see {@link BinaryOrderFile}), recognized by its header. An unknown option ends the application
+     *             with a usage message. Options:
+     *             <ul>
+     *               <li>{@code --solver=greedy|exact|local|decompose|beam} - the algorithm used, greedy by default</li>
+     *               <li>{@code --budget=<ms>} - time budget of the local search, 1000 ms by default</li>
+     *               <li>{@code --width=<k>} - number of partial assignments kept by the beam search,
+     *               {@value BeamSearchSolver#DEFAULT_WIDTH} by default</li>
+     *               <li>{@code --batch=<directory or manifest>} - batch mode solving many customers instead of the
+     *               two JSON files, see {@link BatchOptimizer#readInputs(File)}</li>
+     *               <li>{@code --output=<file>} - file receiving the results of the batch mode, standard output by default</li>
+     *               <li>{@code --threads=<n>} - number of threads of the batch mode, the number of cores by default</li>
+     *               <li>{@code --convert=<binary file>} - converts the single given JSON orders file into a binary
+     *               order file instead of optimizing</li>
+     *               <li>{@code --ndjson[=<file>]} - writes the payments of every order and the totals as
+     *               newline-delimited JSON (see {@link NdjsonResultWriter}), to standard output instead of the text
+     *               result by default</li>
+     *               <li>{@code --stdin[=<window>]} - reads newline-delimited orders from the standard input instead
+     *               of the orders file, given only the payment methods file, and writes their payments as
+     *               newline-delimited JSON to the standard output while they arrive, committing at most
+     *               {@value StreamingOptimizer#DEFAULT_WINDOW} orders together by default and waiting at most 50 ms
+     *               for a window to fill (see {@link StreamingOptimizer})</li>
+     *               <li>{@code --serve[=<port>]} - runs the HTTP service of {@link OptimizationServer} instead of the
+     *               two JSON files, on port {@value #DEFAULT_PORT} by default</li>
+     *               <li>{@code --metrics[=<file>]} - dumps the {@link OptimizerMetrics} as JSON when the run ends,
+     *               to standard error by default</li>
+     *               <li>{@code --jmx} - exports the {@link OptimizerMetrics} through JMX</li>
+     *               <li>{@code --trace} - writes the {@link DecisionTrace} of a successful greedy run to the file
+     *               named by the {@value DecisionTrace#FILE_PROPERTY} system property, which enables tracing; the
+     *               trace of a failed run is written without the option</li>
+     *               <li>{@code --cache[=<entries>]} - answers repeated inputs from a {@link ResultCache} holding
+     *               {@value #DEFAULT_CACHE_SIZE} results in memory by default, in the HTTP service, the batch mode
+     *               and across runs with a disk tier</li>
+     *               <li>{@code --cache-policy=lru|lfu} - eviction policy of the cache, lru by default</li>
+     *               <li>{@code --cache-dir=<directory>} - directory of the disk tier of the cache, which also enables
+     *               the cache</li>
+     *               <li>{@code --scenarios=<scenario>[;<scenario>...]} - evaluates what-if changes of the limits with
+     *               the greedy algorithm and prints a comparison with the unchanged wallet instead of the result, see
+     *               {@link Scenario#parse(String, WalletSnapshot)}</li>
+     *             </ul>
      */
     public static void main(String[] args) {
-        if (args.length != 2) {
+        Map<String, String> options = new HashMap<>();
+        List<String> files = new ArrayList<>();
+        if (!parseArguments(args, options, files)) {
+            return;
+        }
+        if (options.containsKey("jmx")) {
+            OptimizerMetrics.registerMBean();
+        }
+        try {
+            run(options, files);
+        } finally {
+            if (options.containsKey("metrics")) {
+                dumpMetrics(options.get("metrics"));
+            }
+        }
+    }
+
+    /**
+     * Runs the application with parsed arguments.
+     *
+     * @param options the command line options
+     * @param files the positional arguments
+     */
+    private static void run(Map<String, String> options, List<String> files) {
+        String solverName = options.getOrDefault("solver", ExpenseSolver.NAMES.get(0));
+        if (!ExpenseSolver.NAMES.contains(solverName)) {
+            System.out.println("Unknown solver '" + solverName + "', available solvers: " + String.join(", ", ExpenseSolver.NAMES));
+            return;
+        }
+        ResultCache cache;
+        try {
+            cache = createCache(options);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (options.containsKey("serve")) {
+            serve(options.get("serve"), cache);
+            return;
+        }
+        if (options.containsKey("batch")) {
+            runBatch(options, solverName, cache);
+            return;
+        }
+        if (options.containsKey("convert")) {
+            convert(files, new File(options.get("convert")));
+            return;
+        }
+        if (options.containsKey("stdin")) {
+            runStream(options.get("stdin"), files);
+            return;
+        }
+        if (files.size() != 2) {
             System.out.println("You need to provide two arguments: paths to JSON files");
             return;
         }
-        File ordersFile = new File(args[0]);
-        File paymentsFile = new File(args[1]);
+        File ordersFile = new File(files.get(0));
+        File paymentsFile = new File(files.get(1));
 
-        List<Order> orders;
+        List<Order> orders = null;
+        OrderTable table = null;
         Map<String, PaymentMethod> payments;
         PaymentMethod pointsMethod;
+        long parseStart = System.nanoTime();
         try {
-            orders = JsonProcessor.getOrdersAsList(ordersFile);
-            payments = JsonProcessor.getPaymentsAsMap(paymentsFile, orders);
+            // The greedy algorithm pays orders straight from a table, without creating an Order object per order.
+            // Both files are read at the same time, and large order files in parallel chunks.
+            ParallelJsonLoader.Input input = new ParallelJsonLoader().load(ordersFile, paymentsFile,
+                    solverName.equals("greedy") && cache == null || options.containsKey("scenarios"));
+            orders = input.orders();
+            table = input.table();
+            payments = input.payments();
             pointsMethod = payments.remove("PUNKTY");
             if (pointsMethod == null) {
                 pointsMethod = new PaymentMethod("-1.00", "-1.00");
@@ -45,8 +190,9 @@ public class Main {
             System.err.println("Exception occurred while reading files " + e.getMessage());
             return;
         }
+        OptimizerMetrics.global().recordSince(OptimizerMetrics.Phase.PARSE, parseStart);
 
-        if (orders.isEmpty()) {
+        if (table != null ? table.size() == 0 : orders.isEmpty()) {
             System.out.println("There is no order to pay for in JSON file");
             return;
         }
@@ -55,31 +201,354 @@ public class Main {
             return;
         }
 
-        ExpenseOptimizer optimizer = new ExpenseOptimizer(orders, payments, pointsMethod);
-        boolean result;
+        if (options.containsKey("scenarios")) {
+            runScenarios(options.get("scenarios"), table, payments, pointsMethod);
+            return;
+        }
+
+        // The bound copies the limits, so it is created before the solver spends them.
+        DiscountBound bound = table != null ? DiscountBound.of(table, payments, pointsMethod)
+                : DiscountBound.of(orders, payments, pointsMethod);
+        ExpenseSolver optimizer;
+        if (table != null) {
+            optimizer = new ExpenseOptimizer(table, payments, pointsMethod);
+        }
+        else if (cache != null) {
+            optimizer = new CachingSolver(cache, solverName, orders, payments, pointsMethod);
+        }
+        else if (solverName.equals("local") && options.containsKey("budget")) {
+            try {
+                optimizer = new LocalSearchSolver(orders, payments, pointsMethod,
+                        Duration.ofMillis(Long.parseLong(options.get("budget"))), Long.MAX_VALUE);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid budget: " + options.get("budget"));
+                return;
+            }
+        }
+        else if (solverName.equals("beam") && options.containsKey("width")) {
+            try {
+                optimizer = new BeamSearchSolver(orders, payments, pointsMethod, Integer.parseInt(options.get("width")),
+                        ForkJoinPool.commonPool());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid width: " + options.get("width"));
+                return;
+            }
+        }
+        else {
+            optimizer = ExpenseSolver.create(solverName, orders, payments, pointsMethod);
+        }
+        String ndjson = options.get("ndjson");
+        try (NdjsonResultWriter writer = ndjson == null ? null
+                : ndjson.isEmpty() ? NdjsonResultWriter.toStandardOutput() : NdjsonResultWriter.open(new File(ndjson))) {
+            // The greedy algorithm streams every order as soon as it is paid, other solvers are written when they finish.
+            boolean streaming = optimizer instanceof ExpenseOptimizer;
+            if (writer != null && streaming) {
+                ((ExpenseOptimizer) optimizer).setPaymentListener(writer);
+            }
+            boolean result = optimize(optimizer, writer == null || !ndjson.isEmpty());
+            if (options.containsKey("trace")) {
+                dumpTrace(optimizer, result);
+            }
+            if (writer != null) {
+                writer.writeResult(result, streaming ? null : orders, payments, pointsMethod);
+            }
+            if (writer == null || !ndjson.isEmpty()) {
+                printResult(result, pointsMethod, payments, bound);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Exception occurred while writing results " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the decision trace of a successful greedy run to {@link DecisionTrace#file()}, the trace of a failed run
+     * being written by the optimizer itself.
+     *
+     * @param optimizer the solver
+     * @param result true if all orders were paid
+     * @throws IOException if the trace cannot be written
+     */
+    private static void dumpTrace(ExpenseSolver optimizer, boolean result) throws IOException {
+        if (!DecisionTrace.ENABLED) {
+            System.err.println("Tracing is disabled, start the JVM with -D" + DecisionTrace.FILE_PROPERTY + "=<file>");
+        }
+        else if (optimizer instanceof ExpenseOptimizer greedy && result) {
+            greedy.dumpTrace(DecisionTrace.file());
+        }
+    }
+
+    /**
+     * Runs the solver, reporting an exception thrown by the algorithm.
+     *
+     * @param optimizer the solver
+     * @param verbose true if the exception is also reported on the standard output
+     * @return true if all orders were paid
+     */
+    private static boolean optimize(ExpenseSolver optimizer, boolean verbose) {
         try {
-            result = optimizer.optimize();
+            return optimizer.optimize();
         }
         catch (IllegalArgumentException e) {
-            System.out.println("While executing the algorithm, an exception occurred and the algorithm terminated:");
+            if (verbose) {
+                System.out.println("While executing the algorithm, an exception occurred and the algorithm terminated:");
+            }
             System.err.println(e.getMessage());
-            System.out.println();
-            result = false;
+            if (verbose) {
+                System.out.println();
+            }
+            return false;
         }
+    }
 
+    /**
+     * Prints the amounts spent with every payment method and the total discount compared with its upper bound.
+     *
+     * @param result true if all orders were paid
+     * @param pointsMethod the points payment method
+     * @param payments the other payment methods
+     * @param bound the bound of the discount of the orders
+     */
+    private static void printResult(boolean result, PaymentMethod pointsMethod, Map<String, PaymentMethod> payments,
+                                    DiscountBound bound) {
         if (result) {
             System.out.println("Optimization finished successfully\n");
             System.out.println("-------Algorithm result-------");
-            if (pointsMethod.getId().equals("PUNKTY")) {
+            if ("PUNKTY".equals(pointsMethod.getId())) {
                 System.out.println(pointsMethod.printSpending());
             }
             for (PaymentMethod paymentMethod : payments.values()) {
                 System.out.println(paymentMethod.printSpending());
             }
+            long spent = pointsMethod.getSpendingCents();
+            for (PaymentMethod paymentMethod : payments.values()) {
+                spent += paymentMethod.getSpendingCents();
+            }
+            Money achieved = bound.getTotalValue().subtract(Money.ofCents(spent));
+            Money upper = bound.compute(achieved);
+            System.out.printf(Locale.ROOT, "%nDiscount %s of at most %s (gap %.2f%%)%n", achieved, upper,
+                    DiscountBound.gapPercent(achieved, upper));
             System.out.println();
         }
         else {
             System.out.println("Unfortunately, for the entered data, the algorithm was unable to reach a solution :(");
         }
     }
+
+    /**
+     * Evaluates what-if scenarios in parallel and prints their comparison, starting with the unchanged wallet.
+     *
+     * @param specs the scenarios separated by semicolons
+     * @param table the table of orders
+     * @param payments the payment methods (excluding the points method)
+     * @param pointsMethod the points payment method
+     */
+    private static void runScenarios(String specs, OrderTable table, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        WalletSnapshot wallet = WalletSnapshot.of(payments, pointsMethod);
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(Scenario.named("base"));
+        try {
+            for (String spec : specs.split(";")) {
+                if (!spec.isBlank()) {
+                    scenarios.add(Scenario.parse(spec, wallet));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        System.out.print(ScenarioEvaluator.formatTable(new ScenarioEvaluator(table, wallet).evaluate(scenarios)));
+    }
+
+    /**
+     * Optimizes the newline-delimited orders of the standard input, writing their payments to the standard output.
+     *
+     * @param window the maximal number of orders committed together, the default window if empty
+     * @param files the positional arguments, expected to contain the payment methods file only
+     */
+    private static void runStream(String window, List<String> files) {
+        if (files.size() != 1) {
+            System.out.println("You need to provide one argument: path to the JSON file with payment methods");
+            return;
+        }
+        StreamingOptimizer optimizer;
+        try {
+            Map<String, PaymentMethod> payments = JsonProcessor.toPaymentsMap(
+                    JsonProcessor.getPaymentsAsList(new File(files.get(0))), Map.of());
+            PaymentMethod pointsMethod = payments.remove("PUNKTY");
+            if (pointsMethod == null) {
+                pointsMethod = new PaymentMethod("-1.00", "-1.00");
+            }
+            optimizer = new StreamingOptimizer(payments, pointsMethod,
+                    window.isEmpty() ? StreamingOptimizer.DEFAULT_WINDOW : Integer.parseInt(window),
+                    StreamingOptimizer.DEFAULT_LINGER);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid window: " + window);
+            return;
+        } catch (FileNotFoundException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        } catch (IOException e) {
+            System.err.println("Exception occurred while reading files " + e.getMessage());
+            return;
+        }
+
+        try (NdjsonResultWriter writer = NdjsonResultWriter.toStandardOutput()) {
+            StreamingOptimizer.Summary summary = optimizer.run(System.in, writer);
+            System.err.printf("Stream finished: %d paid, %d unpaid in %d windows%n",
+                    summary.paid(), summary.unpaid(), summary.windows());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Exception occurred while streaming orders " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Converts a JSON orders file into a binary order file.
+     *
+     * @param files the positional arguments, expected to contain the JSON orders file only
+     * @param binaryFile the binary file to create
+     */
+    private static void convert(List<String> files, File binaryFile) {
+        if (files.size() != 1) {
+            System.out.println("You need to provide one argument: path to the JSON file with orders");
+            return;
+        }
+        try {
+            int count = BinaryOrderFile.convert(new File(files.get(0)), binaryFile);
+            System.out.println("Converted " + count + " orders into " + binaryFile.getPath());
+        } catch (FileNotFoundException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Exception occurred while converting files " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the HTTP service, which keeps running after this method returns.
+     *
+     * @param port the port, the default port if empty
+     * @param cache the cache of the responses, or null
+     */
+    private static void serve(String port, ResultCache cache) {
+        try {
+            OptimizationServer server = new OptimizationServer(port.isEmpty() ? DEFAULT_PORT : Integer.parseInt(port), cache);
+            server.start();
+            System.err.println("Listening on port " + server.getPort());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid port: " + port);
+        } catch (IOException e) {
+            System.err.println("Exception occurred while starting the server " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the batch mode and prints its summary.
+     *
+     * @param options the command line options
+     * @param solverName the name of the solver
+     * @param cache the cache of the results, or null
+     */
+    private static void runBatch(Map<String, String> options, String solverName, ResultCache cache) {
+        BatchOptimizer batch;
+        try {
+            int threads = options.containsKey("threads")
+                    ? Integer.parseInt(options.get("threads"))
+                    : Runtime.getRuntime().availableProcessors();
+            batch = new BatchOptimizer(solverName, threads);
+            batch.setResultCache(cache);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        String output = options.get("output");
+        try (Stream<TenantInput> inputs = BatchOptimizer.readInputs(new File(options.get("batch")));
+             ResultSink sink = output != null
+                     ? new TextResultSink(new BufferedWriter(new FileWriter(output, StandardCharsets.UTF_8)))
+                     : TextResultSink.toStandardOutput()) {
+            long start = System.nanoTime();
+            BatchOptimizer.Summary summary = batch.run(inputs, sink);
+            System.err.printf("Batch finished in %d ms: %d solved, %d unsolved, %d failed%n",
+                    (System.nanoTime() - start) / 1_000_000, summary.solved(), summary.unsolved(), summary.failed());
+            if (cache != null) {
+                ResultCache.Stats stats = cache.getStats();
+                System.err.printf("Cache: %d hits, %d disk hits, %d misses, %d evictions%n",
+                        stats.hits(), stats.diskHits(), stats.misses(), stats.evictions());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Exception occurred while running the batch " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the cache configured by the {@code --cache}, {@code --cache-policy} and {@code --cache-dir} options.
+     *
+     * @param options the command line options
+     * @return the cache, or null if it is not enabled
+     * @throws IllegalArgumentException thrown if an option has an invalid value
+     */
+    private static ResultCache createCache(Map<String, String> options) throws IllegalArgumentException {
+        String size = options.get("cache");
+        String directory = options.get("cache-dir");
+        if (size == null && directory == null) {
+            return null;
+        }
+        int capacity;
+        try {
+            capacity = size == null || size.isEmpty() ? DEFAULT_CACHE_SIZE : Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cache size: " + size);
+        }
+        ResultCache.Policy policy;
+        try {
+            policy = ResultCache.Policy.valueOf(options.getOrDefault("cache-policy", "lru").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown cache policy '" + options.get("cache-policy") + "', available policies: lru, lfu");
+        }
+        return new ResultCache(capacity, policy, directory == null || directory.isEmpty() ? null : Path.of(directory));
+    }
+
+    /**
+     * Writes the {@link OptimizerMetrics} as JSON.
+     *
+     * @param file the destination file, standard error if empty
+     */
+    private static void dumpMetrics(String file) {
+        try (OutputStream out = file.isEmpty() ? null : new FileOutputStream(file)) {
+            OptimizerMetrics.global().writeJson(out != null ? out : System.err);
+        } catch (IOException e) {
+            System.err.println("Exception occurred while writing metrics " + e.getMessage());
+        }
+    }
+
+    /**
+     * Splits the arguments into options of the form {@code --name=value} (or {@code --name}) and remaining arguments.
+     * An option missing from {@link #OPTIONS}, e.g. a misspelled one, is reported with the list of available options.
+     *
+     * @param args the command line arguments
+     * @param options the map filled with option values
+     * @param positional the list filled with the remaining arguments
+     * @return true if all options are known, false if the usage message was printed
+     */
+    private static boolean parseArguments(String[] args, Map<String, String> options, List<String> positional) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            if (!OPTIONS.contains(name)) {
+                System.out.println("Unknown option '--" + name + "', available options: --" + String.join(", --", OPTIONS));
+                return false;
+            }
+            options.put(name, separator < 0 ? "" : arg.substring(separator + 1));
+        }
+        return true;
+    }
 }
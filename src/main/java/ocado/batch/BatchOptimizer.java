@@ -0,0 +1,257 @@
+package ocado.batch;
+
+import ocado.cache.CachingSolver;
+import ocado.cache.ResultCache;
+import ocado.metrics.OptimizerMetrics;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseSolver;
+import ocado.utils.JsonProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Optimizes the expenses of many customers in parallel.<br>
+ * Every customer is solved by a separate {@link ExpenseSolver} working on its own orders and payment methods read
+ * from the customer's files, so no mutable state is shared between customers. The work is CPU bound, so it runs on
+ * a fixed pool of platform threads (one per core by default) rather than on virtual threads. The number of customers
+ * in progress is bounded, so inputs are read lazily and results are written to the {@link ResultSink} in the order
+ * in which they are completed.
+ */
+public class BatchOptimizer {
+    /** Name of the orders file in every customer directory */
+    public static final String ORDERS_FILE_NAME = "orders.json";
+
+    /** Name of the payment methods file in every customer directory */
+    public static final String PAYMENTS_FILE_NAME = "paymentmethods.json";
+
+    /** Number of customers in progress per thread, so that the threads never wait for the next input */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    /** Name of the solver used for every customer */
+    private final String solverName;
+
+    /** Number of threads solving customers */
+    private final int threads;
+
+    /** Cache of the results shared by all customers, or null */
+    private volatile ResultCache cache;
+
+    /** Lock guarding the sink and the counters */
+    private final Object sinkLock = new Object();
+
+    /** Counters of the results of the current run, guarded by {@link #sinkLock} */
+    private int solved, unsolved, failed;
+
+    /** First error thrown by the sink in the current run, guarded by {@link #sinkLock} */
+    private IOException sinkFailure;
+
+    /**
+     * Summary of a batch run.
+     *
+     * @param solved the number of customers whose orders were all paid
+     * @param unsolved the number of customers for whom the solver was unable to pay for all orders
+     * @param failed the number of customers whose input could not be processed
+     */
+    public record Summary(int solved, int unsolved, int failed) {}
+
+    /**
+     * Constructor for the BatchOptimizer class.
+     *
+     * @param solverName the name of the solver, one of {@link ExpenseSolver#NAMES}
+     * @param threads the number of threads solving customers
+     * @throws IllegalArgumentException thrown if the solver is unknown or the number of threads is not positive
+     */
+    public BatchOptimizer(String solverName, int threads) throws IllegalArgumentException {
+        if (!ExpenseSolver.NAMES.contains(solverName)) {
+            throw new IllegalArgumentException("Unknown solver '" + solverName + "', available solvers: " + String.join(", ", ExpenseSolver.NAMES));
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be a positive number!");
+        }
+        this.solverName = solverName;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the cache answering customers whose orders and wallet were already solved.
+     *
+     * @param cache the cache, or null for no cache
+     */
+    public void setResultCache(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Lists the customers of a batch lazily. The source is either:
+     * <ul>
+     *   <li>a directory with a subdirectory per customer, named after the customer and containing
+     *   {@value #ORDERS_FILE_NAME} and {@value #PAYMENTS_FILE_NAME}</li>
+     *   <li>a manifest file with a line {@code tenant,orders_path,payments_path} per customer, where relative paths
+     *   are resolved against the directory of the manifest; blank lines and lines starting with {@code #} are skipped</li>
+     * </ul>
+     * The returned stream holds the source open and has to be closed.
+     *
+     * @param source the directory or manifest file
+     * @return the stream of customer inputs
+     * @throws IOException if the source cannot be read
+     * @throws IllegalArgumentException thrown (when the stream is consumed) for a manifest line without three fields
+     */
+    public static Stream<TenantInput> readInputs(File source) throws IOException {
+        Path path = source.toPath();
+        if (Files.isDirectory(path)) {
+            return Files.list(path)
+                    .filter(Files::isDirectory)
+                    .sorted()
+                    .map(dir -> new TenantInput(dir.getFileName().toString(),
+                            dir.resolve(ORDERS_FILE_NAME).toFile(), dir.resolve(PAYMENTS_FILE_NAME).toFile()));
+        }
+        Path baseDir = path.toAbsolutePath().getParent();
+        return Files.lines(path)
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(line -> parseManifestLine(line, baseDir));
+    }
+
+    /**
+     * Parses a line of a manifest file.
+     *
+     * @param line the line
+     * @param baseDir the directory against which relative paths are resolved
+     * @return the customer input
+     * @throws IllegalArgumentException thrown if the line does not have three fields
+     */
+    private static TenantInput parseManifestLine(String line, Path baseDir) throws IllegalArgumentException {
+        String[] fields = line.split(",");
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Invalid manifest line '" + line + "', expected: tenant,orders_path,payments_path");
+        }
+        return new TenantInput(fields[0].strip(),
+                baseDir.resolve(fields[1].strip()).toFile(), baseDir.resolve(fields[2].strip()).toFile());
+    }
+
+    /**
+     * Solves all customers and writes their results to the sink as they are completed.
+     * The sink is not closed.
+     *
+     * @param inputs the customers to solve
+     * @param sink the destination of the results
+     * @return the summary of the run
+     * @throws IOException the first error thrown by the sink, after which no more customers are started
+     * @throws InterruptedException if the thread is interrupted while waiting for a free thread
+     */
+    public Summary run(Stream<TenantInput> inputs, ResultSink sink) throws IOException, InterruptedException {
+        synchronized (sinkLock) {
+            solved = unsolved = failed = 0;
+            sinkFailure = null;
+        }
+        Semaphore inFlight = new Semaphore(threads * IN_FLIGHT_PER_THREAD);
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            Iterator<TenantInput> iterator = inputs.iterator();
+            while (iterator.hasNext() && !hasSinkFailed()) {
+                TenantInput input = iterator.next();
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        emit(solve(input), sink);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        synchronized (sinkLock) {
+            if (sinkFailure != null) {
+                throw sinkFailure;
+            }
+            return new Summary(solved, unsolved, failed);
+        }
+    }
+
+    /**
+     * Solves a single customer. Errors of the customer's input are returned as an {@link TenantResult.Status#ERROR}
+     * result, so they never affect other customers.
+     *
+     * @param input the customer to solve
+     * @return the result of the customer
+     */
+    public TenantResult solve(TenantInput input) {
+        try {
+            long parseStart = System.nanoTime();
+            Map<String, Integer> promotionCounts = new HashMap<>();
+            List<Order> orders = JsonProcessor.getOrdersAsList(input.ordersFile(), promotionCounts);
+            Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(input.paymentsFile(), promotionCounts);
+            OptimizerMetrics.global().recordSince(OptimizerMetrics.Phase.PARSE, parseStart);
+            PaymentMethod pointsMethod = payments.remove("PUNKTY");
+            if (pointsMethod == null) {
+                pointsMethod = new PaymentMethod("-1.00", "-1.00");
+            }
+            if (!orders.isEmpty() && payments.isEmpty()) {
+                return TenantResult.error(input.tenantId(), "There are no payment methods defined even though there are orders to pay for");
+            }
+
+            ResultCache resultCache = cache;
+            ExpenseSolver solver = resultCache != null
+                    ? new CachingSolver(resultCache, solverName, orders, payments, pointsMethod)
+                    : ExpenseSolver.create(solverName, orders, payments, pointsMethod);
+            if (!solver.optimize()) {
+                return new TenantResult(input.tenantId(), TenantResult.Status.UNSOLVED, null, List.of(), List.of());
+            }
+            List<PaymentMethod> methods = new ArrayList<>();
+            if ("PUNKTY".equals(pointsMethod.getId())) {
+                methods.add(pointsMethod);
+            }
+            methods.addAll(payments.values());
+            return new TenantResult(input.tenantId(), TenantResult.Status.SOLVED, null, orders, methods);
+        } catch (IOException | RuntimeException e) {
+            return TenantResult.error(input.tenantId(), String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes a result to the sink and counts it.
+     *
+     * @param result the result
+     * @param sink the destination of the results
+     */
+    private void emit(TenantResult result, ResultSink sink) {
+        synchronized (sinkLock) {
+            switch (result.status()) {
+                case SOLVED -> solved++;
+                case UNSOLVED -> unsolved++;
+                case ERROR -> failed++;
+            }
+            if (sinkFailure != null) {
+                return;
+            }
+            try {
+                sink.write(result);
+            } catch (IOException e) {
+                sinkFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the sink has thrown an error in the current run.
+     *
+     * @return true if the sink has failed
+     */
+    private boolean hasSinkFailed() {
+        synchronized (sinkLock) {
+            return sinkFailure != null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ocado.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the results produced in batch mode.<br>
+ * {@link BatchOptimizer} never calls {@link #write(TenantResult)} concurrently, so implementations do not need
+ * to be thread-safe.
+ */
+public interface ResultSink extends Closeable {
+    /**
+     * Writes the result of a single customer.
+     *
+     * @param result the result to write
+     * @throws IOException if a write error occurs
+     */
+    void write(TenantResult result) throws IOException;
+}
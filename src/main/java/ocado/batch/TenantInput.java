@@ -0,0 +1,12 @@
+package ocado.batch;
+
+import java.io.File;
+
+/**
+ * Input files of a single customer processed in batch mode.
+ *
+ * @param tenantId the identifier of the customer, used to label the results
+ * @param ordersFile the JSON file containing the customer's orders
+ * @param paymentsFile the JSON file containing the customer's payment methods
+ */
+public record TenantInput(String tenantId, File ordersFile, File paymentsFile) {}
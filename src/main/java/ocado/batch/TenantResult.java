@@ -0,0 +1,41 @@
+package ocado.batch;
+
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.util.List;
+
+/**
+ * Result of the optimization of a single customer in batch mode.
+ *
+ * @param tenantId the identifier of the customer
+ * @param status the outcome of the optimization
+ * @param message the reason of an {@link Status#ERROR}, or null
+ * @param orders the paid orders, empty unless the status is {@link Status#SOLVED}
+ * @param methods the payment methods with their spending, the points method first,
+ *                empty unless the status is {@link Status#SOLVED}
+ */
+public record TenantResult(String tenantId, Status status, String message, List<Order> orders, List<PaymentMethod> methods) {
+    /**
+     * Outcome of the optimization of a customer.
+     */
+    public enum Status {
+        /** All orders were paid */
+        SOLVED,
+        /** The solver was unable to pay for all orders */
+        UNSOLVED,
+        /** The input files could not be read or processed */
+        ERROR
+    }
+
+    /**
+     * Creates the result of a customer whose input could not be processed.
+     *
+     * @param tenantId the identifier of the customer
+     * @param message the reason of the error
+     * @return the result
+     */
+    public static TenantResult error(String tenantId, String message) {
+        return new TenantResult(tenantId, Status.ERROR, message, List.of(), List.of());
+    }
+}
@@ -0,0 +1,89 @@
+package ocado.batch;
+
+import ocado.model.PaymentMethod;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ResultSink} writing every result as lines of text prefixed with the customer identifier:
+ * <ul>
+ *   <li>{@code <tenant> <payment_method_id> <amount_spent>} for every payment method of a solved customer</li>
+ *   <li>{@code <tenant> UNSOLVED} if the solver was unable to pay for all orders</li>
+ *   <li>{@code <tenant> ERROR <message>} if the input could not be processed</li>
+ * </ul>
+ */
+public class TextResultSink implements ResultSink {
+    /** Writer receiving the lines */
+    private final Writer writer;
+
+    /** Whether closing the sink closes the writer, or only flushes it */
+    private final boolean closeWriter;
+
+    /**
+     * Constructor for the TextResultSink class.
+     *
+     * @param writer the writer receiving the lines, closed together with the sink
+     */
+    public TextResultSink(Writer writer) {
+        this(writer, true);
+    }
+
+    /**
+     * Constructor for the TextResultSink class.
+     *
+     * @param writer the writer receiving the lines
+     * @param closeWriter whether closing the sink closes the writer, or only flushes it
+     */
+    private TextResultSink(Writer writer, boolean closeWriter) {
+        this.writer = writer;
+        this.closeWriter = closeWriter;
+    }
+
+    /**
+     * Creates a sink of the standard output. Closing the sink flushes it but leaves the standard output open.
+     *
+     * @return the sink
+     */
+    public static TextResultSink toStandardOutput() {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        return new TextResultSink(writer, false);
+    }
+
+    /**
+     * Writes the lines of a single customer.
+     *
+     * @param result the result to write
+     * @throws IOException if a write error occurs
+     */
+    @Override
+    public void write(TenantResult result) throws IOException {
+        switch (result.status()) {
+            case SOLVED -> {
+                for (PaymentMethod pm : result.methods()) {
+                    writer.write(result.tenantId() + " " + pm.printSpending() + "\n");
+                }
+            }
+            case UNSOLVED -> writer.write(result.tenantId() + " UNSOLVED\n");
+            case ERROR -> writer.write(result.tenantId() + " ERROR " + result.message() + "\n");
+        }
+    }
+
+    /**
+     * Flushes the writer and closes it, unless it writes to the standard output.
+     *
+     * @throws IOException if a write error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closeWriter) {
+            writer.close();
+        }
+        else {
+            writer.flush();
+        }
+    }
+}
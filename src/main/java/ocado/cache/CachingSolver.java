@@ -0,0 +1,261 @@
+package ocado.cache;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseSolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ExpenseSolver} answering repeated inputs from a {@link ResultCache} and running another solver otherwise.<br>
+ * The result of a run is serialized in the canonical order of {@link InputKey}, after a {@link #FORMAT_VERSION}:
+ * whether all orders were paid, the payment methods used by every order and the amounts charged to them, and, for
+ * every payment method, the amount
+ * spent and the change of the number of orders it is promoted in. On a hit these are recorded in the orders and
+ * payment methods like the solver records them. Inputs listing the same data in a different order share a key,
+ * while the solvers break some ties by the input order, so a hit records an equivalent valid allocation: the one the
+ * solver computed for the first of these inputs, which may differ from the one it would compute for this listing.
+ * Inputs for which the solver throws an exception are not cached. A cached result that cannot be decoded, such as a
+ * truncated file of the disk tier or one written in another format, is removed from the cache and recomputed.
+ */
+public class CachingSolver implements ExpenseSolver {
+    /** Version of the format of the serialized results, changed whenever the format changes */
+    static final int FORMAT_VERSION = 2;
+
+    /** Cache of the results */
+    private final ResultCache cache;
+
+    /** Name of the solver computing the results */
+    private final String solverName;
+
+    /** List of orders to optimize */
+    private final List<Order> orders;
+
+    /** Map of available payment methods (excluding the points method) */
+    private final Map<String, PaymentMethod> payments;
+
+    /** Points payment method (PUNKTY) */
+    private final PaymentMethod pointsMethod;
+
+    /** Whether the last run was answered from the cache */
+    private boolean hit;
+
+    /**
+     * Decoded result of a run, in the canonical order of {@link InputKey}.
+     *
+     * @param solved whether all orders were paid
+     * @param methodIds the identifiers of the payment methods used by every order
+     * @param amounts the amounts paid with these payment methods in cents
+     * @param chargedIds the identifiers of the payment methods charged for every order
+     * @param charged the amounts charged to these payment methods in cents
+     * @param spent the amounts spent with every payment method in cents
+     * @param ordersAmountChanges the changes of the numbers of orders every payment method is promoted in
+     */
+    private record CachedResult(boolean solved, String[][] methodIds, long[][] amounts, String[][] chargedIds,
+                                long[][] charged, long[] spent, int[] ordersAmountChanges) {}
+
+    /**
+     * Constructor for the CachingSolver class.
+     *
+     * @param cache the cache of the results
+     * @param solverName the name of the solver computing the results, one of {@link ExpenseSolver#NAMES}
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod} (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @throws IllegalArgumentException thrown if there is no solver with the given name
+     */
+    public CachingSolver(ResultCache cache, String solverName, List<Order> orders, Map<String, PaymentMethod> payments,
+                         PaymentMethod pointsMethod) throws IllegalArgumentException {
+        if (!ExpenseSolver.NAMES.contains(solverName)) {
+            throw new IllegalArgumentException("Unknown solver '" + solverName + "', available solvers: " + String.join(", ", NAMES));
+        }
+        this.cache = cache;
+        this.solverName = solverName;
+        this.orders = orders;
+        this.payments = payments;
+        this.pointsMethod = pointsMethod;
+    }
+
+    /**
+     * Returns whether the last run was answered from the cache.
+     *
+     * @return true if the result was cached
+     */
+    public boolean isHit() {
+        return hit;
+    }
+
+    /**
+     * Records the cached result of the input, or computes and caches it.
+     *
+     * @return true if all orders were paid, false otherwise
+     * @throws IllegalArgumentException propagated from the solver
+     */
+    @Override
+    public boolean optimize() throws IllegalArgumentException {
+        InputKey key = InputKey.of(solverName, orders, payments, pointsMethod);
+        // The canonical order is taken before the solver sorts the list.
+        List<Order> canonicalOrders = InputKey.canonicalOrders(orders);
+        List<PaymentMethod> methods = InputKey.canonicalMethods(payments, pointsMethod);
+        byte[] cached = cache.get(key);
+        CachedResult result = cached != null ? decode(cached, canonicalOrders.size(), methods.size()) : null;
+        if (cached != null && result == null) {
+            cache.remove(key);
+        }
+        hit = result != null;
+        if (hit) {
+            apply(result, canonicalOrders, methods);
+            return result.solved();
+        }
+
+        long[] spending = new long[methods.size()];
+        int[] ordersAmounts = new int[methods.size()];
+        for (int m = 0; m < spending.length; m++) {
+            spending[m] = methods.get(m).getSpending().getCents();
+            ordersAmounts[m] = methods.get(m).getOrdersAmount();
+        }
+        boolean solved = ExpenseSolver.create(solverName, orders, payments, pointsMethod).optimize();
+        cache.put(key, encode(solved, canonicalOrders, methods, spending, ordersAmounts));
+        return solved;
+    }
+
+    /**
+     * Serializes the result of a run.
+     *
+     * @param solved whether all orders were paid
+     * @param canonicalOrders the orders in the canonical order
+     * @param methods the payment methods in the canonical order
+     * @param spending the amounts spent with the payment methods before the run, in cents
+     * @param ordersAmounts the numbers of orders the payment methods were promoted in before the run
+     * @return the serialized result
+     */
+    private static byte[] encode(boolean solved, List<Order> canonicalOrders, List<PaymentMethod> methods,
+                                 long[] spending, int[] ordersAmounts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(solved);
+            for (Order order : canonicalOrders) {
+                writePayments(out, order.getUsedPaymentsMethods());
+                writePayments(out, order.getChargedPaymentsMethods());
+            }
+            for (int m = 0; m < methods.size(); m++) {
+                out.writeLong(methods.get(m).getSpending().getCents() - spending[m]);
+                out.writeInt(methods.get(m).getOrdersAmount() - ordersAmounts[m]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a result, checking that it is complete and fits an input of the given size.
+     *
+     * @param cached the serialized result
+     * @param orderCount the number of orders of the input
+     * @param methodCount the number of payment methods of the input, including the points method
+     * @return the result, or null if it cannot be decoded
+     */
+    private static CachedResult decode(byte[] cached, int orderCount, int methodCount) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(cached))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            boolean solved = in.readBoolean();
+            String[][] methodIds = new String[orderCount][];
+            long[][] amounts = new long[orderCount][];
+            String[][] chargedIds = new String[orderCount][];
+            long[][] charged = new long[orderCount][];
+            for (int i = 0; i < orderCount; i++) {
+                if (!readPayments(in, methodCount, methodIds, amounts, i) || !readPayments(in, methodCount, chargedIds, charged, i)) {
+                    return null;
+                }
+            }
+            long[] spent = new long[methodCount];
+            int[] ordersAmountChanges = new int[methodCount];
+            for (int m = 0; m < methodCount; m++) {
+                spent[m] = in.readLong();
+                ordersAmountChanges[m] = in.readInt();
+            }
+            return in.read() == -1 ? new CachedResult(solved, methodIds, amounts, chargedIds, charged, spent, ordersAmountChanges) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records a decoded result in the orders and payment methods.
+     *
+     * @param result the decoded result
+     * @param canonicalOrders the orders in the canonical order
+     * @param methods the payment methods in the canonical order
+     */
+    private static void apply(CachedResult result, List<Order> canonicalOrders, List<PaymentMethod> methods) {
+        for (int i = 0; i < canonicalOrders.size(); i++) {
+            Order order = canonicalOrders.get(i);
+            for (int k = 0; k < result.methodIds()[i].length; k++) {
+                order.usePaymentsMethod(result.methodIds()[i][k], Money.ofCents(result.amounts()[i][k]));
+            }
+            for (int k = 0; k < result.chargedIds()[i].length; k++) {
+                order.chargePaymentsMethod(result.chargedIds()[i][k], result.charged()[i][k]);
+            }
+        }
+        for (int m = 0; m < methods.size(); m++) {
+            PaymentMethod pm = methods.get(m);
+            Money spent = Money.ofCents(result.spent()[m]);
+            pm.setSpending(pm.getSpending().add(spent));
+            pm.setLimit(pm.getLimit().subtract(spent));
+            pm.setOrdersAmount(pm.getOrdersAmount() + result.ordersAmountChanges()[m]);
+        }
+    }
+
+    /**
+     * Serializes the payments of an order: their number, then the identifier and the amount of every payment.
+     *
+     * @param out the destination
+     * @param payments the amounts by payment method identifier
+     * @throws IOException if a write error occurs
+     */
+    private static void writePayments(DataOutputStream out, Map<String, Money> payments) throws IOException {
+        out.writeInt(payments.size());
+        for (Map.Entry<String, Money> payment : payments.entrySet()) {
+            out.writeUTF(payment.getKey());
+            out.writeLong(payment.getValue().getCents());
+        }
+    }
+
+    /**
+     * Deserializes the payments of an order written by {@link #writePayments}.
+     *
+     * @param in the source
+     * @param methodCount the number of payment methods of the input, including the points method
+     * @param ids receives the identifiers of the payment methods of the order
+     * @param amounts receives the amounts of the payments of the order
+     * @param i the position of the order
+     * @return false if the number of payments does not fit the input
+     * @throws IOException if the source ends too early
+     */
+    private static boolean readPayments(DataInputStream in, int methodCount, String[][] ids, long[][] amounts, int i)
+            throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > methodCount) {
+            return false;
+        }
+        ids[i] = new String[count];
+        amounts[i] = new long[count];
+        for (int k = 0; k < count; k++) {
+            ids[i][k] = in.readUTF();
+            amounts[i][k] = in.readLong();
+        }
+        return true;
+    }
+}
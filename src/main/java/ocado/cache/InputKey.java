@@ -0,0 +1,131 @@
+package ocado.cache;
+
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content address of an optimization input: the SHA-256 hash of a canonical form of the orders and the wallet.<br>
+ * The canonical form contains the identifiers, values and promotions of the orders and the identifiers, discounts,
+ * limits and spending of the payment methods. Orders, promotions and payment methods are sorted, so inputs listing
+ * the same data in a different order have the same key. The solvers break some ties by the input order, so a result
+ * stored under a key is one valid result of all these inputs, not necessarily the one a solver computes for each of
+ * them. A namespace, such as the name of the solver, separates results of different kinds.
+ *
+ * @param hash the hash as a lowercase hexadecimal string
+ */
+public record InputKey(String hash) {
+    /** Order of the orders in the canonical form */
+    static final Comparator<Order> ORDER_COMPARATOR = Comparator
+            .comparing(Order::getId, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Order::getValue)
+            .thenComparing(order -> sortedPromotions(order).toString());
+
+    /**
+     * Computes the key of an input.
+     *
+     * @param namespace the kind of the results stored under the key, for example the name of the solver
+     * @param orders the orders
+     * @param payments the map of {@link PaymentMethod} (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @return the key
+     */
+    public static InputKey of(String namespace, List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            out.writeUTF(namespace);
+            List<Order> sortedOrders = canonicalOrders(orders);
+            out.writeInt(sortedOrders.size());
+            for (Order order : sortedOrders) {
+                writeString(out, order.getId());
+                out.writeLong(order.getValue().getCents());
+                List<String> promotions = sortedPromotions(order);
+                out.writeInt(promotions.size());
+                for (String promotion : promotions) {
+                    writeString(out, promotion);
+                }
+            }
+            List<PaymentMethod> methods = canonicalMethods(payments, pointsMethod);
+            out.writeInt(methods.size());
+            for (PaymentMethod pm : methods) {
+                writeString(out, pm.getId());
+                out.writeInt(pm.getDiscount());
+                out.writeLong(pm.getLimit().getCents());
+                out.writeLong(pm.getSpending().getCents());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new InputKey(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Returns the orders in the order of the canonical form.
+     *
+     * @param orders the orders
+     * @return a sorted copy of the list
+     */
+    static List<Order> canonicalOrders(List<Order> orders) {
+        List<Order> sorted = new ArrayList<>(orders);
+        sorted.sort(ORDER_COMPARATOR);
+        return sorted;
+    }
+
+    /**
+     * Returns the payment methods in the order of the canonical form: the cards sorted by identifier, then the
+     * points method.
+     *
+     * @param payments the map of {@link PaymentMethod} (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @return the payment methods
+     */
+    static List<PaymentMethod> canonicalMethods(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        List<PaymentMethod> methods = new ArrayList<>(payments.values());
+        methods.sort(Comparator.comparing(PaymentMethod::getId, Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+        methods.add(pointsMethod);
+        return methods;
+    }
+
+    /**
+     * Returns the promotions of an order sorted by identifier.
+     *
+     * @param order the order
+     * @return a sorted copy of the promotions
+     */
+    private static List<String> sortedPromotions(Order order) {
+        List<String> promotions = new ArrayList<>(order.getPromotions());
+        promotions.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+        return promotions;
+    }
+
+    /**
+     * Writes a string that may be null.
+     *
+     * @param out the destination
+     * @param value the string
+     * @throws IOException if a write error occurs
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
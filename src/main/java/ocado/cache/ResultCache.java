@@ -0,0 +1,285 @@
+package ocado.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of serialized optimization results keyed by {@link InputKey}.<br>
+ * The memory tier holds at most {@code capacity} results and evicts by the chosen {@link Policy}. Entries are kept in
+ * buckets of equal use counts, each ordered from the least recently used, so both policies find the victim in
+ * constant time: the least recently used policy simply never leaves the first bucket.<br>
+ * The optional disk tier keeps every result in a file named by its key, written atomically when the result is put.
+ * Results evicted from memory are therefore still found on disk, also by later runs of the application. Errors of
+ * the disk tier never fail the caller: a result that cannot be read is a miss and one that cannot be written is only
+ * kept in memory.<br>
+ * All methods are thread-safe; the files are read and written outside the lock.
+ */
+public class ResultCache {
+    /** Extension of the files of the disk tier */
+    private static final String FILE_EXTENSION = ".bin";
+
+    /**
+     * Eviction policy of the memory tier.
+     */
+    public enum Policy {
+        /** Evicts the least recently used result */
+        LRU,
+        /** Evicts the least frequently used result, the least recently used one among equally used results */
+        LFU
+    }
+
+    /**
+     * Statistics of the cache.
+     *
+     * @param hits the number of lookups answered from memory
+     * @param diskHits the number of lookups answered from the disk tier
+     * @param misses the number of lookups that found no result
+     * @param evictions the number of results evicted from memory
+     * @param size the number of results in memory
+     */
+    public record Stats(long hits, long diskHits, long misses, long evictions, int size) {
+        /**
+         * Calculates the share of lookups answered by the cache.
+         *
+         * @return the hit ratio from 0 to 1, 0 if there was no lookup
+         */
+        public double hitRatio() {
+            long lookups = hits + diskHits + misses;
+            return lookups == 0 ? 0 : (double) (hits + diskHits) / lookups;
+        }
+    }
+
+    /**
+     * Result held in memory.
+     */
+    private static final class Entry {
+        /** Serialized result */
+        private final byte[] value;
+
+        /** Number of uses, always 0 with the {@link Policy#LRU} policy */
+        private long uses;
+
+        /**
+         * Constructor for the Entry class.
+         *
+         * @param value the serialized result
+         */
+        private Entry(byte[] value) {
+            this.value = value;
+        }
+    }
+
+    /** Maximal number of results in memory */
+    private final int capacity;
+
+    /** Eviction policy of the memory tier */
+    private final Policy policy;
+
+    /** Directory of the disk tier, or null */
+    private final Path directory;
+
+    /** Results in memory */
+    private final Map<InputKey, Entry> entries = new HashMap<>();
+
+    /** Keys of the results in memory by use count, each from the least recently used */
+    private final Map<Long, LinkedHashSet<InputKey>> buckets = new HashMap<>();
+
+    /** Smallest use count of a result in memory */
+    private long minUses;
+
+    /** Counters of the statistics */
+    private final LongAdder hits = new LongAdder(), diskHits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+    /**
+     * Constructor for the ResultCache class without a disk tier.
+     *
+     * @param capacity the maximal number of results in memory
+     * @param policy the eviction policy
+     * @throws IllegalArgumentException thrown if the capacity is not positive
+     */
+    public ResultCache(int capacity, Policy policy) throws IllegalArgumentException {
+        this(capacity, policy, null);
+    }
+
+    /**
+     * Constructor for the ResultCache class.
+     *
+     * @param capacity the maximal number of results in memory
+     * @param policy the eviction policy
+     * @param directory the directory of the disk tier, created if needed, or null for no disk tier
+     * @throws IllegalArgumentException thrown if the capacity is not positive or the directory cannot be created
+     */
+    public ResultCache(int capacity, Policy policy, Path directory) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the cache must be a positive number!");
+        }
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unable to create the cache directory " + directory + ": " + e.getMessage(), e);
+            }
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.directory = directory;
+    }
+
+    /**
+     * Looks up a result, in memory and then on disk. A result found on disk is brought into memory.
+     *
+     * @param key the key of the input
+     * @return the serialized result, or null if it is not cached
+     */
+    public byte[] get(InputKey key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                touch(key, entry);
+                hits.increment();
+                return entry.value;
+            }
+        }
+        if (directory != null) {
+            try {
+                byte[] value = Files.readAllBytes(file(key));
+                diskHits.increment();
+                store(key, value);
+                return value;
+            } catch (NoSuchFileException e) {
+                // Not on disk either.
+            } catch (IOException e) {
+                // An unreadable file is a miss, the next put replaces it.
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a result in memory and, if there is a disk tier, on disk.
+     *
+     * @param key the key of the input
+     * @param value the serialized result, which must not be modified afterwards
+     */
+    public void put(InputKey key, byte[] value) {
+        store(key, value);
+        if (directory != null) {
+            try {
+                Path temporary = Files.createTempFile(directory, key.hash(), ".tmp");
+                Files.write(temporary, value);
+                Files.move(temporary, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // The result stays in memory only.
+            }
+        }
+    }
+
+    /**
+     * Removes a result from memory and from the disk tier, for example one that the caller could not decode.
+     *
+     * @param key the key of the input
+     */
+    public void remove(InputKey key) {
+        synchronized (entries) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                LinkedHashSet<InputKey> bucket = buckets.get(entry.uses);
+                bucket.remove(key);
+                if (bucket.isEmpty()) {
+                    // The smallest use count is not updated: the next store has a free slot and resets it.
+                    buckets.remove(entry.uses);
+                }
+            }
+        }
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(file(key));
+            } catch (IOException e) {
+                // The next put replaces the file.
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the cache.
+     *
+     * @return the statistics
+     */
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), diskHits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    /**
+     * Stores a result in memory, evicting another one if the cache is full.
+     *
+     * @param key the key of the input
+     * @param value the serialized result
+     */
+    private void store(InputKey key, byte[] value) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                // Results of equal inputs are equal, so the cached one is kept.
+                touch(key, entry);
+                return;
+            }
+            if (entries.size() == capacity) {
+                LinkedHashSet<InputKey> victims = buckets.get(minUses);
+                InputKey victim = victims.removeFirst();
+                if (victims.isEmpty()) {
+                    buckets.remove(minUses);
+                }
+                entries.remove(victim);
+                evictions.increment();
+            }
+            entries.put(key, new Entry(value));
+            buckets.computeIfAbsent(0L, uses -> new LinkedHashSet<>()).add(key);
+            minUses = 0;
+        }
+    }
+
+    /**
+     * Records a use of a result in memory. Must be called with the lock held.
+     *
+     * @param key the key of the result
+     * @param entry the result
+     */
+    private void touch(InputKey key, Entry entry) {
+        LinkedHashSet<InputKey> bucket = buckets.get(entry.uses);
+        bucket.remove(key);
+        if (policy == Policy.LRU) {
+            bucket.add(key);
+            return;
+        }
+        if (bucket.isEmpty()) {
+            buckets.remove(entry.uses);
+            if (minUses == entry.uses) {
+                minUses++;
+            }
+        }
+        entry.uses++;
+        buckets.computeIfAbsent(entry.uses, uses -> new LinkedHashSet<>()).add(key);
+    }
+
+    /**
+     * Returns the file of a result in the disk tier.
+     *
+     * @param key the key of the result
+     * @return the path of the file
+     */
+    private Path file(InputKey key) {
+        return directory.resolve(key.hash() + FILE_EXTENSION);
+    }
+}
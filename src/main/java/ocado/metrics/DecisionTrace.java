@@ -0,0 +1,204 @@
+package ocado.metrics;
+
+import ocado.metrics.OptimizerMetrics.Branch;
+import ocado.model.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+
+/**
+ * Ring buffer of the decisions of the greedy algorithm: for every order, the branch taken, the candidate cards
+ * considered, the chosen payment method and the reason it won a tie. Amounts are the ones of the main loop, before the
+ * remaining points replace card payments.<br>
+ * Tracing is enabled for the whole JVM by the {@value #FILE_PROPERTY} system property naming the file a trace is
+ * written to. The switch is the constant {@link #ENABLED}, so when the property is not set, the JIT folds every
+ * {@code if (DecisionTrace.ENABLED)} block of the optimizer away and tracing costs nothing.<br>
+ * Records are {@value #RECORD_LONGS} longs in an array allocated once, {@value #CAPACITY_PROPERTY} records
+ * ({@value #DEFAULT_CAPACITY} by default), so recording builds no strings and creates no objects; the oldest records
+ * are overwritten when the buffer is full. An order is recorded as its position in the run and a card as its index,
+ * both only resolved to identifiers by {@link #dump(Path, IntFunction, IntFunction)}. A trace belongs to a single
+ * optimizer and is not thread-safe.
+ */
+public class DecisionTrace {
+    /** System property enabling tracing and naming the file a trace is written to */
+    public static final String FILE_PROPERTY = "ocado.trace";
+
+    /** System property with the number of records kept by every trace */
+    public static final String CAPACITY_PROPERTY = "ocado.trace.capacity";
+
+    /** Default number of records kept by every trace */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /** Whether tracing is enabled, constant for the whole run of the JVM */
+    public static final boolean ENABLED = System.getProperty(FILE_PROPERTY) != null;
+
+    /** Card index recorded when no card was chosen */
+    public static final int NO_CARD = -1;
+
+    /** Card index recorded for the points method */
+    public static final int POINTS = -2;
+
+    /** Number of candidate cards stored in a record, the others are only counted */
+    public static final int STORED_CANDIDATES = 4;
+
+    /** Number of longs of a record */
+    private static final int RECORD_LONGS = 5;
+
+    /** Number of bits of a stored candidate */
+    private static final int CANDIDATE_BITS = 16;
+
+    /**
+     * Reasons why the chosen payment method of an order won.
+     */
+    public enum Reason {
+        /** It was the only candidate with the best discount */
+        BEST_DISCOUNT,
+        /** Points won a tie with a promotional card of the same discount */
+        POINTS_OVER_CARD,
+        /** It won a CARD-CARD tie with the fewest unprocessed orders listing it */
+        FEWER_ORDERS,
+        /** It won a CARD-CARD tie with as many unprocessed orders but the smallest remaining limit */
+        SMALLER_LIMIT,
+        /** It won a CARD-CARD tie against an equal card by being listed first */
+        FIRST_LISTED,
+        /** It is the card with a sufficient limit chosen to pay the rest of the order */
+        BEST_CARD_FOR_REST,
+        /** Its limit is the largest one, and points fill the rest of the order */
+        LARGEST_LIMIT,
+        /** No payment method could pay the order */
+        NO_CANDIDATE
+    }
+
+    /** Records, {@value #RECORD_LONGS} longs each: position of the order, value, decision, points amount and candidates */
+    private final long[] records;
+
+    /** Number of records the buffer holds */
+    private final int capacity;
+
+    /** Number of records written since the last {@link #clear()}, including the overwritten ones */
+    private long count;
+
+    /**
+     * Constructor for the DecisionTrace class, keeping the number of records given by {@value #CAPACITY_PROPERTY}.
+     */
+    public DecisionTrace() {
+        this(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Constructor for the DecisionTrace class.
+     *
+     * @param capacity the number of records kept
+     * @throws IllegalArgumentException thrown if the capacity is not positive
+     */
+    public DecisionTrace(int capacity) throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The trace capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.records = new long[Math.multiplyExact(capacity, RECORD_LONGS)];
+    }
+
+    /**
+     * Returns the file named by {@value #FILE_PROPERTY}.
+     *
+     * @return the file a trace is written to, or null if tracing is disabled
+     */
+    public static Path file() {
+        String file = System.getProperty(FILE_PROPERTY);
+        return file == null ? null : Path.of(file);
+    }
+
+    /**
+     * Drops all records.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Returns the number of records written since the last {@link #clear()}, including the overwritten ones.
+     *
+     * @return the number of records
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Records the decision of the next order of the run, overwriting the oldest record if the buffer is full.
+     *
+     * @param valueCents the value of the order in cents
+     * @param branch the branch taken
+     * @param reason the reason the chosen payment method won
+     * @param chosen the index of the chosen card, {@link #POINTS} or {@link #NO_CARD}
+     * @param pointsCents the amount paid with points in cents
+     * @param candidates the indexes of the candidate cards, {@link #POINTS} for the points method
+     * @param candidateCount the number of candidates at the start of {@code candidates}
+     */
+    public void record(long valueCents, Branch branch, Reason reason, int chosen, long pointsCents,
+                       int[] candidates, int candidateCount) {
+        long position = count++;
+        int at = (int) (position % capacity) * RECORD_LONGS;
+        long packed = 0;
+        for (int k = Math.min(candidateCount, STORED_CANDIDATES) - 1; k >= 0; k--) {
+            // Shifted by 3, so NO_CARD and POINTS fit and 0 marks an empty slot.
+            packed = packed << CANDIDATE_BITS | (candidates[k] + 3) & 0xFFFF;
+        }
+        records[at] = position;
+        records[at + 1] = valueCents;
+        records[at + 2] = (long) branch.ordinal() << 56 | (long) reason.ordinal() << 48
+                | (long) Math.min(candidateCount, 0xFFFF) << 32 | chosen & 0xFFFF_FFFFL;
+        records[at + 3] = pointsCents;
+        records[at + 4] = packed;
+    }
+
+    /**
+     * Writes the kept records to a file as text, one line per order from the oldest one, e.g.
+     * {@code order=ZAM1 value=200.00 branch=CARD_CARD_TIE reason=FEWER_ORDERS chosen=mZysk points=0.00
+     * candidates=mZysk,BosBankrut}.
+     *
+     * @param file the file, replaced if it exists
+     * @param orderIds the identifiers of the orders at the recorded positions of the run
+     * @param cardIds the identifiers of the recorded card indexes, including {@link #POINTS}
+     * @throws IOException if the file cannot be written
+     */
+    public void dump(Path file, IntFunction<String> orderIds, IntFunction<String> cardIds) throws IOException {
+        long first = Math.max(0, count - capacity);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# " + (count - first) + " of " + count + " decisions");
+            writer.newLine();
+            StringBuilder line = new StringBuilder();
+            for (long r = first; r < count; r++) {
+                int at = (int) (r % capacity) * RECORD_LONGS;
+                long decision = records[at + 2];
+                int candidateCount = (int) (decision >>> 32 & 0xFFFF);
+                int chosen = (int) decision;
+                line.setLength(0);
+                line.append("order=").append(orderIds.apply((int) records[at]))
+                        .append(" value=").append(Money.ofCents(records[at + 1]))
+                        .append(" branch=").append(Branch.values()[(int) (decision >>> 56)])
+                        .append(" reason=").append(Reason.values()[(int) (decision >>> 48 & 0xFF)])
+                        .append(" chosen=").append(chosen == NO_CARD ? "-" : cardIds.apply(chosen))
+                        .append(" points=").append(Money.ofCents(records[at + 3]))
+                        .append(" candidates=");
+                long packed = records[at + 4];
+                for (int k = 0; k < Math.min(candidateCount, STORED_CANDIDATES); k++) {
+                    if (k > 0) {
+                        line.append(',');
+                    }
+                    line.append(cardIds.apply((int) (packed >>> k * CANDIDATE_BITS & 0xFFFF) - 3));
+                }
+                if (candidateCount > STORED_CANDIDATES) {
+                    line.append(",+").append(candidateCount - STORED_CANDIDATES);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+}
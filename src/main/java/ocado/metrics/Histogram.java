@@ -0,0 +1,104 @@
+package ocado.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with power-of-two buckets.<br>
+ * Bucket {@code b > 0} counts the values from {@code 2^(b-1)} to {@code 2^b - 1} and bucket 0 counts zeros,
+ * so recording a value costs a leading-zeros count and three {@link LongAdder}-like updates, without allocation.
+ */
+public class Histogram {
+    /** Number of buckets: zero and one per value bit of a non-negative long */
+    private static final int BUCKETS = Long.SIZE;
+
+    /** Counters of the buckets */
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    /** Sum of the recorded values */
+    private final LongAdder sum = new LongAdder();
+
+    /** Largest recorded value */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Default constructor creating an empty histogram.
+     */
+    public Histogram() {
+        for (int b = 0; b < BUCKETS; b++) {
+            buckets[b] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return the sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the largest value, 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the non-empty buckets keyed by their inclusive upper bound.
+     *
+     * @return the counts of the buckets from the smallest values
+     */
+    public Map<Long, Long> getBuckets() {
+        Map<Long, Long> result = new LinkedHashMap<>();
+        for (int b = 0; b < BUCKETS; b++) {
+            long count = buckets[b].sum();
+            if (count > 0) {
+                result.put((1L << b) - 1, count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clears the histogram. Values recorded concurrently may survive the reset.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sum.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,265 @@
+package ocado.metrics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Always-on metrics of the optimizers: how often every branch of the greedy algorithm is taken and how long
+ * every phase of a run takes.<br>
+ * Counters are {@link LongAdder} and the phase times are kept in {@link Histogram}, so recording never locks,
+ * never allocates and scales with the number of threads of the batch mode. The metrics are read as a snapshot,
+ * dumped as JSON or exported through JMX by {@link #registerMBean()}.
+ */
+public class OptimizerMetrics implements OptimizerMetricsMXBean {
+    /** Name under which the global metrics are registered in the platform MBean server */
+    public static final String OBJECT_NAME = "ocado:type=OptimizerMetrics";
+
+    /** Metrics shared by all optimizers that are not given their own */
+    private static final OptimizerMetrics GLOBAL = new OptimizerMetrics();
+
+    /** Mapper writing the JSON snapshots */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Branches of the greedy algorithm choosing the payment methods of a single order.
+     */
+    public enum Branch {
+        /** The whole order is paid with points */
+        FULL_POINTS,
+        /** The whole order is paid with the only card giving the best promotion */
+        PROMOTION_CARD,
+        /** The whole order is paid with a card chosen among cards giving the same promotion */
+        CARD_CARD_TIE,
+        /** 10% of the order is paid with points and the rest with the card found by {@code findBestCardToPayRest} */
+        POINTS_10,
+        /** Points fill the order up to the limit of the card with the largest limit */
+        POINTS_10_MAX_LIMIT,
+        /** The whole order is paid without a promotion with the card found by {@code findBestCardToPayRest} */
+        NO_PROMOTION_CARD,
+        /** No payment method could be selected and the run was stopped */
+        TERMINATED
+    }
+
+    /**
+     * Measured phases of a run.
+     */
+    public enum Phase {
+        /** Reading the input files */
+        PARSE,
+        /** Sorting the orders */
+        SORT,
+        /** Paying the orders one by one */
+        MAIN_LOOP,
+        /** Spending the remaining points */
+        SPEND_REMAINING_POINTS,
+        /** Improving the greedy result with the local search */
+        LOCAL_SEARCH,
+        /** Searching the best partial assignments with the beam search */
+        BEAM_SEARCH
+    }
+
+    /** Number of runs started */
+    private final LongAdder runs = new LongAdder();
+
+    /** Counters of the branches, indexed by ordinal */
+    private final LongAdder[] branches = new LongAdder[Branch.values().length];
+
+    /** Durations of the phases in nanoseconds, indexed by ordinal */
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+
+    /**
+     * Default constructor creating empty metrics, independent of {@link #global()}.
+     */
+    public OptimizerMetrics() {
+        for (int i = 0; i < branches.length; i++) {
+            branches[i] = new LongAdder();
+        }
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Returns the metrics shared by all optimizers that are not given their own.
+     *
+     * @return the global metrics
+     */
+    public static OptimizerMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Registers the global metrics in the platform MBean server under {@value #OBJECT_NAME}.
+     * Registering them again has no effect.
+     *
+     * @throws IllegalStateException thrown if the MBean server rejects the metrics
+     */
+    public static void registerMBean() throws IllegalStateException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already exported.
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register the optimizer metrics: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Counts the start of a run.
+     */
+    public void countRun() {
+        runs.increment();
+    }
+
+    /**
+     * Counts a taken branch.
+     *
+     * @param branch the branch
+     */
+    public void count(Branch branch) {
+        branches[branch.ordinal()].increment();
+    }
+
+    /**
+     * Records the duration of a phase started at the given time.
+     *
+     * @param phase the phase
+     * @param startNanos the start of the phase, read from {@link System#nanoTime()}
+     */
+    public void recordSince(Phase phase, long startNanos) {
+        phases[phase.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns how many times a branch was taken.
+     *
+     * @param branch the branch
+     * @return the count
+     */
+    public long getCount(Branch branch) {
+        return branches[branch.ordinal()].sum();
+    }
+
+    /**
+     * Returns the histogram of the durations of a phase.
+     *
+     * @param phase the phase
+     * @return the histogram of the durations in nanoseconds
+     */
+    public Histogram getHistogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    @Override
+    public Map<String, Long> getBranchCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Branch branch : Branch.values()) {
+            result.put(branch.name(), getCount(branch));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        return phaseValues(Histogram::getCount);
+    }
+
+    @Override
+    public Map<String, Long> getPhaseTotalNanos() {
+        return phaseValues(Histogram::getSum);
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMaxNanos() {
+        return phaseValues(Histogram::getMax);
+    }
+
+    /**
+     * Returns a snapshot of all metrics as nested maps, ready to be serialized.
+     *
+     * @return the snapshot
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> phaseSnapshots = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = getHistogram(phase);
+            Map<String, Object> phaseSnapshot = new LinkedHashMap<>();
+            phaseSnapshot.put("count", histogram.getCount());
+            phaseSnapshot.put("totalNanos", histogram.getSum());
+            phaseSnapshot.put("maxNanos", histogram.getMax());
+            phaseSnapshot.put("buckets", histogram.getBuckets());
+            phaseSnapshots.put(phase.name(), phaseSnapshot);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("runs", getRuns());
+        result.put("branches", getBranchCounts());
+        result.put("phases", phaseSnapshots);
+        return result;
+    }
+
+    @Override
+    public String getJson() {
+        try {
+            return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(snapshot());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of all metrics as a JSON document. The stream is not closed.
+     *
+     * @param out the destination
+     * @throws IOException if a write error occurs
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        out.write(getJson().getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+        out.flush();
+    }
+
+    @Override
+    public void reset() {
+        runs.reset();
+        for (LongAdder branch : branches) {
+            branch.reset();
+        }
+        for (Histogram phase : phases) {
+            phase.reset();
+        }
+    }
+
+    /**
+     * Collects a value of the histogram of every phase.
+     *
+     * @param value the function reading the value
+     * @return the values keyed by the names of the phases
+     */
+    private Map<String, Long> phaseValues(ToLongFunction<Histogram> value) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            result.put(phase.name(), value.applyAsLong(getHistogram(phase)));
+        }
+        return result;
+    }
+}
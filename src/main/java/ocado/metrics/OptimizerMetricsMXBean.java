@@ -0,0 +1,55 @@
+package ocado.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface exporting {@link OptimizerMetrics} through JMX.
+ */
+public interface OptimizerMetricsMXBean {
+    /**
+     * Returns the number of optimization runs started.
+     *
+     * @return the number of runs
+     */
+    long getRuns();
+
+    /**
+     * Returns how many times every branch of the greedy algorithm was taken.
+     *
+     * @return the counts keyed by the names of {@link OptimizerMetrics.Branch}
+     */
+    Map<String, Long> getBranchCounts();
+
+    /**
+     * Returns how many times every phase was measured.
+     *
+     * @return the counts keyed by the names of {@link OptimizerMetrics.Phase}
+     */
+    Map<String, Long> getPhaseCounts();
+
+    /**
+     * Returns the total time spent in every phase.
+     *
+     * @return the times in nanoseconds keyed by the names of {@link OptimizerMetrics.Phase}
+     */
+    Map<String, Long> getPhaseTotalNanos();
+
+    /**
+     * Returns the longest measurement of every phase.
+     *
+     * @return the times in nanoseconds keyed by the names of {@link OptimizerMetrics.Phase}
+     */
+    Map<String, Long> getPhaseMaxNanos();
+
+    /**
+     * Returns all metrics, including the histograms, as a JSON document.
+     *
+     * @return the JSON document
+     */
+    String getJson();
+
+    /**
+     * Clears all metrics.
+     */
+    void reset();
+}
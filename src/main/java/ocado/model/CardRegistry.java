@@ -0,0 +1,103 @@
+package ocado.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry interning the identifiers of payment methods to dense indexes.<br>
+ * Cards are numbered in the iteration order of the map the registry is built from, the same order in which
+ * {@link ocado.utils.CardIndex} resolves final ties for {@code payments.values()}, so card state can be kept in arrays
+ * indexed by these numbers. Promotion identifiers are resolved once per distinct name of an {@link OrderTable}, or
+ * once per {@link Order} that keeps its resolved indexes, and the per-order work only uses the indexes. A registry
+ * is reused by repeated runs over the same payment methods, so the kept indexes stay valid.
+ */
+public class CardRegistry {
+    /** Cards by their index */
+    private final PaymentMethod[] cards;
+
+    /** Identifiers of the cards by their index */
+    private final String[] ids;
+
+    /** Indexes of the cards by their identifiers */
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * Creates a registry of the given cards.
+     *
+     * @param payments the map of {@link PaymentMethod} by their identifiers, in the order of their indexes
+     */
+    public CardRegistry(Map<String, PaymentMethod> payments) {
+        cards = new PaymentMethod[payments.size()];
+        ids = new String[payments.size()];
+        int c = 0;
+        for (Map.Entry<String, PaymentMethod> entry : payments.entrySet()) {
+            cards[c] = entry.getValue();
+            ids[c] = entry.getKey();
+            indexes.put(entry.getKey(), c++);
+        }
+    }
+
+    /**
+     * Checks whether the registry numbers the given cards like a new registry would.
+     *
+     * @param payments the map of {@link PaymentMethod} by their identifiers
+     * @return true if the map holds the same cards under the same identifiers, in the order of their indexes
+     */
+    public boolean isFor(Map<String, PaymentMethod> payments) {
+        if (payments.size() != cards.length) {
+            return false;
+        }
+        int c = 0;
+        for (Map.Entry<String, PaymentMethod> entry : payments.entrySet()) {
+            if (entry.getValue() != cards[c] || !entry.getKey().equals(ids[c])) {
+                return false;
+            }
+            c++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of registered cards.
+     *
+     * @return the number of cards
+     */
+    public int size() {
+        return cards.length;
+    }
+
+    /**
+     * Returns a card by its index.
+     *
+     * @param card the index of the card
+     * @return the {@link PaymentMethod}
+     */
+    public PaymentMethod get(int card) {
+        return cards[card];
+    }
+
+    /**
+     * Finds the index of a card.
+     *
+     * @param id the {@link PaymentMethod} identifier
+     * @return the index of the card, or -1 if there is no such card
+     */
+    public int indexOf(String id) {
+        Integer card = indexes.get(id);
+        return card != null ? card : -1;
+    }
+
+    /**
+     * Resolves every promotion name of a table of orders to a card index.
+     *
+     * @param table the table of orders
+     * @return the card index for every promotion name index, -1 for names without a card
+     */
+    public int[] indexNames(OrderTable table) {
+        int[] names = new int[table.getPromotionNameCount()];
+        for (int p = 0; p < names.length; p++) {
+            names[p] = indexOf(table.getPromotionName(p));
+        }
+        return names;
+    }
+}
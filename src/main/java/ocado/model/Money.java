@@ -0,0 +1,238 @@
+package ocado.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable amount of money stored as a number of cents.<br>
+ * All arithmetic is exact on {@code long} values; percentages are expressed in basis points
+ * (1/100 of a percent) and every rounding step reproduces {@link RoundingMode#HALF_UP} on two decimal places.
+ */
+public final class Money implements Comparable<Money> {
+    /** Number of basis points making up 100% */
+    public static final int FULL_BASIS_POINTS = 10_000;
+
+    /** Amount of zero */
+    public static final Money ZERO = new Money(0);
+
+    /** Amount in cents */
+    private final long cents;
+
+    /**
+     * Constructor used by the factory methods.
+     *
+     * @param cents the amount in cents
+     */
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * Creates an amount from a number of cents.
+     *
+     * @param cents the amount in cents
+     * @return the amount
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Parses a decimal amount and rounds it to two decimal places (HALF_UP).
+     *
+     * @param value the decimal amount, e.g. "150.00"
+     * @return the amount
+     * @throws IllegalArgumentException thrown if the value is not a number or does not fit into the cents range
+     */
+    public static Money of(String value) throws IllegalArgumentException {
+        return ofCents(parseHundredths(value));
+    }
+
+    /**
+     * Parses a percentage and rounds it to two decimal places (HALF_UP), giving a value in basis points.
+     *
+     * @param percent the percentage, e.g. "15" or "12.5"
+     * @return the percentage in basis points
+     * @throws IllegalArgumentException thrown if the value is not a number or is too large
+     */
+    public static int basisPointsOf(String percent) throws IllegalArgumentException {
+        long basisPoints = parseHundredths(percent);
+        if (basisPoints != (int) basisPoints) {
+            throw new IllegalArgumentException("The percentage is out of range: " + percent);
+        }
+        return (int) basisPoints;
+    }
+
+    /**
+     * Divides and rounds the result to the nearest integer, with halves rounded away from zero
+     * (the integer equivalent of {@link RoundingMode#HALF_UP}).
+     *
+     * @param dividend the dividend
+     * @param divisor the positive, even divisor
+     * @return the rounded quotient
+     */
+    public static long roundHalfUp(long dividend, long divisor) {
+        long half = divisor / 2;
+        return dividend >= 0 ? (dividend + half) / divisor : -((-dividend + half) / divisor);
+    }
+
+    /**
+     * Calculates the given share of an amount in cents, rounded to cents (HALF_UP), without creating an object.
+     *
+     * @param cents the amount in cents
+     * @param basisPoints the share in basis points
+     * @return the share of the amount in cents
+     */
+    public static long percentOf(long cents, int basisPoints) {
+        return roundHalfUp(Math.multiplyExact(cents, basisPoints), FULL_BASIS_POINTS);
+    }
+
+    /**
+     * Turns a discount into the multiplier used by {@link #applyDiscount(int)}: the percentage left to pay,
+     * with the discount rounded to a whole percent.
+     *
+     * @param discountBasisPoints the discount in basis points
+     * @return the multiplier in percent
+     */
+    public static long discountMultiplier(int discountBasisPoints) {
+        return 100 - roundHalfUp(discountBasisPoints, 100);
+    }
+
+    /**
+     * Calculates the amount left to pay after applying a discount given by its multiplier, without creating an object.
+     *
+     * @param cents the amount in cents
+     * @param multiplier the multiplier from {@link #discountMultiplier(int)}
+     * @return the discounted amount in cents
+     */
+    public static long discounted(long cents, long multiplier) {
+        return roundHalfUp(Math.multiplyExact(cents, multiplier), 100);
+    }
+
+    /**
+     * Checks, without rounding or creating an object, whether an amount is greater than or equal to the given share
+     * of another amount.
+     *
+     * @param cents the amount in cents
+     * @param valueCents the amount whose share is compared, in cents
+     * @param basisPoints the share in basis points
+     * @return true if the amount covers the share
+     */
+    public static boolean coversShare(long cents, long valueCents, int basisPoints) {
+        return Math.multiplyExact(cents, FULL_BASIS_POINTS) >= Math.multiplyExact(valueCents, basisPoints);
+    }
+
+    /**
+     * Returns the amount in cents.
+     *
+     * @return the amount in cents
+     */
+    public long getCents() {
+        return cents;
+    }
+
+    /**
+     * Adds the given amount.
+     *
+     * @param other the amount to add
+     * @return the sum
+     */
+    public Money add(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    /**
+     * Subtracts the given amount.
+     *
+     * @param other the amount to subtract
+     * @return the difference
+     */
+    public Money subtract(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    /**
+     * Calculates the given share of this amount, rounded to cents (HALF_UP).
+     *
+     * @param basisPoints the share in basis points
+     * @return the share of the amount
+     */
+    public Money percent(int basisPoints) {
+        return ofCents(percentOf(cents, basisPoints));
+    }
+
+    /**
+     * Calculates the amount left to pay after applying a discount. As in the original rules, the discount is first
+     * turned into a multiplier with two decimal places (so it is rounded to a whole percent) and the result is
+     * rounded to cents.
+     *
+     * @param discountBasisPoints the discount in basis points
+     * @return the discounted amount
+     */
+    public Money applyDiscount(int discountBasisPoints) {
+        return ofCents(discounted(cents, discountMultiplier(discountBasisPoints)));
+    }
+
+    /**
+     * Checks, without rounding, whether this amount is greater than or equal to the given share of another amount.
+     *
+     * @param value the amount whose share is compared
+     * @param basisPoints the share in basis points
+     * @return true if this amount covers the share
+     */
+    public boolean covers(Money value, int basisPoints) {
+        return coversShare(cents, value.cents, basisPoints);
+    }
+
+    /**
+     * Checks whether the amount is negative.
+     *
+     * @return true if the amount is below zero
+     */
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && cents == other.cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * Returns the amount with two decimal places, e.g. "150.00".
+     *
+     * @return the formatted amount
+     */
+    @Override
+    public String toString() {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Parses a decimal number into hundredths, rounding HALF_UP.
+     *
+     * @param value the decimal number
+     * @return the number of hundredths
+     * @throws IllegalArgumentException thrown if the value is not a number or does not fit into a long
+     */
+    private static long parseHundredths(String value) throws IllegalArgumentException {
+        try {
+            return new BigDecimal(value).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+        catch (ArithmeticException e) {
+            throw new IllegalArgumentException("The amount is out of range: " + value);
+        }
+    }
+}
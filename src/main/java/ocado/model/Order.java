@@ -2,11 +2,10 @@ package ocado.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
 
 /**
@@ -14,18 +13,31 @@ import java.util.*;
  */
 @Getter
 @Setter
-public class Order {
+public class Order implements OrderView {
     /** Unique order identifier */
     private String id;
 
     /** Order value */
-    private BigDecimal value;
+    private Money value;
 
     /** List of {@link PaymentMethod} identifiers available as promotions for the order */
     private final List<String> promotions = new ArrayList<>();
 
     /** Map of {@link PaymentMethod} used to pay for this order, along with amounts */
-    private final Map<String, BigDecimal> usedPaymentsMethods = new HashMap<>();
+    private final Map<String, Money> usedPaymentsMethods = new HashMap<>();
+
+    /** Map of amounts actually charged to the {@link PaymentMethod} used for this order, after the discounts */
+    private final Map<String, Money> chargedPaymentsMethods = new HashMap<>();
+
+    /** Registry the promotions were last resolved with */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CardRegistry promotionRegistry;
+
+    /** Card index of every promotion in {@link #promotionRegistry}, -1 for promotions without a card */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int[] promotionCards = new int[0];
 
     /**
      * Constructor used by Jackson to create an object from JSON data.
@@ -37,19 +49,94 @@ public class Order {
     @JsonCreator
     public Order(@JsonProperty("id") String id, @JsonProperty("value") String value, @JsonProperty("promotions") List<String> promotions) {
         this.id = id != null ? id : "";
-        this.value = new BigDecimal(!value.isEmpty() ? value : "0.00").setScale(2, RoundingMode.HALF_UP);
+        this.value = Money.of(!value.isEmpty() ? value : "0.00");
         if (promotions != null) {
             this.promotions.addAll(promotions);
         }
     }
 
+    /**
+     * Returns the number of promotions listed by the order.
+     *
+     * @return the size of {@link #promotions}
+     */
+    @Override
+    public int getPromotionCount() {
+        return promotions.size();
+    }
+
+    /**
+     * Returns a promotion listed by the order.
+     *
+     * @param k the position of the promotion
+     * @return the {@link PaymentMethod} identifier of the promotion
+     */
+    @Override
+    public String getPromotion(int k) {
+        return promotions.get(k);
+    }
+
+    /**
+     * Returns the index of the card of a promotion listed by the order. All promotions are resolved on the first
+     * call with a registry and kept until another registry is used, so the identifiers are hashed once per registry.
+     *
+     * @param k the position of the promotion, from 0 to {@link #getPromotionCount()} - 1
+     * @param registry the registry of the cards
+     * @return the index of the card in the registry, or -1 if the promotion has no card
+     */
+    @Override
+    public int getPromotionCard(int k, CardRegistry registry) {
+        if (registry != promotionRegistry || promotionCards.length != promotions.size()) {
+            if (promotionCards.length != promotions.size()) {
+                promotionCards = new int[promotions.size()];
+            }
+            for (int p = 0; p < promotionCards.length; p++) {
+                promotionCards[p] = registry.indexOf(promotions.get(p));
+            }
+            promotionRegistry = registry;
+        }
+        return promotionCards[k];
+    }
+
     /**
      * Adds information about the payment method used for the order.
      *
      * @param method the {@link PaymentMethod} identifier
      * @param value the payment amount
      */
-    public void usePaymentsMethod(String method, BigDecimal value) {
-        usedPaymentsMethods.put(method, value.setScale(2, RoundingMode.HALF_UP));
+    @Override
+    public void usePaymentsMethod(String method, Money value) {
+        usedPaymentsMethods.put(method, value);
+    }
+
+    /**
+     * Adds information about the payment method used for the order, sharing the value object when the whole order
+     * is paid with the method.
+     *
+     * @param method the {@link PaymentMethod} identifier
+     * @param cents the payment amount in cents
+     */
+    @Override
+    public void usePaymentsMethod(String method, long cents) {
+        usedPaymentsMethods.put(method, cents == value.getCents() ? value : Money.ofCents(cents));
+    }
+
+    /**
+     * Adds an amount charged to a payment method for the order to the amount already charged to it.
+     *
+     * @param method the {@link PaymentMethod} identifier
+     * @param cents the charged amount in cents, negative when a part of the charge is moved to another method
+     */
+    @Override
+    public void chargePaymentsMethod(String method, long cents) {
+        chargedPaymentsMethods.merge(method, Money.ofCents(cents), Money::add);
+    }
+
+    /**
+     * Removes the recorded payments and charges, before the order is paid again.
+     */
+    public void clearPayments() {
+        usedPaymentsMethods.clear();
+        chargedPaymentsMethods.clear();
     }
 }
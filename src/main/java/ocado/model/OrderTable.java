@@ -0,0 +1,84 @@
+package ocado.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only columnar view of a list of orders addressed by their index.<br>
+ * Promotion identifiers are interned: every order lists indexes into a table of distinct promotion names.
+ */
+public interface OrderTable {
+    /**
+     * Returns the number of orders.
+     *
+     * @return the number of orders
+     */
+    int size();
+
+    /**
+     * Returns the identifier of an order.
+     *
+     * @param order the index of the order
+     * @return the order identifier
+     */
+    String getId(int order);
+
+    /**
+     * Returns the value of an order in cents.
+     *
+     * @param order the index of the order
+     * @return the order value in cents
+     */
+    long getValueCents(int order);
+
+    /**
+     * Returns the number of promotions listed by an order.
+     *
+     * @param order the index of the order
+     * @return the number of promotions
+     */
+    int getPromotionCount(int order);
+
+    /**
+     * Returns the index of a promotion listed by an order in the table of promotion names.
+     *
+     * @param order the index of the order
+     * @param k the position of the promotion in the order
+     * @return the index of the promotion name
+     */
+    int getPromotionIndex(int order, int k);
+
+    /**
+     * Returns the number of distinct promotion names.
+     *
+     * @return the number of promotion names
+     */
+    int getPromotionNameCount();
+
+    /**
+     * Returns a promotion name.
+     *
+     * @param index the index of the promotion name
+     * @return the {@link PaymentMethod} identifier
+     */
+    String getPromotionName(int index);
+
+    /**
+     * Creates {@link Order} objects for all orders, for code working on lists of orders.
+     *
+     * @return the list of orders
+     */
+    default List<Order> toOrders() {
+        List<Order> orders = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            List<String> promotions = new ArrayList<>(getPromotionCount(i));
+            for (int k = 0; k < getPromotionCount(i); k++) {
+                promotions.add(getPromotionName(getPromotionIndex(i, k)));
+            }
+            Order order = new Order(getId(i), "0", promotions);
+            order.setValue(Money.ofCents(getValueCents(i)));
+            orders.add(order);
+        }
+        return orders;
+    }
+}
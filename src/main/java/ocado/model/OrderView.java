@@ -0,0 +1,84 @@
+package ocado.model;
+
+/**
+ * Read access to a single order needed to pay for it, together with a place to record the used payment methods.<br>
+ * Implemented by {@link Order} and by cursors moving over an {@link OrderTable}, so orders can be paid without
+ * creating an {@link Order} object for each of them.
+ */
+public interface OrderView {
+    /**
+     * Returns the identifier of the order.
+     *
+     * @return the order identifier
+     */
+    String getId();
+
+    /**
+     * Returns the value of the order.
+     *
+     * @return the order value
+     */
+    Money getValue();
+
+    /**
+     * Returns the value of the order in cents, without creating an object.
+     *
+     * @return the order value in cents
+     */
+    default long getValueCents() {
+        return getValue().getCents();
+    }
+
+    /**
+     * Returns the number of promotions listed by the order.
+     *
+     * @return the number of promotions
+     */
+    int getPromotionCount();
+
+    /**
+     * Returns a promotion listed by the order.
+     *
+     * @param k the position of the promotion, from 0 to {@link #getPromotionCount()} - 1
+     * @return the {@link PaymentMethod} identifier of the promotion
+     */
+    String getPromotion(int k);
+
+    /**
+     * Returns the index of the card of a promotion listed by the order.
+     *
+     * @param k the position of the promotion, from 0 to {@link #getPromotionCount()} - 1
+     * @param registry the registry of the cards
+     * @return the index of the card in the registry, or -1 if the promotion has no card
+     */
+    default int getPromotionCard(int k, CardRegistry registry) {
+        return registry.indexOf(getPromotion(k));
+    }
+
+    /**
+     * Records a payment method used for the order.
+     *
+     * @param method the {@link PaymentMethod} identifier
+     * @param value the payment amount
+     */
+    void usePaymentsMethod(String method, Money value);
+
+    /**
+     * Records a payment method used for the order, with the amount given in cents.
+     *
+     * @param method the {@link PaymentMethod} identifier
+     * @param cents the payment amount in cents
+     */
+    default void usePaymentsMethod(String method, long cents) {
+        usePaymentsMethod(method, Money.ofCents(cents));
+    }
+
+    /**
+     * Adds an amount charged to a payment method for the order, after the discount, to the amount already charged
+     * to it. Views without a place for the charges ignore it.
+     *
+     * @param method the {@link PaymentMethod} identifier
+     * @param cents the charged amount in cents, negative when a part of the charge is moved to another method
+     */
+    default void chargePaymentsMethod(String method, long cents) {}
+}
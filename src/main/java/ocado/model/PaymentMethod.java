@@ -2,14 +2,15 @@ package ocado.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 /**
- * Class representing a payment method.
+ * Class representing a payment method.<br>
+ * The limit and the spending are kept as cents and the discount also as the multiplier of
+ * {@link Money#applyDiscount(int)}, so payments made through the cent methods create no objects.
  */
 @Getter
 @Setter
@@ -17,17 +18,21 @@ public class PaymentMethod {
     /** Unique payment method identifier */
     private String id;
 
-    /** Discount value in percent */
-    private BigDecimal discount;
+    /** Discount value in basis points (1/100 of a percent) */
+    private int discount;
 
-    /** Available payment limit */
-    private BigDecimal limit;
+    /** Multiplier of the discount from {@link Money#discountMultiplier(int)}, kept in sync with {@link #discount} */
+    @Setter(AccessLevel.NONE)
+    private long discountMultiplier = 100;
+
+    /** Available payment limit in cents */
+    private long limitCents;
 
     /** Number of unprocessed orders where the method can be used as a promotion */
     private int ordersAmount;
 
-    /** Total amount spent using this payment method */
-    private BigDecimal spending = new BigDecimal("0.00").setScale(2, RoundingMode.HALF_UP);
+    /** Total amount spent using this payment method in cents */
+    private long spendingCents;
 
     /**
      * Constructor used by Jackson to create an object from JSON data.
@@ -39,8 +44,8 @@ public class PaymentMethod {
     @JsonCreator
     public PaymentMethod(@JsonProperty("id") String id, @JsonProperty("discount") String discount, @JsonProperty("limit") String limit) {
         this.id = id;
-        this.discount = new BigDecimal(!discount.isEmpty() ? discount : "0.00").setScale(2, RoundingMode.HALF_UP);
-        this.limit = new BigDecimal(!limit.isEmpty() ? limit : "0.00").setScale(2, RoundingMode.HALF_UP);
+        setDiscount(Money.basisPointsOf(!discount.isEmpty() ? discount : "0.00"));
+        this.limitCents = Money.of(!limit.isEmpty() ? limit : "0.00").getCents();
     }
 
     /**
@@ -50,8 +55,54 @@ public class PaymentMethod {
      * @param limit the limit for the created method
      */
     public PaymentMethod(String discount, String limit) {
-        this.discount = new BigDecimal(!discount.isEmpty() ? discount : "0.00").setScale(2, RoundingMode.HALF_UP);
-        this.limit = new BigDecimal(!limit.isEmpty() ? limit : "0.00").setScale(2, RoundingMode.HALF_UP);
+        setDiscount(Money.basisPointsOf(!discount.isEmpty() ? discount : "0.00"));
+        this.limitCents = Money.of(!limit.isEmpty() ? limit : "0.00").getCents();
+    }
+
+    /**
+     * Sets the discount and its multiplier.
+     *
+     * @param discount the discount in basis points
+     */
+    public void setDiscount(int discount) {
+        this.discount = discount;
+        this.discountMultiplier = Money.discountMultiplier(discount);
+    }
+
+    /**
+     * Returns the available payment limit.
+     *
+     * @return the limit
+     */
+    public Money getLimit() {
+        return Money.ofCents(limitCents);
+    }
+
+    /**
+     * Sets the available payment limit.
+     *
+     * @param limit the limit
+     */
+    public void setLimit(Money limit) {
+        this.limitCents = limit.getCents();
+    }
+
+    /**
+     * Returns the total amount spent using this payment method.
+     *
+     * @return the spending
+     */
+    public Money getSpending() {
+        return Money.ofCents(spendingCents);
+    }
+
+    /**
+     * Sets the total amount spent using this payment method.
+     *
+     * @param spending the spending
+     */
+    public void setSpending(Money spending) {
+        this.spendingCents = spending.getCents();
     }
 
     /**
@@ -76,15 +127,25 @@ public class PaymentMethod {
      * @param amount the amount to be paid
      * @throws IllegalArgumentException thrown if the amount to be spent exceeds the method's limit
      */
-    public void spend(BigDecimal amount) throws IllegalArgumentException {
-        if (amount.compareTo(new BigDecimal("0.00")) < 0) {
+    public void spend(Money amount) throws IllegalArgumentException {
+        spend(amount.getCents());
+    }
+
+    /**
+     * Processes a payment of the specified amount in cents using this payment method.
+     *
+     * @param cents the amount to be paid in cents
+     * @throws IllegalArgumentException thrown if the amount to be spent exceeds the method's limit
+     */
+    public void spend(long cents) throws IllegalArgumentException {
+        if (cents < 0) {
             throw new IllegalArgumentException("The amount to be spent cannot be a negative number!");
         }
-        if (amount.compareTo(limit) > 0) {
+        if (cents > limitCents) {
             throw new IllegalArgumentException("The amount to be spent exceeds the method limit!");
         }
-        this.spending = this.spending.add(amount).setScale(2, RoundingMode.HALF_UP);
-        this.limit =  this.limit.subtract(amount).setScale(2, RoundingMode.HALF_UP);
+        this.spendingCents = Math.addExact(spendingCents, cents);
+        this.limitCents -= cents;
     }
 
     /**
@@ -93,15 +154,25 @@ public class PaymentMethod {
      * @param amount the amount to be returned
      * @throws IllegalArgumentException thrown if the amount to be returned exceeds the actual spending
      */
-    public void getMoneyBack(BigDecimal amount) throws IllegalArgumentException {
-        if (amount.compareTo(new BigDecimal("0.00")) < 0) {
+    public void getMoneyBack(Money amount) throws IllegalArgumentException {
+        getMoneyBack(amount.getCents());
+    }
+
+    /**
+     * Returns the specified payment amount in cents to the available limit (reverses a transaction).
+     *
+     * @param cents the amount to be returned in cents
+     * @throws IllegalArgumentException thrown if the amount to be returned exceeds the actual spending
+     */
+    public void getMoneyBack(long cents) throws IllegalArgumentException {
+        if (cents < 0) {
             throw new IllegalArgumentException("The amount to be returned cannot be a negative number!");
         }
-        if (amount.compareTo(spending) > 0) {
+        if (cents > spendingCents) {
             throw new IllegalArgumentException("The amount to be returned exceeds the actual expenses!");
         }
-        this.spending = this.spending.subtract(amount).setScale(2, RoundingMode.HALF_UP);
-        this.limit = this.limit.add(amount).setScale(2, RoundingMode.HALF_UP);
+        this.spendingCents -= cents;
+        this.limitCents = Math.addExact(limitCents, cents);
     }
 
     /**
@@ -110,6 +181,6 @@ public class PaymentMethod {
      * @return a string in the format "id spent_amount"
      */
     public String printSpending() {
-        return id + " " + spending;
+        return id + " " + getSpending();
     }
 }
@@ -0,0 +1,794 @@
+package ocado.optimization;
+
+import ocado.metrics.OptimizerMetrics;
+import ocado.model.CardRegistry;
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.RadixSorter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * {@link ExpenseSolver} paying the orders from the most expensive one like the greedy {@link ExpenseOptimizer}, but
+ * keeping the best partial assignments of every step instead of a single one (beam search).<br>
+ * Every order is paid with one of the options of {@link BranchAndBoundSolver}. At every order, each of the at most
+ * {@code width} partial assignments of the beam is extended with every option that can still be paid, and the
+ * extensions with the highest discount plus the estimated discount the later orders can still get from the remaining
+ * limits, then the highest amount paid with points, form the next beam. Extensions
+ * ending in the same wallet are kept once, so the beam holds different wallets. A wrong choice for an expensive order
+ * therefore does not end the run as long as an alternative stays in the beam, and the cost grows linearly with the
+ * width: about {@code width * (cards * 2 + promotions + 1)} candidates per order.<br>
+ * A wallet is a row of card loads in flat arrays, so copying the beam moves a few longs per card. When a step has
+ * many candidates, the beam is split into chunks expanded on a {@link ForkJoinPool}, each chunk selecting its own best
+ * extensions, which are merged in the order of the beam; the result does not depend on the number of threads.
+ * The points are distributed by {@link PaymentPlan} when the best complete assignment is recorded, and nothing is
+ * recorded if the beam runs out of payable assignments.
+ */
+public class BeamSearchSolver implements ExpenseSolver {
+    /** Default number of partial assignments kept per order */
+    public static final int DEFAULT_WIDTH = 16;
+
+    /** Maximal number of partial assignments kept per order */
+    public static final int MAX_WIDTH = 4096;
+
+    /** Option type: full payment with a promotional card */
+    private static final int PROMOTION = PaymentPlan.PROMOTION;
+
+    /** Option type: full payment with points */
+    private static final int POINTS = PaymentPlan.POINTS;
+
+    /** Option type: PUNKTY_10 with a card paying the rest */
+    private static final int POINTS_10 = PaymentPlan.POINTS_10;
+
+    /** Option type: full payment with a card without a discount */
+    private static final int CARD = PaymentPlan.CARD;
+
+    /** Discount of the PUNKTY_10 method and the minimal share of an order paid with points, in basis points */
+    private static final int POINTS_10_BASIS_POINTS = 1_000;
+
+    /** Minimal number of candidates of a step expanded by several fork-join tasks */
+    private static final int PARALLEL_CANDIDATES = 8_192;
+
+    /** Number of bits of an option index in the trail of the beam */
+    private static final int OPTION_BITS = 16;
+
+    /** Maximal number of steps stored in the trail of the beam */
+    private static final int MAX_TRAIL = Integer.MAX_VALUE - 8;
+
+    /** List of orders to optimize */
+    private final List<Order> orders;
+
+    /** Map of available payment methods (excluding the points method) */
+    private final Map<String, PaymentMethod> payments;
+
+    /** Points payment method (PUNKTY) */
+    private final PaymentMethod pointsMethod;
+
+    /** Maximal number of partial assignments kept per order */
+    private final int width;
+
+    /** Pool expanding the beam */
+    private final ForkJoinPool pool;
+
+    /** Cards in the order of {@link #payments} */
+    private PaymentMethod[] cards;
+
+    /** Values of the orders in cents */
+    private long[] values;
+
+    /** Start of the promotional cards of every order in {@link #promotionCards}, followed by their end */
+    private int[] promotionStarts;
+
+    /** Indexes of the distinct promotional cards of all orders */
+    private int[] promotionCards;
+
+    /** Limits of the cards in cents */
+    private long[] cardLimits;
+
+    /** Points limit in cents */
+    private long pointsLimit;
+
+    /** Amount due for the promotions of every card by the orders after the current one, in cents */
+    private long[] cardDueDemand;
+
+    /** Discount of the promotions of every card of the orders after the current one, in cents */
+    private long[] cardDiscountDemand;
+
+    /** Amount due for full payment with points of the orders after the current one, in cents */
+    private long pointsDueDemand;
+
+    /** Discount of full payment with points of the orders after the current one, in cents */
+    private long pointsDiscountDemand;
+
+    /** Estimated discount still available to every assignment of the beam */
+    private double[] potentials;
+
+    /** Part of {@link #potentials} of every card of every assignment, {@code cards.length} per assignment */
+    private double[] cardShares;
+
+    /** Part of {@link #potentials} of the points of every assignment */
+    private double[] pointsShares;
+
+    /** Number of options of the current order */
+    private int optionCount;
+
+    /** Type of every option of the current order */
+    private int[] optionTypes;
+
+    /** Card of every option of the current order, or -1 for full payment with points */
+    private int[] optionCards;
+
+    /** Amount paid by card before any points top-up for every option of the current order, in cents */
+    private long[] optionLoads;
+
+    /** Part of the card amount that points may take over for every option of the current order, in cents */
+    private long[] optionFlex;
+
+    /** Amount that has to be paid with points for every option of the current order, in cents */
+    private long[] optionPoints;
+
+    /** Discount of every option of the current order, in cents */
+    private long[] optionDiscounts;
+
+    /**
+     * Constructor for the BeamSearchSolver class, keeping {@value #DEFAULT_WIDTH} assignments and using the common
+     * fork-join pool.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     */
+    public BeamSearchSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        this(orders, payments, pointsMethod, DEFAULT_WIDTH, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the BeamSearchSolver class.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     * @param width the number of partial assignments kept per order, between 1 and {@value #MAX_WIDTH}
+     * @param pool the pool expanding the beam
+     * @throws IllegalArgumentException thrown if the width is out of range
+     */
+    public BeamSearchSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod,
+                            int width, ForkJoinPool pool) throws IllegalArgumentException {
+        if (width < 1 || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("The beam width must be between 1 and " + MAX_WIDTH + ": " + width);
+        }
+        this.orders = orders;
+        this.payments = payments;
+        this.pointsMethod = pointsMethod;
+        this.width = width;
+        this.pool = pool;
+    }
+
+    /**
+     * Pays for the orders from the most expensive one, keeping the best partial assignments, and records the best
+     * complete assignment in the orders and payment methods. Nothing is recorded if no assignment was found.
+     *
+     * @return true if all orders were paid, false otherwise
+     * @throws IllegalArgumentException thrown if an order has a negative value, there are too many payment methods or the
+     *                                  trail of the beam does not fit in an array
+     */
+    @Override
+    public boolean optimize() throws IllegalArgumentException {
+        long start = System.nanoTime();
+        for (Order order : orders) {
+            if (order.getValue().isNegative()) {
+                throw new IllegalArgumentException("The value of order " + order.getId() + " cannot be a negative number!");
+            }
+        }
+        new RadixSorter().sortByValue(orders);
+        buildModel();
+
+        int n = orders.size();
+        int cardCount = cards.length;
+        Beam beam = new Beam(width, cardCount);
+        Beam next = new Beam(width, cardCount);
+        beam.size = 1;
+        for (int c = 0; c < cardCount; c++) {
+            beam.hash[0] += mix(c, 0, 0);
+        }
+        Selection[] selections = new Selection[Math.max(1, pool.getParallelism())];
+        Selection merged = new Selection();
+        // The steps of the trail are stored one after another, the step of order j starting at steps[j].
+        int[] trail = new int[Math.min(n, 1 << 16) * Math.min(width, 4)];
+        int[] steps = new int[n + 1];
+        potentials = new double[width];
+        cardShares = new double[width * cardCount];
+        pointsShares = new double[width];
+        for (int j = 0; j < n; j++) {
+            buildOptions(j);
+            addDemand(-1);
+            for (int p = 0; p < beam.size; p++) {
+                potentials[p] = potential(beam, p);
+            }
+            Selection selection = expand(beam, selections, merged);
+            if (selection.size == 0) {
+                OptimizerMetrics.global().recordSince(OptimizerMetrics.Phase.BEAM_SEARCH, start);
+                return false;
+            }
+            if (trail.length - steps[j] < selection.size) {
+                if ((long) steps[j] + selection.size > MAX_TRAIL) {
+                    throw new IllegalArgumentException("The beam of width " + width + " is too wide for " + n + " orders!");
+                }
+                trail = Arrays.copyOf(trail, (int) Math.min(MAX_TRAIL, 2L * trail.length + selection.size));
+            }
+            advance(beam, selection, next, trail, steps[j]);
+            steps[j + 1] = steps[j] + selection.size;
+            Beam swapped = beam;
+            beam = next;
+            next = swapped;
+        }
+        OptimizerMetrics.global().recordSince(OptimizerMetrics.Phase.BEAM_SEARCH, start);
+
+        // The beam is sorted, so its first assignment is the best one.
+        int[] choices = new int[n];
+        int state = 0;
+        for (int j = n - 1; j >= 0; j--) {
+            int step = trail[steps[j] + state];
+            choices[j] = step & ((1 << OPTION_BITS) - 1);
+            state = step >>> OPTION_BITS;
+        }
+        PaymentPlan plan = new PaymentPlan(n);
+        for (int j = 0; j < n; j++) {
+            buildOptions(j);
+            int k = choices[j];
+            plan.set(j, optionTypes[k], optionCards[k], optionLoads[k], optionFlex[k], optionPoints[k]);
+        }
+        plan.record(orders, cards, cardLimits, pointsMethod, pointsLimit);
+        return true;
+    }
+
+    /**
+     * Indexes the cards and allocates the buffers of the options.
+     *
+     * @throws IllegalArgumentException thrown if the options of an order cannot be numbered in the trail
+     */
+    private void buildModel() throws IllegalArgumentException {
+        CardRegistry registry = new CardRegistry(payments);
+        cards = new PaymentMethod[registry.size()];
+        cardLimits = new long[cards.length];
+        for (int c = 0; c < cards.length; c++) {
+            cards[c] = registry.get(c);
+            cardLimits[c] = Math.max(0, cards[c].getLimit().getCents());
+        }
+        pointsLimit = Math.max(0, pointsMethod.getLimit().getCents());
+
+        // Promotion identifiers are resolved once, so the options of an order are built from indexes only.
+        int n = orders.size();
+        values = new long[n];
+        promotionStarts = new int[n + 1];
+        int[] resolved = new int[16];
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            Order order = orders.get(j);
+            values[j] = order.getValueCents();
+            promotionStarts[j] = count;
+            for (int k = 0; k < order.getPromotionCount(); k++) {
+                int c = registry.indexOf(order.getPromotion(k));
+                if (c < 0 || contains(resolved, promotionStarts[j], count, c)) {
+                    continue;
+                }
+                if (count == resolved.length) {
+                    resolved = Arrays.copyOf(resolved, count * 2);
+                }
+                resolved[count++] = c;
+            }
+        }
+        promotionStarts[n] = count;
+        promotionCards = Arrays.copyOf(resolved, count);
+
+        int maxOptions = 1 + 3 * cards.length;
+        if (maxOptions > 1 << OPTION_BITS) {
+            throw new IllegalArgumentException("Too many payment methods for the beam search: " + cards.length);
+        }
+        optionTypes = new int[maxOptions];
+        optionCards = new int[maxOptions];
+        optionLoads = new long[maxOptions];
+        optionFlex = new long[maxOptions];
+        optionPoints = new long[maxOptions];
+        optionDiscounts = new long[maxOptions];
+
+        cardDueDemand = new long[cards.length];
+        cardDiscountDemand = new long[cards.length];
+        pointsDueDemand = pointsDiscountDemand = 0;
+        for (int j = 0; j < orders.size(); j++) {
+            buildOptions(j);
+            addDemand(1);
+        }
+    }
+
+    /**
+     * Adds the promotions and the full points payment of the current order to the demand of the later orders.
+     *
+     * @param sign 1 to add the order, -1 to remove it
+     */
+    private void addDemand(int sign) {
+        for (int k = 0; k < optionCount; k++) {
+            if (optionTypes[k] == PROMOTION) {
+                cardDueDemand[optionCards[k]] += sign * optionLoads[k];
+                cardDiscountDemand[optionCards[k]] += sign * optionDiscounts[k];
+            }
+            else if (optionTypes[k] == POINTS) {
+                pointsDueDemand += sign * optionPoints[k];
+                pointsDiscountDemand += sign * optionDiscounts[k];
+            }
+        }
+    }
+
+    /**
+     * Estimates the discount the later orders can still get from the remaining limits of an assignment: the share
+     * of the promotions of every card and of full points payments that fits into its remaining limit. The parts of
+     * the cards and the points are kept in {@link #cardShares} and {@link #pointsShares}.
+     *
+     * @param beam the beam
+     * @param p the index of the assignment
+     * @return the estimated discount in cents
+     */
+    private double potential(Beam beam, int p) {
+        double potential = 0;
+        for (int c = 0; c < cards.length; c++) {
+            int at = p * cards.length + c;
+            cardShares[at] = share(cardDiscountDemand[c], cardDueDemand[c], cardLimits[c] - beam.loads[at]);
+            potential += cardShares[at];
+        }
+        pointsShares[p] = share(pointsDiscountDemand, pointsDueDemand, pointsLimit - beam.pointsBase[p] - beam.overflow[p]);
+        return potential + pointsShares[p];
+    }
+
+    /**
+     * Calculates the part of a discount obtained by paying the given share of its due amount.
+     *
+     * @param discount the discount of the whole due amount
+     * @param due the due amount
+     * @param available the amount available to pay for it
+     * @return the obtained part of the discount
+     */
+    private static double share(long discount, long due, long available) {
+        if (available <= 0 || discount == 0) {
+            return 0;
+        }
+        return available >= due ? discount : (double) discount * available / due;
+    }
+
+    /**
+     * Builds the options of an order: full points, its promotional cards, PUNKTY_10 with every card and every card
+     * without a discount. On equal discounts the earlier options are preferred.
+     *
+     * @param j the index of the order
+     */
+    private void buildOptions(int j) {
+        long v = values[j];
+        Money value = Money.ofCents(v);
+        optionCount = 0;
+        if (pointsLimit > 0) {
+            long due = value.applyDiscount(pointsMethod.getDiscount()).getCents();
+            addOption(POINTS, -1, 0, 0, due, v - due);
+        }
+        for (int k = promotionStarts[j]; k < promotionStarts[j + 1]; k++) {
+            int c = promotionCards[k];
+            long due = value.applyDiscount(cards[c].getDiscount()).getCents();
+            addOption(PROMOTION, c, due, 0, 0, v - due);
+        }
+        if (pointsLimit > 0) {
+            long afterDiscount = v - value.percent(POINTS_10_BASIS_POINTS).getCents();
+            long minPoints = (v + 9) / 10;
+            for (int c = 0; c < cards.length; c++) {
+                addOption(POINTS_10, c, afterDiscount - minPoints, afterDiscount - minPoints, minPoints, v - afterDiscount);
+            }
+        }
+        for (int c = 0; c < cards.length; c++) {
+            addOption(CARD, c, v, v, 0, 0);
+        }
+    }
+
+    /**
+     * Checks whether a range of an array contains a value.
+     *
+     * @param array the array
+     * @param from the start of the range
+     * @param to the end of the range
+     * @param value the value
+     * @return true if the value is in the range
+     */
+    private static boolean contains(int[] array, int from, int to, int value) {
+        for (int i = from; i < to; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an option of the current order.
+     *
+     * @param type the option type
+     * @param card the index of the used card, or -1 for full payment with points
+     * @param cardLoad the amount paid by card before any points top-up, in cents
+     * @param flex the part of the card amount that points may take over, in cents
+     * @param points the amount that has to be paid with points, in cents
+     * @param discount the discount obtained, in cents
+     */
+    private void addOption(int type, int card, long cardLoad, long flex, long points, long discount) {
+        int k = optionCount++;
+        optionTypes[k] = type;
+        optionCards[k] = card;
+        optionLoads[k] = cardLoad;
+        optionFlex[k] = flex;
+        optionPoints[k] = points;
+        optionDiscounts[k] = discount;
+    }
+
+    /**
+     * Extends every assignment of the beam with the options of the current order and selects the best extensions,
+     * in parallel chunks if there are many of them.
+     *
+     * @param beam the current beam
+     * @param selections the selections of the chunks, created when first needed
+     * @param merged the selection receiving the merged chunks
+     * @return the selected extensions
+     */
+    private Selection expand(Beam beam, Selection[] selections, Selection merged) {
+        int chunks = (long) beam.size * optionCount >= PARALLEL_CANDIDATES ? Math.min(beam.size, selections.length) : 1;
+        for (int t = 0; t < chunks; t++) {
+            if (selections[t] == null) {
+                selections[t] = new Selection();
+            }
+            selections[t].clear();
+        }
+        if (chunks == 1) {
+            expand(beam, 0, beam.size, selections[0]);
+            return selections[0];
+        }
+        pool.invoke(new ExpandTask(beam, selections, 0, chunks, chunks));
+        merged.clear();
+        for (int t = 0; t < chunks; t++) {
+            Selection selection = selections[t];
+            for (int i = 0; i < selection.size; i++) {
+                merged.offer(selection, i);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Extends a range of assignments of the beam with the options of the current order.
+     *
+     * @param beam the current beam
+     * @param from the first assignment
+     * @param to the end of the range
+     * @param selection the selection receiving the payable extensions
+     */
+    private void expand(Beam beam, int from, int to, Selection selection) {
+        int cardCount = cards.length;
+        for (int p = from; p < to; p++) {
+            for (int k = 0; k < optionCount; k++) {
+                long pointsBase = beam.pointsBase[p] + optionPoints[k];
+                long overflow = beam.overflow[p];
+                long flexTotal = beam.flexTotal[p];
+                double potential = potentials[p] - pointsShares[p];
+                int c = optionCards[k];
+                int at = p * cardCount + c;
+                if (c >= 0) {
+                    long newLoad = beam.loads[at] + optionLoads[k];
+                    long excess = Math.max(0, newLoad - cardLimits[c]);
+                    if (excess > beam.flexes[at] + optionFlex[k]) {
+                        continue;
+                    }
+                    potential += share(cardDiscountDemand[c], cardDueDemand[c], cardLimits[c] - newLoad) - cardShares[at];
+                    overflow += excess - Math.max(0, beam.loads[at] - cardLimits[c]);
+                    flexTotal += optionFlex[k];
+                }
+                if (pointsBase + overflow > pointsLimit) {
+                    continue;
+                }
+                potential += share(pointsDiscountDemand, pointsDueDemand, pointsLimit - pointsBase - overflow);
+                long discount = beam.discount[p] + optionDiscounts[k];
+                double score = discount + potential;
+                long pointsSpent = Math.min(pointsLimit, pointsBase + flexTotal);
+                // Most extensions of a full selection are rejected here, before their wallet is hashed.
+                if (!selection.accepts(score, pointsSpent)) {
+                    continue;
+                }
+                long hash = beam.hash[p];
+                if (c >= 0) {
+                    hash += mix(c, beam.loads[at] + optionLoads[k], beam.flexes[at] + optionFlex[k])
+                            - mix(c, beam.loads[at], beam.flexes[at]);
+                }
+                selection.offer(p, k, discount, score, pointsSpent, pointsBase, overflow, flexTotal, hash);
+            }
+        }
+    }
+
+    /**
+     * Builds the next beam from the selected extensions.
+     *
+     * @param beam the current beam
+     * @param selection the selected extensions
+     * @param next the beam receiving the extensions
+     * @param trail the trail receiving the step: the assignment extended by every new assignment and the chosen option
+     * @param offset the index of the step in the trail
+     */
+    private void advance(Beam beam, Selection selection, Beam next, int[] trail, int offset) {
+        int cardCount = cards.length;
+        for (int i = 0; i < selection.size; i++) {
+            int p = selection.parents[i];
+            int k = selection.options[i];
+            System.arraycopy(beam.loads, p * cardCount, next.loads, i * cardCount, cardCount);
+            System.arraycopy(beam.flexes, p * cardCount, next.flexes, i * cardCount, cardCount);
+            int c = optionCards[k];
+            if (c >= 0) {
+                next.loads[i * cardCount + c] += optionLoads[k];
+                next.flexes[i * cardCount + c] += optionFlex[k];
+            }
+            next.pointsBase[i] = selection.pointsBase[i];
+            next.overflow[i] = selection.overflow[i];
+            next.flexTotal[i] = selection.flexTotal[i];
+            next.discount[i] = selection.discounts[i];
+            next.hash[i] = selection.hashes[i];
+            trail[offset + i] = p << OPTION_BITS | k;
+        }
+        next.size = selection.size;
+    }
+
+    /**
+     * Hashes the load of a card, the hash of a wallet being the sum over its cards.
+     *
+     * @param c the index of the card
+     * @param load the load of the card
+     * @param flex the flexible load of the card
+     * @return the hash
+     */
+    private static long mix(int c, long load, long flex) {
+        long x = load * 0x9E3779B97F4A7C15L + flex * 0xC2B2AE3D27D4EB4FL + (c + 1) * 0x165667B19E3779F9L;
+        x ^= x >>> 31;
+        x *= 0xBF58476D1CE4E5B9L;
+        return x ^ x >>> 29;
+    }
+
+    /**
+     * Partial assignments of a step: a wallet per assignment, the card loads stored row by row.
+     */
+    private static final class Beam {
+        /** Amount charged to every card before points top-ups, {@code cards.length} per assignment */
+        private final long[] loads;
+
+        /** Amount of every card's load that points may take over, {@code cards.length} per assignment */
+        private final long[] flexes;
+
+        /** Points that have to be spent on the chosen options */
+        private final long[] pointsBase;
+
+        /** Sum of the amounts by which card limits are exceeded, which has to be paid with points */
+        private final long[] overflow;
+
+        /** Sum of the flexible loads */
+        private final long[] flexTotal;
+
+        /** Total discount of the decided orders */
+        private final long[] discount;
+
+        /** Hash of the card loads */
+        private final long[] hash;
+
+        /** Number of assignments */
+        private int size;
+
+        private Beam(int width, int cardCount) {
+            loads = new long[width * cardCount];
+            flexes = new long[width * cardCount];
+            pointsBase = new long[width];
+            overflow = new long[width];
+            flexTotal = new long[width];
+            discount = new long[width];
+            hash = new long[width];
+        }
+    }
+
+    /**
+     * Best extensions of a step, sorted by decreasing discount, then points, ties keeping the order of the offers.
+     */
+    private final class Selection {
+        /** Extended assignment of every extension */
+        private final int[] parents = new int[width];
+
+        /** Chosen option of every extension */
+        private final int[] options = new int[width];
+
+        /** Total discount of every extension */
+        private final long[] discounts = new long[width];
+
+        /** Total discount of every extension and the discount estimated for the later orders */
+        private final double[] scores = new double[width];
+
+        /** Amount paid with points by every extension once the remaining points are spent */
+        private final long[] points = new long[width];
+
+        /** Points that have to be spent by every extension */
+        private final long[] pointsBase = new long[width];
+
+        /** Card limit overflow of every extension */
+        private final long[] overflow = new long[width];
+
+        /** Flexible load of every extension */
+        private final long[] flexTotal = new long[width];
+
+        /** Hash of the card loads of every extension */
+        private final long[] hashes = new long[width];
+
+        /** Hashes of the selected wallets in an open-addressing table with linear probing */
+        private final long[] table = new long[Integer.highestOneBit(width) << 2];
+
+        /** Number of selected extensions with the hash in the same slot of the table, 0 for an empty slot */
+        private final int[] counts = new int[table.length];
+
+        /** Number of extensions */
+        private int size;
+
+        /**
+         * Removes all extensions.
+         */
+        private void clear() {
+            size = 0;
+            Arrays.fill(counts, 0);
+        }
+
+        /**
+         * Offers an extension, kept if it is among the best ones and its wallet is not selected yet.
+         */
+        private void offer(int parent, int option, long discount, double score, long pointsSpent, long base, long over,
+                           long flex, long hash) {
+            if (!accepts(score, pointsSpent)) {
+                return;
+            }
+            // The scores of equal wallets may differ in the last bits, so a wallet is looked up by its exact fields.
+            if (counts[slot(hash)] > 0) {
+                for (int i = 0; i < size; i++) {
+                    if (hashes[i] == hash && discounts[i] == discount && points[i] == pointsSpent
+                            && pointsBase[i] == base && overflow[i] == over && flexTotal[i] == flex) {
+                        return;
+                    }
+                }
+            }
+            int position = size;
+            while (position > 0 && isBetter(score, pointsSpent, position - 1)) {
+                position--;
+            }
+            if (size == width) {
+                remove(hashes[width - 1]);
+            }
+            int last = Math.min(size, width - 1);
+            for (int i = last; i > position; i--) {
+                parents[i] = parents[i - 1];
+                options[i] = options[i - 1];
+                discounts[i] = discounts[i - 1];
+                scores[i] = scores[i - 1];
+                points[i] = points[i - 1];
+                pointsBase[i] = pointsBase[i - 1];
+                overflow[i] = overflow[i - 1];
+                flexTotal[i] = flexTotal[i - 1];
+                hashes[i] = hashes[i - 1];
+            }
+            parents[position] = parent;
+            options[position] = option;
+            discounts[position] = discount;
+            scores[position] = score;
+            points[position] = pointsSpent;
+            pointsBase[position] = base;
+            overflow[position] = over;
+            flexTotal[position] = flex;
+            hashes[position] = hash;
+            int slot = slot(hash);
+            table[slot] = hash;
+            counts[slot]++;
+            size = Math.min(size + 1, width);
+        }
+
+        /**
+         * Finds the slot of a hash in the table: its own slot or the empty slot ending its probe sequence.
+         */
+        private int slot(long hash) {
+            int mask = table.length - 1;
+            int i = home(hash);
+            while (counts[i] != 0 && table[i] != hash) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * Returns the first slot probed for a hash.
+         */
+        private int home(long hash) {
+            return (int) (hash ^ hash >>> 32) & (table.length - 1);
+        }
+
+        /**
+         * Removes a hash of an evicted extension, shifting back the hashes probed after it once its slot is empty.
+         */
+        private void remove(long hash) {
+            int mask = table.length - 1;
+            int gap = slot(hash);
+            if (--counts[gap] > 0) {
+                return;
+            }
+            for (int i = (gap + 1) & mask; counts[i] != 0; i = (i + 1) & mask) {
+                if (((i - home(table[i])) & mask) >= ((i - gap) & mask)) {
+                    table[gap] = table[i];
+                    counts[gap] = counts[i];
+                    counts[i] = 0;
+                    gap = i;
+                }
+            }
+        }
+
+        /**
+         * Checks whether an extension would be kept if its wallet is not selected yet.
+         */
+        private boolean accepts(double score, long pointsSpent) {
+            return size < width || isBetter(score, pointsSpent, size - 1);
+        }
+
+        /**
+         * Offers an extension selected by another selection.
+         */
+        private void offer(Selection other, int i) {
+            offer(other.parents[i], other.options[i], other.discounts[i], other.scores[i], other.points[i], other.pointsBase[i],
+                    other.overflow[i], other.flexTotal[i], other.hashes[i]);
+        }
+
+        /**
+         * Compares a result with a selected extension: a higher discount wins, then a higher amount paid with points.
+         */
+        private boolean isBetter(double score, long pointsSpent, int i) {
+            return score != scores[i] ? score > scores[i] : pointsSpent > points[i];
+        }
+    }
+
+    /**
+     * Fork-join task expanding a range of chunks of the beam, split in halves until a single chunk is left.
+     */
+    private final class ExpandTask extends RecursiveAction {
+        /** Beam being expanded */
+        private final Beam beam;
+
+        /** Selections of the chunks */
+        private final Selection[] selections;
+
+        /** First chunk */
+        private final int from;
+
+        /** End of the range of chunks */
+        private final int to;
+
+        /** Number of chunks of the beam */
+        private final int chunks;
+
+        private ExpandTask(Beam beam, Selection[] selections, int from, int to, int chunks) {
+            this.beam = beam;
+            this.selections = selections;
+            this.from = from;
+            this.to = to;
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                expand(beam, (int) ((long) from * beam.size / chunks), (int) ((long) to * beam.size / chunks), selections[from]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ExpandTask(beam, selections, from, middle, chunks), new ExpandTask(beam, selections, middle, to, chunks));
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exact {@link ExpenseSolver} searching all payment assignments with branch and bound.<br>
+ * Every order can be paid:
+ * <ul>
+ *   <li>in full with a card listed in its promotions, with the card's discount</li>
+ *   <li>in full with points, with the points discount</li>
+ *   <li>with PUNKTY_10: at least 10% of the order with points and the rest with any card, with a 10% discount</li>
+ *   <li>with any card without a discount, optionally topped up with points</li>
+ * </ul>
+ * The solver maximizes the total discount and, among assignments with the same discount, the amount paid with points.
+ * For a fixed choice of options the points are distributed in closed form by {@link PaymentPlan}.<br>
+ * Subtrees near the root are searched in parallel on a {@link ForkJoinPool}; the best solution found so far is shared
+ * through an {@link AtomicReference} and used to prune all tasks. The search space grows exponentially with the
+ * number of orders, so the solver is meant for batches of tens of orders.
+ */
+public class BranchAndBoundSolver implements ExpenseSolver {
+    /** Option type: full payment with a promotional card */
+    private static final int PROMOTION = PaymentPlan.PROMOTION;
+
+    /** Option type: full payment with points */
+    private static final int POINTS = PaymentPlan.POINTS;
+
+    /** Option type: PUNKTY_10 with a card paying the rest */
+    private static final int POINTS_10 = PaymentPlan.POINTS_10;
+
+    /** Option type: full payment with a card without a discount */
+    private static final int CARD = PaymentPlan.CARD;
+
+    /** Discount of the PUNKTY_10 method and the minimal share of an order paid with points, in basis points */
+    private static final int POINTS_10_BASIS_POINTS = 1_000;
+
+    /** Depth of the search tree up to which every subtree becomes a separate fork-join task */
+    private static final int FORK_DEPTH = 3;
+
+    /** List of orders to optimize */
+    private final List<Order> orders;
+
+    /** Map of available payment methods (excluding the points method) */
+    private final Map<String, PaymentMethod> payments;
+
+    /** Points payment method (PUNKTY) */
+    private final PaymentMethod pointsMethod;
+
+    /** Pool running the search tasks */
+    private final ForkJoinPool pool;
+
+    /** Best solution found so far */
+    private final AtomicReference<Solution> best = new AtomicReference<>();
+
+    /** Cards in the order of {@link #payments} */
+    private PaymentMethod[] cards;
+
+    /** Limits of the cards in cents */
+    private long[] cardLimits;
+
+    /** Points limit in cents */
+    private long pointsLimit;
+
+    /** Options of every order, sorted by decreasing discount */
+    private Option[][] options;
+
+    /** Promotional options of every order, used by the bound */
+    private Option[][] promotionOptions;
+
+    /** Full points option of every order, or null */
+    private Option[] pointsOptions;
+
+    /** Any PUNKTY_10 option of every order, or null */
+    private Option[] points10Options;
+
+    /** Sum of the values of orders from the given position to the end, in cents */
+    private long[] remainingValues;
+
+    /** Index of the last order listing every card as a promotion, or -1 */
+    private int[] lastPromotion;
+
+    /** Highest ratio of discount to paid amount among the promotional options of every card */
+    private double[] cardRatios;
+
+    /**
+     * Constructor for the BranchAndBoundSolver class, using the common fork-join pool.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     */
+    public BranchAndBoundSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        this(orders, payments, pointsMethod, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the BranchAndBoundSolver class.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     * @param pool the pool running the search
+     */
+    public BranchAndBoundSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod, ForkJoinPool pool) {
+        this.orders = orders;
+        this.payments = payments;
+        this.pointsMethod = pointsMethod;
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the optimal assignment and records it in the orders and payment methods.
+     * Nothing is recorded if no valid assignment exists.
+     *
+     * @return true if a valid assignment exists, false otherwise
+     * @throws IllegalArgumentException thrown if an order has a negative value
+     */
+    @Override
+    public boolean optimize() throws IllegalArgumentException {
+        orders.sort(Comparator.comparing(Order::getValue).reversed());
+        buildModel();
+
+        SearchState root = new SearchState(cards.length, orders.size());
+        pool.invoke(new SearchTask(root, 0));
+
+        Solution solution = best.get();
+        if (solution == null) {
+            return false;
+        }
+        record(solution);
+        return true;
+    }
+
+    /**
+     * Builds the payment options of every order.
+     *
+     * @throws IllegalArgumentException thrown if an order has a negative value
+     */
+    private void buildModel() throws IllegalArgumentException {
+        cards = payments.values().toArray(new PaymentMethod[0]);
+        cardLimits = new long[cards.length];
+        for (int c = 0; c < cards.length; c++) {
+            cardLimits[c] = Math.max(0, cards[c].getLimit().getCents());
+        }
+        pointsLimit = Math.max(0, pointsMethod.getLimit().getCents());
+        boolean pointsEnabled = pointsLimit > 0;
+
+        int n = orders.size();
+        options = new Option[n][];
+        promotionOptions = new Option[n][];
+        pointsOptions = new Option[n];
+        points10Options = new Option[n];
+        remainingValues = new long[n + 1];
+        lastPromotion = new int[cards.length];
+        Arrays.fill(lastPromotion, -1);
+        cardRatios = new double[cards.length];
+
+        for (int j = n - 1; j >= 0; j--) {
+            Order order = orders.get(j);
+            Money value = order.getValue();
+            long v = value.getCents();
+            if (v < 0) {
+                throw new IllegalArgumentException("The value of order " + order.getId() + " cannot be a negative number!");
+            }
+            remainingValues[j] = remainingValues[j + 1] + v;
+
+            List<Option> orderOptions = new ArrayList<>();
+            if (pointsEnabled) {
+                long due = value.applyDiscount(pointsMethod.getDiscount()).getCents();
+                pointsOptions[j] = new Option(POINTS, -1, 0, 0, due, v - due);
+                orderOptions.add(pointsOptions[j]);
+            }
+
+            List<Option> promotions = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (String s : order.getPromotions()) {
+                if (!seen.add(s) || !payments.containsKey(s)) {
+                    continue;
+                }
+                int c = indexOf(payments.get(s));
+                lastPromotion[c] = Math.max(lastPromotion[c], j);
+                long due = value.applyDiscount(cards[c].getDiscount()).getCents();
+                promotions.add(new Option(PROMOTION, c, due, 0, 0, v - due));
+                double ratio = due > 0 ? (double) (v - due) / due : (v > 0 ? Double.POSITIVE_INFINITY : 0);
+                cardRatios[c] = Math.max(cardRatios[c], ratio);
+            }
+            promotionOptions[j] = promotions.toArray(new Option[0]);
+            orderOptions.addAll(promotions);
+
+            long afterDiscount = v - value.percent(POINTS_10_BASIS_POINTS).getCents();
+            long minPoints = (v + 9) / 10;
+            for (int c = 0; c < cards.length && pointsEnabled; c++) {
+                points10Options[j] = new Option(POINTS_10, c, afterDiscount - minPoints, afterDiscount - minPoints, minPoints, v - afterDiscount);
+                orderOptions.add(points10Options[j]);
+            }
+            for (int c = 0; c < cards.length; c++) {
+                orderOptions.add(new Option(CARD, c, v, v, 0, 0));
+            }
+
+            // Stable sort: on equal discounts points come first, then promotional cards.
+            orderOptions.sort(Comparator.comparingLong((Option o) -> o.discount).reversed());
+            options[j] = orderOptions.toArray(new Option[0]);
+        }
+    }
+
+    /**
+     * Finds the position of a card in {@link #cards}.
+     *
+     * @param pm the card
+     * @return the index of the card
+     */
+    private int indexOf(PaymentMethod pm) {
+        for (int c = 0; c < cards.length; c++) {
+            if (cards[c] == pm) {
+                return c;
+            }
+        }
+        throw new IllegalStateException("Unknown payment method " + pm.getId());
+    }
+
+    /**
+     * Depth-first search of a subtree.
+     *
+     * @param s the state of the search
+     * @param depth the index of the next order to decide
+     */
+    private void search(SearchState s, int depth) {
+        if (depth == options.length) {
+            offer(s);
+            return;
+        }
+        if (!isPromising(s, depth)) {
+            return;
+        }
+        Option[] orderOptions = options[depth];
+        for (int k = 0; k < orderOptions.length; k++) {
+            if (isSymmetric(s, depth, orderOptions[k])) {
+                continue;
+            }
+            if (s.apply(orderOptions[k])) {
+                s.choices[depth] = k;
+                search(s, depth + 1);
+            }
+            s.undo(orderOptions[k]);
+        }
+    }
+
+    /**
+     * Checks whether a non-promotional option uses a card interchangeable with an earlier card: both have the same
+     * limit, load and flexible load, and no remaining order lists either of them as a promotion. Such options lead
+     * to symmetric subtrees, so only the one with the earlier card is searched.
+     *
+     * @param s the state of the search
+     * @param depth the index of the order being decided
+     * @param option the option to check
+     * @return true if the option can be skipped
+     */
+    private boolean isSymmetric(SearchState s, int depth, Option option) {
+        if (option.type == PROMOTION || option.type == POINTS || lastPromotion[option.card] > depth) {
+            return false;
+        }
+        int c = option.card;
+        for (int other = 0; other < c; other++) {
+            if (lastPromotion[other] <= depth && cardLimits[other] == cardLimits[c]
+                    && s.load[other] == s.load[c] && s.flex[other] == s.flex[c]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the subtree can contain a solution better than the best one found so far.<br>
+     * The discount of the remaining orders is bounded in two ways and the smaller bound is used:
+     * <ul>
+     *   <li>every order gets its best promotional card that still fits (counting the loads that points could take
+     *   over), plus the extra gain of a points option, with the total points gain capped by the best gain per point
+     *   times the remaining points</li>
+     *   <li>promotional discounts are capped per card by its remaining capacity times the best discount per paid
+     *   cent on that card, and points discounts by the remaining points times the best discount per point</li>
+     * </ul>
+     *
+     * @param s the state of the search
+     * @param depth the index of the next order to decide
+     * @return false if the subtree can be pruned
+     */
+    private boolean isPromising(SearchState s, int depth) {
+        Solution incumbent = best.get();
+        if (incumbent == null) {
+            return true;
+        }
+        long remainingPoints = pointsLimit - s.pointsBase - s.overflow;
+        long orderBound = 0;
+        long pointsGain = 0;
+        double gainRatio = 0;
+        long cardDiscounts = 0;
+        long pointsDiscounts = 0;
+        double pointsRatio = 0;
+        for (int j = depth; j < options.length; j++) {
+            long cardDiscount = 0;
+            for (Option option : promotionOptions[j]) {
+                if (option.discount > cardDiscount && option.cardLoad <= capacity(s, option.card)) {
+                    cardDiscount = option.discount;
+                }
+            }
+            orderBound += cardDiscount;
+            cardDiscounts += cardDiscount;
+
+            Option full = pointsOptions[j];
+            Option partial = points10Options[j];
+            boolean fullFits = full != null && full.points <= remainingPoints;
+            boolean partialFits = partial != null && partial.points <= remainingPoints;
+            long pointsDiscount = Math.max(fullFits ? full.discount : 0, partialFits ? partial.discount : 0);
+            if (pointsDiscount == 0) {
+                continue;
+            }
+            // The larger discount is combined with the smaller cost, which can only overestimate.
+            long cost = Math.min(fullFits ? full.points : Long.MAX_VALUE, partialFits ? partial.points : Long.MAX_VALUE);
+            if (cost == 0) {
+                orderBound += Math.max(0, pointsDiscount - cardDiscount);
+                cardDiscounts += pointsDiscount;
+                continue;
+            }
+            pointsDiscounts += pointsDiscount;
+            pointsRatio = Math.max(pointsRatio, (double) pointsDiscount / cost);
+            if (pointsDiscount > cardDiscount) {
+                pointsGain += pointsDiscount - cardDiscount;
+                gainRatio = Math.max(gainRatio, (double) (pointsDiscount - cardDiscount) / cost);
+            }
+        }
+        orderBound += Math.min(pointsGain, ceil(remainingPoints * gainRatio));
+
+        long capacityBound = 0;
+        for (int c = 0; c < cards.length && capacityBound < cardDiscounts; c++) {
+            if (lastPromotion[c] >= depth) {
+                capacityBound += ceil(capacity(s, c) * cardRatios[c]);
+            }
+        }
+        capacityBound = Math.min(cardDiscounts, capacityBound) + Math.min(pointsDiscounts, ceil(remainingPoints * pointsRatio));
+
+        long bound = s.discount + Math.min(orderBound, capacityBound);
+        if (bound != incumbent.discount) {
+            return bound > incumbent.discount;
+        }
+        long pointsBound = Math.min(pointsLimit, s.pointsBase + s.flexTotal + remainingValues[depth]);
+        return pointsBound > incumbent.points;
+    }
+
+    /**
+     * Calculates the capacity of a card available for new full payments, assuming points take over all flexible loads.
+     *
+     * @param s the state of the search
+     * @param c the index of the card
+     * @return the capacity in cents
+     */
+    private long capacity(SearchState s, int c) {
+        return Math.max(0, cardLimits[c] - s.load[c] + s.flex[c]);
+    }
+
+    /**
+     * Rounds an estimate up to a whole number of cents, with a margin for floating point errors.
+     *
+     * @param estimate the estimate
+     * @return the rounded estimate, saturated at {@link Long#MAX_VALUE} / 4
+     */
+    private static long ceil(double estimate) {
+        return (long) Math.min(Math.ceil(estimate) + 1, Long.MAX_VALUE / 4);
+    }
+
+    /**
+     * Offers a complete assignment as the new best solution.
+     *
+     * @param s the state of the search with all orders decided
+     */
+    private void offer(SearchState s) {
+        long points = Math.min(pointsLimit, s.pointsBase + s.flexTotal);
+        Solution incumbent = best.get();
+        if (incumbent != null && !Solution.isBetter(s.discount, points, incumbent)) {
+            return;
+        }
+        Solution candidate = new Solution(s.discount, points, s.choices.clone());
+        best.accumulateAndGet(candidate, (current, offered) ->
+                current == null || Solution.isBetter(offered.discount, offered.points, current) ? offered : current);
+    }
+
+    /**
+     * Records the solution in the orders and payment methods.
+     *
+     * @param solution the solution to record
+     */
+    private void record(Solution solution) {
+        PaymentPlan plan = new PaymentPlan(orders.size());
+        for (int j = 0; j < orders.size(); j++) {
+            Option option = options[j][solution.choices[j]];
+            plan.set(j, option.type, option.card, option.cardLoad, option.flex, option.points);
+        }
+        plan.record(orders, cards, cardLimits, pointsMethod, pointsLimit);
+    }
+
+    /**
+     * Payment option of a single order.
+     *
+     * @param type the option type
+     * @param card the index of the used card, or -1 for full payment with points
+     * @param cardLoad the amount paid by card before any points top-up, in cents
+     * @param flex the part of the card amount that points may take over, in cents
+     * @param points the amount that has to be paid with points, in cents
+     * @param discount the discount obtained, in cents
+     */
+    private record Option(int type, int card, long cardLoad, long flex, long points, long discount) {}
+
+    /**
+     * Complete assignment of options to orders.
+     *
+     * @param discount the total discount in cents
+     * @param points the total amount paid with points in cents
+     * @param choices the index of the chosen option of every order
+     */
+    private record Solution(long discount, long points, int[] choices) {
+        /**
+         * Compares a result with a solution: a higher discount wins, then a higher amount paid with points.
+         */
+        private static boolean isBetter(long discount, long points, Solution other) {
+            return discount != other.discount ? discount > other.discount : points > other.points;
+        }
+    }
+
+    /**
+     * Mutable state of the search: card loads, the points budget and the chosen options.
+     */
+    private final class SearchState {
+        /** Amount charged to every card before points top-ups */
+        private final long[] load;
+
+        /** Amount of every card's load that points may take over */
+        private final long[] flex;
+
+        /** Chosen option of every decided order */
+        private final int[] choices;
+
+        /** Points that have to be spent on the chosen options */
+        private long pointsBase;
+
+        /** Sum of the amounts by which card limits are exceeded, which has to be paid with points */
+        private long overflow;
+
+        /** Sum of {@link #flex} */
+        private long flexTotal;
+
+        /** Total discount of the decided orders */
+        private long discount;
+
+        private SearchState(int cardCount, int orderCount) {
+            load = new long[cardCount];
+            flex = new long[cardCount];
+            choices = new int[orderCount];
+        }
+
+        private SearchState(SearchState other) {
+            load = other.load.clone();
+            flex = other.flex.clone();
+            choices = other.choices.clone();
+            pointsBase = other.pointsBase;
+            overflow = other.overflow;
+            flexTotal = other.flexTotal;
+            discount = other.discount;
+        }
+
+        /**
+         * Applies an option and checks that the partial assignment can still be paid.
+         *
+         * @param option the option to apply
+         * @return true if the partial assignment is feasible
+         */
+        private boolean apply(Option option) {
+            change(option, 1);
+            boolean cardFits = option.card < 0 || excess(option.card) <= flex[option.card];
+            return cardFits && pointsBase + overflow <= pointsLimit;
+        }
+
+        /**
+         * Reverts an applied option.
+         *
+         * @param option the option to revert
+         */
+        private void undo(Option option) {
+            change(option, -1);
+        }
+
+        private void change(Option option, int sign) {
+            pointsBase += sign * option.points;
+            discount += sign * option.discount;
+            if (option.card >= 0) {
+                int c = option.card;
+                long before = excess(c);
+                load[c] += sign * option.cardLoad;
+                flex[c] += sign * option.flex;
+                flexTotal += sign * option.flex;
+                overflow += excess(c) - before;
+            }
+        }
+
+        /**
+         * Calculates by how much the load of a card exceeds its limit.
+         */
+        private long excess(int c) {
+            return Math.max(0, load[c] - cardLimits[c]);
+        }
+    }
+
+    /**
+     * Fork-join task searching a subtree; tasks close to the root fork a task for every feasible option.
+     */
+    private final class SearchTask extends RecursiveAction {
+        /** SearchState of the search, owned by this task */
+        private final SearchState state;
+
+        /** Index of the next order to decide */
+        private final int depth;
+
+        private SearchTask(SearchState state, int depth) {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth >= FORK_DEPTH || depth == options.length) {
+                search(state, depth);
+                return;
+            }
+            if (!isPromising(state, depth)) {
+                return;
+            }
+            List<SearchTask> tasks = new ArrayList<>();
+            Option[] orderOptions = options[depth];
+            for (int k = 0; k < orderOptions.length; k++) {
+                if (isSymmetric(state, depth, orderOptions[k])) {
+                    continue;
+                }
+                if (state.apply(orderOptions[k])) {
+                    SearchState child = new SearchState(state);
+                    child.choices[depth] = k;
+                    tasks.add(new SearchTask(child, depth + 1));
+                }
+                state.undo(orderOptions[k]);
+            }
+            invokeAll(tasks);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ocado.optimization;
+
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the card parts of the orders paid with PUNKTY_10 that points may still replace, the most recent last.<br>
+ * The parts are kept in parallel arrays which are cleared but not released between runs, so an optimizer reused for
+ * inputs of a similar size records its parts without creating any objects.
+ */
+final class CardParts {
+    /** Cards of the parts */
+    private PaymentMethod[] cards = new PaymentMethod[16];
+
+    /** Amounts still paid with the cards, in cents */
+    private long[] amounts = new long[16];
+
+    /** Order identifiers of the parts, only kept for a {@link PaymentListener} */
+    private String[] orderIds = new String[16];
+
+    /** Orders of the parts whose charges follow the moves to points, null for the others */
+    private Order[] orders = new Order[16];
+
+    /** Number of parts */
+    private int size;
+
+    /**
+     * Adds a part on top of the stack.
+     *
+     * @param card the card
+     * @param amount the amount paid with the card in cents
+     * @param orderId the order identifier, or null
+     * @param order the order whose charges follow the moves to points, or null
+     */
+    void add(PaymentMethod card, long amount, String orderId, Order order) {
+        if (size == cards.length) {
+            cards = Arrays.copyOf(cards, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+            orderIds = Arrays.copyOf(orderIds, size * 2);
+            orders = Arrays.copyOf(orders, size * 2);
+        }
+        cards[size] = card;
+        amounts[size] = amount;
+        orderIds[size] = orderId;
+        orders[size] = order;
+        size++;
+    }
+
+    /**
+     * Returns the number of parts.
+     *
+     * @return the number of parts
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether there are no parts.
+     *
+     * @return true if the stack is empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the card of a part.
+     *
+     * @param i the position of the part, 0 for the oldest one
+     * @return the card
+     */
+    PaymentMethod card(int i) {
+        return cards[i];
+    }
+
+    /**
+     * Returns the amount still paid with the card of a part.
+     *
+     * @param i the position of the part, 0 for the oldest one
+     * @return the amount in cents
+     */
+    long amount(int i) {
+        return amounts[i];
+    }
+
+    /**
+     * Returns the order identifier of a part.
+     *
+     * @param i the position of the part, 0 for the oldest one
+     * @return the order identifier, or null
+     */
+    String orderId(int i) {
+        return orderIds[i];
+    }
+
+    /**
+     * Returns the order of a part whose charges follow the moves to points.
+     *
+     * @param i the position of the part, 0 for the oldest one
+     * @return the order, or null
+     */
+    Order order(int i) {
+        return orders[i];
+    }
+
+    /**
+     * Changes the amount still paid with the card of the most recent part.
+     *
+     * @param amount the new amount in cents
+     */
+    void setLastAmount(long amount) {
+        amounts[size - 1] = amount;
+    }
+
+    /**
+     * Removes the most recent part.
+     */
+    void removeLast() {
+        size--;
+        cards[size] = null;
+        orderIds[size] = null;
+        orders[size] = null;
+    }
+
+    /**
+     * Removes all parts, keeping the arrays for the next run.
+     */
+    void clear() {
+        Arrays.fill(cards, 0, size, null);
+        Arrays.fill(orderIds, 0, size, null);
+        Arrays.fill(orders, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,455 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * {@link ExpenseSolver} splitting the orders into independent components solved in parallel by {@link ExpenseOptimizer}.<br>
+ * Orders only interact through the payment methods they share. A union-find over the orders and the cards listed
+ * in their promotions groups them into components whose promotional cards are disjoint; the orders without any
+ * promotion form one more component. Every component is then solved by its own greedy optimizer on copies of the
+ * payment methods, in parallel on a {@link ForkJoinPool}:
+ * <ul>
+ *   <li>a promotional card belongs to its component only, with its whole limit</li>
+ *   <li>the points and the fallback cards, which no order lists as a promotion, are shared: their limits are split
+ *   between the components in proportion to the value of their orders</li>
+ * </ul>
+ * A coordination step then adds the spending of the copies to the payment methods and spends the points left by all
+ * components on the card parts of their PUNKTY_10 payments, like the greedy algorithm does at the end of a run.<br>
+ * Splitting the shared limits may leave a component unable to pay for its orders while the whole input could be paid,
+ * typically the component of the orders without promotions, which may only use the fallback cards. The components
+ * that could not be paid are then solved again together, sequentially, with everything the paid components left:
+ * the unused parts of their shares and of their promotional cards. Only if this fails as well the solver falls back
+ * to a single greedy run over all orders, so it never fails where {@link ExpenseOptimizer} succeeds. The result may
+ * differ from the single run, as every component sees only its share of the points and the fallback cards.
+ */
+public class DecomposingSolver implements ExpenseSolver {
+    /** List of orders to optimize */
+    private final List<Order> orders;
+
+    /** Map of available payment methods (excluding the points method) */
+    private final Map<String, PaymentMethod> payments;
+
+    /** Points payment method (PUNKTY) */
+    private final PaymentMethod pointsMethod;
+
+    /** Pool solving the components */
+    private final ForkJoinPool pool;
+
+    /** Number of components of the last run */
+    private int componentCount;
+
+    /** Number of components of the last run solved again with the limits left by the others */
+    private int retriedCount;
+
+    /** Whether the last run fell back to a single greedy run */
+    private boolean fellBack;
+
+    /**
+     * Orders of a component and the copies of the payment methods they are paid with.
+     *
+     * @param orders the orders of the component
+     * @param payments the copies of the promotional cards of the component and of the fallback cards
+     * @param promotions the identifiers of the promotional cards of the component
+     * @param pointsMethod the copy of the points method with the share of the component
+     */
+    private record Component(List<Order> orders, Map<String, PaymentMethod> payments, Set<String> promotions,
+                             PaymentMethod pointsMethod) {}
+
+    /**
+     * Original of a copied payment method.
+     *
+     * @param original the original payment method
+     * @param ordersAmount the number of orders the copy was promoted in when it was created
+     */
+    private record Copy(PaymentMethod original, int ordersAmount) {}
+
+    /**
+     * Constructor for the DecomposingSolver class, using the common fork-join pool.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     */
+    public DecomposingSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        this(orders, payments, pointsMethod, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the DecomposingSolver class.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     * @param pool the pool solving the components
+     */
+    public DecomposingSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod, ForkJoinPool pool) {
+        this.orders = orders;
+        this.payments = payments;
+        this.pointsMethod = pointsMethod;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the number of components of the last run.
+     *
+     * @return the number of components
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the number of components of the last run that could not be paid with their shares of the shared
+     * limits and were solved again with the limits left by the others.
+     *
+     * @return the number of retried components
+     */
+    public int getRetriedCount() {
+        return retriedCount;
+    }
+
+    /**
+     * Returns whether the last run fell back to a single greedy run over all orders.
+     *
+     * @return true if the components could not be paid separately
+     */
+    public boolean hasFallenBack() {
+        return fellBack;
+    }
+
+    /**
+     * Solves the components in parallel and merges their results, or runs the greedy algorithm over all orders if
+     * there is a single component or a component cannot be paid.
+     *
+     * @return true if all orders were paid, false otherwise
+     * @throws IllegalArgumentException propagated from {@link ExpenseOptimizer}
+     */
+    @Override
+    public boolean optimize() throws IllegalArgumentException {
+        fellBack = false;
+        retriedCount = 0;
+        List<List<Order>> groups = findComponents();
+        componentCount = groups.size();
+        if (groups.size() <= 1) {
+            return new ExpenseOptimizer(orders, payments, pointsMethod).optimize();
+        }
+
+        Map<PaymentMethod, Copy> copies = new IdentityHashMap<>();
+        List<Component> components = split(groups, copies);
+        List<ExpenseOptimizer> optimizers = new ArrayList<>();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Component component : components) {
+            ExpenseOptimizer optimizer = new ExpenseOptimizer(component.orders(), component.payments(), component.pointsMethod());
+            optimizer.setSpendingRemainingPoints(false);
+            optimizers.add(optimizer);
+            results.add(pool.submit(optimizer::optimize));
+        }
+        List<Component> unpaid = new ArrayList<>();
+        for (int g = 0; g < results.size(); g++) {
+            if (!await(results.get(g))) {
+                unpaid.add(components.get(g));
+                optimizers.set(g, null);
+            }
+        }
+
+        retriedCount = unpaid.size();
+        if (!unpaid.isEmpty()) {
+            ExpenseOptimizer retry = retry(unpaid, copies);
+            if (retry == null) {
+                // The payment methods were not changed yet, only the orders record the payments of the components.
+                fellBack = true;
+                for (Order order : orders) {
+                    order.clearPayments();
+                }
+                return new ExpenseOptimizer(orders, payments, pointsMethod).optimize();
+            }
+            optimizers.add(retry);
+        }
+
+        for (Map.Entry<PaymentMethod, Copy> entry : copies.entrySet()) {
+            PaymentMethod copy = entry.getKey();
+            PaymentMethod original = entry.getValue().original();
+            original.setSpending(original.getSpending().add(copy.getSpending()));
+            original.setLimit(original.getLimit().subtract(copy.getSpending()));
+            original.setOrdersAmount(original.getOrdersAmount() + copy.getOrdersAmount() - entry.getValue().ordersAmount());
+        }
+
+        // The points left by all components replace card payments, the most recent ones of the last component first.
+        ExpenseOptimizer coordinator = new ExpenseOptimizer(orders, payments, pointsMethod);
+        for (ExpenseOptimizer optimizer : optimizers) {
+            if (optimizer == null) {
+                continue;
+            }
+            CardParts parts = optimizer.getCardParts();
+            for (int i = 0; i < parts.size(); i++) {
+                coordinator.getCardParts().add(copies.get(parts.card(i)).original(), parts.amount(i), null, parts.order(i));
+            }
+        }
+        if (pointsMethod.getLimit().compareTo(Money.ZERO) > 0) {
+            coordinator.spentRemainingPoints();
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the result of a component.
+     *
+     * @param result the result of the optimizer of the component
+     * @return true if all orders of the component were paid
+     * @throws IllegalArgumentException propagated from {@link ExpenseOptimizer}
+     */
+    private static boolean await(Future<Boolean> result) throws IllegalArgumentException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving the components", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Solves the components that could not be paid with their shares again, in a single greedy run with everything
+     * the paid components left: the whole limits of their own promotional cards and what remains of the points and
+     * of all other cards.
+     *
+     * @param unpaid the components that could not be paid
+     * @param copies the copies of the payment methods, from which the copies of the unpaid components are removed
+     *               and to which the copies of the run are added
+     * @return the optimizer of the run, or null if it could not pay the orders either
+     * @throws IllegalArgumentException propagated from {@link ExpenseOptimizer}
+     */
+    private ExpenseOptimizer retry(List<Component> unpaid, Map<PaymentMethod, Copy> copies) throws IllegalArgumentException {
+        List<Order> retryOrders = new ArrayList<>();
+        Set<String> promotions = new HashSet<>();
+        for (Component component : unpaid) {
+            for (Order order : component.orders()) {
+                order.clearPayments();
+                retryOrders.add(order);
+            }
+            for (PaymentMethod copy : component.payments().values()) {
+                copies.remove(copy);
+            }
+            copies.remove(component.pointsMethod());
+            promotions.addAll(component.promotions());
+        }
+
+        Map<PaymentMethod, Money> spent = new IdentityHashMap<>();
+        for (Map.Entry<PaymentMethod, Copy> entry : copies.entrySet()) {
+            spent.merge(entry.getValue().original(), entry.getKey().getSpending(), Money::add);
+        }
+        Map<String, PaymentMethod> retryPayments = new HashMap<>();
+        for (PaymentMethod pm : payments.values()) {
+            PaymentMethod copy = copy(pm, pm.getLimit().subtract(spent.getOrDefault(pm, Money.ZERO)), copies);
+            // Only the promotions of the retried orders are still counted.
+            if (!promotions.contains(pm.getId())) {
+                copies.put(copy, new Copy(pm, 0));
+                copy.setOrdersAmount(0);
+            }
+            retryPayments.put(pm.getId(), copy);
+        }
+        PaymentMethod retryPoints = copy(pointsMethod, pointsMethod.getLimit().subtract(spent.getOrDefault(pointsMethod, Money.ZERO)), copies);
+
+        ExpenseOptimizer optimizer = new ExpenseOptimizer(retryOrders, retryPayments, retryPoints);
+        optimizer.setSpendingRemainingPoints(false);
+        return optimizer.optimize() ? optimizer : null;
+    }
+
+    /**
+     * Groups the orders into components with a union-find over the orders and the cards listed in their promotions.
+     * The orders without a promotional card form the last component.
+     *
+     * @return the orders of every component, in the order of the list
+     */
+    private List<List<Order>> findComponents() {
+        Map<String, Integer> cardIndexes = new HashMap<>();
+        for (String id : payments.keySet()) {
+            cardIndexes.put(id, cardIndexes.size());
+        }
+        int n = orders.size();
+        int[] parent = new int[n + cardIndexes.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        boolean[] promoted = new boolean[n];
+        for (int j = 0; j < n; j++) {
+            for (String promotion : orders.get(j).getPromotions()) {
+                Integer c = cardIndexes.get(promotion);
+                if (c != null) {
+                    promoted[j] = true;
+                    union(parent, j, n + c);
+                }
+            }
+        }
+
+        Map<Integer, List<Order>> byRoot = new LinkedHashMap<>();
+        List<Order> unpromoted = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            if (promoted[j]) {
+                byRoot.computeIfAbsent(find(parent, j), root -> new ArrayList<>()).add(orders.get(j));
+            }
+            else {
+                unpromoted.add(orders.get(j));
+            }
+        }
+        List<List<Order>> groups = new ArrayList<>(byRoot.values());
+        if (!unpromoted.isEmpty()) {
+            groups.add(unpromoted);
+        }
+        return groups;
+    }
+
+    /**
+     * Creates the components with the copies of the payment methods and their shares of the shared limits.
+     *
+     * @param groups the orders of every component
+     * @param copies receives the original payment method of every copy
+     * @return the components
+     */
+    private List<Component> split(List<List<Order>> groups, Map<PaymentMethod, Copy> copies) {
+        long[] weights = new long[groups.size()];
+        Set<String> promoted = new HashSet<>();
+        List<Map<String, PaymentMethod>> componentPayments = new ArrayList<>();
+        for (int g = 0; g < groups.size(); g++) {
+            Map<String, PaymentMethod> componentMethods = new HashMap<>();
+            for (Order order : groups.get(g)) {
+                weights[g] += order.getValue().getCents();
+                for (String promotion : order.getPromotions()) {
+                    PaymentMethod pm = payments.get(promotion);
+                    if (pm != null && !componentMethods.containsKey(promotion)) {
+                        componentMethods.put(promotion, copy(pm, pm.getLimit(), copies));
+                        promoted.add(promotion);
+                    }
+                }
+            }
+            componentPayments.add(componentMethods);
+        }
+
+        for (PaymentMethod pm : payments.values()) {
+            if (!promoted.contains(pm.getId())) {
+                long[] shares = share(pm.getLimit(), weights);
+                for (int g = 0; g < groups.size(); g++) {
+                    componentPayments.get(g).put(pm.getId(), copy(pm, Money.ofCents(shares[g]), copies));
+                }
+            }
+        }
+        long[] pointsShares = share(pointsMethod.getLimit(), weights);
+        List<Component> components = new ArrayList<>();
+        for (int g = 0; g < groups.size(); g++) {
+            Set<String> componentPromotions = new HashSet<>(componentPayments.get(g).keySet());
+            componentPromotions.retainAll(promoted);
+            components.add(new Component(groups.get(g), componentPayments.get(g), componentPromotions,
+                    copy(pointsMethod, Money.ofCents(pointsShares[g]), copies)));
+        }
+        return components;
+    }
+
+    /**
+     * Splits a limit in proportion to the weights, with the largest remainder method, so the shares add up to
+     * the limit exactly. A limit that is not positive is given to every component unchanged.
+     *
+     * @param limit the limit
+     * @param weights the weights of the components
+     * @return the shares in cents
+     */
+    static long[] share(Money limit, long[] weights) {
+        long total = limit.getCents();
+        long[] shares = new long[weights.length];
+        BigInteger weightSum = BigInteger.ZERO;
+        for (long weight : weights) {
+            weightSum = weightSum.add(BigInteger.valueOf(weight));
+        }
+        if (total <= 0 || weightSum.signum() == 0) {
+            Arrays.fill(shares, total <= 0 ? total : 0);
+            shares[0] = total;
+            return shares;
+        }
+        long assigned = 0;
+        long[] remainders = new long[weights.length];
+        for (int g = 0; g < weights.length; g++) {
+            // The product of two amounts in cents may not fit in a long.
+            BigInteger[] quotientAndRemainder = BigInteger.valueOf(total).multiply(BigInteger.valueOf(weights[g]))
+                    .divideAndRemainder(weightSum);
+            shares[g] = quotientAndRemainder[0].longValueExact();
+            remainders[g] = quotientAndRemainder[1].longValueExact();
+            assigned += shares[g];
+        }
+        // Fewer cents than components are left, and they go to the largest remainders.
+        Integer[] byRemainder = new Integer[weights.length];
+        for (int g = 0; g < byRemainder.length; g++) {
+            byRemainder[g] = g;
+        }
+        Arrays.sort(byRemainder, (a, b) -> Long.compare(remainders[b], remainders[a]));
+        for (int k = 0; k < total - assigned; k++) {
+            shares[byRemainder[k]]++;
+        }
+        return shares;
+    }
+
+    /**
+     * Copies a payment method with another limit and remembers its original.
+     *
+     * @param pm the payment method
+     * @param limit the limit of the copy
+     * @param copies receives the original of the copy
+     * @return the copy
+     */
+    private static PaymentMethod copy(PaymentMethod pm, Money limit, Map<PaymentMethod, Copy> copies) {
+        PaymentMethod copy = new PaymentMethod(pm.getId(), "0", "0.00");
+        copy.setDiscount(pm.getDiscount());
+        copy.setLimit(limit);
+        copy.setOrdersAmount(pm.getOrdersAmount());
+        copies.put(copy, new Copy(pm, pm.getOrdersAmount()));
+        return copy;
+    }
+
+    /**
+     * Finds the root of an element, halving the path.
+     *
+     * @param parent the parents of the elements
+     * @param i the element
+     * @return the root
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Joins the sets of two elements.
+     *
+     * @param parent the parents of the elements
+     * @param a the first element
+     * @param b the second element
+     */
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[rootA] = rootB;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package ocado.optimization;
+
+import ocado.model.CardRegistry;
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Upper bound of the total discount any solver can achieve, used to report how far a result may be from optimal.<br>
+ * Every order has the payment options the solvers apply: a card of its promotions, any card at the card's own
+ * discount like {@link ExpenseOptimizer} pays orders without a suitable promotion, full points, and PUNKTY_10 with the
+ * rest on any card. The bound is the Lagrangian relaxation of the card limits and the points budget: every cent of load
+ * on card {@code c} costs {@code λc} and every point {@code μ}, and the limits are paid back in advance, so
+ * <pre>
+ * L(λ, μ) = Σc λc·limit(c) + μ·points + Σj max over the options of order j (discount - λ·card load - μ·points used)
+ * </pre>
+ * is at least the optimal discount for any non-negative multipliers. Starting from zero multipliers, which gives the
+ * sum of the best discount of every order, a number of subgradient steps lowers the multipliers of the cards
+ * and points with spare capacity and raises those of the overloaded ones. Every step is a single pass over the
+ * options, whose amounts due with the promotions are calculated once, and the number of steps shrinks with the
+ * number of orders, so the bound costs a small constant number of passes over large inputs. Of the cards paid at
+ * their own discount, a step only visits those that no card with at least the same discount and a {@code λ} as low
+ * dominates.<br>
+ * The input is copied when the bound is created, so it has to be created before a solver changes the limits.
+ */
+public final class DiscountBound {
+    /** Discount of the PUNKTY_10 method and the minimal share of an order paid with points, in basis points */
+    private static final int POINTS_10_BASIS_POINTS = 1_000;
+
+    /** Number of orders visited by all the subgradient steps together, which sets the number of steps */
+    private static final long ORDER_VISITS = 16_000_000;
+
+    /** Minimal number of subgradient steps */
+    private static final int MIN_ITERATIONS = 12;
+
+    /** Maximal number of subgradient steps */
+    private static final int MAX_ITERATIONS = 200;
+
+    /** Number of steps without improvement after which the step size is halved */
+    private static final int PATIENCE = 4;
+
+    /** Values of the orders in cents */
+    private final long[] values;
+
+    /** Offsets of the promotions of every order in {@link #promotionCards} */
+    private final int[] promotionOffsets;
+
+    /** Cards of the promotions, -1 for promotions without a card */
+    private final int[] promotionCards;
+
+    /** Amounts due with the card of every promotion in cents, 0 for promotions without a card */
+    private final long[] promotionDues;
+
+    /** Amounts due with full points of every order in cents */
+    private final long[] pointsDues;
+
+    /** Smallest amounts due with PUNKTY_10 of every order in cents, of all the ways the solvers round them */
+    private final long[] points10Dues;
+
+    /** Multipliers of the discounts of the cards from {@link Money#discountMultiplier(int)} */
+    private final long[] cardMultipliers;
+
+    /** Cards from the largest discount */
+    private final int[] cardsByDiscount;
+
+    /** Limits of the cards in cents, at least 0 */
+    private final long[] cardLimits;
+
+    /** Discount of the points method in basis points */
+    private final int pointsDiscount;
+
+    /** Points limit in cents, 0 if points cannot be used */
+    private final long pointsLimit;
+
+    /**
+     * Constructor used by the factory methods.
+     *
+     * @param values the values of the orders in cents
+     * @param promotionOffsets the offsets of the promotions of every order
+     * @param promotionCards the cards of the promotions
+     * @param registry the registry of the cards
+     * @param pointsMethod the points payment method
+     */
+    private DiscountBound(long[] values, int[] promotionOffsets, int[] promotionCards, CardRegistry registry,
+                          PaymentMethod pointsMethod) {
+        this.values = values;
+        this.promotionOffsets = promotionOffsets;
+        this.promotionCards = promotionCards;
+        cardMultipliers = new long[registry.size()];
+        cardLimits = new long[registry.size()];
+        for (int c = 0; c < cardLimits.length; c++) {
+            cardMultipliers[c] = registry.get(c).getDiscountMultiplier();
+            cardLimits[c] = Math.max(0, registry.get(c).getLimitCents());
+        }
+        cardsByDiscount = IntStream.range(0, cardLimits.length).boxed()
+                .sorted(Comparator.comparingLong(c -> cardMultipliers[c])).mapToInt(Integer::intValue).toArray();
+        pointsDiscount = pointsMethod.getDiscount();
+        pointsLimit = Math.max(0, pointsMethod.getLimitCents());
+
+        // The amounts due do not depend on the multipliers, so they are calculated once for all the steps.
+        promotionDues = new long[promotionCards.length];
+        pointsDues = new long[values.length];
+        points10Dues = new long[values.length];
+        long pointsMultiplier = Money.discountMultiplier(pointsDiscount);
+        for (int j = 0; j < values.length; j++) {
+            long v = values[j];
+            for (int p = promotionOffsets[j]; p < promotionOffsets[j + 1]; p++) {
+                int c = promotionCards[p];
+                if (c >= 0) {
+                    promotionDues[p] = Money.discounted(v, cardMultipliers[c]);
+                }
+            }
+            pointsDues[j] = Money.discounted(v, pointsMultiplier);
+            // The exact solvers round the discount, the greedy algorithm the points and the card part separately or the
+            // whole amount due, which may each save one more cent.
+            long points10 = Money.percentOf(v, POINTS_10_BASIS_POINTS);
+            long split = v - Money.percentOf(v, 2 * POINTS_10_BASIS_POINTS) + points10;
+            long whole = Money.percentOf(v, Money.FULL_BASIS_POINTS - POINTS_10_BASIS_POINTS);
+            points10Dues[j] = Math.min(v - points10, Math.min(split, whole));
+        }
+    }
+
+    /**
+     * Creates the bound of a list of orders.
+     *
+     * @param orders the orders
+     * @param payments the map of {@link PaymentMethod} (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @return the bound
+     */
+    public static DiscountBound of(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        CardRegistry registry = new CardRegistry(payments);
+        long[] values = new long[orders.size()];
+        int[] offsets = new int[orders.size() + 1];
+        for (int j = 0; j < values.length; j++) {
+            values[j] = orders.get(j).getValue().getCents();
+            offsets[j + 1] = offsets[j] + orders.get(j).getPromotionCount();
+        }
+        int[] cards = new int[offsets[values.length]];
+        for (int j = 0; j < values.length; j++) {
+            Order order = orders.get(j);
+            for (int k = 0; k < order.getPromotionCount(); k++) {
+                cards[offsets[j] + k] = registry.indexOf(order.getPromotion(k));
+            }
+        }
+        return new DiscountBound(values, offsets, cards, registry, pointsMethod);
+    }
+
+    /**
+     * Creates the bound of a table of orders.
+     *
+     * @param table the table of orders
+     * @param payments the map of {@link PaymentMethod} (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @return the bound
+     */
+    public static DiscountBound of(OrderTable table, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        CardRegistry registry = new CardRegistry(payments);
+        int[] cardOfName = registry.indexNames(table);
+        long[] values = new long[table.size()];
+        int[] offsets = new int[table.size() + 1];
+        for (int j = 0; j < values.length; j++) {
+            values[j] = table.getValueCents(j);
+            offsets[j + 1] = offsets[j] + table.getPromotionCount(j);
+        }
+        int[] cards = new int[offsets[values.length]];
+        for (int j = 0; j < values.length; j++) {
+            for (int k = 0; k < table.getPromotionCount(j); k++) {
+                cards[offsets[j] + k] = cardOfName[table.getPromotionIndex(j, k)];
+            }
+        }
+        return new DiscountBound(values, offsets, cards, registry, pointsMethod);
+    }
+
+    /**
+     * Returns the total value of the orders.
+     *
+     * @return the total value
+     */
+    public Money getTotalValue() {
+        long total = 0;
+        for (long value : values) {
+            total = Math.addExact(total, value);
+        }
+        return Money.ofCents(total);
+    }
+
+    /**
+     * Computes the bound.
+     *
+     * @param achieved the discount of a known solution, used to size the subgradient steps, or {@link Money#ZERO}
+     * @return the upper bound of the total discount, in whole cents
+     */
+    public Money compute(Money achieved) {
+        int cardCount = cardLimits.length;
+        double[] lambda = new double[cardCount];
+        double[] load = new double[cardCount];
+        double mu = 0;
+        double best = Double.POSITIVE_INFINITY;
+        double step = 1;
+        int sinceImprovement = 0;
+        // Small inputs get more steps, large ones a few passes which already come close to the final bound.
+        int iterations = Math.clamp(ORDER_VISITS / Math.max(1, values.length), MIN_ITERATIONS, MAX_ITERATIONS);
+        int[] front = new int[cardCount];
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Arrays.fill(load, 0);
+            double pointsUsed = 0;
+            double bound = mu * pointsLimit;
+            for (int c = 0; c < cardCount; c++) {
+                bound += lambda[c] * cardLimits[c];
+            }
+            // A card paid at its own discount is dominated by a card with at least the same discount and a λ as low,
+            // whatever the value of the order, so only the cards whose λ falls with the discount are visited. The last
+            // of them has the lowest λ and takes the card loads of PUNKTY_10.
+            int frontSize = 0;
+            for (int c : cardsByDiscount) {
+                if (frontSize == 0 || lambda[c] < lambda[front[frontSize - 1]]) {
+                    front[frontSize++] = c;
+                }
+            }
+            int cheapest = frontSize == 0 ? -1 : front[frontSize - 1];
+            double cheapestLambda = cheapest < 0 ? Double.POSITIVE_INFINITY : lambda[cheapest];
+
+            for (int j = 0; j < values.length; j++) {
+                long v = values[j];
+                // Points without a discount, dominated by full points but keeping the order paid if they are the only
+                // method. Without any card or points the order cannot be paid, which the relaxation simply ignores.
+                double bestValue = pointsLimit > 0 ? -mu * v : frontSize > 0 ? Double.NEGATIVE_INFINITY : 0;
+                int bestCard = -1;
+                double bestCardLoad = 0;
+                double bestPoints = pointsLimit > 0 ? v : 0;
+                for (int f = 0; f < frontSize; f++) {
+                    int c = front[f];
+                    long due = Money.discounted(v, cardMultipliers[c]);
+                    double value = (v - due) - lambda[c] * due;
+                    if (value > bestValue) {
+                        bestValue = value;
+                        bestCard = c;
+                        bestCardLoad = due;
+                        bestPoints = 0;
+                    }
+                }
+                for (int p = promotionOffsets[j]; p < promotionOffsets[j + 1]; p++) {
+                    int c = promotionCards[p];
+                    if (c < 0) {
+                        continue;
+                    }
+                    long due = promotionDues[p];
+                    double value = (v - due) - lambda[c] * due;
+                    if (value > bestValue) {
+                        bestValue = value;
+                        bestCard = c;
+                        bestCardLoad = due;
+                        bestPoints = 0;
+                    }
+                }
+                if (pointsLimit > 0) {
+                    long due = pointsDues[j];
+                    double value = (v - due) - mu * due;
+                    if (value > bestValue) {
+                        bestValue = value;
+                        bestCard = -1;
+                        bestCardLoad = 0;
+                        bestPoints = due;
+                    }
+                    // PUNKTY_10: at least 10% with points, the rest with points or the cheapest card.
+                    long afterDiscount = points10Dues[j];
+                    // The rounded 10% paid with points is at least the rounded down one.
+                    long minPoints = v / 10;
+                    double discount = v - afterDiscount;
+                    if (mu <= cheapestLambda) {
+                        value = discount - mu * afterDiscount;
+                        if (value > bestValue) {
+                            bestValue = value;
+                            bestCard = -1;
+                            bestCardLoad = 0;
+                            bestPoints = afterDiscount;
+                        }
+                    }
+                    else {
+                        value = discount - mu * minPoints - cheapestLambda * (afterDiscount - minPoints);
+                        if (value > bestValue) {
+                            bestValue = value;
+                            bestCard = cheapest;
+                            bestCardLoad = afterDiscount - minPoints;
+                            bestPoints = minPoints;
+                        }
+                    }
+                }
+                bound += bestValue;
+                if (bestCard >= 0) {
+                    load[bestCard] += bestCardLoad;
+                }
+                pointsUsed += bestPoints;
+            }
+
+            if (bound < best - 0.5) {
+                best = bound;
+                sinceImprovement = 0;
+            }
+            else if (++sinceImprovement >= PATIENCE) {
+                step /= 2;
+                sinceImprovement = 0;
+            }
+            if (best - achieved.getCents() < 1) {
+                break;
+            }
+
+            // The subgradient is the spare capacity: multipliers of overloaded limits rise, the others fall.
+            double norm = 0;
+            for (int c = 0; c < cardCount; c++) {
+                double g = cardLimits[c] - load[c];
+                norm += g * g;
+            }
+            double pointsGradient = pointsLimit > 0 ? pointsLimit - pointsUsed : 0;
+            norm += pointsGradient * pointsGradient;
+            if (norm == 0) {
+                break;
+            }
+            double t = step * Math.max(bound - achieved.getCents(), 1) / norm;
+            for (int c = 0; c < cardCount; c++) {
+                lambda[c] = Math.max(0, lambda[c] - t * (cardLimits[c] - load[c]));
+            }
+            mu = Math.max(0, mu - t * pointsGradient);
+        }
+        // The sum of doubles may be slightly off, so a cent of margin is added before rounding up.
+        return Money.ofCents((long) Math.min(Math.ceil(best) + 1, Math.ceil(trivialBound())));
+    }
+
+    /**
+     * Calculates the sum of the best discount of every order, the bound with all multipliers at zero.
+     *
+     * @return the bound in cents
+     */
+    private double trivialBound() {
+        long bestMultiplier = cardsByDiscount.length > 0 ? cardMultipliers[cardsByDiscount[0]] : 100;
+        double bound = 0;
+        for (int j = 0; j < values.length; j++) {
+            long v = values[j];
+            long discount = v - Money.discounted(v, bestMultiplier);
+            for (int p = promotionOffsets[j]; p < promotionOffsets[j + 1]; p++) {
+                int c = promotionCards[p];
+                if (c >= 0) {
+                    discount = Math.max(discount, v - promotionDues[p]);
+                }
+            }
+            if (pointsLimit > 0) {
+                discount = Math.max(discount, v - pointsDues[j]);
+                discount = Math.max(discount, v - points10Dues[j]);
+            }
+            bound += discount;
+        }
+        return bound;
+    }
+
+    /**
+     * Calculates how far a discount may be from optimal.
+     *
+     * @param achieved the achieved discount
+     * @param bound the upper bound of the discount
+     * @return the gap in percent of the bound, 0 if the bound is 0, negative only if the discount exceeds the bound
+     */
+    public static double gapPercent(Money achieved, Money bound) {
+        if (bound.getCents() <= 0) {
+            return 0;
+        }
+        return 100.0 * (bound.getCents() - achieved.getCents()) / bound.getCents();
+    }
+}
@@ -1,20 +1,47 @@
 package ocado.optimization;
 
+import ocado.metrics.DecisionTrace;
+import ocado.metrics.DecisionTrace.Reason;
+import ocado.metrics.OptimizerMetrics;
+import ocado.metrics.OptimizerMetrics.Branch;
+import ocado.metrics.OptimizerMetrics.Phase;
+import ocado.model.CardRegistry;
+import ocado.model.Money;
 import ocado.model.Order;
+import ocado.model.OrderTable;
+import ocado.model.OrderView;
 import ocado.model.PaymentMethod;
+import ocado.utils.CardIndex;
 import ocado.utils.OptimizerUtils;
+import ocado.utils.RadixSorter;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
- * Class responsible for optimizing expenses by selecting the best payment methods for orders.
+ * Class responsible for optimizing expenses by selecting the best payment methods for orders.<br>
+ * This is the greedy {@link ExpenseSolver}: it processes orders from the most expensive one and never revisits a choice.
+ * Orders are given either as a list of {@link Order}, which receive the used payment methods, or as an
+ * {@link OrderTable}, which is paid through a single reusable cursor and only updates the payment methods.<br>
+ * The main loop works on amounts in cents and keeps its candidates, card parts and sort order in buffers reused by
+ * every order and every run, so paying a table of orders creates no objects per order once the buffers have grown.
+ * Paying a list still allocates the map entries and {@link Money} amounts recorded in every {@link Order}.<br>
+ * Every run records the taken branches and the durations of its phases in {@link OptimizerMetrics}, and a
+ * {@link PaymentListener} may receive the payments of every order as soon as they are committed.<br>
+ * When {@link DecisionTrace#ENABLED}, the decision of every order is also recorded in a {@link DecisionTrace}, which
+ * is written to {@link DecisionTrace#file()} when a run fails or on demand by {@link #dumpTrace(Path)}.
  */
-public class ExpenseOptimizer {
-    /** List of orders to optimize */
+public class ExpenseOptimizer implements ExpenseSolver {
+    /** Discount of the PUNKTY_10 method and the minimal share of an order paid with points, in basis points */
+    private static final int POINTS_10_BASIS_POINTS = 1_000;
+
+    /** List of orders to optimize, or null if {@link #table} is used */
     private final List<Order> orders;
 
+    /** Table of orders to optimize, or null if {@link #orders} is used */
+    private final OrderTable table;
+
     /** Map of available payment methods (excluding the points method) */
     private final Map<String, PaymentMethod> payments;
 
@@ -24,6 +51,39 @@ public class ExpenseOptimizer {
     /** {@link OptimizerUtils} object providing necessary methods */
     private final OptimizerUtils utils = new OptimizerUtils();
 
+    /** {@link CardRegistry} of the payment methods, numbering the cards for {@link #cardIndex} and the promotion lookups */
+    private CardRegistry registry;
+
+    /** {@link CardIndex} of the payment methods, kept up to date during the main loop */
+    private CardIndex cardIndex;
+
+    /** Indexes of the cards listed as promotions by the current order, reused by every order */
+    private int[] orderCards = new int[8];
+
+    /** Payment methods with the best discount for the current order, reused by every order */
+    private PaymentMethod[] bestMethods = new PaymentMethod[8];
+
+    /** {@link RadixSorter} sorting the orders by value, its buffers reused by every run */
+    private final RadixSorter sorter = new RadixSorter();
+
+    /** Metrics receiving the taken branches and the durations of the phases */
+    private OptimizerMetrics metrics = OptimizerMetrics.global();
+
+    /** Listener receiving the committed payments, or null */
+    private PaymentListener listener;
+
+    /** Card parts of the orders paid with PUNKTY_10 that points may still replace, the most recent last */
+    private final CardParts cardParts = new CardParts();
+
+    /** Whether {@link #optimize()} spends the remaining points, false when a coordinator spends them across runs */
+    private boolean spendingRemainingPoints = true;
+
+    /** Decisions of the orders of the last run, or null if tracing is disabled */
+    private final DecisionTrace trace = DecisionTrace.ENABLED ? new DecisionTrace() : null;
+
+    /** Rows of {@link #table} in the order of the last run, resolving the orders of the {@link #trace} */
+    private int[] tracedRows;
+
     /**
      * Constructor for the ExpenseOptimizer class.
      *
@@ -33,179 +93,622 @@ public class ExpenseOptimizer {
      */
     public ExpenseOptimizer(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
         this.orders = orders;
+        this.table = null;
         this.payments = payments;
         this.pointsMethod = pointsMethod;
     }
 
+    /**
+     * Constructor for the ExpenseOptimizer class working on a table of orders. No {@link Order} objects are created,
+     * so the result is only recorded in the payment methods.
+     *
+     * @param table the table of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     */
+    public ExpenseOptimizer(OrderTable table, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        this.orders = null;
+        this.table = table;
+        this.payments = payments;
+        this.pointsMethod = pointsMethod;
+    }
+
+    /**
+     * Sets the metrics receiving the taken branches and the durations of the phases, {@link OptimizerMetrics#global()}
+     * by default.
+     *
+     * @param metrics the metrics
+     */
+    public void setMetrics(OptimizerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the listener receiving the payments of every order as soon as they are committed, including the card
+     * parts later replaced by the remaining points.
+     *
+     * @param listener the listener, or null
+     */
+    public void setPaymentListener(PaymentListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets whether {@link #optimize()} spends the remaining points on the card parts of the paid orders. A coordinator
+     * running several optimizers turns it off and spends the points of all of them at once.
+     *
+     * @param spendingRemainingPoints true to spend the remaining points, the default
+     */
+    void setSpendingRemainingPoints(boolean spendingRemainingPoints) {
+        this.spendingRemainingPoints = spendingRemainingPoints;
+    }
+
+    /**
+     * Returns the card parts that {@link #spentRemainingPoints()} may replace with points, the most recent last.
+     *
+     * @return the modifiable stack of card parts
+     */
+    CardParts getCardParts() {
+        return cardParts;
+    }
+
     /**
      * Main method for optimizing payments for orders.
      *
      * @return true if optimization was successful, false otherwise
-     * @throws IllegalArgumentException exception thrown from {@link OptimizerUtils#pay(PaymentMethod, Order)},
-     * {@link OptimizerUtils#pay(PaymentMethod, BigDecimal)}, or {@link #spentRemainingPoints()} and propagated further
+     * @throws IllegalArgumentException exception thrown from {@link OptimizerUtils#pay(PaymentMethod, OrderView)},
+     * {@link OptimizerUtils#pay(PaymentMethod, Money)}, or {@link #spentRemainingPoints()} and propagated further
      */
+    @Override
     public boolean optimize() throws IllegalArgumentException {
-        orders.sort(Comparator.comparing(Order::getValue).reversed());
+        metrics.countRun();
+        // Orders keep the card indexes of their promotions per registry, so an unchanged registry is kept.
+        if (registry == null || !registry.isFor(payments)) {
+            registry = new CardRegistry(payments);
+        }
+        cardIndex = new CardIndex(payments.values());
+        cardParts.clear();
+        if (DecisionTrace.ENABLED) {
+            trace.clear();
+        }
+
+        boolean wasEverythingPaid;
+        try {
+            wasEverythingPaid = table != null ? payTable() : payOrders();
+        } catch (RuntimeException e) {
+            if (DecisionTrace.ENABLED) {
+                dumpFailedRun();
+            }
+            throw e;
+        }
+        if (DecisionTrace.ENABLED && !wasEverythingPaid) {
+            dumpFailedRun();
+        }
+
+        // We have finished the main loop of the algorithm. If we have not managed to pay all orders in it,
+        // or we have exhausted points -> we simply return the result of the algorithm.
+        if (!wasEverythingPaid || !spendingRemainingPoints || pointsMethod.getLimitCents() == 0) {
+            return wasEverythingPaid;
+        }
 
-        boolean wasEverythingPaid = true;
-        for (Order order : orders) {
-            BigDecimal bestPromotion = new BigDecimal("0.00");
-            List<PaymentMethod> bestMethods = new ArrayList<>();
+        // Otherwise, we will iterate from the last order and "improve" the algorithm's result by spending
+        // the remaining points on orders paid with the POINTS_10 method -> we will give back a certain amount to the card
+        // used to complete this order and pay this amount with points until we get rid of
+        // all points -> in the spirit of minimizing card payments.
+        spentRemainingPoints();
+
+        return true;
+    }
 
-            // We find the maximum percentage discount that the methods from the promotions list can give us.
-            for (String s : order.getPromotions()) {
-                if (!payments.containsKey(s)) {
-                    continue;
+    /**
+     * Pays for the orders of {@link #orders} from the most expensive one.
+     *
+     * @return true if all orders were paid, false if the loop stopped at an order that could not be paid
+     */
+    private boolean payOrders() {
+        long start = System.nanoTime();
+        sorter.sortByValue(orders);
+        metrics.recordSince(Phase.SORT, start);
+
+        start = System.nanoTime();
+        try {
+            for (Order order : orders) {
+                if (!payOrder(order)) {
+                    return false;
                 }
-                PaymentMethod pm = payments.get(s);
-                pm.decrementOrdersAmount();
-                if (pm.getLimit().compareTo(order.getValue()) >= 0 && pm.getDiscount().compareTo(bestPromotion) > 0) {
-                    bestPromotion = pm.getDiscount();
+            }
+            return true;
+        } finally {
+            metrics.recordSince(Phase.MAIN_LOOP, start);
+        }
+    }
+
+    /**
+     * Pays for the orders of {@link #table} from the most expensive one, moving a single cursor over the table.
+     *
+     * @return true if all orders were paid, false if the loop stopped at an order that could not be paid
+     */
+    private boolean payTable() {
+        long start = System.nanoTime();
+        int n = table.size();
+        // A stable sort, so orders of equal value keep the order of the table like in payOrders().
+        int[] sorted = sorter.sortByValue(table);
+        metrics.recordSince(Phase.SORT, start);
+        if (DecisionTrace.ENABLED) {
+            tracedRows = sorted;
+        }
+
+        start = System.nanoTime();
+        try {
+            TableOrder cursor = new TableOrder(registry.indexNames(table));
+            for (int s = 0; s < n; s++) {
+                cursor.moveTo(sorted[s]);
+                if (!payOrder(cursor)) {
+                    return false;
                 }
             }
+            return true;
+        } finally {
+            metrics.recordSince(Phase.MAIN_LOOP, start);
+        }
+    }
+
+    /**
+     * Chooses the payment methods of a single order and pays for it. The promotion counters of the payment methods
+     * have to include the order.
+     *
+     * @param order the order to be paid
+     * @return true if the order was paid, false if no payment method could be selected, in which case nothing was paid
+     * @throws IllegalArgumentException exception thrown from {@link OptimizerUtils#pay(PaymentMethod, OrderView)} or
+     * {@link OptimizerUtils#pay(PaymentMethod, Money)} and propagated further
+     */
+    boolean payOrder(OrderView order) throws IllegalArgumentException {
+        int bestPromotion = 0;
+        int bestCount = 0;
+        long value = order.getValueCents();
 
-            // If it is possible to pay everything with points, we choose this option. If not, we consider
-            // all methods whose discount equals the best discount.
-            if (pointsMethod.getLimit().compareTo(order.getValue()) >= 0
-                    && pointsMethod.getDiscount().compareTo(bestPromotion) >= 0) {
-                bestMethods.add(pointsMethod);
-                bestPromotion = pointsMethod.getDiscount();
+        // We find the maximum percentage discount that the methods from the promotions list can give us.
+        // Promotions are resolved to card indexes once, so no identifier is hashed again for this order.
+        int promotionCount = order.getPromotionCount();
+        if (orderCards.length < promotionCount) {
+            orderCards = new int[Math.max(promotionCount, 2 * orderCards.length)];
+            bestMethods = new PaymentMethod[orderCards.length];
+        }
+        int cardCount = 0;
+        for (int k = 0; k < promotionCount; k++) {
+            int c = order.getPromotionCard(k, registry);
+            if (c < 0) {
+                continue;
             }
-            else if (bestPromotion.compareTo(new BigDecimal("0.00")) > 0) {
-                for (String s : order.getPromotions()) {
-                    if (!payments.containsKey(s)) {
-                        continue;
-                    }
-                    if (payments.get(s).getDiscount().compareTo(bestPromotion) == 0) {
-                        bestMethods.add(payments.get(s));
-                    }
-                }
+            orderCards[cardCount++] = c;
+            PaymentMethod pm = registry.get(c);
+            pm.decrementOrdersAmount();
+            cardIndex.refresh(c);
+            if (pm.getLimitCents() >= value && pm.getDiscount() > bestPromotion) {
+                bestPromotion = pm.getDiscount();
             }
+        }
 
-            if (bestPromotion.compareTo(new BigDecimal("10.00")) > 0) {
-                if (bestMethods.size() == 1) {
-                    // No tie or a POINTS-CARD tie.
-                    utils.pay(bestMethods.getFirst(), order);
-                    order.usePaymentsMethod(bestMethods.getFirst().getId(), order.getValue());
+        // If it is possible to pay everything with points, we choose this option. If not, we consider
+        // all methods whose discount equals the best discount.
+        boolean pointsWonTie = DecisionTrace.ENABLED && bestPromotion > 0 && pointsMethod.getDiscount() == bestPromotion;
+        if (pointsMethod.getLimitCents() >= value && pointsMethod.getDiscount() >= bestPromotion) {
+            bestMethods[bestCount++] = pointsMethod;
+            bestPromotion = pointsMethod.getDiscount();
+        }
+        else if (bestPromotion > 0) {
+            for (int k = 0; k < cardCount; k++) {
+                PaymentMethod pm = registry.get(orderCards[k]);
+                if (pm.getDiscount() == bestPromotion) {
+                    bestMethods[bestCount++] = pm;
                 }
-                else {
-                    // CARD-CARD tie.
-                    PaymentMethod pm = utils.findOptimalCard(bestMethods);
-                    utils.pay(pm, order);
-                    order.usePaymentsMethod(pm.getId(), order.getValue());
+            }
+        }
+
+        if (bestPromotion > POINTS_10_BASIS_POINTS) {
+            if (bestCount == 1) {
+                // No tie or a POINTS-CARD tie.
+                Branch branch = bestMethods[0] == pointsMethod ? Branch.FULL_POINTS : Branch.PROMOTION_CARD;
+                metrics.count(branch);
+                if (DecisionTrace.ENABLED) {
+                    Reason reason = pointsWonTie ? Reason.POINTS_OVER_CARD : Reason.BEST_DISCOUNT;
+                    traceWhole(value, branch, reason, bestMethods[0], cardCount);
                 }
+                payWhole(bestMethods[0], order);
             }
             else {
-                BigDecimal toPayByPoints = order.getValue().multiply(new BigDecimal("0.10").setScale(2, RoundingMode.HALF_UP)); // Initially 10% of the order.
-                BigDecimal toPayByCard = order.getValue().subtract(toPayByPoints.multiply(new BigDecimal("2.00")).setScale(2, RoundingMode.HALF_UP)).
-                        setScale(2, RoundingMode.HALF_UP); // Because 10% of the points, plus twice the discount.
-                PaymentMethod pm;
-
-                if (toPayByPoints.compareTo(pointsMethod.getLimit()) <= 0) {
-                    // We use the POINTS_10 payment method, and we want to pay only 10% of the points (keep the rest of the points for later).
-                    // We want to pay for the rest of the order with the "worst" card possible.
-                    BigDecimal finalToPayByCard = toPayByCard;
-
-                    pm = utils.findBestCardToPayRest(payments.values().stream().filter(p -> p.getLimit().compareTo(finalToPayByCard) >= 0).toList());
-
-                    if (pm == null) {
-                        // We didn't find a card with a limit that would allow you to pay with points only 10% -
-                        // so we're looking for a card with a maximum limit <= than the current "toPayByCard" and filling it in with points.
-                        List<PaymentMethod> maxLimitCards = utils.findWithMaxLimit(payments.values().stream().toList());
-                        pm = utils.findBestCardToPayRest(maxLimitCards);
-
-                        if (pm != null && order.getValue().subtract(pm.getLimit()).compareTo(pointsMethod.getLimit()) <= 0) {
-                            // Wystarcza punktów na uzupełnienie do wybranej karty, więc płacimy.
-                            toPayByCard = pm.getLimit();
-                            toPayByPoints = order.getValue().multiply(new BigDecimal("0.90")).setScale(2, RoundingMode.HALF_UP).
-                                    subtract(toPayByCard).setScale(2, RoundingMode.HALF_UP);
+                // CARD-CARD tie.
+                metrics.count(Branch.CARD_CARD_TIE);
+                PaymentMethod pm = utils.findOptimalCard(bestMethods, bestCount);
+                if (DecisionTrace.ENABLED) {
+                    traceWhole(value, Branch.CARD_CARD_TIE, tieBreak(pm, bestCount), pm, cardCount);
+                }
+                payWhole(pm, order);
+            }
+        }
+        else {
+            long toPayByPoints = Money.percentOf(value, POINTS_10_BASIS_POINTS); // Initially 10% of the order.
+            long toPayByCard = Math.subtractExact(value, Money.percentOf(value, 2 * POINTS_10_BASIS_POINTS)); // Because 10% of the points, plus twice the discount.
+            PaymentMethod pm;
+
+            // The unrounded 10% of the order is compared with the points limit.
+            if (Money.coversShare(pointsMethod.getLimitCents(), value, POINTS_10_BASIS_POINTS)) {
+                // We use the POINTS_10 payment method, and we want to pay only 10% of the points (keep the rest of the points for later).
+                // We want to pay for the rest of the order with the "worst" card possible.
+                pm = cardIndex.findBestCardToPayRest(toPayByCard);
+
+                if (pm != null) {
+                    metrics.count(Branch.POINTS_10);
+                    if (DecisionTrace.ENABLED) {
+                        trace(value, Branch.POINTS_10, Reason.BEST_CARD_FOR_REST, pm, toPayByPoints, cardCount);
+                    }
+                }
+                else {
+                    // We didn't find a card with a limit that would allow you to pay with points only 10% -
+                    // so we're looking for a card with a maximum limit <= than the current "toPayByCard" and filling it in with points.
+                    pm = cardIndex.findBestCardWithMaxLimit();
+
+                    if (pm != null && Math.subtractExact(value, pm.getLimitCents()) <= pointsMethod.getLimitCents()) {
+                        // Wystarcza punktów na uzupełnienie do wybranej karty, więc płacimy.
+                        metrics.count(Branch.POINTS_10_MAX_LIMIT);
+                        toPayByCard = pm.getLimitCents();
+                        toPayByPoints = Math.subtractExact(Money.percentOf(value, Money.FULL_BASIS_POINTS - POINTS_10_BASIS_POINTS),
+                                toPayByCard);
+                        if (DecisionTrace.ENABLED) {
+                            trace(value, Branch.POINTS_10_MAX_LIMIT, Reason.LARGEST_LIMIT, pm, toPayByPoints, cardCount);
                         }
-                        else {
-                            // We have reached the point where we are unable to select any payment method
-                            // for the order -> probably used heuristics do not work for this example,
-                            // so we end the optimization :
-                            wasEverythingPaid = false;
-                            break;
+                    }
+                    else {
+                        // We have reached the point where we are unable to select any payment method
+                        // for the order -> probably used heuristics do not work for this example,
+                        // so we end the optimization :
+                        metrics.count(Branch.TERMINATED);
+                        if (DecisionTrace.ENABLED) {
+                            trace(value, Branch.TERMINATED, Reason.NO_CANDIDATE, null, 0, cardCount);
                         }
+                        return false;
                     }
-                    utils.pay(pointsMethod, toPayByPoints);
-                    utils.pay(pm, toPayByCard);
-                    order.usePaymentsMethod("PUNKTY_10", toPayByPoints);
-                    order.usePaymentsMethod(pm.getId(), toPayByCard);
                 }
-                else if (bestMethods.size() == 1) {
-                    // We won't be able to pay with points, and it's a no draw.
-                    utils.pay(bestMethods.getFirst(), order);
-                    order.usePaymentsMethod(bestMethods.getFirst().getId(), order.getValue());
+                pay(pointsMethod, toPayByPoints);
+                pay(pm, toPayByCard);
+                order.usePaymentsMethod("PUNKTY_10", toPayByPoints);
+                order.usePaymentsMethod(pm.getId(), toPayByCard);
+                order.chargePaymentsMethod(pointsMethod.getId(), toPayByPoints);
+                order.chargePaymentsMethod(pm.getId(), toPayByCard);
+                String orderId = null;
+                Order owner = null;
+                if (listener != null) {
+                    orderId = order.getId();
+                    listener.orderPaid(orderId, order.getValue(), List.of(
+                            new PaymentListener.Allocation(pointsMethod.getId(), Money.ofCents(toPayByPoints)),
+                            new PaymentListener.Allocation(pm.getId(), Money.ofCents(toPayByCard))));
                 }
-                else if (bestMethods.size() > 1) {
-                    // We won't be able to pay with points and it's a CARD-CARD tie.
-                    pm = utils.findOptimalCard(bestMethods);
-                    utils.pay(pm, order);
-                    order.usePaymentsMethod(pm.getId(), order.getValue());
+                else if (order instanceof Order paid) {
+                    // Without a listener receiving the moves to points, the order keeps its charges up to date.
+                    owner = paid;
                 }
-                else {
-                    // There is no promotional payment option and POINTS_10 cannot be applied either.
-                    // We look for a card to pay for the rest (the entire order) and use it.
-                    pm = utils.findBestCardToPayRest(payments.values().stream().filter(p -> p.getLimit().compareTo(order.getValue()) >= 0).toList());
-                    if (pm == null) {
-                        // We also reach the point where we are unable to select any payment method
-                        // for the order, so we end the optimization :(.
-                        wasEverythingPaid = false;
-                        break;
+                cardParts.add(pm, toPayByCard, orderId, owner);
+            }
+            else if (bestCount == 1) {
+                // We won't be able to pay with points, and it's a no draw.
+                metrics.count(Branch.PROMOTION_CARD);
+                if (DecisionTrace.ENABLED) {
+                    traceWhole(value, Branch.PROMOTION_CARD, Reason.BEST_DISCOUNT, bestMethods[0], cardCount);
+                }
+                payWhole(bestMethods[0], order);
+            }
+            else if (bestCount > 1) {
+                // We won't be able to pay with points and it's a CARD-CARD tie.
+                metrics.count(Branch.CARD_CARD_TIE);
+                pm = utils.findOptimalCard(bestMethods, bestCount);
+                if (DecisionTrace.ENABLED) {
+                    traceWhole(value, Branch.CARD_CARD_TIE, tieBreak(pm, bestCount), pm, cardCount);
+                }
+                payWhole(pm, order);
+            }
+            else {
+                // There is no promotional payment option and POINTS_10 cannot be applied either.
+                // We look for a card to pay for the rest (the entire order) and use it.
+                pm = cardIndex.findBestCardToPayRest(value);
+                if (pm == null) {
+                    // We also reach the point where we are unable to select any payment method
+                    // for the order, so we end the optimization :(.
+                    metrics.count(Branch.TERMINATED);
+                    if (DecisionTrace.ENABLED) {
+                        trace(value, Branch.TERMINATED, Reason.NO_CANDIDATE, null, 0, cardCount);
                     }
-                    utils.pay(pm, order);
-                    order.usePaymentsMethod(pm.getId(), order.getValue());
+                    return false;
                 }
+                metrics.count(Branch.NO_PROMOTION_CARD);
+                if (DecisionTrace.ENABLED) {
+                    traceWhole(value, Branch.NO_PROMOTION_CARD, Reason.BEST_CARD_FOR_REST, pm, cardCount);
+                }
+                payWhole(pm, order);
             }
         }
+        return true;
+    }
 
-        // We have finished the main loop of the algorithm. If we have not managed to pay all orders in it,
-        // or we have exhausted points -> we simply return the result of the algorithm.
-        if (!wasEverythingPaid || pointsMethod.getLimit().compareTo(new BigDecimal("0.00")) == 0) {
-            return wasEverythingPaid;
+    /**
+     * Records the decision of an order paid entirely with a single method in the {@link #trace}.
+     *
+     * @param value the value of the order in cents
+     * @param branch the branch taken
+     * @param reason the reason the method won
+     * @param pm the payment method
+     * @param cardCount the number of promotional cards of the order in {@link #orderCards}
+     */
+    private void traceWhole(long value, Branch branch, Reason reason, PaymentMethod pm, int cardCount) {
+        long points = pm == pointsMethod ? Money.discounted(value, pm.getDiscountMultiplier()) : 0;
+        trace(value, branch, reason, pm, points, cardCount);
+    }
+
+    /**
+     * Records the decision of an order in the {@link #trace}, with the promotional cards of the order as candidates.
+     *
+     * @param value the value of the order in cents
+     * @param branch the branch taken
+     * @param reason the reason the chosen method won
+     * @param chosen the chosen card or points method, or null if the order could not be paid
+     * @param pointsCents the amount paid with points in cents
+     * @param cardCount the number of promotional cards of the order in {@link #orderCards}
+     */
+    private void trace(long value, Branch branch, Reason reason, PaymentMethod chosen, long pointsCents, int cardCount) {
+        int c = chosen == null ? DecisionTrace.NO_CARD
+                : chosen == pointsMethod ? DecisionTrace.POINTS : registry.indexOf(chosen.getId());
+        trace.record(value, branch, reason, c, pointsCents, orderCards, cardCount);
+    }
+
+    /**
+     * Finds the heuristic of {@link OptimizerUtils#findOptimalCard(PaymentMethod[], int)} that decided a CARD-CARD tie.
+     *
+     * @param winner the card that won the tie
+     * @param bestCount the number of tied cards in {@link #bestMethods}
+     * @return the reason the card won
+     */
+    private Reason tieBreak(PaymentMethod winner, int bestCount) {
+        Reason reason = Reason.FEWER_ORDERS;
+        for (int k = 0; k < bestCount; k++) {
+            PaymentMethod pm = bestMethods[k];
+            if (pm != winner && pm.getOrdersAmount() == winner.getOrdersAmount()) {
+                if (pm.getLimitCents() == winner.getLimitCents()) {
+                    return Reason.FIRST_LISTED;
+                }
+                reason = Reason.SMALLER_LIMIT;
+            }
         }
+        return reason;
+    }
 
-        // Otherwise, we will iterate from the last order and "improve" the algorithm's result by spending
-        // the remaining points on orders paid with the POINTS_10 method -> we will give back a certain amount to the card
-        // used to complete this order and pay this amount with points until we get rid of
-        // all points -> in the spirit of minimizing card payments.
-        spentRemainingPoints();
+    /**
+     * Writes the decisions of the orders of the last run, or of the orders paid by {@link IncrementalOptimizer}, to a
+     * file. The most recent {@link DecisionTrace#CAPACITY_PROPERTY} decisions are kept.
+     *
+     * @param file the file, replaced if it exists
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException thrown if tracing is disabled
+     */
+    public void dumpTrace(Path file) throws IOException, IllegalStateException {
+        if (!DecisionTrace.ENABLED) {
+            throw new IllegalStateException("Tracing is disabled, set the system property " + DecisionTrace.FILE_PROPERTY);
+        }
+        trace.dump(file, this::tracedOrderId,
+                c -> c == DecisionTrace.POINTS ? pointsMethod.getId() : registry.get(c).getId());
+    }
 
-        return true;
+    /**
+     * Resolves an order of the {@link #trace} to its identifier.
+     *
+     * @param position the position of the order in the run
+     * @return the identifier, or the position after '#' for orders not paid by {@link #optimize()}
+     */
+    private String tracedOrderId(int position) {
+        if (table != null && tracedRows != null && position < tracedRows.length) {
+            return table.getId(tracedRows[position]);
+        }
+        if (orders != null && position < orders.size()) {
+            return orders.get(position).getId();
+        }
+        return "#" + position;
     }
 
     /**
-     * Spends the remaining points on orders paid with the PUNKTY_10 method.
-     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#getMoneyBack(BigDecimal)} and propagated further
+     * Writes the trace of a failed run to {@link DecisionTrace#file()}. A trace that cannot be written is reported
+     * on the standard error, so it does not hide the result of the run.
      */
-    private void spentRemainingPoints() throws IllegalArgumentException {
-        for (Order order : orders.reversed()) {
-            // An order can have a maximum of 2 payment options -> POINTS_10 + CARD.
-            if (order.getUsedPaymentsMethods().size() != 2) {
-                continue;
-            }
-            String usedCard = "";
-            BigDecimal spentAmount = new BigDecimal("0.00").setScale(2, RoundingMode.HALF_UP);
-            for (Map.Entry<String, BigDecimal> entry : order.getUsedPaymentsMethods().entrySet()) {
-                if (!entry.getKey().equals("PUNKTY_10")) {
-                    usedCard = entry.getKey();
-                    spentAmount = entry.getValue().setScale(2, RoundingMode.HALF_UP);
-                    break;
-                }
+    private void dumpFailedRun() {
+        try {
+            dumpTrace(DecisionTrace.file());
+        } catch (IOException e) {
+            System.err.println("Cannot write the decision trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the {@link CardIndex} used by {@link #payOrder(Order)} if it does not exist yet.
+     */
+    void ensureCardIndex() {
+        if (cardIndex == null) {
+            registry = new CardRegistry(payments);
+            cardIndex = new CardIndex(payments.values());
+        }
+    }
+
+    /**
+     * Counts an order in the promotion counters of the payment methods it lists.
+     *
+     * @param order the order that will be paid later
+     */
+    void addPromotions(OrderView order) {
+        for (int k = 0; k < order.getPromotionCount(); k++) {
+            int c = order.getPromotionCard(k, registry);
+            if (c >= 0) {
+                registry.get(c).incrementOrdersAmount();
+                cardIndex.refresh(c);
             }
+        }
+    }
+
+    /**
+     * Pays for an order with the given method and updates the {@link CardIndex}.
+     *
+     * @param pm the payment method
+     * @param order the order to be paid
+     * @throws IllegalArgumentException exception thrown from {@link OptimizerUtils#pay(PaymentMethod, OrderView)} and propagated further
+     */
+    private void pay(PaymentMethod pm, OrderView order) throws IllegalArgumentException {
+        utils.pay(pm, order);
+        cardIndex.refresh(pm);
+    }
+
+    /**
+     * Pays for a whole order with a single method, records the method in the order and notifies the {@link #listener}.
+     *
+     * @param pm the payment method
+     * @param order the order to be paid
+     * @throws IllegalArgumentException exception thrown from {@link OptimizerUtils#pay(PaymentMethod, OrderView)} and propagated further
+     */
+    private void payWhole(PaymentMethod pm, OrderView order) throws IllegalArgumentException {
+        pay(pm, order);
+        // The discount of the method is charged even if the order does not list it as a promotion.
+        long charged = Money.discounted(order.getValueCents(), pm.getDiscountMultiplier());
+        order.usePaymentsMethod(pm.getId(), order.getValueCents());
+        order.chargePaymentsMethod(pm.getId(), charged);
+        notifyPaid(pm, order, charged);
+    }
 
-            if (spentAmount.compareTo(pointsMethod.getLimit()) >= 0) {
-                // At this point we've already spent all our points, so we're done.
-                payments.get(usedCard).getMoneyBack(pointsMethod.getLimit());
-                pointsMethod.spend(pointsMethod.getLimit());
-                break;
+    /**
+     * Passes an order paid entirely with a single method to the {@link #listener}.
+     *
+     * @param pm the payment method
+     * @param order the paid order
+     * @param charged the amount charged to the method in cents
+     */
+    private void notifyPaid(PaymentMethod pm, OrderView order, long charged) {
+        if (listener != null) {
+            listener.orderPaid(order.getId(), order.getValue(),
+                    List.of(new PaymentListener.Allocation(pm.getId(), Money.ofCents(charged))));
+        }
+    }
+
+    /**
+     * Pays the given amount with the given method and updates the {@link CardIndex}.
+     *
+     * @param pm the payment method
+     * @param cents the amount to be paid in cents
+     * @throws IllegalArgumentException exception thrown from {@link OptimizerUtils#pay(PaymentMethod, long)} and propagated further
+     */
+    private void pay(PaymentMethod pm, long cents) throws IllegalArgumentException {
+        utils.pay(pm, cents);
+        cardIndex.refresh(pm);
+    }
+
+    /**
+     * Spends the remaining points on orders paid with the PUNKTY_10 method, from the most recently paid one.
+     * Card parts fully replaced by points are not visited again, so every call only costs the number of orders it changes.
+     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#getMoneyBack(Money)} and propagated further
+     */
+    void spentRemainingPoints() throws IllegalArgumentException {
+        long start = System.nanoTime();
+        while (!cardParts.isEmpty() && pointsMethod.getLimitCents() > 0) {
+            int last = cardParts.size() - 1;
+            PaymentMethod card = cardParts.card(last);
+            String orderId = cardParts.orderId(last);
+            Order order = cardParts.order(last);
+            long amount = cardParts.amount(last);
+            long moved;
+            if (amount > pointsMethod.getLimitCents()) {
+                // At this point we spend all our remaining points, the rest of the card part stays for later points.
+                moved = pointsMethod.getLimitCents();
+                card.getMoneyBack(moved);
+                pointsMethod.spend(moved);
+                cardParts.setLastAmount(amount - moved);
             }
             else {
                 // Here we have only spent some of our remaining points, so we move on to the next order.
-                payments.get(usedCard).getMoneyBack(spentAmount);
-                pointsMethod.spend(spentAmount);
+                moved = amount;
+                card.getMoneyBack(amount);
+                pointsMethod.spend(amount);
+                cardParts.removeLast();
             }
+            if (listener != null) {
+                listener.pointsMoved(orderId, card.getId(), Money.ofCents(moved));
+            }
+            if (order != null) {
+                order.chargePaymentsMethod(card.getId(), -moved);
+                order.chargePaymentsMethod(pointsMethod.getId(), moved);
+            }
+        }
+        metrics.recordSince(Phase.SPEND_REMAINING_POINTS, start);
+    }
+
+    /**
+     * Reusable cursor presenting the current order of {@link #table} to {@link #payOrder(OrderView)}.
+     * The used payment methods are not stored, as the table has no place for them.
+     */
+    private final class TableOrder implements OrderView {
+        /** Card index of every promotion name of the table */
+        private final int[] cardOfName;
+
+        /** Index of the current order */
+        private int index;
+
+        /** Value of the current order in cents */
+        private long valueCents;
+
+        /**
+         * Creates a cursor over {@link #table}.
+         *
+         * @param cardOfName the card index of every promotion name of the table, -1 for names without a card
+         */
+        private TableOrder(int[] cardOfName) {
+            this.cardOfName = cardOfName;
+        }
+
+        /**
+         * Moves the cursor to an order.
+         *
+         * @param index the index of the order in the table
+         */
+        private void moveTo(int index) {
+            this.index = index;
+            this.valueCents = table.getValueCents(index);
+        }
+
+        @Override
+        public String getId() {
+            return table.getId(index);
+        }
+
+        @Override
+        public Money getValue() {
+            return Money.ofCents(valueCents);
+        }
+
+        @Override
+        public long getValueCents() {
+            return valueCents;
+        }
+
+        @Override
+        public int getPromotionCount() {
+            return table.getPromotionCount(index);
         }
+
+        @Override
+        public String getPromotion(int k) {
+            return table.getPromotionName(table.getPromotionIndex(index, k));
+        }
+
+        @Override
+        public int getPromotionCard(int k, CardRegistry registry) {
+            return cardOfName[table.getPromotionIndex(index, k)];
+        }
+
+        @Override
+        public void usePaymentsMethod(String method, Money value) {}
+
+        @Override
+        public void usePaymentsMethod(String method, long cents) {}
     }
 }
@@ -0,0 +1,48 @@
+package ocado.optimization;
+
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Common interface of the algorithms choosing payment methods for orders.<br>
+ * A solver is created for a list of {@link Order}, a map of {@link PaymentMethod} and the points method, and records
+ * its result in these objects: the used methods in {@code Order.getUsedPaymentsMethods()} and the spent amounts
+ * in {@code PaymentMethod.getSpending()}.
+ */
+public interface ExpenseSolver {
+    /** Names of the available solvers, the first one is the default */
+    List<String> NAMES = List.of("greedy", "exact", "local", "decompose", "beam");
+
+    /**
+     * Creates a solver by its name.
+     *
+     * @param name the name of the solver, one of {@link #NAMES}
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod} (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @return the solver
+     * @throws IllegalArgumentException thrown if there is no solver with the given name
+     */
+    static ExpenseSolver create(String name, List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod)
+            throws IllegalArgumentException {
+        return switch (name) {
+            case "greedy" -> new ExpenseOptimizer(orders, payments, pointsMethod);
+            case "exact" -> new BranchAndBoundSolver(orders, payments, pointsMethod);
+            case "local" -> new LocalSearchSolver(orders, payments, pointsMethod);
+            case "decompose" -> new DecomposingSolver(orders, payments, pointsMethod);
+            case "beam" -> new BeamSearchSolver(orders, payments, pointsMethod);
+            default -> throw new IllegalArgumentException("Unknown solver '" + name + "', available solvers: " + String.join(", ", NAMES));
+        };
+    }
+
+    /**
+     * Chooses payment methods for all orders.
+     *
+     * @return true if all orders were paid, false otherwise
+     * @throws IllegalArgumentException thrown if the input data does not allow a valid payment to be recorded
+     */
+    boolean optimize() throws IllegalArgumentException;
+}
@@ -0,0 +1,123 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.RadixSorter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Online variant of {@link ExpenseOptimizer} committing the payment of every order as soon as it is submitted.<br>
+ * Orders are submitted one at a time or in micro-batches; the orders of a micro-batch are counted in the promotion
+ * counters of the payment methods and paid from the most expensive one, exactly like {@link ExpenseOptimizer#optimize()}
+ * does for the whole list. The promotion counters of the wallet passed to the constructor should therefore only count
+ * the orders expected later (usually none), not the submitted ones.<br>
+ * Leftover points are spent by {@link #finalizePayments()}, which replaces card payments of the orders paid with
+ * PUNKTY_10, starting from the most recently committed one, without processing other orders again.<br>
+ * Submitting one micro-batch with all orders and finalizing gives the same result as {@link ExpenseOptimizer#optimize()}.
+ * All methods are synchronized, so orders may be submitted from many threads.
+ */
+public class IncrementalOptimizer {
+    /** Optimizer whose single order step commits the payments and which remembers the PUNKTY_10 card parts */
+    private final ExpenseOptimizer engine;
+
+    /** {@link RadixSorter} sorting the micro-batches, its buffers reused by every batch */
+    private final RadixSorter sorter = new RadixSorter();
+
+    /** Number of committed orders */
+    private int paidOrders;
+
+    /**
+     * Constructor for the IncrementalOptimizer class.
+     *
+     * @param payments the map of {@link PaymentMethod}, changed by every committed order
+     * @param pointsMethod the points payment method
+     */
+    public IncrementalOptimizer(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        this.engine = new ExpenseOptimizer(new ArrayList<>(), payments, pointsMethod);
+        engine.ensureCardIndex();
+    }
+
+    /**
+     * Sets the listener receiving the payments of every order as soon as they are committed.
+     *
+     * @param listener the listener, or null
+     */
+    public synchronized void setPaymentListener(PaymentListener listener) {
+        engine.setPaymentListener(listener);
+    }
+
+    /**
+     * Chooses the payment methods of a single order and commits them.
+     *
+     * @param order the order to be paid
+     * @return true if the order was paid, false if no payment method could be selected, in which case nothing was paid
+     * @throws IllegalArgumentException exception thrown from {@link ExpenseOptimizer} and propagated further
+     */
+    public synchronized boolean submit(Order order) throws IllegalArgumentException {
+        engine.addPromotions(order);
+        return commit(order);
+    }
+
+    /**
+     * Chooses the payment methods of a micro-batch of orders and commits them, from the most expensive order.
+     * Orders that cannot be paid are skipped, so they do not prevent paying the rest of the batch.
+     *
+     * @param orders the orders to be paid
+     * @return the orders that could not be paid
+     * @throws IllegalArgumentException exception thrown from {@link ExpenseOptimizer} and propagated further
+     */
+    public synchronized List<Order> submit(List<Order> orders) throws IllegalArgumentException {
+        for (Order order : orders) {
+            engine.addPromotions(order);
+        }
+        List<Order> sorted = new ArrayList<>(orders);
+        sorter.sortByValue(sorted);
+
+        List<Order> unpaid = new ArrayList<>();
+        for (Order order : sorted) {
+            if (!commit(order)) {
+                unpaid.add(order);
+            }
+        }
+        return unpaid;
+    }
+
+    /**
+     * Spends the remaining points on the card parts of orders paid with PUNKTY_10, from the most recently committed
+     * order, until the points run out. Card parts fully replaced by points are not visited again, so every call only
+     * costs the number of orders it changes. Like {@link ExpenseOptimizer#optimize()}, it records the moved amounts
+     * in the payment methods, not in {@code Order.getUsedPaymentsMethods()}.
+     *
+     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#getMoneyBack(Money)} and propagated further
+     */
+    public synchronized void finalizePayments() throws IllegalArgumentException {
+        engine.spentRemainingPoints();
+    }
+
+    /**
+     * Returns the number of orders paid so far.
+     *
+     * @return the number of committed orders
+     */
+    public synchronized int getPaidOrders() {
+        return paidOrders;
+    }
+
+    /**
+     * Pays for an order already counted in the promotion counters.
+     *
+     * @param order the order to be paid
+     * @return true if the order was paid
+     */
+    private boolean commit(Order order) {
+        if (!engine.payOrder(order)) {
+            return false;
+        }
+        paidOrders++;
+        return true;
+    }
+}
@@ -0,0 +1,598 @@
+package ocado.optimization;
+
+import ocado.metrics.OptimizerMetrics;
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link ExpenseSolver} improving the result of the greedy {@link ExpenseOptimizer} with a time-budgeted local search.<br>
+ * The greedy result is turned into a choice of an option per order, with the options of {@link BranchAndBoundSolver},
+ * and random moves are applied to it until the budget runs out:
+ * <ul>
+ *   <li>swapping the cards of two orders</li>
+ *   <li>moving an order to another option: full points, PUNKTY_10 or another card</li>
+ *   <li>moving two orders at once, so that one can take the points or the card limit released by the other</li>
+ * </ul>
+ * Every move changes the options of at most two orders, so its effect on the total discount, the card loads and the
+ * points budget is evaluated in constant time. Results are compared by the discount, then by the points spent, and
+ * a move is kept if the result can still be paid and is not worse than the current one or than the one some moves ago
+ * (late acceptance hill climbing). The search stops at the deadline, after the iteration limit or on {@link #cancel()},
+ * and the best result found is recorded.<br>
+ * The search follows the payment rules strictly, while the greedy algorithm also applies the discount of a card paying
+ * an order without listing it as a promotion. Its result may then exceed the card limits under the strict rules, so
+ * the search first reduces the excess, and the greedy result is kept whenever the search ends without a payable
+ * result costing less.
+ */
+public class LocalSearchSolver implements ExpenseSolver {
+    /** Default wall-clock budget of the search */
+    public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(1);
+
+    /** Discount of the PUNKTY_10 method and the minimal share of an order paid with points, in basis points */
+    private static final int POINTS_10_BASIS_POINTS = 1_000;
+
+    /** Number of moves between two checks of the deadline and cancellation */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /** Number of past results a move is compared with by the late acceptance */
+    private static final int HISTORY_LENGTH = 256;
+
+    /** Seed of the random moves, fixed so that iteration budgets give reproducible results */
+    private static final long SEED = 20250517L;
+
+    /** List of orders to optimize */
+    private final List<Order> orders;
+
+    /** Map of available payment methods (excluding the points method) */
+    private final Map<String, PaymentMethod> payments;
+
+    /** Points payment method (PUNKTY) */
+    private final PaymentMethod pointsMethod;
+
+    /** Wall-clock budget of the search */
+    private final Duration budget;
+
+    /** Maximal number of moves */
+    private final long maxIterations;
+
+    /** Set by {@link #cancel()} */
+    private volatile boolean cancelled;
+
+    /** Number of moves tried by the last run */
+    private long iterations;
+
+    /** Number of moves of the last run that increased the discount or the points spent */
+    private long improvements;
+
+    /** Cards in the order of {@link #payments} */
+    private PaymentMethod[] cards;
+
+    /** Limits of the cards in cents */
+    private long[] cardLimits;
+
+    /** Discounts of the cards in basis points */
+    private int[] cardDiscounts;
+
+    /** Points limit in cents */
+    private long pointsLimit;
+
+    /** Values of the orders in cents */
+    private long[] values;
+
+    /** Indexes of the promotional cards of every order */
+    private int[][] promotions;
+
+    /** Amount due for every promotional card of every order, in cents */
+    private long[][] promotionDues;
+
+    /** Amount due for full payment with points of every order, in cents */
+    private long[] pointsDues;
+
+    /** Card amount of the PUNKTY_10 option of every order, in cents */
+    private long[] points10Loads;
+
+    /** Points amount of the PUNKTY_10 option of every order, in cents */
+    private long[] points10Points;
+
+    /** Option type of every order */
+    private int[] types;
+
+    /** Card of every order, or -1 for full payment with points */
+    private int[] orderCards;
+
+    /** Amount charged to every card before points top-ups */
+    private long[] load;
+
+    /** Amount of every card's load that points may take over */
+    private long[] flex;
+
+    /** Points that have to be spent on the chosen options */
+    private long pointsBase;
+
+    /** Sum of the amounts by which card limits are exceeded, which has to be paid with points */
+    private long overflow;
+
+    /** Sum of {@link #flex} */
+    private long flexTotal;
+
+    /** Sum of the amounts by which card limits are exceeded beyond what points may take over */
+    private long cardShortage;
+
+    /** Total discount of the chosen options */
+    private long discount;
+
+    /**
+     * Constructor for the LocalSearchSolver class with the {@link #DEFAULT_BUDGET} and no iteration limit.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     */
+    public LocalSearchSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        this(orders, payments, pointsMethod, DEFAULT_BUDGET, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for the LocalSearchSolver class.
+     *
+     * @param orders the list of orders
+     * @param payments the map of {@link PaymentMethod}
+     * @param pointsMethod the points payment method
+     * @param budget the wall-clock budget of the search
+     * @param maxIterations the maximal number of moves
+     */
+    public LocalSearchSolver(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod,
+                             Duration budget, long maxIterations) {
+        this.orders = orders;
+        this.payments = payments;
+        this.pointsMethod = pointsMethod;
+        this.budget = budget;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Stops the search of a running {@link #optimize()}, which then records the best result found so far. A later run
+     * of the solver keeps the greedy result. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the number of moves tried by the last run.
+     *
+     * @return the number of moves
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the number of moves of the last run that increased the discount or the points spent.
+     *
+     * @return the number of improving moves
+     */
+    public long getImprovements() {
+        return improvements;
+    }
+
+    /**
+     * Pays for the orders with the greedy algorithm, improves the result until the budget runs out and records it
+     * in the orders and payment methods.
+     *
+     * @return true if all orders were paid, false if the greedy algorithm could not pay for them
+     * @throws IllegalArgumentException thrown if an order has a negative value, or propagated from {@link ExpenseOptimizer}
+     */
+    @Override
+    public boolean optimize() throws IllegalArgumentException {
+        long start = System.nanoTime();
+        for (Order order : orders) {
+            if (order.getValue().isNegative()) {
+                throw new IllegalArgumentException("The value of order " + order.getId() + " cannot be a negative number!");
+            }
+        }
+        cards = payments.values().toArray(new PaymentMethod[0]);
+        Money[] limits = new Money[cards.length];
+        for (int c = 0; c < cards.length; c++) {
+            limits[c] = cards[c].getLimit();
+        }
+        Money pointsAvailable = pointsMethod.getLimit();
+        Money spentBefore = totalSpending();
+
+        if (!new ExpenseOptimizer(orders, payments, pointsMethod).optimize()) {
+            return false;
+        }
+        Money greedySpent = totalSpending().subtract(spentBefore);
+
+        buildModel(limits, pointsAvailable);
+        if (!readGreedyResult()) {
+            return true;
+        }
+        iterations = 0;
+        improvements = 0;
+        boolean found = search(start + budget.toNanos());
+        OptimizerMetrics.global().recordSince(OptimizerMetrics.Phase.LOCAL_SEARCH, start);
+
+        long total = Arrays.stream(values).sum();
+        if (!found || total - discount > greedySpent.getCents()) {
+            return true;
+        }
+
+        // The improved result is recorded instead of the greedy one.
+        for (int c = 0; c < cards.length; c++) {
+            cards[c].setSpending(cards[c].getSpending().subtract(limits[c].subtract(cards[c].getLimit())));
+            cards[c].setLimit(limits[c]);
+        }
+        pointsMethod.setSpending(pointsMethod.getSpending().subtract(pointsAvailable.subtract(pointsMethod.getLimit())));
+        pointsMethod.setLimit(pointsAvailable);
+        PaymentPlan plan = new PaymentPlan(orders.size());
+        for (int j = 0; j < orders.size(); j++) {
+            orders.get(j).clearPayments();
+            setOption(plan, j);
+        }
+        plan.record(orders, cards, cardLimits, pointsMethod, pointsLimit);
+        return true;
+    }
+
+    /**
+     * Sums the amounts spent with all payment methods.
+     *
+     * @return the total spending
+     */
+    private Money totalSpending() {
+        Money spent = pointsMethod.getSpending();
+        for (PaymentMethod pm : payments.values()) {
+            spent = spent.add(pm.getSpending());
+        }
+        return spent;
+    }
+
+    /**
+     * Precomputes the amounts of the options of every order. The orders are already sorted by the greedy algorithm.
+     *
+     * @param limits the limits of the cards before the greedy algorithm
+     * @param pointsAvailable the points limit before the greedy algorithm
+     */
+    private void buildModel(Money[] limits, Money pointsAvailable) {
+        cardLimits = new long[cards.length];
+        cardDiscounts = new int[cards.length];
+        for (int c = 0; c < cards.length; c++) {
+            cardLimits[c] = Math.max(0, limits[c].getCents());
+            cardDiscounts[c] = cards[c].getDiscount();
+        }
+        pointsLimit = Math.max(0, pointsAvailable.getCents());
+
+        int n = orders.size();
+        values = new long[n];
+        promotions = new int[n][];
+        promotionDues = new long[n][];
+        pointsDues = new long[n];
+        points10Loads = new long[n];
+        points10Points = new long[n];
+        for (int j = 0; j < n; j++) {
+            Order order = orders.get(j);
+            Money value = order.getValue();
+            long v = value.getCents();
+            values[j] = v;
+            promotions[j] = order.getPromotions().stream()
+                    .filter(payments::containsKey)
+                    .distinct()
+                    .mapToInt(s -> indexOf(payments.get(s)))
+                    .toArray();
+            promotionDues[j] = new long[promotions[j].length];
+            for (int k = 0; k < promotions[j].length; k++) {
+                promotionDues[j][k] = value.applyDiscount(cardDiscounts[promotions[j][k]]).getCents();
+            }
+            pointsDues[j] = value.applyDiscount(pointsMethod.getDiscount()).getCents();
+            long minPoints = (v + 9) / 10;
+            points10Loads[j] = v - value.percent(POINTS_10_BASIS_POINTS).getCents() - minPoints;
+            points10Points[j] = minPoints;
+        }
+        types = new int[n];
+        orderCards = new int[n];
+        load = new long[cards.length];
+        flex = new long[cards.length];
+        pointsBase = overflow = flexTotal = cardShortage = discount = 0;
+    }
+
+    /**
+     * Finds the position of a card in {@link #cards}.
+     *
+     * @param pm the card
+     * @return the index of the card
+     */
+    private int indexOf(PaymentMethod pm) {
+        for (int c = 0; c < cards.length; c++) {
+            if (cards[c] == pm) {
+                return c;
+            }
+        }
+        throw new IllegalStateException("Unknown payment method " + pm.getId());
+    }
+
+    /**
+     * Turns the payment methods recorded in the orders by the greedy algorithm into options. The options may exceed
+     * the limits, as the greedy algorithm charges discounted amounts to cards that are not promotional.
+     *
+     * @return true if every order was mapped to an option
+     */
+    private boolean readGreedyResult() {
+        for (int j = 0; j < orders.size(); j++) {
+            Map<String, Money> used = orders.get(j).getUsedPaymentsMethods();
+            int card = -1;
+            for (String method : used.keySet()) {
+                if (payments.containsKey(method)) {
+                    card = indexOf(payments.get(method));
+                }
+            }
+            int type;
+            if (used.containsKey("PUNKTY_10")) {
+                type = PaymentPlan.POINTS_10;
+            }
+            else if (card < 0) {
+                type = PaymentPlan.POINTS;
+            }
+            else {
+                type = isPromotion(j, card) ? PaymentPlan.PROMOTION : PaymentPlan.CARD;
+            }
+            if (card < 0 && type != PaymentPlan.POINTS) {
+                return false;
+            }
+            types[j] = type;
+            orderCards[j] = card;
+            change(j, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Applies random moves until the deadline, the iteration limit or cancellation, and restores the best options found.
+     * While the options exceed the limits, a move is accepted if it reduces the shortage. Otherwise it is accepted if
+     * it keeps the options payable and is not worse than the current options or than the options
+     * {@link #HISTORY_LENGTH} moves ago (late acceptance), which lets the search leave local optima.
+     *
+     * @param deadline the deadline, read from {@link System#nanoTime()}
+     * @return true if options that can be paid were found
+     */
+    private boolean search(long deadline) {
+        int n = values.length;
+        if (n == 0 || cards.length == 0) {
+            return shortage() == 0;
+        }
+        Random random = new Random(SEED);
+        long[] history = new long[HISTORY_LENGTH];
+        Arrays.fill(history, discount);
+        int[] bestTypes = types.clone();
+        int[] bestCards = orderCards.clone();
+        boolean found = shortage() == 0;
+        long bestDiscount = discount;
+        long bestPoints = spentPoints();
+        while (iterations < maxIterations) {
+            if (iterations % CHECK_INTERVAL == 0
+                    && (cancelled || System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted())) {
+                break;
+            }
+            int slot = (int) (iterations++ % HISTORY_LENGTH);
+            long oldShortage = shortage();
+            long oldDiscount = discount;
+            long oldPoints = spentPoints();
+
+            int j = random.nextInt(n);
+            int k = random.nextInt(n);
+            int oldTypeJ = types[j], oldCardJ = orderCards[j], oldTypeK = types[k], oldCardK = orderCards[k];
+            int move = random.nextInt(3);
+            if (move == 0) {
+                // Swapping the cards of two orders paid by card.
+                if (j == k || oldCardJ < 0 || oldCardK < 0 || oldCardJ == oldCardK) {
+                    continue;
+                }
+                assign(j, oldTypeJ == PaymentPlan.POINTS_10 ? PaymentPlan.POINTS_10 : fullCardType(j, oldCardK), oldCardK);
+                assign(k, oldTypeK == PaymentPlan.POINTS_10 ? PaymentPlan.POINTS_10 : fullCardType(k, oldCardJ), oldCardJ);
+            }
+            else {
+                reassign(j, random);
+                // A second order may have to give way, for example returning points or card limit to the first one.
+                if (move == 2 && j != k) {
+                    reassign(k, random);
+                }
+            }
+
+            long newShortage = shortage();
+            long newPoints = spentPoints();
+            boolean accepted = newShortage != oldShortage ? newShortage < oldShortage
+                    : discount != oldDiscount ? discount > oldDiscount || discount >= history[slot]
+                    : newPoints >= oldPoints;
+            if (!accepted) {
+                // The move is reverted in the reverse order of its changes.
+                assign(k, oldTypeK, oldCardK);
+                assign(j, oldTypeJ, oldCardJ);
+            }
+            else if (newShortage == 0
+                    && (!found || discount > bestDiscount || discount == bestDiscount && newPoints > bestPoints)) {
+                found = true;
+                improvements++;
+                bestDiscount = discount;
+                bestPoints = newPoints;
+                System.arraycopy(types, 0, bestTypes, 0, n);
+                System.arraycopy(orderCards, 0, bestCards, 0, n);
+            }
+            history[slot] = discount;
+        }
+        if (found) {
+            for (int j = 0; j < n; j++) {
+                assign(j, bestTypes[j], bestCards[j]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Moves an order to a random option: full points, PUNKTY_10 with a random card, one of its promotional cards
+     * or a random card without a discount.
+     *
+     * @param j the index of the order
+     * @param random the source of randomness
+     */
+    private void reassign(int j, Random random) {
+        int option = random.nextInt(pointsLimit > 0 ? 4 : 2);
+        if (option == 0 && promotions[j].length > 0) {
+            assign(j, PaymentPlan.PROMOTION, promotions[j][random.nextInt(promotions[j].length)]);
+        }
+        else if (option == 2) {
+            assign(j, PaymentPlan.POINTS_10, random.nextInt(cards.length));
+        }
+        else if (option == 3) {
+            assign(j, PaymentPlan.POINTS, -1);
+        }
+        else {
+            int card = random.nextInt(cards.length);
+            assign(j, fullCardType(j, card), card);
+        }
+    }
+
+    /**
+     * Returns the type of a full card payment of an order.
+     *
+     * @param j the index of the order
+     * @param card the index of the card
+     * @return {@link PaymentPlan#PROMOTION} if the order lists the card, {@link PaymentPlan#CARD} otherwise
+     */
+    private int fullCardType(int j, int card) {
+        return isPromotion(j, card) ? PaymentPlan.PROMOTION : PaymentPlan.CARD;
+    }
+
+    /**
+     * Checks whether an order lists a card as a promotion.
+     *
+     * @param j the index of the order
+     * @param card the index of the card
+     * @return true if the card is promotional for the order
+     */
+    private boolean isPromotion(int j, int card) {
+        for (int c : promotions[j]) {
+            if (c == card) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the option of an order.
+     *
+     * @param j the index of the order
+     * @param type the new option type
+     * @param card the new card, or -1 for full payment with points
+     */
+    private void assign(int j, int type, int card) {
+        change(j, -1);
+        types[j] = type;
+        orderCards[j] = card;
+        change(j, 1);
+    }
+
+    /**
+     * Adds or removes the amounts of the current option of an order.
+     *
+     * @param j the index of the order
+     * @param sign 1 to add the option, -1 to remove it
+     */
+    private void change(int j, int sign) {
+        long v = values[j];
+        int c = orderCards[j];
+        long cardLoad = 0, flexLoad = 0, points = 0, gain = 0;
+        switch (types[j]) {
+            case PaymentPlan.PROMOTION -> {
+                cardLoad = promotionDue(j, c);
+                gain = v - cardLoad;
+            }
+            case PaymentPlan.POINTS -> {
+                points = pointsDues[j];
+                gain = v - points;
+            }
+            case PaymentPlan.POINTS_10 -> {
+                cardLoad = flexLoad = points10Loads[j];
+                points = points10Points[j];
+                gain = v - cardLoad - points;
+            }
+            default -> cardLoad = flexLoad = v;
+        }
+        pointsBase += sign * points;
+        discount += sign * gain;
+        if (c >= 0) {
+            long before = excess(c);
+            long shortageBefore = Math.max(0, before - flex[c]);
+            load[c] += sign * cardLoad;
+            flex[c] += sign * flexLoad;
+            flexTotal += sign * flexLoad;
+            overflow += excess(c) - before;
+            cardShortage += Math.max(0, excess(c) - flex[c]) - shortageBefore;
+        }
+    }
+
+    /**
+     * Returns the amount due for an order paid in full with one of its promotional cards.
+     *
+     * @param j the index of the order
+     * @param card the index of the card
+     * @return the amount in cents
+     */
+    private long promotionDue(int j, int card) {
+        for (int k = 0; k < promotions[j].length; k++) {
+            if (promotions[j][k] == card) {
+                return promotionDues[j][k];
+            }
+        }
+        throw new IllegalStateException("Card " + cards[card].getId() + " is not a promotion of the order");
+    }
+
+    /**
+     * Adds the current option of an order to a plan.
+     *
+     * @param plan the plan
+     * @param j the index of the order
+     */
+    private void setOption(PaymentPlan plan, int j) {
+        int c = orderCards[j];
+        switch (types[j]) {
+            case PaymentPlan.PROMOTION -> plan.set(j, PaymentPlan.PROMOTION, c, promotionDue(j, c), 0, 0);
+            case PaymentPlan.POINTS -> plan.set(j, PaymentPlan.POINTS, -1, 0, 0, pointsDues[j]);
+            case PaymentPlan.POINTS_10 -> plan.set(j, PaymentPlan.POINTS_10, c, points10Loads[j], points10Loads[j], points10Points[j]);
+            default -> plan.set(j, PaymentPlan.CARD, c, values[j], values[j], 0);
+        }
+    }
+
+    /**
+     * Calculates by how much the chosen options exceed the limits of the cards and the points.
+     *
+     * @return 0 if the options can be paid, a positive amount in cents otherwise
+     */
+    private long shortage() {
+        return cardShortage + Math.max(0, pointsBase + overflow - pointsLimit);
+    }
+
+    /**
+     * Calculates by how much the load of a card exceeds its limit.
+     *
+     * @param c the index of the card
+     * @return the excess in cents
+     */
+    private long excess(int c) {
+        return Math.max(0, load[c] - cardLimits[c]);
+    }
+
+    /**
+     * Calculates the amount paid with points when the remaining points replace card payments.
+     *
+     * @return the amount in cents
+     */
+    private long spentPoints() {
+        return Math.min(pointsLimit, pointsBase + flexTotal);
+    }
+}
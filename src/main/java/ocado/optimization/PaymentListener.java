@@ -0,0 +1,37 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+
+import java.util.List;
+
+/**
+ * Receives the payments of orders as soon as {@link ExpenseOptimizer} commits them, so results can be streamed
+ * without keeping them in memory.
+ */
+public interface PaymentListener {
+    /**
+     * Amount charged to a payment method for an order.
+     *
+     * @param method the {@link ocado.model.PaymentMethod} identifier
+     * @param amount the charged amount, after the discount
+     */
+    record Allocation(String method, Money amount) {}
+
+    /**
+     * Called once for every paid order, right after its payments are committed.
+     *
+     * @param orderId the order identifier
+     * @param value the order value
+     * @param allocations the amounts charged to the payment methods
+     */
+    void orderPaid(String orderId, Money value, List<Allocation> allocations);
+
+    /**
+     * Called when remaining points replace a part of a card payment of an order paid earlier.
+     *
+     * @param orderId the order identifier
+     * @param card the identifier of the card that is given the amount back
+     * @param amount the amount moved from the card to points
+     */
+    default void pointsMoved(String orderId, String card, Money amount) {}
+}
@@ -0,0 +1,155 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.util.List;
+
+/**
+ * Payment option chosen for every order by a solver working on amounts in cents, recorded in the orders and
+ * payment methods by {@link #record}.<br>
+ * Every order is paid with one of the options of {@link BranchAndBoundSolver}. Points are distributed in closed
+ * form when the plan is recorded: every card whose limit is exceeded is relieved with points from the orders it pays
+ * for, and the remaining points replace further card payments, starting from the last order.
+ */
+final class PaymentPlan {
+    /** Option type: full payment with a promotional card */
+    static final int PROMOTION = 0;
+
+    /** Option type: full payment with points */
+    static final int POINTS = 1;
+
+    /** Option type: PUNKTY_10 with a card paying the rest */
+    static final int POINTS_10 = 2;
+
+    /** Option type: full payment with a card without a discount */
+    static final int CARD = 3;
+
+    /** Option type of every order */
+    private final int[] types;
+
+    /** Index of the card of every order, or -1 for full payment with points */
+    private final int[] cards;
+
+    /** Amount paid by card for every order, in cents */
+    private final long[] cardParts;
+
+    /** Amount paid with points for every order, in cents */
+    private final long[] pointsParts;
+
+    /** Part of the card amount of every order that points may take over, in cents */
+    private final long[] flexible;
+
+    /**
+     * Creates an empty plan.
+     *
+     * @param orderCount the number of orders
+     */
+    PaymentPlan(int orderCount) {
+        types = new int[orderCount];
+        cards = new int[orderCount];
+        cardParts = new long[orderCount];
+        pointsParts = new long[orderCount];
+        flexible = new long[orderCount];
+    }
+
+    /**
+     * Sets the option of an order.
+     *
+     * @param j the index of the order
+     * @param type the option type
+     * @param card the index of the used card, or -1 for full payment with points
+     * @param cardLoad the amount paid by card before any points top-up, in cents
+     * @param flex the part of the card amount that points may take over, in cents
+     * @param points the amount that has to be paid with points, in cents
+     */
+    void set(int j, int type, int card, long cardLoad, long flex, long points) {
+        types[j] = type;
+        cards[j] = card;
+        cardParts[j] = cardLoad;
+        flexible[j] = flex;
+        pointsParts[j] = points;
+    }
+
+    /**
+     * Distributes the points and records the plan in the orders and payment methods.
+     *
+     * @param orders the orders, in the order of the plan
+     * @param cardMethods the cards, in the order of the card indexes
+     * @param cardLimits the limits of the cards in cents
+     * @param pointsMethod the points payment method
+     * @param pointsLimit the points limit in cents
+     * @throws IllegalArgumentException thrown if the plan exceeds a limit
+     */
+    void record(List<Order> orders, PaymentMethod[] cardMethods, long[] cardLimits, PaymentMethod pointsMethod, long pointsLimit)
+            throws IllegalArgumentException {
+        int n = types.length;
+        long[] load = new long[cardMethods.length];
+        for (int j = 0; j < n; j++) {
+            if (cards[j] >= 0) {
+                load[cards[j]] += cardParts[j];
+            }
+        }
+
+        // Points relieve the cards whose limits are exceeded...
+        long freePoints = pointsLimit;
+        for (int j = 0; j < n; j++) {
+            freePoints -= pointsParts[j];
+        }
+        for (int j = 0; j < n; j++) {
+            int c = cards[j];
+            if (c < 0 || load[c] <= cardLimits[c]) {
+                continue;
+            }
+            long shift = Math.min(flexible[j], load[c] - cardLimits[c]);
+            move(j, shift);
+            load[c] -= shift;
+            freePoints -= shift;
+        }
+        // ...and the remaining ones replace card payments, starting from the cheapest orders.
+        for (int j = n - 1; j >= 0 && freePoints > 0; j--) {
+            long shift = Math.min(flexible[j], freePoints);
+            move(j, shift);
+            freePoints -= shift;
+        }
+
+        for (int j = 0; j < n; j++) {
+            Order order = orders.get(j);
+            switch (types[j]) {
+                case PROMOTION -> {
+                    cardMethods[cards[j]].spend(Money.ofCents(cardParts[j]));
+                    order.usePaymentsMethod(cardMethods[cards[j]].getId(), order.getValue());
+                    order.chargePaymentsMethod(cardMethods[cards[j]].getId(), cardParts[j]);
+                }
+                case POINTS -> {
+                    pointsMethod.spend(Money.ofCents(pointsParts[j]));
+                    order.usePaymentsMethod(pointsMethod.getId(), order.getValue());
+                    order.chargePaymentsMethod(pointsMethod.getId(), pointsParts[j]);
+                }
+                default -> {
+                    cardMethods[cards[j]].spend(Money.ofCents(cardParts[j]));
+                    order.usePaymentsMethod(cardMethods[cards[j]].getId(), Money.ofCents(cardParts[j]));
+                    order.chargePaymentsMethod(cardMethods[cards[j]].getId(), cardParts[j]);
+                    if (types[j] == POINTS_10 || pointsParts[j] > 0) {
+                        pointsMethod.spend(Money.ofCents(pointsParts[j]));
+                        order.usePaymentsMethod(types[j] == POINTS_10 ? "PUNKTY_10" : pointsMethod.getId(), Money.ofCents(pointsParts[j]));
+                        order.chargePaymentsMethod(pointsMethod.getId(), pointsParts[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves part of an order's card payment to points.
+     *
+     * @param j the index of the order
+     * @param amount the amount in cents
+     */
+    private void move(int j, long amount) {
+        cardParts[j] -= amount;
+        pointsParts[j] += amount;
+        flexible[j] -= amount;
+    }
+}
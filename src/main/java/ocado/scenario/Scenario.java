@@ -0,0 +1,151 @@
+package ocado.scenario;
+
+import ocado.model.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What-if variant of a {@link WalletSnapshot}: a name and the limits it changes.<br>
+ * A scenario is an overlay holding only its changes, everything else is read from the shared snapshot. It is
+ * immutable: {@link #withLimit(String, Money)} copies the few changes into a new scenario and leaves this one as it is.
+ */
+public final class Scenario {
+    /** Name of the scenario */
+    private final String name;
+
+    /** Changed limits in cents by payment method identifier */
+    private final Map<String, Long> limits;
+
+    /**
+     * Constructor used by the factory methods.
+     *
+     * @param name the name of the scenario
+     * @param limits the changed limits, not copied
+     */
+    private Scenario(String name, Map<String, Long> limits) {
+        this.name = name;
+        this.limits = limits;
+    }
+
+    /**
+     * Creates a scenario changing nothing.
+     *
+     * @param name the name of the scenario
+     * @return the scenario
+     */
+    public static Scenario named(String name) {
+        return new Scenario(name, Map.of());
+    }
+
+    /**
+     * Parses a scenario of the form {@code name:change,change...}, where every change is one of:
+     * <ul>
+     *   <li>{@code id=amount} - sets the limit of a payment method</li>
+     *   <li>{@code id+=amount} - adds to the limit, a negative amount lowers it</li>
+     *   <li>{@code id*=factor} - multiplies the limit, rounded to cents (HALF_UP)</li>
+     * </ul>
+     * Relative changes are resolved against the snapshot, for example {@code more points:PUNKTY+=500} or
+     * {@code double MegaBank:MegaBank*=2}.
+     *
+     * @param spec the scenario
+     * @param base the snapshot the scenario changes
+     * @return the scenario
+     * @throws IllegalArgumentException thrown if the scenario is malformed or names an unknown payment method
+     */
+    public static Scenario parse(String spec, WalletSnapshot base) throws IllegalArgumentException {
+        int colon = spec.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Invalid scenario '" + spec + "', expected name:change,change...");
+        }
+        Scenario scenario = named(spec.substring(0, colon).trim());
+        for (String change : spec.substring(colon + 1).split(",")) {
+            int equals = change.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Invalid change '" + change + "' in scenario '" + scenario.name + "'");
+            }
+            char operator = change.charAt(equals - 1);
+            boolean relative = operator == '+' || operator == '*';
+            String id = change.substring(0, relative ? equals - 1 : equals).trim();
+            String value = change.substring(equals + 1).trim();
+            if (!base.contains(id)) {
+                throw new IllegalArgumentException("Unknown payment method '" + id + "' in scenario '" + scenario.name + "'");
+            }
+            Money limit = scenario.getLimit(id, base);
+            try {
+                limit = switch (operator) {
+                    case '+' -> limit.add(Money.of(value));
+                    case '*' -> Money.of(new BigDecimal(limit.toString()).multiply(new BigDecimal(value))
+                            .setScale(2, RoundingMode.HALF_UP).toPlainString());
+                    default -> Money.of(value);
+                };
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IllegalArgumentException("Invalid amount '" + value + "' in scenario '" + scenario.name + "'");
+            }
+            if (limit.isNegative()) {
+                throw new IllegalArgumentException("The limit of '" + id + "' in scenario '" + scenario.name + "' cannot be negative!");
+            }
+            scenario = scenario.withLimit(id, limit);
+        }
+        return scenario;
+    }
+
+    /**
+     * Returns a scenario which also sets the limit of a payment method.
+     *
+     * @param id the identifier of a card or of the points method
+     * @param limit the limit
+     * @return the new scenario
+     */
+    public Scenario withLimit(String id, Money limit) {
+        Map<String, Long> changed = new LinkedHashMap<>(limits);
+        changed.put(id, limit.getCents());
+        return new Scenario(name, Collections.unmodifiableMap(changed));
+    }
+
+    /**
+     * Returns the name of the scenario.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the limits changed by the scenario.
+     *
+     * @return the unmodifiable map of the limits by payment method identifier
+     */
+    public Map<String, Money> getLimits() {
+        Map<String, Money> result = new LinkedHashMap<>();
+        limits.forEach((id, cents) -> result.put(id, Money.ofCents(cents)));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the limit of a payment method in the scenario.
+     *
+     * @param id the identifier of a card or of the points method
+     * @param baseLimit the limit in the snapshot in cents
+     * @return the limit in cents
+     */
+    long getLimit(String id, long baseLimit) {
+        return limits.getOrDefault(id, baseLimit);
+    }
+
+    /**
+     * Returns the limit of a payment method in the scenario.
+     *
+     * @param id the identifier of a card or of the points method
+     * @param base the snapshot
+     * @return the limit
+     */
+    private Money getLimit(String id, WalletSnapshot base) {
+        Long limit = limits.get(id);
+        return limit != null ? Money.ofCents(limit) : base.getLimit(id);
+    }
+}
@@ -0,0 +1,162 @@
+package ocado.scenario;
+
+import ocado.model.Money;
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates what-if {@link Scenario}s of a {@link WalletSnapshot} in parallel.<br>
+ * The orders are parsed once into an {@link OrderTable}, which the greedy {@link ExpenseOptimizer} only reads, so a
+ * single table is shared by all scenarios. Every scenario runs on its own payment methods materialized from the
+ * snapshot, and the results are compared in a table of the total discount and the spending per payment method.
+ */
+public class ScenarioEvaluator {
+    /** Table of the orders, shared read-only by all scenarios */
+    private final OrderTable table;
+
+    /** Wallet the scenarios change */
+    private final WalletSnapshot wallet;
+
+    /** Pool evaluating the scenarios */
+    private final ForkJoinPool pool;
+
+    /** Total value of the orders in cents */
+    private final long totalValue;
+
+    /**
+     * Constructor for the ScenarioEvaluator class, using the common fork-join pool.
+     *
+     * @param table the table of orders
+     * @param wallet the wallet the scenarios change
+     */
+    public ScenarioEvaluator(OrderTable table, WalletSnapshot wallet) {
+        this(table, wallet, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the ScenarioEvaluator class.
+     *
+     * @param table the table of orders
+     * @param wallet the wallet the scenarios change
+     * @param pool the pool evaluating the scenarios
+     */
+    public ScenarioEvaluator(OrderTable table, WalletSnapshot wallet, ForkJoinPool pool) {
+        this.table = table;
+        this.wallet = wallet;
+        this.pool = pool;
+        long total = 0;
+        for (int i = 0; i < table.size(); i++) {
+            total = Math.addExact(total, table.getValueCents(i));
+        }
+        this.totalValue = total;
+    }
+
+    /**
+     * Evaluates scenarios in parallel.
+     *
+     * @param scenarios the scenarios
+     * @return the results, in the order of the scenarios
+     */
+    public List<ScenarioResult> evaluate(List<Scenario> scenarios) {
+        List<Future<ScenarioResult>> futures = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            futures.add(pool.submit(() -> evaluate(scenario)));
+        }
+        List<ScenarioResult> results = new ArrayList<>();
+        for (Future<ScenarioResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while evaluating the scenarios", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates a single scenario.
+     *
+     * @param scenario the scenario
+     * @return the result
+     */
+    public ScenarioResult evaluate(Scenario scenario) {
+        WalletSnapshot.Wallet scenarioWallet = wallet.materialize(scenario);
+        PaymentMethod pointsMethod = scenarioWallet.pointsMethod();
+        boolean solved;
+        String error = null;
+        try {
+            solved = new ExpenseOptimizer(table, scenarioWallet.payments(), pointsMethod).optimize();
+        } catch (IllegalArgumentException e) {
+            solved = false;
+            error = e.getMessage();
+        }
+
+        Map<String, Money> spending = new LinkedHashMap<>();
+        long spent = pointsMethod.getSpendingCents();
+        if (pointsMethod.getId() != null) {
+            spending.put(pointsMethod.getId(), pointsMethod.getSpending());
+        }
+        for (PaymentMethod pm : scenarioWallet.payments().values()) {
+            spending.put(pm.getId(), pm.getSpending());
+            spent += pm.getSpendingCents();
+        }
+        return new ScenarioResult(scenario.getName(), solved, Money.ofCents(totalValue - spent),
+                Collections.unmodifiableMap(spending), error);
+    }
+
+    /**
+     * Formats results as a text table with a row per scenario and a column per payment method.
+     *
+     * @param results the results
+     * @return the table, every line ended by a line separator
+     */
+    public static String formatTable(List<ScenarioResult> results) {
+        List<String> header = new ArrayList<>(List.of("Scenario", "Solved", "Discount"));
+        if (!results.isEmpty()) {
+            header.addAll(results.getFirst().spending().keySet());
+        }
+        List<List<String>> rows = new ArrayList<>();
+        rows.add(header);
+        for (ScenarioResult result : results) {
+            List<String> row = new ArrayList<>(List.of(result.name(), result.solved() ? "yes" : "no",
+                    result.solved() ? result.discount().toString() : "-"));
+            for (Money spent : result.spending().values()) {
+                row.add(spent.toString());
+            }
+            rows.add(row);
+        }
+
+        int[] widths = new int[header.size()];
+        for (List<String> row : rows) {
+            for (int k = 0; k < row.size(); k++) {
+                widths[k] = Math.max(widths[k], row.get(k).length());
+            }
+        }
+        StringBuilder table = new StringBuilder();
+        for (List<String> row : rows) {
+            for (int k = 0; k < row.size(); k++) {
+                // The name is aligned to the left, the amounts to the right.
+                String format = k == 0 ? "%-" + widths[k] + "s" : "  %" + widths[k] + "s";
+                table.append(String.format(format, row.get(k)));
+            }
+            table.append(System.lineSeparator());
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package ocado.scenario;
+
+import ocado.model.Money;
+
+import java.util.Map;
+
+/**
+ * Result of a {@link Scenario}.
+ *
+ * @param name the name of the scenario
+ * @param solved whether all orders were paid
+ * @param discount the total discount: the value of the orders minus the amount spent, meaningful if solved
+ * @param spending the amounts spent with the points method and the cards, in the order of the snapshot
+ * @param error the message of the exception thrown by the optimizer, or null
+ */
+public record ScenarioResult(String name, boolean solved, Money discount, Map<String, Money> spending, String error) {}
@@ -0,0 +1,168 @@
+package ocado.scenario;
+
+import ocado.model.Money;
+import ocado.model.PaymentMethod;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the payment methods of a customer, the base of every {@link Scenario}.<br>
+ * The snapshot is taken once and shared by all scenarios, which only record the limits they change. A scenario is
+ * turned into the mutable payment methods an optimizer works on by {@link #materialize(Scenario)}, so a run changes
+ * neither the snapshot nor the payment methods it was taken from.
+ */
+public final class WalletSnapshot {
+    /** Identifiers of the cards, in the iteration order of the map the snapshot was taken from */
+    private final List<String> cardIds;
+
+    /** Discounts of the cards in basis points */
+    private final int[] discounts;
+
+    /** Limits of the cards in cents */
+    private final long[] limits;
+
+    /** Numbers of orders the cards are promoted in */
+    private final int[] ordersAmounts;
+
+    /** Indexes of the cards by their identifiers */
+    private final Map<String, Integer> indexes;
+
+    /** Identifier of the points method, which may be null */
+    private final String pointsId;
+
+    /** Discount of the points method in basis points */
+    private final int pointsDiscount;
+
+    /** Limit of the points method in cents */
+    private final long pointsLimit;
+
+    /**
+     * Mutable payment methods of a scenario.
+     *
+     * @param payments the map of cards (excluding the points method), in the order of the snapshot
+     * @param pointsMethod the points payment method
+     */
+    public record Wallet(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {}
+
+    /**
+     * Constructor used by {@link #of(Map, PaymentMethod)}.
+     *
+     * @param payments the map of cards (excluding the points method)
+     * @param pointsMethod the points payment method
+     */
+    private WalletSnapshot(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        int n = payments.size();
+        discounts = new int[n];
+        limits = new long[n];
+        ordersAmounts = new int[n];
+        Map<String, Integer> cardIndexes = new LinkedHashMap<>();
+        int c = 0;
+        for (Map.Entry<String, PaymentMethod> entry : payments.entrySet()) {
+            PaymentMethod pm = entry.getValue();
+            discounts[c] = pm.getDiscount();
+            limits[c] = pm.getLimitCents();
+            ordersAmounts[c] = pm.getOrdersAmount();
+            cardIndexes.put(entry.getKey(), c++);
+        }
+        indexes = Collections.unmodifiableMap(cardIndexes);
+        cardIds = List.copyOf(cardIndexes.keySet());
+        pointsId = pointsMethod.getId();
+        pointsDiscount = pointsMethod.getDiscount();
+        pointsLimit = pointsMethod.getLimitCents();
+    }
+
+    /**
+     * Takes a snapshot of payment methods.
+     *
+     * @param payments the map of cards (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @return the snapshot
+     */
+    public static WalletSnapshot of(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        return new WalletSnapshot(payments, pointsMethod);
+    }
+
+    /**
+     * Returns the identifiers of the cards.
+     *
+     * @return the identifiers, in the order of the snapshot
+     */
+    public List<String> getCardIds() {
+        return cardIds;
+    }
+
+    /**
+     * Returns the identifier of the points method.
+     *
+     * @return the identifier, or null if the points method has none
+     */
+    public String getPointsId() {
+        return pointsId;
+    }
+
+    /**
+     * Checks whether a payment method is part of the snapshot.
+     *
+     * @param id the identifier of a card or of the points method
+     * @return true if there is such a payment method
+     */
+    public boolean contains(String id) {
+        return indexes.containsKey(id) || id.equals(pointsId);
+    }
+
+    /**
+     * Returns the limit of a payment method in the snapshot.
+     *
+     * @param id the identifier of a card or of the points method
+     * @return the limit
+     * @throws IllegalArgumentException thrown if there is no such payment method
+     */
+    public Money getLimit(String id) throws IllegalArgumentException {
+        if (id.equals(pointsId)) {
+            return Money.ofCents(pointsLimit);
+        }
+        Integer c = indexes.get(id);
+        if (c == null) {
+            throw new IllegalArgumentException("Unknown payment method '" + id + "'");
+        }
+        return Money.ofCents(limits[c]);
+    }
+
+    /**
+     * Creates the mutable payment methods of a scenario: the values of the snapshot with the limits changed by the
+     * scenario.
+     *
+     * @param scenario the scenario
+     * @return fresh payment methods, not shared with any other scenario
+     */
+    public Wallet materialize(Scenario scenario) {
+        Map<String, PaymentMethod> payments = new LinkedHashMap<>();
+        for (int c = 0; c < cardIds.size(); c++) {
+            String id = cardIds.get(c);
+            payments.put(id, create(id, discounts[c], scenario.getLimit(id, limits[c]), ordersAmounts[c]));
+        }
+        PaymentMethod pointsMethod = create(pointsId, pointsDiscount,
+                pointsId != null ? scenario.getLimit(pointsId, pointsLimit) : pointsLimit, 0);
+        return new Wallet(payments, pointsMethod);
+    }
+
+    /**
+     * Creates a payment method.
+     *
+     * @param id the identifier
+     * @param discount the discount in basis points
+     * @param limit the limit in cents
+     * @param ordersAmount the number of orders the method is promoted in
+     * @return the payment method
+     */
+    private static PaymentMethod create(String id, int discount, long limit, int ordersAmount) {
+        PaymentMethod pm = new PaymentMethod(id, "0", "0.00");
+        pm.setDiscount(discount);
+        pm.setLimitCents(limit);
+        pm.setOrdersAmount(ordersAmount);
+        return pm;
+    }
+}
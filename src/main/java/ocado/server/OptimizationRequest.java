@@ -0,0 +1,17 @@
+package ocado.server;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+
+import java.util.List;
+
+/**
+ * Body of a request to {@link OptimizationServer}: the orders and the wallet of a single customer, in the same
+ * format as the input files.
+ *
+ * @param orders the orders to pay for
+ * @param paymentMethods the payment methods, including PUNKTY
+ */
+public record OptimizationRequest(@JsonProperty("orders") List<Order> orders,
+                                  @JsonProperty("paymentMethods") List<PaymentMethod> paymentMethods) {}
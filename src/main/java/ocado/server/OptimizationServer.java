@@ -0,0 +1,358 @@
+package ocado.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ocado.cache.InputKey;
+import ocado.cache.ResultCache;
+import ocado.metrics.OptimizerMetrics;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import ocado.optimization.ExpenseSolver;
+import ocado.utils.JsonProcessor;
+import ocado.utils.NdjsonResultWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP service optimizing the expenses of a single customer per request, built on the JDK's {@link HttpServer}.<br>
+ * Endpoints:
+ * <ul>
+ *   <li>{@code POST /optimize[?solver=greedy|local|decompose|beam]} - the body is an {@link OptimizationRequest}; the
+ *   response is the result written by {@link NdjsonResultWriter}, streamed while the greedy algorithm pays the
+ *   orders</li>
+ *   <li>{@code GET /metrics} - the {@link OptimizerMetrics} as JSON</li>
+ *   <li>{@code GET /cache} - the {@link ResultCache.Stats} as JSON, if the server has a cache</li>
+ * </ul>
+ * Every request runs on its own virtual thread and works on the orders and payment methods deserialized from its
+ * body, so no mutable state is shared between requests. The JSON reader and writer are built once and shared, as
+ * they are thread-safe. Only the {@link #SOLVERS} whose running time is bounded by the size of the request can be
+ * chosen, so a client cannot occupy the shared fork-join pool with the exact search. Invalid requests are answered
+ * with status 400 and a {@code {"error":...}} body. An unexpected failure is answered with status 500, or ends a
+ * response already streamed with a failed status record.<br>
+ * With a {@link ResultCache}, the response bodies are cached under the {@link InputKey} of the request, so a repeated
+ * request is answered with the bytes of the first response without running the solver. Responses are then buffered
+ * instead of streamed, to be stored once they are complete.
+ */
+public class OptimizationServer {
+    /** Names of the solvers a request can choose, the first one is the default */
+    public static final List<String> SOLVERS = List.of("greedy", "local", "decompose", "beam");
+
+    /** Reader of request bodies */
+    private static final ObjectReader REQUEST_READER = new ObjectMapper().readerFor(OptimizationRequest.class);
+
+    /** Writer of error bodies */
+    private static final ObjectWriter ERROR_WRITER = new ObjectMapper().writerFor(Map.class);
+
+    /** Writer of the statistics of the cache */
+    private static final ObjectWriter STATS_WRITER = new ObjectMapper().writerFor(ResultCache.Stats.class);
+
+    /** Prefix of the namespace of the cached response bodies, followed by the name of the solver */
+    private static final String CACHE_NAMESPACE = "ndjson/";
+
+    /** Content type of the optimization results */
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    static {
+        // The server writes the headers and the body of a response separately, so with Nagle's algorithm every small
+        // response waits for the delayed acknowledgement of the client. The JDK server reads this property once.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /** Underlying HTTP server */
+    private final HttpServer server;
+
+    /** Executor starting a virtual thread per request */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Cache of the response bodies, or null */
+    private final ResultCache cache;
+
+    /**
+     * Constructor creating a server bound to a port, without a cache. The server does not accept requests until
+     * {@link #start()}.
+     *
+     * @param port the port, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public OptimizationServer(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * Constructor creating a server bound to a port. The server does not accept requests until {@link #start()}.
+     *
+     * @param port the port, 0 for any free port
+     * @param cache the cache of the response bodies, or null
+     * @throws IOException if the port cannot be bound
+     */
+    public OptimizationServer(int port, ResultCache cache) throws IOException {
+        this.cache = cache;
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/optimize", this::handleOptimize);
+        server.createContext("/metrics", this::handleMetrics);
+        if (cache != null) {
+            server.createContext("/cache", this::handleCache);
+        }
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits for the requests in progress.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.close();
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles an optimization request.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleOptimize(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Only POST is supported");
+                return;
+            }
+            long parseStart = System.nanoTime();
+            OptimizationRequest request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = REQUEST_READER.readValue(body);
+            } catch (JsonProcessingException e) {
+                sendError(exchange, 400, "Invalid request body: " + e.getOriginalMessage());
+                return;
+            }
+            String invalid = validate(request);
+            if (invalid != null) {
+                sendError(exchange, 400, invalid);
+                return;
+            }
+
+            try {
+                optimize(exchange, request, parseStart);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                if (exchange.getResponseCode() != -1) {
+                    throw e;
+                }
+                sendError(exchange, 500, "Optimization failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Optimizes a valid request and sends the result.
+     *
+     * @param exchange the exchange
+     * @param request the request
+     * @param parseStart the {@link System#nanoTime()} at which the request started being read
+     * @throws IOException if the response cannot be sent
+     */
+    private void optimize(HttpExchange exchange, OptimizationRequest request, long parseStart) throws IOException {
+        List<Order> orders = request.orders();
+        Map<String, PaymentMethod> payments;
+        String solverName;
+        ExpenseSolver solver;
+        PaymentMethod pointsMethod;
+        try {
+            payments = JsonProcessor.toPaymentsMap(request.paymentMethods(), orders);
+            pointsMethod = payments.remove("PUNKTY");
+            if (pointsMethod == null) {
+                pointsMethod = new PaymentMethod("-1.00", "-1.00");
+            }
+            solverName = solverName(exchange.getRequestURI());
+            solver = ExpenseSolver.create(solverName, orders, payments, pointsMethod);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        OptimizerMetrics.global().recordSince(OptimizerMetrics.Phase.PARSE, parseStart);
+
+        exchange.getResponseHeaders().set("Content-Type", NDJSON_CONTENT_TYPE);
+        InputKey key = null;
+        ByteArrayOutputStream buffer = null;
+        if (cache != null) {
+            key = InputKey.of(CACHE_NAMESPACE + solverName, orders, payments, pointsMethod);
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                exchange.sendResponseHeaders(200, cached.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(cached);
+                }
+                return;
+            }
+            buffer = new ByteArrayOutputStream();
+        }
+        else {
+            exchange.sendResponseHeaders(200, 0);
+        }
+        try (NdjsonResultWriter writer = new NdjsonResultWriter(buffer != null ? buffer : exchange.getResponseBody())) {
+            boolean streaming = solver instanceof ExpenseOptimizer;
+            if (streaming) {
+                ((ExpenseOptimizer) solver).setPaymentListener(writer);
+            }
+            boolean solved;
+            try {
+                solved = solver.optimize();
+            } catch (IllegalArgumentException e) {
+                solved = false;
+            } catch (UncheckedIOException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (buffer != null) {
+                    // Nothing was sent yet, the failure is answered with status 500 and not cached.
+                    throw e;
+                }
+                writer.writeFailure("Optimization failed: " + e);
+                return;
+            }
+            writer.writeResult(solved, streaming ? null : orders, payments, pointsMethod);
+        }
+        if (buffer != null) {
+            byte[] response = buffer.toByteArray();
+            cache.put(key, response);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+    }
+
+    /**
+     * Handles a request for the statistics of the cache.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleCache(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = STATS_WRITER.writeValueAsBytes(cache.getStats());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Handles a metrics request.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = OptimizerMetrics.global().getJson().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Checks that a request has all the fields the solvers need.
+     *
+     * @param request the deserialized request, or null
+     * @return the reason the request is invalid, or null if it is valid
+     */
+    private static String validate(OptimizationRequest request) {
+        if (request == null || request.orders() == null || request.paymentMethods() == null) {
+            return "The request needs the orders and paymentMethods fields";
+        }
+        for (Order order : request.orders()) {
+            if (order == null) {
+                return "The orders cannot contain null";
+            }
+            if (order.getPromotions().contains(null)) {
+                return "The promotions of order '" + order.getId() + "' cannot contain null";
+            }
+        }
+        for (PaymentMethod pm : request.paymentMethods()) {
+            if (pm == null || pm.getId() == null) {
+                return "Every payment method needs an id";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the solver name from the {@code solver} query parameter.
+     *
+     * @param uri the request URI
+     * @return the solver name, the default solver if the parameter is missing
+     * @throws IllegalArgumentException thrown if the solver is not one of the {@link #SOLVERS}
+     */
+    private static String solverName(URI uri) throws IllegalArgumentException {
+        String query = uri.getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("solver=")) {
+                    String name = parameter.substring("solver=".length());
+                    if (!SOLVERS.contains(name)) {
+                        throw new IllegalArgumentException("Solver '" + name + "' is not available, available solvers: "
+                                + String.join(", ", SOLVERS));
+                    }
+                    return name;
+                }
+            }
+        }
+        return SOLVERS.get(0);
+    }
+
+    /**
+     * Sends an error response.
+     *
+     * @param exchange the exchange
+     * @param status the HTTP status
+     * @param message the error message
+     * @throws IOException if the response cannot be sent
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = ERROR_WRITER.writeValueAsBytes(Map.of("error", String.valueOf(message)));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
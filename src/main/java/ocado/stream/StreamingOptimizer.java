@@ -0,0 +1,240 @@
+package ocado.stream;
+
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.IncrementalOptimizer;
+import ocado.utils.JsonProcessor;
+import ocado.utils.NdjsonResultWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optimizes a stream of newline-delimited orders, such as the standard input of a Unix pipeline, writing the
+ * payments as newline-delimited JSON while the orders are still arriving.<br>
+ * A parser thread reads the orders and puts them into a bounded queue, so it waits when the optimizer falls behind.
+ * The optimizer fills a window with the orders of the queue, waiting for the next orders for at most the linger time
+ * after the first one, commits the window with an {@link IncrementalOptimizer} from the most expensive order and
+ * flushes its records, so a reader of the output receives them while the next window is parsed. Only the queue and the
+ * current window are held in memory, and an order waits for at most the linger time and the optimization of its window
+ * before its payment is written.<br>
+ * An input arriving faster than the linger time is cut into full windows, so its payments are the same in every run;
+ * a slower input is cut where it pauses.<br>
+ * Orders that cannot be paid are written as unpaid records instead of ending the stream. At the end of the input the
+ * remaining points are spent, and the totals (if every order was paid) and the status close the output.
+ */
+public class StreamingOptimizer {
+    /** Default maximal number of orders committed together */
+    public static final int DEFAULT_WINDOW = 1024;
+
+    /** Default time the first order of a window waits for the rest of the window */
+    public static final Duration DEFAULT_LINGER = Duration.ofMillis(50);
+
+    /** Number of windows of parsed orders the queue holds before the parser waits */
+    private static final int QUEUE_WINDOWS = 4;
+
+    /** Order marking the end of the input in the queue */
+    private static final Order END = new Order("", "0", null);
+
+    /** Payment methods (excluding the points method), changed by every committed order */
+    private final Map<String, PaymentMethod> payments;
+
+    /** Points payment method */
+    private final PaymentMethod pointsMethod;
+
+    /** Maximal number of orders committed together */
+    private final int window;
+
+    /** Time the first order of a window waits for the rest of the window, in nanoseconds */
+    private final long lingerNanos;
+
+    /** Error of the parser thread, set before {@link #END} is queued */
+    private volatile IOException parseError;
+
+    /**
+     * Summary of a streaming run.
+     *
+     * @param paid the number of paid orders
+     * @param unpaid the number of orders that could not be paid
+     * @param windows the number of committed windows
+     */
+    public record Summary(int paid, int unpaid, int windows) {
+        /**
+         * Checks whether every order was paid.
+         *
+         * @return true if no order was left unpaid
+         */
+        public boolean solved() {
+            return unpaid == 0;
+        }
+    }
+
+    /**
+     * Constructor for the StreamingOptimizer class.
+     *
+     * @param payments the payment methods (excluding the points method), whose order counts should only count
+     *                 orders expected outside the stream, usually none
+     * @param pointsMethod the points payment method
+     * @param window the maximal number of orders committed together
+     * @param linger the time the first order of a window waits for the rest of the window
+     * @throws IllegalArgumentException thrown if the window is not positive or the linger time is negative
+     */
+    public StreamingOptimizer(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod, int window, Duration linger)
+            throws IllegalArgumentException {
+        if (window < 1) {
+            throw new IllegalArgumentException("The window must be positive: " + window);
+        }
+        if (linger.isNegative()) {
+            throw new IllegalArgumentException("The linger time must not be negative: " + linger);
+        }
+        this.payments = payments;
+        this.pointsMethod = pointsMethod;
+        this.window = window;
+        this.lingerNanos = linger.toNanos();
+    }
+
+    /**
+     * Reads the orders until the end of the input and writes their payments and the end of the result.
+     *
+     * @param input the newline-delimited orders, not closed
+     * @param writer the writer of the result, flushed after every window
+     * @return the summary of the run
+     * @throws IOException if the input is malformed or cannot be read, or the result cannot be written
+     * @throws IllegalArgumentException exception thrown from {@link IncrementalOptimizer} and propagated further
+     * @throws InterruptedException if the thread is interrupted while waiting for orders
+     */
+    public Summary run(InputStream input, NdjsonResultWriter writer)
+            throws IOException, IllegalArgumentException, InterruptedException {
+        BlockingQueue<Order> queue = new ArrayBlockingQueue<>(QUEUE_WINDOWS * window);
+        parseError = null;
+        Thread parser = Thread.ofPlatform().daemon().name("order-stream-parser").start(() -> parse(input, queue));
+
+        IncrementalOptimizer optimizer = new IncrementalOptimizer(payments, pointsMethod);
+        optimizer.setPaymentListener(writer);
+        List<Order> orders = new ArrayList<>(window);
+        int unpaid = 0;
+        int windows = 0;
+        try {
+            while (true) {
+                boolean ended = fillWindow(queue, orders);
+                if (!orders.isEmpty()) {
+                    for (Order order : optimizer.submit(orders)) {
+                        writer.writeUnpaid(order);
+                        unpaid++;
+                    }
+                    windows++;
+                    orders.clear();
+                    writer.flush();
+                }
+                if (ended) {
+                    break;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // Stops a parser waiting for space in the queue after a failure.
+            parser.interrupt();
+        }
+        if (parseError != null) {
+            throw parseError;
+        }
+
+        try {
+            optimizer.finalizePayments();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (unpaid == 0) {
+            writer.writeTotals(pointsMethod, payments.values());
+        }
+        writer.writeStatus(unpaid == 0);
+        writer.flush();
+        return new Summary(optimizer.getPaidOrders(), unpaid, windows);
+    }
+
+    /**
+     * Fills a window with the orders of the queue: waits for the first order, then for the rest of the window until
+     * the linger time after the first order passes.
+     *
+     * @param queue the queue of parsed orders
+     * @param orders the empty window, filled with the orders
+     * @return true if the input ended, the end not being added to the window
+     * @throws InterruptedException if the thread is interrupted while waiting for orders
+     */
+    private boolean fillWindow(BlockingQueue<Order> queue, List<Order> orders) throws InterruptedException {
+        Order order = queue.take();
+        long deadline = System.nanoTime() + lingerNanos;
+        while (order != END) {
+            orders.add(order);
+            queue.drainTo(orders, window - orders.size());
+            if (orders.get(orders.size() - 1) == END) {
+                orders.remove(orders.size() - 1);
+                return true;
+            }
+            if (orders.size() == window) {
+                return false;
+            }
+            order = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (order == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Body of the parser thread: puts the orders of the input into the queue, then {@link #END}.
+     *
+     * @param input the newline-delimited orders
+     * @param queue the queue of parsed orders
+     */
+    private void parse(InputStream input, BlockingQueue<Order> queue) {
+        boolean cancelled = false;
+        try {
+            JsonProcessor.readOrderLines(input, order -> {
+                try {
+                    queue.put(order);
+                } catch (InterruptedException e) {
+                    throw new CancellationSignal();
+                }
+            });
+        } catch (IOException e) {
+            parseError = e;
+        } catch (CancellationSignal e) {
+            // The optimizer failed and no longer takes any order.
+            cancelled = true;
+        } catch (RuntimeException e) {
+            parseError = new IOException("Unable to parse the orders: " + e, e);
+        } finally {
+            // Queued whatever stopped the parser, so the optimizer never waits for an order forever.
+            if (!cancelled) {
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    // The optimizer failed while the queue was full.
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown through the parser callback to stop the parser thread when it is interrupted.
+     */
+    private static final class CancellationSignal extends RuntimeException {
+        /**
+         * Constructor for the CancellationSignal class, without a stack trace as it only unwinds the parser.
+         */
+        CancellationSignal() {
+            super(null, null, false, false);
+        }
+    }
+}
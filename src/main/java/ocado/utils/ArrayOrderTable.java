@@ -0,0 +1,192 @@
+package ocado.utils;
+
+import ocado.model.Order;
+import ocado.model.OrderTable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link OrderTable} kept in growable primitive arrays, filled while orders are read.<br>
+ * Promotion identifiers are interned when an order is added, and order identifiers are kept as UTF-8 bytes in a
+ * single pool and decoded on demand like in {@link MappedOrderTable}, so every order only costs a value, the bytes of
+ * its id and an int per promotion instead of an {@link Order} object with its collections and strings.
+ */
+public class ArrayOrderTable implements OrderTable {
+    /** Number of orders */
+    private int size;
+
+    /** Values of the orders in cents */
+    private long[] values = new long[1024];
+
+    /** Offsets of the promotions of every order in {@link #pool} */
+    private int[] promotionOffsets = new int[1025];
+
+    /** Promotion pool: indexes of promotion names */
+    private int[] pool = new int[1024];
+
+    /** UTF-8 bytes of the identifiers of the orders, one after another */
+    private byte[] idBytes = new byte[16 * 1024];
+
+    /** Offsets of the identifier of every order in {@link #idBytes} */
+    private int[] idOffsets = new int[1025];
+
+    /** Indexes of the interned promotion names */
+    private final Map<String, Integer> nameIndexes = new HashMap<>();
+
+    /** Interned promotion names in the order of their indexes */
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Default constructor creating an empty table.
+     */
+    public ArrayOrderTable() {}
+
+    /**
+     * Appends an order to the table. Null promotions are skipped.
+     *
+     * @param order the order
+     */
+    public void add(Order order) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            promotionOffsets = Arrays.copyOf(promotionOffsets, size * 2 + 1);
+            idOffsets = Arrays.copyOf(idOffsets, size * 2 + 1);
+        }
+        values[size] = order.getValue().getCents();
+        addId(order.getId());
+
+        int poolSize = promotionOffsets[size];
+        List<String> promotions = order.getPromotions();
+        if (poolSize + promotions.size() > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + promotions.size()));
+        }
+        for (String s : promotions) {
+            if (s == null) {
+                // A null promotion never names a payment method, so it is not stored.
+                continue;
+            }
+            pool[poolSize++] = nameIndexes.computeIfAbsent(s, name -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+        }
+        promotionOffsets[size + 1] = poolSize;
+        size++;
+    }
+
+    /**
+     * Appends the identifier of the next order to the pool.
+     *
+     * @param id the identifier
+     */
+    private void addId(String id) {
+        int start = idOffsets[size];
+        // Identifiers are usually ASCII, which is copied without encoding into a temporary array.
+        int length = id.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = id.charAt(i) < 0x80;
+        }
+        byte[] encoded = ascii ? null : id.getBytes(StandardCharsets.UTF_8);
+        int end = Math.addExact(start, ascii ? length : encoded.length);
+        if (end > idBytes.length) {
+            idBytes = Arrays.copyOf(idBytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * idBytes.length, end)));
+        }
+        if (ascii) {
+            for (int i = 0; i < length; i++) {
+                idBytes[start + i] = (byte) id.charAt(i);
+            }
+        }
+        else {
+            System.arraycopy(encoded, 0, idBytes, start, encoded.length);
+        }
+        idOffsets[size + 1] = end;
+    }
+
+    /**
+     * Appends all orders of another table, in their order.
+     *
+     * @param other the table whose orders are appended
+     */
+    public void addAll(ArrayOrderTable other) {
+        int newSize = Math.addExact(size, other.size);
+        if (newSize > values.length) {
+            int capacity = Math.max(newSize, size * 2);
+            values = Arrays.copyOf(values, capacity);
+            promotionOffsets = Arrays.copyOf(promotionOffsets, capacity + 1);
+            idOffsets = Arrays.copyOf(idOffsets, capacity + 1);
+        }
+        System.arraycopy(other.values, 0, values, size, other.size);
+
+        // The promotion names of the other table are interned again, so its pool is copied through a translation.
+        int[] nameIndex = new int[other.names.size()];
+        for (int p = 0; p < nameIndex.length; p++) {
+            nameIndex[p] = nameIndexes.computeIfAbsent(other.names.get(p), name -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+        }
+        int poolSize = promotionOffsets[size];
+        int otherPoolSize = other.promotionOffsets[other.size];
+        if (poolSize + otherPoolSize > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + otherPoolSize));
+        }
+        for (int k = 0; k < otherPoolSize; k++) {
+            pool[poolSize + k] = nameIndex[other.pool[k]];
+        }
+
+        int idStart = idOffsets[size];
+        int otherIdSize = other.idOffsets[other.size];
+        int idEnd = Math.addExact(idStart, otherIdSize);
+        if (idEnd > idBytes.length) {
+            idBytes = Arrays.copyOf(idBytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * idBytes.length, idEnd)));
+        }
+        System.arraycopy(other.idBytes, 0, idBytes, idStart, otherIdSize);
+        for (int i = 1; i <= other.size; i++) {
+            promotionOffsets[size + i] = poolSize + other.promotionOffsets[i];
+            idOffsets[size + i] = idStart + other.idOffsets[i];
+        }
+        size = newSize;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getId(int order) {
+        int start = idOffsets[order];
+        return new String(idBytes, start, idOffsets[order + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long getValueCents(int order) {
+        return values[order];
+    }
+
+    @Override
+    public int getPromotionCount(int order) {
+        return promotionOffsets[order + 1] - promotionOffsets[order];
+    }
+
+    @Override
+    public int getPromotionIndex(int order, int k) {
+        return pool[promotionOffsets[order] + k];
+    }
+
+    @Override
+    public int getPromotionNameCount() {
+        return names.size();
+    }
+
+    @Override
+    public String getPromotionName(int index) {
+        return names.get(index);
+    }
+}
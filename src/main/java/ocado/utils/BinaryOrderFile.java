@@ -0,0 +1,179 @@
+package ocado.utils;
+
+import ocado.model.OrderTable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact binary columnar format of order files, read through a memory mapping.<br>
+ * All numbers are little-endian. The file starts with a 32-byte header: the magic bytes {@code EXOB}, the format
+ * version, the number of orders, the number of distinct promotion names, the size of the promotion pool and the
+ * lengths of the order id and promotion name byte pools. It is followed by the columns:
+ * <ul>
+ *   <li>{@code long[orders]} - order values in cents</li>
+ *   <li>{@code int[orders + 1]} - offsets of the promotions of every order in the promotion pool</li>
+ *   <li>{@code int[pool size]} - promotion pool: indexes of promotion names</li>
+ *   <li>{@code int[orders + 1]} and UTF-8 bytes - offsets and bytes of the order ids</li>
+ *   <li>{@code int[names + 1]} and UTF-8 bytes - offsets and bytes of the promotion names</li>
+ * </ul>
+ * The file is limited to 2 GB, the size of a single mapped buffer.
+ */
+public class BinaryOrderFile {
+    /** Extension of binary order files */
+    public static final String EXTENSION = ".bin";
+
+    /** Magic bytes at the beginning of every binary order file */
+    static final byte[] MAGIC = {'E', 'X', 'O', 'B'};
+
+    /** Version of the format */
+    static final int VERSION = 1;
+
+    /** Size of the header in bytes */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * Default constructor creating an instance of the class.
+     */
+    public BinaryOrderFile() {}
+
+    /**
+     * Checks whether a file starts with the magic bytes of the binary format.
+     *
+     * @param file the file to check
+     * @return true if the file is a binary order file
+     * @throws IOException if a file read error occurs
+     */
+    public static boolean isBinary(File file) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Converts a JSON file containing orders into a binary order file. The JSON file is read as a stream.
+     *
+     * @param jsonFile the JSON file containing orders
+     * @param binaryFile the binary file to create or overwrite
+     * @return the number of converted orders
+     * @throws IOException if a file read or write error occurs
+     * @throws FileNotFoundException if the JSON file does not exist
+     * @throws IllegalArgumentException thrown if the orders do not fit into the 2 GB limit of the format
+     */
+    public static int convert(File jsonFile, File binaryFile) throws IOException {
+        ArrayOrderTable table = new ArrayOrderTable();
+        JsonProcessor.readOrders(jsonFile, table::add);
+        write(table, binaryFile);
+        return table.size();
+    }
+
+    /**
+     * Writes a table of orders as a binary order file.
+     *
+     * @param table the orders
+     * @param file the binary file to create or overwrite
+     * @throws IOException if a file write error occurs
+     * @throws IllegalArgumentException thrown if the orders do not fit into the 2 GB limit of the format
+     */
+    public static void write(OrderTable table, File file) throws IOException {
+        int size = table.size();
+        byte[][] ids = new byte[size][];
+        long idsLength = 0;
+        long poolSize = 0;
+        for (int i = 0; i < size; i++) {
+            ids[i] = table.getId(i).getBytes(StandardCharsets.UTF_8);
+            idsLength += ids[i].length;
+            poolSize += table.getPromotionCount(i);
+        }
+        byte[][] names = new byte[table.getPromotionNameCount()][];
+        long namesLength = 0;
+        for (int p = 0; p < names.length; p++) {
+            names[p] = table.getPromotionName(p).getBytes(StandardCharsets.UTF_8);
+            namesLength += names[p].length;
+        }
+        long fileSize = HEADER_SIZE + 8L * size + 4L * (size + 1) + 4L * poolSize + 4L * (size + 1) + idsLength
+                + 4L * (names.length + 1) + namesLength;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The orders do not fit into a binary order file of 2 GB");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).putInt(VERSION).putInt(size).putInt(names.length).putInt((int) poolSize)
+                .putInt((int) idsLength).putInt((int) namesLength).putInt(0);
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(table.getValueCents(i));
+        }
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(offset);
+            offset += table.getPromotionCount(i);
+        }
+        buffer.putInt(offset);
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < table.getPromotionCount(i); k++) {
+                buffer.putInt(table.getPromotionIndex(i, k));
+            }
+        }
+        putStrings(buffer, ids);
+        putStrings(buffer, names);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Maps a binary order file into memory.
+     *
+     * @param file the binary order file
+     * @return the table of orders backed by the mapping
+     * @throws IOException if a file read error occurs or the file is not a valid binary order file
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public static MappedOrderTable map(File file) throws IOException {
+        if (!file.exists()) {
+            throw new FileNotFoundException("File not found: " + file.getAbsolutePath());
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary order file is larger than 2 GB: " + file.getAbsolutePath());
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            return new MappedOrderTable(buffer, file);
+        }
+    }
+
+    /**
+     * Writes the offsets of encoded strings followed by their bytes.
+     *
+     * @param buffer the target buffer
+     * @param strings the encoded strings
+     */
+    private static void putStrings(ByteBuffer buffer, byte[][] strings) {
+        int offset = 0;
+        for (byte[] string : strings) {
+            buffer.putInt(offset);
+            offset += string.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] string : strings) {
+            buffer.put(string);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package ocado.utils;
+
+import ocado.model.Money;
+import ocado.model.PaymentMethod;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Index of cards ordered by their remaining limit, answering the queries of
+ * {@link OptimizerUtils#findBestCardToPayRest(java.util.List)} in logarithmic time.<br>
+ * The index is a treap keyed by limit, in which every subtree remembers its best card according to the
+ * "card to pay the rest" heuristics:
+ * <ul>
+ *   <li>cards not present in the promotions list of any unprocessed order first, ordered by minimum remaining limit</li>
+ *   <li>then the remaining cards, ordered by minimum discount, minimum number of unprocessed orders
+ *   and minimum remaining limit</li>
+ * </ul>
+ * Ties which {@link OptimizerUtils} does not resolve are decided by the position of the card in the collection
+ * the index was built from, so the first card in iteration order wins, exactly as with the stream based methods.<br>
+ * The index keeps a copy of the limit and order count of every card, so {@link #refresh(PaymentMethod)} has to be
+ * called whenever one of them changes.
+ */
+public class CardIndex {
+    /** Nodes of the indexed cards */
+    private final Map<PaymentMethod, Node> nodes = new IdentityHashMap<>();
+
+    /** Nodes of the indexed cards by their position */
+    private final Node[] nodesByPosition;
+
+    /** Root of the treap */
+    private Node root;
+
+    /** Left part produced by the last {@link #split(Node, Node)} */
+    private Node splitLeft;
+
+    /** Right part produced by the last {@link #split(Node, Node)} */
+    private Node splitRight;
+
+    /**
+     * Creates an index of the given cards.
+     *
+     * @param methods the {@link PaymentMethod} to index, in the order used to resolve final ties
+     */
+    public CardIndex(Collection<PaymentMethod> methods) {
+        Random random = new Random(methods.size());
+        nodesByPosition = new Node[methods.size()];
+        int position = 0;
+        for (PaymentMethod pm : methods) {
+            Node node = new Node(pm, position, random.nextInt());
+            node.read();
+            nodes.put(pm, node);
+            nodesByPosition[position++] = node;
+            root = insert(root, node);
+        }
+    }
+
+    /**
+     * Re-reads the limit and the number of unprocessed orders of a card after a payment or a refund.
+     *
+     * @param pm the changed {@link PaymentMethod}
+     */
+    public void refresh(PaymentMethod pm) {
+        refresh(nodes.get(pm));
+    }
+
+    /**
+     * Re-reads the limit and the number of unprocessed orders of a card given by its position in the collection
+     * the index was built from, e.g. its index in a {@link ocado.model.CardRegistry} of the same collection.
+     *
+     * @param position the position of the changed {@link PaymentMethod}
+     */
+    public void refresh(int position) {
+        refresh(nodesByPosition[position]);
+    }
+
+    /**
+     * Moves a node to its new place if the card has changed.
+     *
+     * @param node the node of the card, or null for cards outside the index
+     */
+    private void refresh(Node node) {
+        if (node == null || !node.isOutdated()) {
+            return;
+        }
+        root = remove(root, node);
+        node.read();
+        root = insert(root, node);
+    }
+
+    /**
+     * Finds the best card to pay the remaining balance among cards whose limit is at least the given amount.
+     *
+     * @param minLimit the minimal required limit
+     * @return the same {@link PaymentMethod} {@link OptimizerUtils#findBestCardToPayRest(java.util.List)} returns for the
+     * cards with a sufficient limit, or null if there is no such card
+     */
+    public PaymentMethod findBestCardToPayRest(Money minLimit) {
+        return findBestCardToPayRest(minLimit.getCents());
+    }
+
+    /**
+     * Finds the best card to pay the remaining balance among cards whose limit is at least the given amount in cents.
+     *
+     * @param minLimitCents the minimal required limit in cents
+     * @return the same card as {@link #findBestCardToPayRest(Money)}, or null if there is no such card
+     */
+    public PaymentMethod findBestCardToPayRest(long minLimitCents) {
+        Node best = findBest(root, minLimitCents);
+        return best == null ? null : best.card;
+    }
+
+    /**
+     * Finds the best card to pay the remaining balance among cards with the maximum limit.
+     *
+     * @return the same {@link PaymentMethod} {@link OptimizerUtils#findBestCardToPayRest(java.util.List)} returns for the
+     * result of {@link OptimizerUtils#findWithMaxLimit(java.util.List)}, or null if the index is empty
+     */
+    public PaymentMethod findBestCardWithMaxLimit() {
+        if (root == null) {
+            return null;
+        }
+        Node max = root;
+        while (max.right != null) {
+            max = max.right;
+        }
+        return findBest(root, max.limit).card;
+    }
+
+    /**
+     * Finds the best card in a subtree among cards whose limit is at least the given amount.
+     *
+     * @param node the root of the subtree
+     * @param minLimit the minimal required limit in cents
+     * @return the best node or null if there is no card with a sufficient limit
+     */
+    private static Node findBest(Node node, long minLimit) {
+        Node best = null;
+        while (node != null) {
+            if (node.limit < minLimit) {
+                node = node.right;
+            }
+            else {
+                // The node and its whole right subtree have a sufficient limit.
+                best = better(best, better(node, node.right == null ? null : node.right.best));
+                node = node.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the better of two cards according to the heuristics described in the class documentation.
+     *
+     * @param a the first node, may be null
+     * @param b the second node, may be null
+     * @return the better node
+     */
+    private static Node better(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        boolean aFree = a.ordersAmount == 0;
+        if (aFree != (b.ordersAmount == 0)) {
+            return aFree ? a : b;
+        }
+        if (!aFree) {
+            if (a.discount != b.discount) {
+                return a.discount < b.discount ? a : b;
+            }
+            if (a.ordersAmount != b.ordersAmount) {
+                return a.ordersAmount < b.ordersAmount ? a : b;
+            }
+        }
+        if (a.limit != b.limit) {
+            return a.limit < b.limit ? a : b;
+        }
+        return a.position < b.position ? a : b;
+    }
+
+    /**
+     * Inserts a node into a subtree.
+     *
+     * @param node the root of the subtree
+     * @param inserted the node to insert
+     * @return the new root of the subtree
+     */
+    private Node insert(Node node, Node inserted) {
+        if (node == null) {
+            inserted.left = null;
+            inserted.right = null;
+            inserted.best = inserted;
+            return inserted;
+        }
+        if (inserted.priority > node.priority) {
+            split(node, inserted);
+            inserted.left = splitLeft;
+            inserted.right = splitRight;
+            inserted.update();
+            return inserted;
+        }
+        if (inserted.precedes(node)) {
+            node.left = insert(node.left, inserted);
+        }
+        else {
+            node.right = insert(node.right, inserted);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Removes a node from a subtree.
+     *
+     * @param node the root of the subtree
+     * @param removed the node to remove
+     * @return the new root of the subtree
+     */
+    private Node remove(Node node, Node removed) {
+        if (node == removed) {
+            return merge(node.left, node.right);
+        }
+        if (removed.precedes(node)) {
+            node.left = remove(node.left, removed);
+        }
+        else {
+            node.right = remove(node.right, removed);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Splits a subtree into nodes preceding the key node and the rest, storing them in
+     * {@link #splitLeft} and {@link #splitRight}.
+     *
+     * @param node the root of the subtree
+     * @param key the node whose key is used to split
+     */
+    private void split(Node node, Node key) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+        }
+        else if (node.precedes(key)) {
+            split(node.right, key);
+            node.right = splitLeft;
+            node.update();
+            splitLeft = node;
+        }
+        else {
+            split(node.left, key);
+            node.left = splitRight;
+            node.update();
+            splitRight = node;
+        }
+    }
+
+    /**
+     * Merges two subtrees, where all nodes of the left one precede all nodes of the right one.
+     *
+     * @param left the left subtree
+     * @param right the right subtree
+     * @return the root of the merged tree
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    /**
+     * Treap node holding a card together with a copy of the fields the ordering depends on.
+     */
+    private static class Node {
+        /** Indexed card */
+        private final PaymentMethod card;
+
+        /** Position of the card in the collection the index was built from */
+        private final int position;
+
+        /** Heap priority of the node */
+        private final int priority;
+
+        /** Indexed limit in cents */
+        private long limit;
+
+        /** Indexed discount in basis points */
+        private int discount;
+
+        /** Indexed number of unprocessed orders */
+        private int ordersAmount;
+
+        /** Children of the node */
+        private Node left, right;
+
+        /** Best node of the subtree */
+        private Node best;
+
+        private Node(PaymentMethod card, int position, int priority) {
+            this.card = card;
+            this.position = position;
+            this.priority = priority;
+        }
+
+        /**
+         * Copies the indexed fields from the card.
+         */
+        private void read() {
+            limit = card.getLimitCents();
+            discount = card.getDiscount();
+            ordersAmount = card.getOrdersAmount();
+        }
+
+        /**
+         * Checks whether the card changed since its fields were copied.
+         *
+         * @return true if the node has to be re-inserted
+         */
+        private boolean isOutdated() {
+            return limit != card.getLimitCents() || discount != card.getDiscount() || ordersAmount != card.getOrdersAmount();
+        }
+
+        /**
+         * Checks whether this node precedes the other one in the (limit, position) order of the treap.
+         *
+         * @param other the node to compare with
+         * @return true if this node comes first
+         */
+        private boolean precedes(Node other) {
+            return limit != other.limit ? limit < other.limit : position < other.position;
+        }
+
+        /**
+         * Recalculates the best node of the subtree.
+         */
+        private void update() {
+            best = better(this, better(left == null ? null : left.best, right == null ? null : right.best));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package ocado.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stream of the decompressed content of a gzip file, decompressed ahead on a separate reader thread.<br>
+ * The reader thread reads the file through a channel with a large buffer, inflates it and hands blocks of
+ * {@value #BLOCK_BYTES} bytes to the consumer through a bounded queue, so reading and inflating the next blocks
+ * overlaps with parsing the current one, and at most a few blocks are held in memory. Consumed blocks go back to the
+ * reader thread through a second queue, so a long file is decompressed without allocating a block per
+ * {@value #BLOCK_BYTES} bytes. Nothing is written to disk. Any failure of the reader thread, including an error such
+ * as {@link OutOfMemoryError}, is thrown by the next read after the blocks read before it and again by every later
+ * read, so a consumer retrying or skipping the exception never mistakes a failed file for a complete one.
+ */
+public class DecompressingInputStream extends InputStream {
+    /** Size of the decompressed blocks */
+    static final int BLOCK_BYTES = 1024 * 1024;
+
+    /** Size of the buffer of the compressed file */
+    private static final int FILE_BUFFER_BYTES = 1024 * 1024;
+
+    /** Number of decompressed blocks waiting for the consumer */
+    private static final int QUEUE_BLOCKS = 4;
+
+    /** Block marking the end of the content */
+    private static final byte[] END = new byte[0];
+
+    /** Decompressed blocks, ended by {@link #END} */
+    private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+
+    /** Consumed blocks of {@value #BLOCK_BYTES} bytes, reused by the reader thread */
+    private final BlockingQueue<byte[]> freeBlocks = new ArrayBlockingQueue<>(QUEUE_BLOCKS + 2);
+
+    /** Thread reading and decompressing the file */
+    private final Thread reader;
+
+    /** Failure of the reader thread, set before {@link #END} is queued */
+    private volatile Throwable error;
+
+    /** Block being consumed */
+    private byte[] block = new byte[0];
+
+    /** Length of the content of {@link #block} */
+    private int blockLength;
+
+    /** Position in {@link #block} */
+    private int position;
+
+    /** Whether {@link #END} was taken */
+    private boolean ended;
+
+    /**
+     * Constructor for the DecompressingInputStream class, starting the reader thread.
+     *
+     * @param file the gzip file
+     * @throws IOException if the file cannot be opened
+     */
+    public DecompressingInputStream(File file) throws IOException {
+        this(Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ)), file.getName());
+    }
+
+    /**
+     * Constructor for the DecompressingInputStream class, starting the reader thread.
+     *
+     * @param compressed the gzip content, closed by the reader thread
+     * @param name the name of the content, used in the name of the reader thread
+     */
+    DecompressingInputStream(InputStream compressed, String name) {
+        reader = Thread.ofPlatform().daemon().name("gzip-reader-" + name).unstarted(() -> decompress(compressed));
+        reader.start();
+    }
+
+    /**
+     * Body of the reader thread: decompresses the content into blocks until its end, a failure or {@link #close()}.
+     * {@link #END} is queued in every case but the last one, so the consumer never waits for a block forever.
+     *
+     * @param compressed the gzip content
+     */
+    private void decompress(InputStream compressed) {
+        boolean closed = false;
+        try (InputStream input = new GZIPInputStream(compressed, FILE_BUFFER_BYTES)) {
+            while (true) {
+                byte[] next = freeBlocks.poll();
+                if (next == null) {
+                    next = new byte[BLOCK_BYTES];
+                }
+                int length = input.readNBytes(next, 0, BLOCK_BYTES);
+                if (length == 0) {
+                    break;
+                }
+                // A short last block is trimmed, so the length of every queued block is its content.
+                blocks.put(length == BLOCK_BYTES ? next : Arrays.copyOf(next, length));
+            }
+        } catch (InterruptedException e) {
+            // Closed by the consumer, which no longer takes any block.
+            closed = true;
+        } catch (Throwable e) {
+            // Kept as it is, as wrapping it could fail as well after an OutOfMemoryError.
+            error = e;
+        } finally {
+            if (!closed) {
+                try {
+                    blocks.put(END);
+                } catch (InterruptedException e) {
+                    // Closed by the consumer while the queue was full.
+                }
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, blockLength - position);
+        System.arraycopy(block, position, target, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Makes sure the current block has unread content, taking the next block if needed.
+     *
+     * @return true if there is content to read, false at the end of the content
+     * @throws IOException if the reader thread failed or the thread was interrupted
+     */
+    private boolean fill() throws IOException {
+        while (position == blockLength) {
+            if (ended) {
+                throwError();
+                return false;
+            }
+            if (block.length == BLOCK_BYTES) {
+                freeBlocks.offer(block);
+            }
+            try {
+                block = blocks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decompressing", e);
+            }
+            if (block == END) {
+                ended = true;
+                throwError();
+                return false;
+            }
+            blockLength = block.length;
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Throws the failure of the reader thread, if any, as an {@link IOException}.
+     *
+     * @throws IOException if the reader thread failed
+     */
+    private void throwError() throws IOException {
+        if (error instanceof IOException e) {
+            throw e;
+        }
+        if (error != null) {
+            throw new IOException("Decompression failed: " + error, error);
+        }
+    }
+
+    @Override
+    public void close() {
+        // The reader thread is stopped even if it waits for space in the queue or reads the file.
+        reader.interrupt();
+        blocks.clear();
+        ended = true;
+        position = blockLength;
+    }
+}
@@ -1,23 +1,43 @@
 package ocado.utils;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import ocado.model.Order;
+import ocado.model.OrderTable;
 import ocado.model.PaymentMethod;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
- * Utility class for processing JSON files into domain objects.
+ * Utility class for processing JSON files into domain objects.<br>
+ * Orders may also be read from binary order files (see {@link BinaryOrderFile}), recognized by their header
+ * or the {@value BinaryOrderFile#EXTENSION} extension. Files with the {@value #COMPRESSED_EXTENSION} extension are
+ * gzip-compressed JSON, decompressed on the fly by a {@link DecompressingInputStream}.
  */
 public class JsonProcessor {
+    /** Factory used to create streaming parsers for order files */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /** Reader of payment method lists, built once as it is thread-safe and costly to create */
+    private static final ObjectReader PAYMENTS_READER = new ObjectMapper().readerFor(new TypeReference<List<PaymentMethod>>() {});
+
+    /** Extension of gzip-compressed JSON files */
+    static final String COMPRESSED_EXTENSION = ".json.gz";
+
     /**
      * Default constructor creating an instance of the class.
      */
@@ -32,19 +52,146 @@ public class JsonProcessor {
      * @throws FileNotFoundException if the file does not exist
      */
     public static List<Order> getOrdersAsList(File file) throws IOException {
-        if (!file.exists()) {
-            throw new FileNotFoundException("File not found: " + file.getAbsolutePath());
-        }
-        if (!file.getName().toLowerCase().endsWith(".json")) {
-            throw new IllegalArgumentException("The specified file is not a file with the extension '.json': " + file.getAbsolutePath());
+        List<Order> orders = new ArrayList<>();
+        readOrders(file, orders::add);
+        return orders;
+    }
+
+    /**
+     * Converts a JSON file containing orders into a list of Order objects and, in the same pass,
+     * counts how many orders list each {@link PaymentMethod} identifier as a promotion.
+     *
+     * @param file the JSON file containing orders
+     * @param promotionCounts the map filled with the number of orders per promotion identifier
+     * @return a list of Order objects
+     * @throws IOException if a file read error occurs
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public static List<Order> getOrdersAsList(File file, Map<String, Integer> promotionCounts) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        readOrders(file, order -> {
+            orders.add(order);
+            countPromotions(order, promotionCounts);
+        });
+        return orders;
+    }
+
+    /**
+     * Reads a JSON file containing orders token by token and passes every order to the consumer
+     * as soon as it is parsed, so the whole file is never held in memory at once.
+     *
+     * @param file the JSON file containing orders
+     * @param consumer the callback receiving consecutive orders
+     * @throws IOException if a file read error occurs or the file is not an array of orders
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public static void readOrders(File file, Consumer<Order> consumer) throws IOException {
+        if (isBinaryOrders(file)) {
+            BinaryOrderFile.map(file).toOrders().forEach(consumer);
+            return;
         }
+        validateFile(file);
         if (file.length() == 0) {
-            return new ArrayList<>();
+            return;
         }
 
-        ObjectMapper mapper = new ObjectMapper();
-        return new ArrayList<>(mapper.readValue(file, new TypeReference<>() {
-        }));
+        try (JsonParser parser = isCompressed(file) ? JSON_FACTORY.createParser(new DecompressingInputStream(file))
+                : JSON_FACTORY.createParser(file)) {
+            readOrders(parser, consumer);
+        }
+    }
+
+    /**
+     * Reads newline-delimited orders, one order object after another without an enclosing array, and passes every
+     * order to the consumer as soon as it is parsed. Any whitespace separates the objects, and the input is read
+     * until its end without being closed.
+     *
+     * @param input the stream of order objects, such as the standard input
+     * @param consumer the callback receiving consecutive orders
+     * @throws IOException if a read error occurs or a value is not a valid order object
+     */
+    public static void readOrderLines(InputStream input, Consumer<Order> consumer) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                Order order;
+                try {
+                    order = readOrder(parser);
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    // An invalid value, such as an amount that is not a number, is reported with its location.
+                    throw new JsonParseException(parser, "Invalid order: " + e.getMessage(), e);
+                }
+                consumer.accept(order);
+            }
+            if (token != null) {
+                throw new JsonParseException(parser, "Expected an order object");
+            }
+        }
+    }
+
+    /**
+     * Reads an array of orders from a parser and passes every order to the consumer.
+     *
+     * @param parser the parser positioned before the array
+     * @param consumer the callback receiving consecutive orders
+     * @throws IOException if a read error occurs or the input is not an array of orders
+     */
+    static void readOrders(JsonParser parser, Consumer<Order> consumer) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array of orders");
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            consumer.accept(readOrder(parser));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException(parser, "Expected an order object");
+        }
+    }
+
+    /**
+     * Reads orders into an {@link OrderTable} and counts how many orders list each {@link PaymentMethod} identifier
+     * as a promotion, without keeping an {@link Order} object per order. A binary order file is memory-mapped,
+     * a JSON file is streamed into an {@link ArrayOrderTable}.
+     *
+     * @param file the JSON or binary file containing orders
+     * @param promotionCounts the map filled with the number of orders per promotion identifier
+     * @return the table of orders
+     * @throws IOException if a file read error occurs or the file is malformed
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public static OrderTable getOrdersAsTable(File file, Map<String, Integer> promotionCounts) throws IOException {
+        OrderTable table;
+        if (isBinaryOrders(file)) {
+            table = BinaryOrderFile.map(file);
+        }
+        else {
+            ArrayOrderTable arrayTable = new ArrayOrderTable();
+            readOrders(file, arrayTable::add);
+            table = arrayTable;
+        }
+        countPromotions(table, promotionCounts);
+        return table;
+    }
+
+    /**
+     * Adds the promotions of all orders of a table to the promotion counts.
+     *
+     * @param table the table of orders
+     * @param promotionCounts the map of counts to update
+     */
+    static void countPromotions(OrderTable table, Map<String, Integer> promotionCounts) {
+        // Promotions are counted per interned name, so every distinct identifier is hashed only once.
+        int[] counts = new int[table.getPromotionNameCount()];
+        for (int i = 0; i < table.size(); i++) {
+            for (int k = 0; k < table.getPromotionCount(i); k++) {
+                counts[table.getPromotionIndex(i, k)]++;
+            }
+        }
+        for (int p = 0; p < counts.length; p++) {
+            promotionCounts.merge(table.getPromotionName(p), counts[p], Integer::sum);
+        }
     }
 
     /**
@@ -57,33 +204,192 @@ public class JsonProcessor {
      * @throws FileNotFoundException if the file does not exist
      */
     public static Map<String, PaymentMethod> getPaymentsAsMap(File file, List<Order> orders) throws IOException {
-        if (!file.exists()) {
-            throw new FileNotFoundException("File not found: " + file.getAbsolutePath());
-        }
-        if (!file.getName().toLowerCase().endsWith(".json")) {
-            throw new IllegalArgumentException("The specified file is not a file with the extension '.json': " + file.getAbsolutePath());
+        Map<String, Integer> promotionCounts = new HashMap<>();
+        for (Order order : orders) {
+            countPromotions(order, promotionCounts);
         }
+        return getPaymentsAsMap(file, promotionCounts);
+    }
+
+    /**
+     * Converts a JSON file containing payment methods into a map of {@link PaymentMethod} objects,
+     * using promotion counts collected while reading the orders.
+     *
+     * @param file the JSON file containing payment methods
+     * @param promotionCounts the number of orders per promotion identifier, used as the order count of payment methods
+     * @return a map of {@link PaymentMethod} objects with keys being the method identifiers
+     * @throws IOException if a file read error occurs
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public static Map<String, PaymentMethod> getPaymentsAsMap(File file, Map<String, Integer> promotionCounts) throws IOException {
+        return toPaymentsMap(getPaymentsAsList(file), promotionCounts);
+    }
+
+    /**
+     * Converts a JSON file containing payment methods into a list of {@link PaymentMethod} objects, without their
+     * order counts, so it can be read before or while the orders are read.
+     *
+     * @param file the JSON file containing payment methods
+     * @return the list of payment methods
+     * @throws IOException if a file read error occurs
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public static List<PaymentMethod> getPaymentsAsList(File file) throws IOException {
+        validateFile(file);
         if (file.length() == 0) {
-            return new HashMap<>();
+            return new ArrayList<>();
         }
+        if (isCompressed(file)) {
+            try (InputStream input = new DecompressingInputStream(file)) {
+                return PAYMENTS_READER.readValue(input);
+            }
+        }
+        return PAYMENTS_READER.readValue(file);
+    }
+
+    /**
+     * Converts a list of payment methods into a map of {@link PaymentMethod} objects,
+     * using promotion counts of the orders.
+     *
+     * @param paymentsList the payment methods
+     * @param orders the list of orders used to update the order count for payment methods
+     * @return a map of {@link PaymentMethod} objects with keys being the method identifiers
+     */
+    public static Map<String, PaymentMethod> toPaymentsMap(List<PaymentMethod> paymentsList, List<Order> orders) {
+        Map<String, Integer> promotionCounts = new HashMap<>();
+        for (Order order : orders) {
+            countPromotions(order, promotionCounts);
+        }
+        return toPaymentsMap(paymentsList, promotionCounts);
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
-        List<PaymentMethod> paymentsList = mapper.readValue(file, new TypeReference<>() {});
+    /**
+     * Converts a list of payment methods into a map of {@link PaymentMethod} objects,
+     * using promotion counts collected while reading the orders.
+     *
+     * @param paymentsList the payment methods
+     * @param promotionCounts the number of orders per promotion identifier, used as the order count of payment methods
+     * @return a map of {@link PaymentMethod} objects with keys being the method identifiers
+     */
+    public static Map<String, PaymentMethod> toPaymentsMap(List<PaymentMethod> paymentsList, Map<String, Integer> promotionCounts) {
         if (paymentsList.isEmpty()) {
             return new HashMap<>();
         }
 
         Map<String, PaymentMethod> payments = new HashMap<>(paymentsList.stream().collect(Collectors.toMap(PaymentMethod::getId, n -> n)));
+        for (PaymentMethod paymentMethod : payments.values()) {
+            paymentMethod.setOrdersAmount(promotionCounts.getOrDefault(paymentMethod.getId(), 0));
+        }
 
-        for (Order order : orders) {
-            for (String s : order.getPromotions()) {
-                if (!payments.containsKey(s)) {
-                    continue;
-                }
-                payments.get(s).incrementOrdersAmount();
+        return payments;
+    }
+
+    /**
+     * Checks whether an orders file is in the binary format, by its extension or header.
+     *
+     * @param file the file to check
+     * @return true if the file should be read as a binary order file
+     * @throws IOException if a file read error occurs
+     */
+    static boolean isBinaryOrders(File file) throws IOException {
+        return file.getName().toLowerCase().endsWith(BinaryOrderFile.EXTENSION) || BinaryOrderFile.isBinary(file);
+    }
+
+    /**
+     * Checks whether a JSON file is gzip-compressed, by its {@value #COMPRESSED_EXTENSION} extension.
+     *
+     * @param file the file to check
+     * @return true if the file should be decompressed while it is read
+     */
+    static boolean isCompressed(File file) {
+        return file.getName().toLowerCase().endsWith(COMPRESSED_EXTENSION);
+    }
+
+    /**
+     * Checks that the file exists and has the '.json' or '.json.gz' extension.
+     *
+     * @param file the file to check
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IllegalArgumentException if the file has neither the '.json' nor the '.json.gz' extension
+     */
+    static void validateFile(File file) throws FileNotFoundException {
+        if (!file.exists()) {
+            throw new FileNotFoundException("File not found: " + file.getAbsolutePath());
+        }
+        if (!file.getName().toLowerCase().endsWith(".json") && !isCompressed(file)) {
+            throw new IllegalArgumentException("The specified file is not a file with the extension '.json' or '.json.gz': " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads a single order object. The parser must be positioned on the object's START_OBJECT token.
+     *
+     * @param parser the parser positioned at the beginning of the order
+     * @return the parsed order
+     * @throws IOException if the order object is malformed
+     */
+    private static Order readOrder(JsonParser parser) throws IOException {
+        String id = null;
+        String value = null;
+        List<String> promotions = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id" -> id = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "value" -> value = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "promotions" -> promotions = readPromotions(parser, token);
+                default -> throw new JsonParseException(parser, "Unrecognized field '" + field + "' in order");
             }
         }
 
-        return payments;
+        if (value == null) {
+            throw new JsonParseException(parser, "Order '" + id + "' does not define a value");
+        }
+        return new Order(id, value, promotions);
+    }
+
+    /**
+     * Reads the list of promotions of an order. A null element is kept as null, like a databind read of the list,
+     * and never names a payment method.
+     *
+     * @param parser the parser positioned on the promotions value
+     * @param token the current token of the parser
+     * @return the list of promotion identifiers, or null if the value is null
+     * @throws IOException if the value is neither an array nor null, or an element is neither a string nor null
+     */
+    private static List<String> readPromotions(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array of promotions");
+        }
+        List<String> promotions = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                promotions.add(parser.getText());
+            }
+            else if (token == JsonToken.VALUE_NULL) {
+                promotions.add(null);
+            }
+            else {
+                throw new JsonParseException(parser, "Expected a promotion identifier, found " + token);
+            }
+        }
+        return promotions;
+    }
+
+    /**
+     * Adds the promotions of the order to the promotion counts.
+     *
+     * @param order the order whose promotions are counted
+     * @param promotionCounts the map of counts to update
+     */
+    static void countPromotions(Order order, Map<String, Integer> promotionCounts) {
+        for (String s : order.getPromotions()) {
+            promotionCounts.merge(s, 1, Integer::sum);
+        }
     }
 }
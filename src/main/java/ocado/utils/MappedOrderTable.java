@@ -0,0 +1,212 @@
+package ocado.utils;
+
+import ocado.model.OrderTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * {@link OrderTable} reading a memory-mapped {@link BinaryOrderFile}.<br>
+ * Values and promotions are read from the mapping on every call, so opening a file only costs validating its layout
+ * and decoding the (usually few) promotion names; order ids are decoded on demand.<br>
+ * The offsets and the promotion pool are checked once when the file is opened, so a corrupted file fails with an
+ * {@link IOException} instead of returning foreign data or throwing from the accessors.
+ */
+public class MappedOrderTable implements OrderTable {
+    /** Mapped file */
+    private final ByteBuffer buffer;
+
+    /** Number of orders */
+    private final int size;
+
+    /** Position of the order values */
+    private final int valuesPosition;
+
+    /** Position of the promotion offsets */
+    private final int promotionOffsetsPosition;
+
+    /** Position of the promotion pool */
+    private final int poolPosition;
+
+    /** Position of the order id offsets */
+    private final int idOffsetsPosition;
+
+    /** Position of the order id bytes */
+    private final int idsPosition;
+
+    /** Decoded promotion names */
+    private final String[] promotionNames;
+
+    /**
+     * Constructor validating the header and the layout of the file.
+     *
+     * @param buffer the little-endian mapping of the whole file
+     * @param file the mapped file, used in error messages
+     * @throws IOException if the file is not a valid binary order file
+     */
+    MappedOrderTable(ByteBuffer buffer, File file) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < BinaryOrderFile.HEADER_SIZE) {
+            throw new IOException("Binary order file is truncated: " + file.getAbsolutePath());
+        }
+        byte[] magic = new byte[BinaryOrderFile.MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, BinaryOrderFile.MAGIC)) {
+            throw new IOException("Not a binary order file: " + file.getAbsolutePath());
+        }
+        if (buffer.getInt(4) != BinaryOrderFile.VERSION) {
+            throw new IOException("Unsupported binary order file version " + buffer.getInt(4) + ": " + file.getAbsolutePath());
+        }
+        size = buffer.getInt(8);
+        int nameCount = buffer.getInt(12);
+        int poolSize = buffer.getInt(16);
+        int idsLength = buffer.getInt(20);
+        int namesLength = buffer.getInt(24);
+
+        if (size < 0 || nameCount < 0 || poolSize < 0 || idsLength < 0 || namesLength < 0) {
+            throw new IOException("Binary order file is corrupted: " + file.getAbsolutePath());
+        }
+        long idOffsets = BinaryOrderFile.HEADER_SIZE + 8L * size + 4L * (size + 1) + 4L * poolSize;
+        long nameOffsets = idOffsets + 4L * (size + 1) + idsLength;
+        long names = nameOffsets + 4L * (nameCount + 1);
+        if (names + namesLength != buffer.limit()) {
+            throw new IOException("Binary order file is corrupted: " + file.getAbsolutePath());
+        }
+        valuesPosition = BinaryOrderFile.HEADER_SIZE;
+        promotionOffsetsPosition = valuesPosition + 8 * size;
+        poolPosition = promotionOffsetsPosition + 4 * (size + 1);
+        idOffsetsPosition = (int) idOffsets;
+        idsPosition = idOffsetsPosition + 4 * (size + 1);
+        int nameOffsetsPosition = (int) nameOffsets;
+        int namesPosition = (int) names;
+        if (!hasValidOffsets(poolSize, idsLength) || !hasValidPool(poolSize, nameCount)
+                || !hasValidOffsets(nameOffsetsPosition, nameCount, namesLength)) {
+            throw new IOException("Binary order file is corrupted: " + file.getAbsolutePath());
+        }
+
+        promotionNames = new String[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            int start = buffer.getInt(nameOffsetsPosition + 4 * i);
+            int end = buffer.getInt(nameOffsetsPosition + 4 * (i + 1));
+            promotionNames[i] = decode(namesPosition + start, end - start);
+        }
+    }
+
+    /**
+     * Checks the promotion offsets and the order id offsets of all orders in a single pass.
+     *
+     * @param poolSize the number of entries in the promotion pool
+     * @param idsLength the number of bytes of the order ids
+     * @return true if both sequences start at a non-negative offset, never decrease and end within their data
+     */
+    private boolean hasValidOffsets(int poolSize, int idsLength) {
+        int promotions = buffer.getInt(promotionOffsetsPosition);
+        int ids = buffer.getInt(idOffsetsPosition);
+        if (promotions < 0 || ids < 0) {
+            return false;
+        }
+        for (int i = 1; i <= size; i++) {
+            int nextPromotions = buffer.getInt(promotionOffsetsPosition + 4 * i);
+            int nextIds = buffer.getInt(idOffsetsPosition + 4 * i);
+            if (nextPromotions < promotions || nextIds < ids) {
+                return false;
+            }
+            promotions = nextPromotions;
+            ids = nextIds;
+        }
+        return promotions <= poolSize && ids <= idsLength;
+    }
+
+    /**
+     * Checks a sequence of offsets into a block of data.
+     *
+     * @param position the position of the first offset
+     * @param count the number of strings, the sequence having one more offset
+     * @param length the length of the data
+     * @return true if the sequence starts at a non-negative offset, never decreases and ends within the data
+     */
+    private boolean hasValidOffsets(int position, int count, int length) {
+        int offset = buffer.getInt(position);
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 1; i <= count; i++) {
+            int next = buffer.getInt(position + 4 * i);
+            if (next < offset) {
+                return false;
+            }
+            offset = next;
+        }
+        return offset <= length;
+    }
+
+    /**
+     * Checks that every entry of the promotion pool is the index of a promotion name.
+     *
+     * @param poolSize the number of entries in the promotion pool
+     * @param nameCount the number of promotion names
+     * @return true if all entries are in range
+     */
+    private boolean hasValidPool(int poolSize, int nameCount) {
+        for (int i = 0; i < poolSize; i++) {
+            int index = buffer.getInt(poolPosition + 4 * i);
+            if (index < 0 || index >= nameCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getId(int order) {
+        int start = buffer.getInt(idOffsetsPosition + 4 * order);
+        int end = buffer.getInt(idOffsetsPosition + 4 * (order + 1));
+        return decode(idsPosition + start, end - start);
+    }
+
+    @Override
+    public long getValueCents(int order) {
+        return buffer.getLong(valuesPosition + 8 * order);
+    }
+
+    @Override
+    public int getPromotionCount(int order) {
+        return buffer.getInt(promotionOffsetsPosition + 4 * (order + 1)) - buffer.getInt(promotionOffsetsPosition + 4 * order);
+    }
+
+    @Override
+    public int getPromotionIndex(int order, int k) {
+        return buffer.getInt(poolPosition + 4 * (buffer.getInt(promotionOffsetsPosition + 4 * order) + k));
+    }
+
+    @Override
+    public int getPromotionNameCount() {
+        return promotionNames.length;
+    }
+
+    @Override
+    public String getPromotionName(int index) {
+        return promotionNames[index];
+    }
+
+    /**
+     * Decodes a UTF-8 string from the mapping.
+     *
+     * @param position the position of the first byte
+     * @param length the number of bytes
+     * @return the decoded string
+     */
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,302 @@
+package ocado.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.PaymentListener;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the result of an optimization as newline-delimited JSON, one record per line:
+ * <ul>
+ *   <li>{@code {"type":"order","id":...,"value":...,"payments":[{"method":...,"amount":...}]}} for every paid order,
+ *   with the amounts actually charged to the payment methods</li>
+ *   <li>{@code {"type":"points","id":...,"from":...,"amount":...}} when remaining points replace a part of
+ *   the card payment of an order written earlier</li>
+ *   <li>{@code {"type":"unpaid","id":...,"value":...}} for an order that none of the payment methods could pay,
+ *   written by the streaming mode instead of ending the result</li>
+ *   <li>{@code {"type":"total","method":...,"spent":...}} for every payment method</li>
+ *   <li>{@code {"type":"status","solved":...}} at the end, with an {@code "error"} field if the solver failed after
+ *   a part of the result was written</li>
+ * </ul>
+ * Amounts are written as strings with two decimal places, like in the input files. As a {@link PaymentListener},
+ * the writer streams every order as soon as {@link ocado.optimization.ExpenseOptimizer} commits it, so the result
+ * is never kept in memory.
+ */
+public class NdjsonResultWriter implements PaymentListener, Closeable {
+    /** Factory creating the generators */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /** Size of the buffer between the generator and the file */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Generator writing the records */
+    private final JsonGenerator generator;
+
+    /**
+     * Constructor for the NdjsonResultWriter class.
+     *
+     * @param out the destination, closed together with the writer
+     * @throws IOException if the generator cannot be created
+     */
+    public NdjsonResultWriter(OutputStream out) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(out);
+        generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * Creates a writer of a file, written through a buffered {@link FileChannel}.
+     *
+     * @param file the file to create or overwrite
+     * @return the writer
+     * @throws IOException if the file cannot be opened
+     */
+    public static NdjsonResultWriter open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new NdjsonResultWriter(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+    }
+
+    /**
+     * Creates a writer of the standard output. Closing the writer flushes it but leaves the standard output open.
+     *
+     * @return the writer
+     * @throws IOException if the generator cannot be created
+     */
+    public static NdjsonResultWriter toStandardOutput() throws IOException {
+        NdjsonResultWriter writer = new NdjsonResultWriter(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), BUFFER_SIZE));
+        writer.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return writer;
+    }
+
+    /**
+     * Writes the record of a paid order.
+     *
+     * @param orderId the order identifier
+     * @param value the order value
+     * @param allocations the amounts charged to the payment methods
+     * @throws UncheckedIOException if a write error occurs
+     */
+    @Override
+    public void orderPaid(String orderId, Money value, List<Allocation> allocations) throws UncheckedIOException {
+        try {
+            startRecord("order");
+            generator.writeStringField("id", orderId);
+            generator.writeStringField("value", value.toString());
+            generator.writeArrayFieldStart("payments");
+            for (Allocation allocation : allocations) {
+                writePayment(allocation.method(), allocation.amount());
+            }
+            generator.writeEndArray();
+            endRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the record of an amount moved from a card to points.
+     *
+     * @param orderId the order identifier
+     * @param card the identifier of the card that is given the amount back
+     * @param amount the amount moved from the card to points
+     * @throws UncheckedIOException if a write error occurs
+     */
+    @Override
+    public void pointsMoved(String orderId, String card, Money amount) throws UncheckedIOException {
+        try {
+            startRecord("points");
+            generator.writeStringField("id", orderId);
+            generator.writeStringField("from", card);
+            generator.writeStringField("amount", amount.toString());
+            endRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the record of an order that could not be paid.
+     *
+     * @param order the unpaid order
+     * @throws IOException if a write error occurs
+     */
+    public void writeUnpaid(Order order) throws IOException {
+        startRecord("unpaid");
+        generator.writeStringField("id", order.getId());
+        generator.writeStringField("value", order.getValue().toString());
+        endRecord();
+    }
+
+    /**
+     * Writes the record of an order paid by a solver that records its result in the {@link Order} instead of
+     * streaming it, with the amounts the solver recorded in {@code Order.getChargedPaymentsMethods()}.
+     *
+     * @param order the paid order
+     * @throws IOException if a write error occurs
+     */
+    public void writeOrder(Order order) throws IOException {
+        startRecord("order");
+        generator.writeStringField("id", order.getId());
+        generator.writeStringField("value", order.getValue().toString());
+        generator.writeArrayFieldStart("payments");
+        for (Map.Entry<String, Money> payment : new TreeMap<>(order.getChargedPaymentsMethods()).entrySet()) {
+            writePayment(payment.getKey(), payment.getValue());
+        }
+        generator.writeEndArray();
+        endRecord();
+    }
+
+    /**
+     * Writes the end of a result: the orders of a solver that does not stream them, the totals if all orders were
+     * paid, and the status.
+     *
+     * @param solved true if all orders were paid
+     * @param orders the orders paid by a solver that records its result in them, or null if they were streamed
+     * @param payments the map of {@link PaymentMethod} (excluding the points method)
+     * @param pointsMethod the points payment method
+     * @throws IOException if a write error occurs
+     */
+    public void writeResult(boolean solved, List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod)
+            throws IOException {
+        if (orders != null) {
+            for (Order order : orders) {
+                if (!order.getUsedPaymentsMethods().isEmpty()) {
+                    writeOrder(order);
+                }
+            }
+        }
+        if (solved) {
+            writeTotals(pointsMethod, payments.values());
+        }
+        writeStatus(solved);
+    }
+
+    /**
+     * Writes the records of the amounts spent with every payment method. The points method is only written
+     * if it is the PUNKTY method.
+     *
+     * @param pointsMethod the points payment method
+     * @param payments the other payment methods
+     * @throws IOException if a write error occurs
+     */
+    public void writeTotals(PaymentMethod pointsMethod, Collection<PaymentMethod> payments) throws IOException {
+        if ("PUNKTY".equals(pointsMethod.getId())) {
+            writeTotal(pointsMethod);
+        }
+        for (PaymentMethod pm : payments) {
+            writeTotal(pm);
+        }
+    }
+
+    /**
+     * Writes the closing record of the result.
+     *
+     * @param solved true if all orders were paid
+     * @throws IOException if a write error occurs
+     */
+    public void writeStatus(boolean solved) throws IOException {
+        startRecord("status");
+        generator.writeBooleanField("solved", solved);
+        endRecord();
+    }
+
+    /**
+     * Writes the closing record of a result whose solver failed, after the records it wrote so far.
+     *
+     * @param message the reason of the failure
+     * @throws IOException if a write error occurs
+     */
+    public void writeFailure(String message) throws IOException {
+        startRecord("status");
+        generator.writeBooleanField("solved", false);
+        generator.writeStringField("error", message);
+        endRecord();
+    }
+
+    /**
+     * Passes the records written so far to the destination, so a reader of a pipe receives them without waiting
+     * for the end of the result.
+     *
+     * @throws IOException if a write error occurs
+     */
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Flushes the records and closes the destination.
+     *
+     * @throws IOException if a write error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    /**
+     * Writes the record of the amount spent with a payment method.
+     *
+     * @param pm the payment method
+     * @throws IOException if a write error occurs
+     */
+    private void writeTotal(PaymentMethod pm) throws IOException {
+        startRecord("total");
+        generator.writeStringField("method", pm.getId());
+        generator.writeStringField("spent", pm.getSpending().toString());
+        endRecord();
+    }
+
+    /**
+     * Writes a payment as an element of the payments array.
+     *
+     * @param method the payment method identifier
+     * @param amount the amount
+     * @throws IOException if a write error occurs
+     */
+    private void writePayment(String method, Money amount) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("method", method);
+        generator.writeStringField("amount", amount.toString());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Starts a record of the given type.
+     *
+     * @param type the type of the record
+     * @throws IOException if a write error occurs
+     */
+    private void startRecord(String type) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", type);
+    }
+
+    /**
+     * Ends the current record and its line.
+     *
+     * @throws IOException if a write error occurs
+     */
+    private void endRecord() throws IOException {
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
@@ -1,14 +1,15 @@
 package ocado.utils;
 
-import ocado.model.Order;
+import ocado.model.Money;
+import ocado.model.OrderView;
 import ocado.model.PaymentMethod;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.List;
 
 /**
- * Utility class providing necessary methods for optimization.
+ * Utility class providing necessary methods for optimization.<br>
+ * Payments use the precomputed discount multipliers of the cards and the selection heuristics are single passes
+ * over their input, so none of the methods used while paying creates objects.
  */
 public class OptimizerUtils {
     /**
@@ -21,11 +22,10 @@ public class OptimizerUtils {
      *
      * @param payment the payment method
      * @param order the order to be paid
-     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#spend(BigDecimal)} and propagated further
+     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#spend(Money)} and propagated further
      */
-    public void pay(PaymentMethod payment, Order order) throws IllegalArgumentException {
-        BigDecimal multiplier = new BigDecimal("1.00").subtract(payment.getDiscount().divide(new BigDecimal("100.00"), 2, RoundingMode.HALF_UP));
-        payment.spend(order.getValue().multiply(multiplier).setScale(2, RoundingMode.HALF_UP));
+    public void pay(PaymentMethod payment, OrderView order) throws IllegalArgumentException {
+        payment.spend(Money.discounted(order.getValueCents(), payment.getDiscountMultiplier()));
     }
 
     /**
@@ -33,10 +33,21 @@ public class OptimizerUtils {
      *
      * @param payment the payment method
      * @param value the amount to be paid
-     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#spend(BigDecimal)} and propagated further
+     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#spend(Money)} and propagated further
      */
-    public void pay(PaymentMethod payment, BigDecimal value) throws IllegalArgumentException {
-        payment.spend(value.setScale(2, RoundingMode.HALF_UP));
+    public void pay(PaymentMethod payment, Money value) throws IllegalArgumentException {
+        payment.spend(value);
+    }
+
+    /**
+     * Processes payment for a specified amount in cents using the chosen payment method.
+     *
+     * @param payment the payment method
+     * @param cents the amount to be paid in cents
+     * @throws IllegalArgumentException exception thrown from {@link PaymentMethod#spend(long)} and propagated further
+     */
+    public void pay(PaymentMethod payment, long cents) throws IllegalArgumentException {
+        payment.spend(cents);
     }
 
     /**
@@ -67,27 +78,22 @@ public class OptimizerUtils {
             return methods.getFirst();
         }
 
-        List<PaymentMethod> zeroOrdersMethods = methods.stream().
-                filter(pm -> pm.getOrdersAmount() == 0).toList();
-
-        if (zeroOrdersMethods.size() == 1) {
-            // We are returning this unique card, which cannot be used as a promotion anywhere else.
-            return zeroOrdersMethods.getFirst();
-        }
-        else if (zeroOrdersMethods.size() > 1) {
-            // We return the method with 0 orders amount, which also has a minimum limit.
-            return findWithMinLimit(zeroOrdersMethods).getFirst();
-        }
-
-        List<PaymentMethod> lowestDiscountMethods = findLowestDiscountMethods(methods);
-        if (lowestDiscountMethods.size() == 1) {
-            // We return the one with the smallest possible discount.
-            return lowestDiscountMethods.getFirst();
-        }
-        else {
-            // We have a tie. We are looking for the most optimal method (using the CARD-CARD tie rules).
-            return findOptimalCard(lowestDiscountMethods);
+        // A method with 0 orders amount cannot be used as a promotion anywhere else, the one with a minimum limit wins.
+        PaymentMethod bestFree = null;
+        PaymentMethod best = null;
+        for (PaymentMethod pm : methods) {
+            if (pm.getOrdersAmount() == 0) {
+                if (bestFree == null || pm.getLimitCents() < bestFree.getLimitCents()) {
+                    bestFree = pm;
+                }
+            }
+            else if (best == null || pm.getDiscount() < best.getDiscount()
+                    || pm.getDiscount() == best.getDiscount() && precedes(pm, best)) {
+                // Otherwise the smallest possible discount, with a tie resolved by the CARD-CARD tie rules.
+                best = pm;
+            }
         }
+        return bestFree != null ? bestFree : best;
     }
 
     /**
@@ -102,18 +108,46 @@ public class OptimizerUtils {
      * @return the optimal {@link PaymentMethod}
      */
     public PaymentMethod findOptimalCard(List<PaymentMethod> bestMethods) {
-        int minOrdersAmount = bestMethods.stream().mapToInt(PaymentMethod::getOrdersAmount).min().orElse(-1);
-        List<PaymentMethod> methodsWithMinOrdersAmount = bestMethods.stream().filter(pm -> pm.getOrdersAmount() == minOrdersAmount).toList();
+        PaymentMethod best = null;
+        for (PaymentMethod pm : bestMethods) {
+            if (best == null || precedes(pm, best)) {
+                best = pm;
+            }
+        }
+        return best;
+    }
 
-        if (methodsWithMinOrdersAmount.size() == 1) {
-            // We choose the one with the least amount of unprocessed orders that can bring a promotion
-            // (is present on the promotions list).
-            return methodsWithMinOrdersAmount.getFirst();
+    /**
+     * Finds the optimal card among the first methods of an array, like {@link #findOptimalCard(List)}, so a caller
+     * can keep the candidates in a reusable buffer.
+     *
+     * @param bestMethods the buffer of {@link PaymentMethod} to choose from
+     * @param count the number of candidates at the start of the buffer, at least 1
+     * @return the optimal {@link PaymentMethod}
+     */
+    public PaymentMethod findOptimalCard(PaymentMethod[] bestMethods, int count) {
+        PaymentMethod best = bestMethods[0];
+        for (int k = 1; k < count; k++) {
+            if (precedes(bestMethods[k], best)) {
+                best = bestMethods[k];
+            }
         }
-        else {
-            // We choose the one with the smallest limit.
-            return findWithMinLimit(methodsWithMinOrdersAmount).getFirst();
+        return best;
+    }
+
+    /**
+     * Checks whether a card wins a CARD-CARD tie against another one: it has fewer unprocessed orders or, with as
+     * many orders, a smaller limit. Equal cards do not precede each other, so the first of them wins.
+     *
+     * @param pm the card
+     * @param other the card to compare with
+     * @return true if the card is strictly better
+     */
+    private static boolean precedes(PaymentMethod pm, PaymentMethod other) {
+        if (pm.getOrdersAmount() != other.getOrdersAmount()) {
+            return pm.getOrdersAmount() < other.getOrdersAmount();
         }
+        return pm.getLimitCents() < other.getLimitCents();
     }
 
     /**
@@ -124,8 +158,8 @@ public class OptimizerUtils {
      */
     public List<PaymentMethod> findLowestDiscountMethods(List<PaymentMethod> methods) {
         // We return methods that have a minimal discount.
-        BigDecimal minDiscount = methods.stream().map(PaymentMethod::getDiscount).min(BigDecimal::compareTo).orElse(null);
-        return methods.stream().filter(pm -> pm.getDiscount().compareTo(minDiscount) == 0).toList();
+        int minDiscount = methods.stream().mapToInt(PaymentMethod::getDiscount).min().orElse(0);
+        return methods.stream().filter(pm -> pm.getDiscount() == minDiscount).toList();
     }
 
     /**
@@ -136,7 +170,7 @@ public class OptimizerUtils {
      */
     public List<PaymentMethod> findWithMinLimit(List<PaymentMethod> toCheck) {
         // We return methods that have a minimum limit.
-        BigDecimal minLimit = toCheck.stream().map(PaymentMethod::getLimit).min(BigDecimal::compareTo).orElse(null);
+        Money minLimit = toCheck.stream().map(PaymentMethod::getLimit).min(Money::compareTo).orElse(null);
         return toCheck.stream().filter(pm -> pm.getLimit().compareTo(minLimit) == 0).toList();
     }
 
@@ -148,7 +182,7 @@ public class OptimizerUtils {
      */
     public List<PaymentMethod> findWithMaxLimit(List<PaymentMethod> toCheck) {
         // We return methods that have a maximum limit.
-        BigDecimal maxLimit = toCheck.stream().map(PaymentMethod::getLimit).max(BigDecimal::compareTo).orElse(null);
+        Money maxLimit = toCheck.stream().map(PaymentMethod::getLimit).max(Money::compareTo).orElse(null);
         return toCheck.stream().filter(pm -> pm.getLimit().compareTo(maxLimit) == 0).toList();
     }
 }
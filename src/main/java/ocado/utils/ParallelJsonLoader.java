@@ -0,0 +1,378 @@
+package ocado.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import ocado.model.Order;
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Loader of large JSON order files, parsing chunks of the order array in parallel next to
+ * {@link JsonProcessor#getOrdersAsList(File, Map)}.<br>
+ * A single pass over the raw bytes, which only tracks strings and nesting, finds the commas between the orders of the
+ * top-level array and cuts the file into byte ranges of whole orders. Every range is submitted to a
+ * {@link ForkJoinPool} as soon as it is found, so the parsing runs while the rest of the file is still being scanned,
+ * and the results are merged in the order of the ranges. Every chunk also counts the promotions of its own orders,
+ * so only the per-chunk counts are merged. {@link #load(File, File, boolean)} also reads the payment
+ * methods file on the pool while the orders are read.<br>
+ * Files smaller than a single chunk, binary order files and all files on a single-threaded pool are read by
+ * {@link JsonProcessor} on the calling thread.
+ * A malformed order is reported with its position inside its chunk.
+ */
+public class ParallelJsonLoader {
+    /** Default number of bytes after which the scan starts a new chunk */
+    private static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+
+    /** Size of the buffer of the scan */
+    private static final int SCAN_BUFFER_BYTES = 1024 * 1024;
+
+    /** Factory used to create the parsers of the chunks */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /** Pool parsing the chunks */
+    private final ForkJoinPool pool;
+
+    /** Number of bytes after which the scan starts a new chunk */
+    private final int chunkBytes;
+
+    /**
+     * Loaded orders and payment methods.
+     *
+     * @param orders the list of orders, or null if the orders were read into a table
+     * @param table the table of orders, or null if the orders were read into a list
+     * @param payments the map of {@link PaymentMethod} with the order counts of the promotions
+     */
+    public record Input(List<Order> orders, OrderTable table, Map<String, PaymentMethod> payments) {}
+
+    /**
+     * Constructor for the ParallelJsonLoader class, using the common fork-join pool.
+     */
+    public ParallelJsonLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Constructor for the ParallelJsonLoader class.
+     *
+     * @param pool the pool parsing the chunks
+     * @param chunkBytes the number of bytes after which the scan starts a new chunk
+     */
+    public ParallelJsonLoader(ForkJoinPool pool, int chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Reads the orders and the payment methods at the same time.
+     *
+     * @param ordersFile the JSON or binary file containing orders
+     * @param paymentsFile the JSON file containing payment methods
+     * @param asTable true to read the orders into an {@link OrderTable}, false into a list of {@link Order}
+     * @return the orders and the payment methods
+     * @throws IOException if a file read error occurs or a file is malformed
+     * @throws FileNotFoundException if a file does not exist
+     */
+    public Input load(File ordersFile, File paymentsFile, boolean asTable) throws IOException {
+        ForkJoinTask<List<PaymentMethod>> paymentsTask = pool.submit(() -> {
+            try {
+                return JsonProcessor.getPaymentsAsList(paymentsFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Map<String, Integer> promotionCounts = new HashMap<>();
+        List<Order> orders = null;
+        OrderTable table = null;
+        try {
+            if (asTable) {
+                table = getOrdersAsTable(ordersFile, promotionCounts);
+            }
+            else {
+                orders = getOrdersAsList(ordersFile, promotionCounts);
+            }
+        } catch (IOException | RuntimeException e) {
+            // An error of the orders file is reported first, like when the files are read one after the other.
+            paymentsTask.quietlyJoin();
+            throw e;
+        }
+        return new Input(orders, table, JsonProcessor.toPaymentsMap(join(paymentsTask), promotionCounts));
+    }
+
+    /**
+     * Converts a JSON file containing orders into a list of Order objects and counts how many orders list each
+     * {@link PaymentMethod} identifier as a promotion, parsing chunks of the file in parallel.
+     *
+     * @param file the JSON file containing orders
+     * @param promotionCounts the map filled with the number of orders per promotion identifier
+     * @return a list of Order objects, in the order of the file
+     * @throws IOException if a file read error occurs or the file is malformed
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public List<Order> getOrdersAsList(File file, Map<String, Integer> promotionCounts) throws IOException {
+        if (!isChunked(file)) {
+            return JsonProcessor.getOrdersAsList(file, promotionCounts);
+        }
+        List<Order> orders = new ArrayList<>();
+        for (Chunk<List<Order>> chunk : parseChunks(file, parser -> {
+            List<Order> chunkOrders = new ArrayList<>();
+            Map<String, Integer> chunkCounts = new HashMap<>();
+            JsonProcessor.readOrders(parser, order -> {
+                chunkOrders.add(order);
+                JsonProcessor.countPromotions(order, chunkCounts);
+            });
+            return new Chunk<>(chunkOrders, chunkCounts);
+        })) {
+            orders.addAll(chunk.orders());
+            chunk.mergeCounts(promotionCounts);
+        }
+        return orders;
+    }
+
+    /**
+     * Reads orders into an {@link OrderTable} and counts how many orders list each {@link PaymentMethod} identifier
+     * as a promotion, parsing chunks of the file into tables in parallel and appending them in order.
+     *
+     * @param file the JSON or binary file containing orders
+     * @param promotionCounts the map filled with the number of orders per promotion identifier
+     * @return the table of orders
+     * @throws IOException if a file read error occurs or the file is malformed
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public OrderTable getOrdersAsTable(File file, Map<String, Integer> promotionCounts) throws IOException {
+        if (!isChunked(file)) {
+            return JsonProcessor.getOrdersAsTable(file, promotionCounts);
+        }
+        ArrayOrderTable table = new ArrayOrderTable();
+        for (Chunk<ArrayOrderTable> chunk : parseChunks(file, parser -> {
+            ArrayOrderTable chunkTable = new ArrayOrderTable();
+            JsonProcessor.readOrders(parser, chunkTable::add);
+            Map<String, Integer> chunkCounts = new HashMap<>();
+            JsonProcessor.countPromotions(chunkTable, chunkCounts);
+            return new Chunk<>(chunkTable, chunkCounts);
+        })) {
+            table.addAll(chunk.orders());
+            chunk.mergeCounts(promotionCounts);
+        }
+        return table;
+    }
+
+    /**
+     * Checks whether a file is split into chunks, which needs an uncompressed JSON file longer than a single chunk and a pool of
+     * more than one thread, as on a single thread the scan and the merge would only add to the parsing.
+     *
+     * @param file the orders file
+     * @return true if the file is read in chunks
+     * @throws IOException if a file read error occurs
+     * @throws FileNotFoundException if the file does not exist
+     */
+    private boolean isChunked(File file) throws IOException {
+        if (JsonProcessor.isBinaryOrders(file)) {
+            return false;
+        }
+        JsonProcessor.validateFile(file);
+        // A compressed file has no byte offsets of orders, it is decompressed and parsed as a single stream.
+        return !JsonProcessor.isCompressed(file) && file.length() > chunkBytes && pool.getParallelism() > 1;
+    }
+
+    /**
+     * Orders of a chunk with the number of orders per promotion identifier, counted by the task parsing the chunk so
+     * only these small maps are merged on the calling thread.
+     *
+     * @param orders the orders of the chunk
+     * @param promotionCounts the number of orders of the chunk per promotion identifier
+     * @param <T> the type holding the orders
+     */
+    private record Chunk<T>(T orders, Map<String, Integer> promotionCounts) {
+        /**
+         * Adds the counts of the chunk to the counts of the whole file.
+         *
+         * @param total the map with the number of orders per promotion identifier of the previous chunks
+         */
+        void mergeCounts(Map<String, Integer> total) {
+            promotionCounts.forEach((id, count) -> total.merge(id, count, Integer::sum));
+        }
+    }
+
+    /**
+     * Parser of a chunk, turning an array of orders into a partial result.
+     *
+     * @param <T> the type of the partial result
+     */
+    @FunctionalInterface
+    private interface ChunkParser<T> {
+        /**
+         * Parses the orders of a chunk.
+         *
+         * @param parser the parser positioned before the array of the chunk
+         * @return the partial result
+         * @throws IOException if the chunk is malformed
+         */
+        T parse(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Scans the top-level array of the file for commas between orders and parses the chunks between them on the pool.
+     *
+     * @param file the JSON file containing orders
+     * @param chunkParser the parser of a single chunk
+     * @param <T> the type of the partial results
+     * @return the partial results in the order of the chunks
+     * @throws IOException if a file read error occurs or the file is malformed
+     */
+    private <T> List<T> parseChunks(File file, ChunkParser<T> chunkParser) throws IOException {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             InputStream input = new FileInputStream(file)) {
+            byte[] buffer = new byte[SCAN_BUFFER_BYTES];
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+            long chunkStart = -1;
+            long end = -1;
+            long position = 0;
+            int read;
+            scan:
+            while ((read = input.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        }
+                        else if (b == '\\') {
+                            escaped = true;
+                        }
+                        else if (b == '"') {
+                            inString = false;
+                        }
+                        continue;
+                    }
+                    switch (b) {
+                        case '"' -> inString = true;
+                        case '[', '{' -> {
+                            if (depth == 0 && b != '[') {
+                                throw new JsonParseException(null, "Expected an array of orders");
+                            }
+                            if (depth++ == 0) {
+                                chunkStart = position + 1;
+                            }
+                        }
+                        case ']', '}' -> {
+                            if (--depth == 0) {
+                                end = position;
+                                break scan;
+                            }
+                        }
+                        case ',' -> {
+                            // A comma between two orders ends the chunk once it is long enough.
+                            if (depth == 1 && position - chunkStart >= chunkBytes) {
+                                tasks.add(submitChunk(channel, chunkStart, position, chunkParser));
+                                chunkStart = position + 1;
+                            }
+                        }
+                        case ' ', '\t', '\n', '\r' -> {}
+                        default -> {
+                            if (depth == 0) {
+                                throw new JsonParseException(null, "Expected an array of orders");
+                            }
+                        }
+                    }
+                }
+            }
+            if (end < 0) {
+                throw new JsonParseException(null, "Unexpected end of the array of orders");
+            }
+            tasks.add(submitChunk(channel, chunkStart, end, chunkParser));
+
+            List<T> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<T> task : tasks) {
+                results.add(join(task));
+            }
+            return results;
+        } finally {
+            // The channel is closed by now, so the tasks of a failed scan finish quickly and are only waited for.
+            for (ForkJoinTask<T> task : tasks) {
+                task.quietlyJoin();
+            }
+        }
+    }
+
+    /**
+     * Submits the parsing of a chunk, the orders between two commas of the top-level array.
+     *
+     * @param channel the channel of the file, read at absolute positions
+     * @param start the position of the first byte of the chunk
+     * @param end the position after the last byte of the chunk
+     * @param chunkParser the parser of the chunk
+     * @param <T> the type of the partial result
+     * @return the task parsing the chunk
+     */
+    private <T> ForkJoinTask<T> submitChunk(FileChannel channel, long start, long end, ChunkParser<T> chunkParser) {
+        return pool.submit(() -> {
+            // The chunk is read between brackets, so it is parsed as an array of orders like a whole file.
+            byte[] bytes = new byte[Math.toIntExact(end - start + 2)];
+            bytes[0] = '[';
+            bytes[bytes.length - 1] = ']';
+            ByteBuffer target = ByteBuffer.wrap(bytes, 1, bytes.length - 2);
+            try {
+                while (target.hasRemaining()) {
+                    if (channel.read(target, start + target.position() - 1) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+                try (JsonParser parser = JSON_FACTORY.createParser(bytes)) {
+                    return chunkParser.parse(parser);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Waits for a task and rethrows its exception.
+     *
+     * @param task the task
+     * @param <T> the type of the result
+     * @return the result
+     * @throws IOException if the task failed with an I/O error
+     */
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading files", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ocado.utils;
+
+import ocado.model.Order;
+import ocado.model.OrderTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stable LSD radix sort of orders from the most expensive one, on their values in cents.<br>
+ * The values are mapped to unsigned keys relative to the smallest key, so only the bits in which the orders differ
+ * are sorted: a few passes of at most 11 bits for ordinary amounts, and a pass whose digit is the same for all orders
+ * is skipped. Every pass moves the keys together with the order indexes, packed into a single long unless the
+ * values differ by more than a few billion cents, so the values are read once. The buffers are kept between sorts,
+ * so a sorter reused by every run allocates nothing after the first sort of the largest input.
+ */
+public final class RadixSorter {
+    /** Maximal number of bits sorted by a single pass */
+    private static final int MAX_DIGIT_BITS = 11;
+
+    /** Keys of the orders being sorted */
+    private long[] keys = new long[0];
+
+    /** Scratch buffer of the keys */
+    private long[] keyScratch = new long[0];
+
+    /** Indexes of the orders being sorted */
+    private int[] indexes = new int[0];
+
+    /** Scratch buffer of the indexes */
+    private int[] indexScratch = new int[0];
+
+    /** Number of keys per digit of every pass, then the positions of the digits */
+    private final int[] counts = new int[(64 / MAX_DIGIT_BITS + 1) << MAX_DIGIT_BITS];
+
+    /**
+     * Default constructor creating a sorter with empty buffers.
+     */
+    public RadixSorter() {}
+
+    /**
+     * Sorts the indexes of the orders of a table from the most expensive order, orders of equal value keeping the
+     * order of the table.
+     *
+     * @param table the table of orders
+     * @return a buffer whose first {@code table.size()} elements are the sorted indexes, valid until the next sort
+     */
+    public int[] sortByValue(OrderTable table) {
+        int n = table.size();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            keys[i] = table.getValueCents(i);
+            indexes[i] = i;
+        }
+        return sort(n);
+    }
+
+    /**
+     * Sorts a list of orders in place from the most expensive order, orders of equal value keeping their order.
+     *
+     * @param orders the orders
+     */
+    public void sortByValue(List<Order> orders) {
+        int n = orders.size();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            keys[i] = orders.get(i).getValueCents();
+            indexes[i] = i;
+        }
+        int[] sorted = sort(n);
+        Order[] unsorted = orders.toArray(new Order[0]);
+        for (int s = 0; s < n; s++) {
+            orders.set(s, unsorted[sorted[s]]);
+        }
+    }
+
+    /**
+     * Grows the buffers to hold at least the given number of orders.
+     *
+     * @param n the number of orders
+     */
+    private void ensureCapacity(int n) {
+        if (keys.length < n) {
+            keys = new long[n];
+            keyScratch = new long[n];
+            indexes = new int[n];
+            indexScratch = new int[n];
+        }
+    }
+
+    /**
+     * Sorts the first {@code n} values in {@link #keys} from the highest one, moving the indexes with them.
+     *
+     * @param n the number of values
+     * @return the buffer holding the sorted indexes
+     */
+    private int[] sort(int n) {
+        if (n < 2) {
+            return indexes;
+        }
+        // Flipping all bits but the sign turns the descending signed order into the ascending unsigned one.
+        long min = -1;
+        long max = 0;
+        for (int i = 0; i < n; i++) {
+            long key = ~keys[i] ^ Long.MIN_VALUE;
+            keys[i] = key;
+            if (Long.compareUnsigned(key, min) < 0) {
+                min = key;
+            }
+            if (Long.compareUnsigned(key, max) > 0) {
+                max = key;
+            }
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(max - min);
+        if (bits == 0) {
+            return indexes;
+        }
+        int passes = (bits + MAX_DIGIT_BITS - 1) / MAX_DIGIT_BITS;
+        int digitBits = (bits + passes - 1) / passes;
+        int indexBits = 32 - Integer.numberOfLeadingZeros(n - 1);
+        if (bits + indexBits <= 64) {
+            sortPacked(n, min, indexBits, passes, digitBits);
+        }
+        else {
+            sortWide(n, min, passes, digitBits);
+        }
+        return indexes;
+    }
+
+    /**
+     * Sorts keys packed with their indexes into single longs, the key above the index, which halves the memory
+     * moved by every pass. The digits of all passes are counted by a single pass over the keys.
+     *
+     * @param n the number of keys
+     * @param min the smallest key
+     * @param indexBits the number of bits of the indexes
+     * @param passes the number of passes
+     * @param digitBits the number of bits of a digit
+     */
+    private void sortPacked(int n, long min, int indexBits, int passes, int digitBits) {
+        int mask = (1 << digitBits) - 1;
+        int radix = 1 << digitBits;
+        Arrays.fill(counts, 0, passes * radix, 0);
+        long[] entries = keys;
+        for (int i = 0; i < n; i++) {
+            long entry = (entries[i] - min) << indexBits | indexes[i];
+            entries[i] = entry;
+            for (int pass = 0; pass < passes; pass++) {
+                counts[pass * radix + ((int) (entry >>> (indexBits + pass * digitBits)) & mask)]++;
+            }
+        }
+
+        long[] scratch = keyScratch;
+        for (int pass = 0; pass < passes; pass++) {
+            int base = pass * radix;
+            int shift = indexBits + pass * digitBits;
+            if (counts[base + ((int) (entries[0] >>> shift) & mask)] == n) {
+                continue;
+            }
+            int position = 0;
+            for (int d = base; d < base + radix; d++) {
+                int count = counts[d];
+                counts[d] = position;
+                position += count;
+            }
+            for (int i = 0; i < n; i++) {
+                long entry = entries[i];
+                scratch[counts[base + ((int) (entry >>> shift) & mask)]++] = entry;
+            }
+            long[] swapped = entries;
+            entries = scratch;
+            scratch = swapped;
+        }
+        keys = entries;
+        keyScratch = scratch;
+        long indexMask = (1L << indexBits) - 1;
+        for (int i = 0; i < n; i++) {
+            indexes[i] = (int) (entries[i] & indexMask);
+        }
+    }
+
+    /**
+     * Sorts keys too wide to be packed with their indexes, moving the keys and the indexes in separate buffers.
+     *
+     * @param n the number of keys
+     * @param min the smallest key
+     * @param passes the number of passes
+     * @param digitBits the number of bits of a digit
+     */
+    private void sortWide(int n, long min, int passes, int digitBits) {
+        int mask = (1 << digitBits) - 1;
+        for (int shift = 0; shift < passes * digitBits; shift += digitBits) {
+            Arrays.fill(counts, 0, mask + 1, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) ((keys[i] - min) >>> shift) & mask]++;
+            }
+            if (counts[(int) ((keys[0] - min) >>> shift) & mask] == n) {
+                continue;
+            }
+            int position = 0;
+            for (int d = 0; d <= mask; d++) {
+                int count = counts[d];
+                counts[d] = position;
+                position += count;
+            }
+            for (int i = 0; i < n; i++) {
+                long key = keys[i];
+                int target = counts[(int) ((key - min) >>> shift) & mask]++;
+                keyScratch[target] = key;
+                indexScratch[target] = indexes[i];
+            }
+            long[] swappedKeys = keys;
+            keys = keyScratch;
+            keyScratch = swappedKeys;
+            int[] swappedIndexes = indexes;
+            indexes = indexScratch;
+            indexScratch = swappedIndexes;
+        }
+    }
+}
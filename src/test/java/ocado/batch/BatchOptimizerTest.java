@@ -0,0 +1,139 @@
+package ocado.batch;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchOptimizerTest {
+    @TempDir
+    Path tempDir;
+
+    private void createTenant(String tenant) throws IOException {
+        Path dir = Files.createDirectory(tempDir.resolve(tenant));
+        Files.copy(Path.of("src/test/resources/orders.json"), dir.resolve(BatchOptimizer.ORDERS_FILE_NAME));
+        Files.copy(Path.of("src/test/resources/paymentmethods.json"), dir.resolve(BatchOptimizer.PAYMENTS_FILE_NAME));
+    }
+
+    private List<String> sortedLines(StringWriter writer) {
+        return Arrays.stream(writer.toString().split("\n")).sorted().toList();
+    }
+
+    @Test
+    void testRunDirectory() throws IOException, InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            createTenant("tenant" + i);
+        }
+        Files.createDirectory(tempDir.resolve("broken"));
+
+        StringWriter writer = new StringWriter();
+        BatchOptimizer.Summary summary;
+        try (Stream<TenantInput> inputs = BatchOptimizer.readInputs(tempDir.toFile());
+             ResultSink sink = new TextResultSink(writer)) {
+            summary = new BatchOptimizer("greedy", 4).run(inputs, sink);
+        }
+
+        assertEquals(new BatchOptimizer.Summary(20, 0, 1), summary);
+        List<String> lines = sortedLines(writer);
+        assertEquals(81, lines.size());
+        assertTrue(lines.get(0).startsWith("broken ERROR "));
+        assertTrue(lines.contains("tenant7 PUNKTY 150.00"));
+        assertTrue(lines.contains("tenant7 MegaBank 170.00"));
+        assertTrue(lines.contains("tenant7 SuperKarta 150.00"));
+        assertTrue(lines.contains("tenant7 ZwyklaKarta 0.00"));
+    }
+
+    @Test
+    void testRunManifest() throws IOException, InterruptedException {
+        Path manifest = tempDir.resolve("manifest.csv");
+        String resources = new File("src/test/resources").getAbsolutePath();
+        Files.writeString(manifest, """
+                # tenant,orders,payments
+                first,%1$s/orders.json,%1$s/paymentmethods.json
+
+                second,%1$s/orderstwo.json,%1$s/paymentmethodtwo.json
+                """.formatted(resources));
+
+        StringWriter writer = new StringWriter();
+        BatchOptimizer.Summary summary;
+        try (Stream<TenantInput> inputs = BatchOptimizer.readInputs(manifest.toFile())) {
+            summary = new BatchOptimizer("greedy", 2).run(inputs, new TextResultSink(writer));
+        }
+
+        assertEquals(2, summary.solved() + summary.unsolved());
+        assertEquals(0, summary.failed());
+        assertTrue(sortedLines(writer).contains("first PUNKTY 150.00"));
+    }
+
+    @Test
+    void testRunInvalidManifest() throws IOException {
+        Path manifest = tempDir.resolve("manifest.csv");
+        Files.writeString(manifest, "first,orders.json\n");
+
+        try (Stream<TenantInput> inputs = BatchOptimizer.readInputs(manifest.toFile())) {
+            BatchOptimizer batch = new BatchOptimizer("greedy", 1);
+            assertThrows(IllegalArgumentException.class, () -> batch.run(inputs, new TextResultSink(new StringWriter())));
+        }
+    }
+
+    @Test
+    void testRunSinkFailure() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            createTenant("tenant" + i);
+        }
+        ResultSink sink = new ResultSink() {
+            @Override
+            public void write(TenantResult result) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void close() {}
+        };
+
+        try (Stream<TenantInput> inputs = BatchOptimizer.readInputs(tempDir.toFile())) {
+            IOException e = assertThrows(IOException.class, () -> new BatchOptimizer("exact", 2).run(inputs, sink));
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    @Test
+    void testStandardOutputSinkLeavesStandardOutputOpen() throws IOException {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean[] closed = new boolean[1];
+        System.setOut(new PrintStream(out) {
+            @Override
+            public void close() {
+                closed[0] = true;
+                super.close();
+            }
+        });
+        try {
+            try (ResultSink sink = TextResultSink.toStandardOutput()) {
+                sink.write(TenantResult.error("first", "missing file"));
+            }
+            assertEquals("first ERROR missing file\n", out.toString());
+            assertFalse(closed[0]);
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    @Test
+    void testConstructorValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchOptimizer("unknown", 1));
+        assertThrows(IllegalArgumentException.class, () -> new BatchOptimizer("greedy", 0));
+    }
+}
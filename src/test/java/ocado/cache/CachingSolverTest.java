@@ -0,0 +1,170 @@
+package ocado.cache;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingSolverTest {
+    private static final File ORDERS_FILE = new File("src/test/resources/orders.json");
+
+    private static final File PAYMENTS_FILE = new File("src/test/resources/paymentmethods.json");
+
+    @Test
+    void testCachedResultMatchesOptimizer() throws IOException {
+        List<Order> expectedOrders = JsonProcessor.getOrdersAsList(ORDERS_FILE);
+        Map<String, PaymentMethod> expectedPayments = JsonProcessor.getPaymentsAsMap(PAYMENTS_FILE, expectedOrders);
+        PaymentMethod expectedPoints = expectedPayments.remove("PUNKTY");
+        assertTrue(new ExpenseOptimizer(expectedOrders, expectedPayments, expectedPoints).optimize());
+
+        ResultCache cache = new ResultCache(8, ResultCache.Policy.LRU);
+        for (int run = 0; run < 2; run++) {
+            List<Order> orders = JsonProcessor.getOrdersAsList(ORDERS_FILE);
+            Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(PAYMENTS_FILE, orders);
+            PaymentMethod pointsMethod = payments.remove("PUNKTY");
+            // The second input lists the same orders in a different order.
+            if (run == 1) {
+                Collections.reverse(orders);
+            }
+
+            CachingSolver solver = new CachingSolver(cache, "greedy", orders, payments, pointsMethod);
+            assertTrue(solver.optimize());
+            assertEquals(run == 1, solver.isHit());
+            assertEquals(expectedPoints.getSpending(), pointsMethod.getSpending());
+            assertEquals(expectedPoints.getLimit(), pointsMethod.getLimit());
+            for (PaymentMethod pm : payments.values()) {
+                PaymentMethod expected = expectedPayments.get(pm.getId());
+                assertEquals(expected.getSpending(), pm.getSpending());
+                assertEquals(expected.getLimit(), pm.getLimit());
+                assertEquals(expected.getOrdersAmount(), pm.getOrdersAmount());
+            }
+            for (Order order : orders) {
+                Order expected = expectedOrders.stream().filter(o -> o.getId().equals(order.getId())).findFirst().orElseThrow();
+                assertEquals(expected.getUsedPaymentsMethods(), order.getUsedPaymentsMethods());
+                assertEquals(expected.getChargedPaymentsMethods(), order.getChargedPaymentsMethods());
+            }
+        }
+        assertEquals(new ResultCache.Stats(1, 0, 1, 0, 1), cache.getStats());
+    }
+
+    @Test
+    void testPermutedInputGetsEquivalentResult() {
+        ResultCache cache = new ResultCache(8, ResultCache.Policy.LRU);
+        Map<String, PaymentMethod> payments = wallet();
+        List<Order> orders = new ArrayList<>(List.of(new Order("A", "100.00", List.of("C0", "C1"))));
+        assertTrue(new CachingSolver(cache, "greedy", orders, payments, new PaymentMethod("PUNKTY", "15", "0.00")).optimize());
+
+        // The greedy algorithm pays with the card listed first of two equal ones, so the listings differ.
+        List<Order> permuted = new ArrayList<>(List.of(new Order("A", "100.00", List.of("C1", "C0"))));
+        Map<String, PaymentMethod> computedPayments = wallet();
+        assertTrue(new ExpenseOptimizer(permuted, computedPayments, new PaymentMethod("PUNKTY", "15", "0.00")).optimize());
+        Map<String, Money> computed = permuted.getFirst().getUsedPaymentsMethods();
+        assertNotEquals(orders.getFirst().getUsedPaymentsMethods(), computed);
+
+        // The hit records the result of the first listing, which pays the same amount.
+        permuted = new ArrayList<>(List.of(new Order("A", "100.00", List.of("C1", "C0"))));
+        Map<String, PaymentMethod> cachedPayments = wallet();
+        CachingSolver solver = new CachingSolver(cache, "greedy", permuted, cachedPayments, new PaymentMethod("PUNKTY", "15", "0.00"));
+        assertTrue(solver.optimize());
+        assertTrue(solver.isHit());
+        assertEquals(orders.getFirst().getUsedPaymentsMethods(), permuted.getFirst().getUsedPaymentsMethods());
+        assertEquals(spending(computedPayments), spending(cachedPayments));
+        for (PaymentMethod pm : cachedPayments.values()) {
+            assertFalse(pm.getLimit().isNegative());
+        }
+    }
+
+    @Test
+    void testUndecodableEntryIsRecomputed(@TempDir Path tempDir) throws IOException {
+        List<Order> expectedOrders = JsonProcessor.getOrdersAsList(ORDERS_FILE);
+        Map<String, PaymentMethod> expectedPayments = JsonProcessor.getPaymentsAsMap(PAYMENTS_FILE, expectedOrders);
+        assertTrue(new ExpenseOptimizer(expectedOrders, expectedPayments, expectedPayments.remove("PUNKTY")).optimize());
+        assertFalse(run(new ResultCache(1, ResultCache.Policy.LRU, tempDir), expectedPayments));
+        Path file;
+        try (var files = Files.list(tempDir)) {
+            file = files.findFirst().orElseThrow();
+        }
+        byte[] stored = Files.readAllBytes(file);
+
+        // A truncated file and one written in another format are both replaced by a new result.
+        byte[] foreign = stored.clone();
+        ByteBuffer.wrap(foreign).putInt(0, CachingSolver.FORMAT_VERSION + 1);
+        for (byte[] corrupted : List.of(Arrays.copyOf(stored, stored.length / 2), foreign)) {
+            Files.write(file, corrupted);
+            ResultCache cache = new ResultCache(1, ResultCache.Policy.LRU, tempDir);
+            assertFalse(run(cache, expectedPayments));
+            assertEquals(1, cache.getStats().diskHits());
+            assertArrayEquals(stored, Files.readAllBytes(file));
+            assertTrue(run(new ResultCache(1, ResultCache.Policy.LRU, tempDir), expectedPayments));
+        }
+    }
+
+    @Test
+    void testKeyNormalization() {
+        PaymentMethod card = new PaymentMethod("C0", "10", "100.00");
+        PaymentMethod other = new PaymentMethod("C1", "5", "50.00");
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "20.00");
+        List<Order> orders = new ArrayList<>(List.of(new Order("A", "10.00", List.of("C0", "C1")), new Order("B", "20.00", List.of())));
+        InputKey key = InputKey.of("greedy", orders, Map.of("C0", card, "C1", other), pointsMethod);
+
+        List<Order> reordered = List.of(new Order("B", "20.00", List.of()), new Order("A", "10.00", List.of("C1", "C0")));
+        assertEquals(key, InputKey.of("greedy", reordered, Map.of("C1", other, "C0", card), pointsMethod));
+
+        assertNotEquals(key, InputKey.of("exact", orders, Map.of("C0", card, "C1", other), pointsMethod));
+        assertNotEquals(key, InputKey.of("greedy", orders, Map.of("C0", card, "C1", new PaymentMethod("C1", "5", "50.01")), pointsMethod));
+        assertNotEquals(key, InputKey.of("greedy", List.of(new Order("A", "10.00", List.of("C0", "C1")), new Order("B", "20.01", List.of())),
+                Map.of("C0", card, "C1", other), pointsMethod));
+    }
+
+    @Test
+    void testUnknownSolver() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CachingSolver(new ResultCache(1, ResultCache.Policy.LRU), "unknown", List.of(), Map.of(), new PaymentMethod("15", "0.00")));
+    }
+
+    private static boolean run(ResultCache cache, Map<String, PaymentMethod> expectedPayments) throws IOException {
+        List<Order> orders = JsonProcessor.getOrdersAsList(ORDERS_FILE);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(PAYMENTS_FILE, orders);
+        CachingSolver solver = new CachingSolver(cache, "greedy", orders, payments, payments.remove("PUNKTY"));
+        assertTrue(solver.optimize());
+        for (PaymentMethod pm : payments.values()) {
+            assertEquals(expectedPayments.get(pm.getId()).getSpending(), pm.getSpending());
+        }
+        return solver.isHit();
+    }
+
+    private static Map<String, PaymentMethod> wallet() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        for (String id : List.of("C0", "C1")) {
+            PaymentMethod card = new PaymentMethod(id, "10", "100.00");
+            card.setOrdersAmount(1);
+            payments.put(id, card);
+        }
+        return payments;
+    }
+
+    private static Money spending(Map<String, PaymentMethod> payments) {
+        Money spent = Money.ZERO;
+        for (PaymentMethod pm : payments.values()) {
+            spent = spent.add(pm.getSpending());
+        }
+        return spent;
+    }
+}
@@ -0,0 +1,90 @@
+package ocado.cache;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+    private static final InputKey A = new InputKey("a"), B = new InputKey("b"), C = new InputKey("c");
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        ResultCache cache = new ResultCache(2, ResultCache.Policy.LRU);
+        cache.put(A, new byte[]{1});
+        cache.put(B, new byte[]{2});
+        assertArrayEquals(new byte[]{1}, cache.get(A));
+        cache.put(C, new byte[]{3});
+
+        assertNull(cache.get(B));
+        assertArrayEquals(new byte[]{1}, cache.get(A));
+        assertArrayEquals(new byte[]{3}, cache.get(C));
+        assertEquals(new ResultCache.Stats(3, 0, 1, 1, 2), cache.getStats());
+        assertEquals(0.75, cache.getStats().hitRatio());
+    }
+
+    @Test
+    void testLeastFrequentlyUsedEviction() {
+        ResultCache cache = new ResultCache(2, ResultCache.Policy.LFU);
+        cache.put(A, new byte[]{1});
+        cache.put(B, new byte[]{2});
+        cache.get(A);
+        cache.get(A);
+        cache.get(B);
+        // B is the most recently used, but A is used more often.
+        cache.put(C, new byte[]{3});
+        assertNull(cache.get(B));
+        assertNotNull(cache.get(A));
+
+        // The unused result is evicted before the often used one.
+        cache.put(B, new byte[]{2});
+        assertNull(cache.get(C));
+        assertNotNull(cache.get(A));
+        assertEquals(2, cache.getStats().evictions());
+    }
+
+    @Test
+    void testDiskTier(@TempDir Path tempDir) {
+        ResultCache cache = new ResultCache(1, ResultCache.Policy.LRU, tempDir);
+        cache.put(A, new byte[]{1});
+        cache.put(B, new byte[]{2});
+        assertArrayEquals(new byte[]{1}, cache.get(A));
+        assertEquals(1, cache.getStats().diskHits());
+
+        // A new cache finds the results written by the previous one.
+        ResultCache restarted = new ResultCache(1, ResultCache.Policy.LRU, tempDir);
+        assertArrayEquals(new byte[]{2}, restarted.get(B));
+        assertNull(restarted.get(C));
+        assertEquals(new ResultCache.Stats(0, 1, 1, 0, 1), restarted.getStats());
+    }
+
+    @Test
+    void testRemove(@TempDir Path tempDir) {
+        ResultCache cache = new ResultCache(2, ResultCache.Policy.LFU, tempDir);
+        cache.put(A, new byte[]{1});
+        cache.put(B, new byte[]{2});
+        cache.get(B);
+        cache.remove(B);
+        cache.remove(C);
+        assertEquals(1, cache.getStats().size());
+
+        // The freed slot is used without an eviction.
+        cache.put(C, new byte[]{3});
+        assertEquals(0, cache.getStats().evictions());
+        cache.put(B, new byte[]{4});
+        assertEquals(1, cache.getStats().evictions());
+
+        // A removed result is not found on disk either.
+        ResultCache restarted = new ResultCache(1, ResultCache.Policy.LRU, tempDir);
+        cache.remove(A);
+        assertNull(restarted.get(A));
+        assertArrayEquals(new byte[]{4}, restarted.get(B));
+    }
+
+    @Test
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ResultCache(0, ResultCache.Policy.LRU));
+    }
+}
@@ -0,0 +1,112 @@
+package ocado.metrics;
+
+import ocado.metrics.DecisionTrace.Reason;
+import ocado.metrics.OptimizerMetrics.Branch;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionTraceTest {
+    @Test
+    void testRingBufferKeepsTheLatestRecords(@TempDir Path tempDir) throws IOException {
+        DecisionTrace trace = new DecisionTrace(2);
+        int[] candidates = {0, 1, 2, 3, 4, 5};
+        trace.record(10_000, Branch.PROMOTION_CARD, Reason.BEST_DISCOUNT, 1, 0, candidates, 2);
+        trace.record(5_000, Branch.CARD_CARD_TIE, Reason.FEWER_ORDERS, 4, 0, candidates, 6);
+        trace.record(2_000, Branch.FULL_POINTS, Reason.POINTS_OVER_CARD, DecisionTrace.POINTS, 1_700, candidates, 0);
+        assertEquals(3, trace.count());
+
+        Path file = tempDir.resolve("trace.txt");
+        trace.dump(file, position -> "O" + position, c -> c == DecisionTrace.POINTS ? "PUNKTY" : "C" + c);
+        assertEquals(List.of(
+                "# 2 of 3 decisions",
+                "order=O1 value=50.00 branch=CARD_CARD_TIE reason=FEWER_ORDERS chosen=C4 points=0.00 candidates=C0,C1,C2,C3,+2",
+                "order=O2 value=20.00 branch=FULL_POINTS reason=POINTS_OVER_CARD chosen=PUNKTY points=17.00 candidates="),
+                Files.readAllLines(file));
+
+        trace.clear();
+        trace.record(3_000, Branch.TERMINATED, Reason.NO_CANDIDATE, DecisionTrace.NO_CARD, 0, candidates, 1);
+        trace.dump(file, position -> "O" + position, c -> "C" + c);
+        assertEquals(List.of(
+                "# 1 of 1 decisions",
+                "order=O0 value=30.00 branch=TERMINATED reason=NO_CANDIDATE chosen=- points=0.00 candidates=C0"),
+                Files.readAllLines(file));
+
+        assertThrows(IllegalArgumentException.class, () -> new DecisionTrace(0));
+    }
+
+    @Test
+    void testDisabledTrace() {
+        Assumptions.assumeFalse(DecisionTrace.ENABLED);
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "100.00"));
+        List<Order> orders = new ArrayList<>(List.of(new Order("A", "50.00", List.of("C0"))));
+        ExpenseOptimizer optimizer = new ExpenseOptimizer(orders, payments, new PaymentMethod("PUNKTY", "15", "10.00"));
+
+        assertTrue(optimizer.optimize());
+        assertThrows(IllegalStateException.class, () -> optimizer.dumpTrace(Path.of("trace.txt")));
+        assertFalse(Files.exists(Path.of("trace.txt")));
+    }
+
+    @Test
+    void testTracedRuns(@TempDir Path tempDir) throws Exception {
+        Path payments = tempDir.resolve("paymentmethods.json");
+        Files.writeString(payments, """
+                [
+                  {"id": "PUNKTY", "discount": "5", "limit": "0.00"},
+                  {"id": "C1", "discount": "15", "limit": "100.00"},
+                  {"id": "C2", "discount": "15", "limit": "50.00"}
+                ]""");
+        Path orders = tempDir.resolve("orders.json");
+        Files.writeString(orders, """
+                [
+                  {"id": "A", "value": "40.00", "promotions": ["C1", "C2"]},
+                  {"id": "B", "value": "30.00"}
+                ]""");
+        Path trace = tempDir.resolve("trace.txt");
+
+        // The switch is read once per JVM, so the traced runs are made by a new one.
+        assertEquals(0, runTraced(trace, "--trace", orders.toString(), payments.toString()));
+        assertEquals(List.of(
+                "# 2 of 2 decisions",
+                "order=A value=40.00 branch=CARD_CARD_TIE reason=SMALLER_LIMIT chosen=C2 points=0.00 candidates=C1,C2",
+                "order=B value=30.00 branch=NO_PROMOTION_CARD reason=BEST_CARD_FOR_REST chosen=C1 points=0.00 candidates="),
+                Files.readAllLines(trace));
+
+        // A failed run writes its trace without the option.
+        Files.writeString(orders, """
+                [
+                  {"id": "A", "value": "40.00", "promotions": ["C1", "C2"]},
+                  {"id": "B", "value": "120.00"}
+                ]""");
+        Files.delete(trace);
+        assertEquals(0, runTraced(trace, orders.toString(), payments.toString()));
+        assertEquals(List.of(
+                "# 1 of 1 decisions",
+                "order=B value=120.00 branch=TERMINATED reason=NO_CANDIDATE chosen=- points=0.00 candidates="),
+                Files.readAllLines(trace));
+    }
+
+    private static int runTraced(Path trace, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(ProcessHandle.current().info().command().orElse("java"),
+                "-D" + DecisionTrace.FILE_PROPERTY + "=" + trace, "-cp", System.getProperty("java.class.path"), "ocado.Main"));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        return process.exitValue();
+    }
+}
@@ -0,0 +1,77 @@
+package ocado.metrics;
+
+import ocado.metrics.OptimizerMetrics.Branch;
+import ocado.metrics.OptimizerMetrics.Phase;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizerMetricsTest {
+    @Test
+    void testBranchesAndPhases() throws IOException {
+        List<Order> orders = JsonProcessor.getOrdersAsList(new File("src/test/resources/orders.json"));
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"), orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        OptimizerMetrics metrics = new OptimizerMetrics();
+
+        ExpenseOptimizer optimizer = new ExpenseOptimizer(orders, payments, pointsMethod);
+        optimizer.setMetrics(metrics);
+        assertTrue(optimizer.optimize());
+
+        assertEquals(1, metrics.getRuns());
+        assertEquals(1, metrics.getCount(Branch.FULL_POINTS));
+        assertEquals(1, metrics.getCount(Branch.PROMOTION_CARD));
+        assertEquals(2, metrics.getCount(Branch.POINTS_10));
+        assertEquals(0, metrics.getCount(Branch.TERMINATED));
+        assertEquals(1, metrics.getHistogram(Phase.SORT).getCount());
+        assertEquals(1, metrics.getHistogram(Phase.MAIN_LOOP).getCount());
+        assertEquals(1, metrics.getHistogram(Phase.SPEND_REMAINING_POINTS).getCount());
+        assertEquals(0, metrics.getHistogram(Phase.PARSE).getCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getRuns());
+        assertEquals(0, metrics.getCount(Branch.POINTS_10));
+        assertEquals(0, metrics.getHistogram(Phase.MAIN_LOOP).getCount());
+    }
+
+    @Test
+    void testHistogramBuckets() {
+        Histogram histogram = new Histogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(5);
+        histogram.record(7);
+        histogram.record(-3);
+
+        assertEquals(5, histogram.getCount());
+        assertEquals(13, histogram.getSum());
+        assertEquals(7, histogram.getMax());
+        assertEquals(Map.of(0L, 2L, 1L, 1L, 7L, 2L), histogram.getBuckets());
+    }
+
+    @Test
+    void testJsonAndMBean() throws Exception {
+        OptimizerMetrics.registerMBean();
+        OptimizerMetrics.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OptimizerMetrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        assertEquals(OptimizerMetrics.global().getRuns(), server.getAttribute(name, "Runs"));
+
+        String json = new OptimizerMetrics().getJson();
+        assertTrue(json.contains("\"TERMINATED\" : 0"));
+        assertTrue(json.contains("\"SPEND_REMAINING_POINTS\""));
+    }
+}
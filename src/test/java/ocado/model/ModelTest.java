@@ -2,8 +2,10 @@ package ocado.model;
 
 import org.junit.jupiter.api.*;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -13,9 +15,23 @@ class ModelTest {
         Order order = new Order("", "", new ArrayList<>());
         assertTrue(order.getUsedPaymentsMethods().isEmpty());
 
-        order.usePaymentsMethod("test", new BigDecimal("1.00"));
+        order.usePaymentsMethod("test", Money.of("1.00"));
         assertTrue(order.getUsedPaymentsMethods().containsKey("test"));
-        assertEquals(new BigDecimal("1.00"), order.getUsedPaymentsMethods().get("test"));
+        assertEquals(Money.of("1.00"), order.getUsedPaymentsMethods().get("test"));
+    }
+
+    @Test
+    void testOrderChargePaymentMethod() {
+        Order order = new Order("", "10.00", new ArrayList<>());
+        order.usePaymentsMethod("test", Money.of("10.00"));
+        order.chargePaymentsMethod("test", 900);
+        order.chargePaymentsMethod("test", -100);
+        order.chargePaymentsMethod("PUNKTY", 100);
+        assertEquals(Map.of("test", Money.of("8.00"), "PUNKTY", Money.of("1.00")), order.getChargedPaymentsMethods());
+
+        order.clearPayments();
+        assertTrue(order.getUsedPaymentsMethods().isEmpty());
+        assertTrue(order.getChargedPaymentsMethods().isEmpty());
     }
 
     @Test
@@ -43,34 +59,122 @@ class ModelTest {
     @Test
     void testPaymentMethodCorrectSpend() {
         PaymentMethod paymentMethod = new PaymentMethod("", "", "");
-        paymentMethod.setLimit(new BigDecimal("20.00"));
-        paymentMethod.spend(new BigDecimal("10.00"));
-        assertEquals(new BigDecimal("10.00"), paymentMethod.getLimit());
-        assertEquals(new BigDecimal("10.00"), paymentMethod.getSpending());
+        paymentMethod.setLimit(Money.of("20.00"));
+        paymentMethod.spend(Money.of("10.00"));
+        assertEquals(Money.of("10.00"), paymentMethod.getLimit());
+        assertEquals(Money.of("10.00"), paymentMethod.getSpending());
     }
 
     @Test
     void testPaymentMethodSpendWrongAmount() {
         PaymentMethod paymentMethod = new PaymentMethod("", "", "");
-        paymentMethod.setLimit(new BigDecimal("20.00"));
-        assertThrows(IllegalArgumentException.class, () -> paymentMethod.spend(new BigDecimal("21.00")));
-        assertThrows(IllegalArgumentException.class, () -> paymentMethod.spend(new BigDecimal("-1.00")));
+        paymentMethod.setLimit(Money.of("20.00"));
+        assertThrows(IllegalArgumentException.class, () -> paymentMethod.spend(Money.of("21.00")));
+        assertThrows(IllegalArgumentException.class, () -> paymentMethod.spend(Money.of("-1.00")));
     }
 
     @Test
     void testPaymentMethodGetMoneyBack() {
         PaymentMethod paymentMethod = new PaymentMethod("", "", "");
-        paymentMethod.setSpending(new BigDecimal("20.00"));
-        paymentMethod.getMoneyBack(new BigDecimal("10.00"));
-        assertEquals(new BigDecimal("10.00"), paymentMethod.getSpending());
-        assertEquals(new BigDecimal("10.00"), paymentMethod.getLimit());
+        paymentMethod.setSpending(Money.of("20.00"));
+        paymentMethod.getMoneyBack(Money.of("10.00"));
+        assertEquals(Money.of("10.00"), paymentMethod.getSpending());
+        assertEquals(Money.of("10.00"), paymentMethod.getLimit());
     }
 
     @Test
     void testPaymentMethodGetMoneyBackWrongAmount() {
         PaymentMethod paymentMethod = new PaymentMethod("", "", "");
-        paymentMethod.setSpending(new BigDecimal("20.00"));
-        assertThrows(IllegalArgumentException.class, () -> paymentMethod.getMoneyBack(new BigDecimal("-1.00")));
-        assertThrows(IllegalArgumentException.class, () -> paymentMethod.getMoneyBack(new BigDecimal("21.00")));
+        paymentMethod.setSpending(Money.of("20.00"));
+        assertThrows(IllegalArgumentException.class, () -> paymentMethod.getMoneyBack(Money.of("-1.00")));
+        assertThrows(IllegalArgumentException.class, () -> paymentMethod.getMoneyBack(Money.of("21.00")));
+    }
+
+    @Test
+    void testMoneyParsingRoundsHalfUp() {
+        assertEquals(12345, Money.of("123.45").getCents());
+        assertEquals(1, Money.of("0.005").getCents());
+        assertEquals(0, Money.of("0.004").getCents());
+        assertEquals(-1, Money.of("-0.005").getCents());
+        assertEquals(1250, Money.basisPointsOf("12.5"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of("abc"));
+    }
+
+    @Test
+    void testMoneyToString() {
+        assertEquals("150.00", Money.of("150").toString());
+        assertEquals("0.05", Money.of("0.05").toString());
+        assertEquals("-1.00", Money.of("-1").toString());
+    }
+
+    @Test
+    void testMoneyPercentAndDiscount() {
+        assertEquals(Money.of("0.02"), Money.of("0.15").percent(1000));
+        assertEquals(Money.of("160.00"), Money.of("200.00").applyDiscount(2000));
+        // A 12.5% discount becomes a 0.87 multiplier, exactly as BigDecimal division to two places did.
+        assertEquals(Money.of("87.00"), Money.of("100.00").applyDiscount(1250));
+        assertEquals(Money.of("8.69"), Money.of("9.99").applyDiscount(1250));
+    }
+
+    @Test
+    void testMoneyCoversComparesWithoutRounding() {
+        assertTrue(Money.of("0.02").covers(Money.of("0.15"), 1000));
+        assertFalse(Money.of("0.01").covers(Money.of("0.15"), 1000));
+        assertFalse(Money.ZERO.covers(Money.of("0.04"), 1000));
+    }
+
+    @Test
+    void testCardRegistryIndexes() {
+        Map<String, PaymentMethod> payments = new LinkedHashMap<>();
+        payments.put("mZysk", new PaymentMethod("mZysk", "10", "100.00"));
+        payments.put("BosBankrut", new PaymentMethod("BosBankrut", "5", "50.00"));
+        CardRegistry registry = new CardRegistry(payments);
+
+        assertEquals(2, registry.size());
+        assertEquals(0, registry.indexOf("mZysk"));
+        assertEquals(1, registry.indexOf("BosBankrut"));
+        assertEquals(-1, registry.indexOf("PUNKTY"));
+        assertSame(payments.get("BosBankrut"), registry.get(1));
+
+        Order order = new Order("ORDER1", "10.00", List.of("BosBankrut", "UNKNOWN"));
+        assertEquals(1, order.getPromotionCard(0, registry));
+        assertEquals(-1, order.getPromotionCard(1, registry));
+    }
+
+    @Test
+    void testOrderResolvesPromotionsOncePerRegistry() {
+        Map<String, PaymentMethod> payments = new LinkedHashMap<>();
+        payments.put("mZysk", new PaymentMethod("mZysk", "10", "100.00"));
+        payments.put("BosBankrut", new PaymentMethod("BosBankrut", "5", "50.00"));
+        int[] lookups = new int[1];
+        CardRegistry registry = countingRegistry(payments, lookups);
+        assertTrue(registry.isFor(payments));
+
+        Order order = new Order("ORDER1", "10.00", List.of("BosBankrut", "mZysk"));
+        for (int run = 0; run < 3; run++) {
+            assertEquals(1, order.getPromotionCard(0, registry));
+            assertEquals(0, order.getPromotionCard(1, registry));
+        }
+        assertEquals(2, lookups[0]);
+
+        // Another numbering of the cards resolves the promotions again.
+        Map<String, PaymentMethod> reversed = new LinkedHashMap<>();
+        reversed.put("BosBankrut", payments.get("BosBankrut"));
+        reversed.put("mZysk", payments.get("mZysk"));
+        assertFalse(registry.isFor(reversed));
+        CardRegistry other = countingRegistry(reversed, lookups);
+        assertEquals(0, order.getPromotionCard(0, other));
+        assertEquals(1, order.getPromotionCard(1, other));
+        assertEquals(4, lookups[0]);
+    }
+
+    private static CardRegistry countingRegistry(Map<String, PaymentMethod> payments, int[] lookups) {
+        return new CardRegistry(payments) {
+            @Override
+            public int indexOf(String id) {
+                lookups[0]++;
+                return super.indexOf(id);
+            }
+        };
     }
 }
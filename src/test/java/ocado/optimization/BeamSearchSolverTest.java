@@ -0,0 +1,192 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeamSearchSolverTest {
+    @Test
+    void testOptimize() throws IOException {
+        File fileOrders = new File("src/test/resources/orders.json");
+        File filePayments = new File("src/test/resources/paymentmethods.json");
+        List<Order> orders = JsonProcessor.getOrdersAsList(fileOrders);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(filePayments, orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+
+        ExpenseSolver solver = new BeamSearchSolver(orders, payments, pointsMethod);
+
+        assertTrue(solver.optimize());
+        Money spent = pointsMethod.getSpending();
+        for (PaymentMethod pm : payments.values()) {
+            assertFalse(pm.getLimit().isNegative());
+            spent = spent.add(pm.getSpending());
+        }
+        assertFalse(pointsMethod.getLimit().isNegative());
+        // The greedy optimizer spends 470.00 on these orders worth 550.00.
+        assertTrue(spent.compareTo(Money.of("470.00")) <= 0);
+        for (Order order : orders) {
+            assertFalse(order.getUsedPaymentsMethods().isEmpty());
+        }
+    }
+
+    @Test
+    void testOptimizeWhereGreedyFails() {
+        for (int width : new int[] {2, BeamSearchSolver.DEFAULT_WIDTH}) {
+            Map<String, PaymentMethod> payments = new HashMap<>();
+            PaymentMethod card = new PaymentMethod("C0", "15", "190.00");
+            payments.put("C0", card);
+            PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "5", "20.00");
+            List<Order> orders = new ArrayList<>();
+            orders.add(new Order("A", "50.00", List.of("C0")));
+            orders.add(new Order("B", "90.00", List.of("C0")));
+            orders.add(new Order("C", "100.00", List.of("C0")));
+            card.setOrdersAmount(3);
+
+            ExpenseSolver solver = new BeamSearchSolver(orders, payments, pointsMethod, width, ForkJoinPool.commonPool());
+            assertTrue(solver.optimize());
+            assertEquals(Money.of("186.50"), card.getSpending());
+            assertEquals(Money.of("20.00"), pointsMethod.getSpending());
+        }
+    }
+
+    @Test
+    void testOptimizeInfeasible() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "100.00"));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "10.00");
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "80.00", List.of("C0")));
+        orders.add(new Order("B", "60.00", List.of()));
+
+        ExpenseSolver solver = new BeamSearchSolver(orders, payments, pointsMethod);
+        assertFalse(solver.optimize());
+        assertEquals(Money.ZERO, payments.get("C0").getSpending());
+        assertEquals(Money.ZERO, pointsMethod.getSpending());
+        assertTrue(orders.get(0).getUsedPaymentsMethods().isEmpty());
+    }
+
+    @Test
+    void testParallelExpansionIsDeterministic() {
+        Random random = new Random(24);
+        List<Order> orders = new ArrayList<>();
+        List<PaymentMethod> cards = randomInstance(random, 200, 20, orders);
+
+        // A wide beam with many cards splits every step into several chunks.
+        Map<String, Map<String, Money>> expected = solve(orders, cards, 512, new ForkJoinPool(1));
+        Map<String, Map<String, Money>> actual = solve(orders, cards, 512, new ForkJoinPool(4));
+        assertNotNull(expected);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testNeverBetterThanExact() {
+        Random random = new Random(2024);
+        for (int run = 0; run < 30; run++) {
+            List<Order> orders = new ArrayList<>();
+            List<PaymentMethod> cards = randomInstance(random, 8, 3, orders);
+
+            Map<String, PaymentMethod> exactPayments = toMap(cards);
+            PaymentMethod exactPoints = exactPayments.remove("PUNKTY");
+            boolean exact = new BranchAndBoundSolver(copy(orders), exactPayments, exactPoints).optimize();
+            Map<String, PaymentMethod> beamPayments = toMap(cards);
+            PaymentMethod beamPoints = beamPayments.remove("PUNKTY");
+            boolean beam = new BeamSearchSolver(copy(orders), beamPayments, beamPoints, 64, ForkJoinPool.commonPool()).optimize();
+
+            if (!exact) {
+                assertFalse(beam);
+            }
+            else if (beam) {
+                assertTrue(spending(beamPayments, beamPoints).compareTo(spending(exactPayments, exactPoints)) >= 0);
+            }
+        }
+    }
+
+    @Test
+    void testErrors() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "100.00"));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "10.00");
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "-1.00", List.of()));
+
+        assertThrows(IllegalArgumentException.class, new BeamSearchSolver(orders, payments, pointsMethod)::optimize);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        assertThrows(IllegalArgumentException.class, () -> new BeamSearchSolver(orders, payments, pointsMethod, 0, pool));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BeamSearchSolver(orders, payments, pointsMethod, BeamSearchSolver.MAX_WIDTH + 1, pool));
+    }
+
+    private static List<PaymentMethod> randomInstance(Random random, int orderCount, int cardCount, List<Order> orders) {
+        List<PaymentMethod> cards = new ArrayList<>();
+        for (int c = 0; c < cardCount; c++) {
+            cards.add(new PaymentMethod("C" + c, String.valueOf(random.nextInt(21)), BigDecimal.valueOf(random.nextInt(orderCount * 4000), 2).toString()));
+        }
+        cards.add(new PaymentMethod("PUNKTY", String.valueOf(random.nextInt(21)), BigDecimal.valueOf(random.nextInt(orderCount * 3000), 2).toString()));
+        for (int i = 0; i < orderCount; i++) {
+            List<String> promotions = new ArrayList<>();
+            for (int c = 0; c < cardCount; c++) {
+                if (random.nextInt(3) == 0) {
+                    promotions.add("C" + c);
+                }
+            }
+            orders.add(new Order("O" + i, BigDecimal.valueOf(random.nextInt(20000), 2).toString(), promotions));
+        }
+        return cards;
+    }
+
+    private static Map<String, Map<String, Money>> solve(List<Order> orders, List<PaymentMethod> cards, int width, ForkJoinPool pool) {
+        List<Order> ordersCopy = copy(orders);
+        Map<String, PaymentMethod> payments = toMap(cards);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        try {
+            if (!new BeamSearchSolver(ordersCopy, payments, pointsMethod, width, pool).optimize()) {
+                return null;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Map<String, Map<String, Money>> used = new HashMap<>();
+        for (Order order : ordersCopy) {
+            used.put(order.getId(), order.getUsedPaymentsMethods());
+        }
+        return used;
+    }
+
+    private static Money spending(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        Money spent = pointsMethod.getSpending();
+        for (PaymentMethod pm : payments.values()) {
+            spent = spent.add(pm.getSpending());
+        }
+        return spent;
+    }
+
+    private static List<Order> copy(List<Order> orders) {
+        List<Order> copy = new ArrayList<>();
+        for (Order order : orders) {
+            copy.add(new Order(order.getId(), order.getValue().toString(), order.getPromotions()));
+        }
+        return copy;
+    }
+
+    private static Map<String, PaymentMethod> toMap(List<PaymentMethod> cards) {
+        Map<String, PaymentMethod> copy = new HashMap<>();
+        for (PaymentMethod pm : cards) {
+            copy.put(pm.getId(), new PaymentMethod(pm.getId(), String.valueOf(pm.getDiscount() / 100), pm.getLimit().toString()));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,109 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BranchAndBoundSolverTest {
+    @Test
+    void testOptimize() throws IOException {
+        File fileOrders = new File("src/test/resources/orders.json");
+        File filePayments = new File("src/test/resources/paymentmethods.json");
+        List<Order> orders = JsonProcessor.getOrdersAsList(fileOrders);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(filePayments, orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+
+        ExpenseSolver solver = new BranchAndBoundSolver(orders, payments, pointsMethod);
+
+        boolean result = solver.optimize();
+        assertTrue(result);
+        Money spent = pointsMethod.getSpending();
+        for (PaymentMethod pm : payments.values()) {
+            assertFalse(pm.getLimit().isNegative());
+            spent = spent.add(pm.getSpending());
+        }
+        assertFalse(pointsMethod.getLimit().isNegative());
+        // The greedy optimizer spends 470.00 on these orders worth 550.00.
+        assertTrue(spent.compareTo(Money.of("470.00")) <= 0);
+        for (Order order : orders) {
+            assertFalse(order.getUsedPaymentsMethods().isEmpty());
+        }
+    }
+
+    @Test
+    void testOptimizeWhereGreedyFails() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        PaymentMethod card = new PaymentMethod("C0", "15", "190.00");
+        payments.put("C0", card);
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "5", "20.00");
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "50.00", List.of("C0")));
+        orders.add(new Order("B", "90.00", List.of("C0")));
+        orders.add(new Order("C", "100.00", List.of("C0")));
+        card.setOrdersAmount(3);
+
+        assertFalse(new ExpenseOptimizer(copy(orders), copy(payments), new PaymentMethod("PUNKTY", "5", "20.00")).optimize());
+
+        ExpenseSolver solver = new BranchAndBoundSolver(orders, payments, pointsMethod);
+        assertTrue(solver.optimize());
+        assertEquals(Money.of("186.50"), card.getSpending());
+        assertEquals(Money.of("20.00"), pointsMethod.getSpending());
+        Order a = orders.stream().filter(o -> o.getId().equals("A")).findFirst().orElseThrow();
+        assertEquals(Map.of("PUNKTY_10", Money.of("20.00"), "C0", Money.of("25.00")), a.getUsedPaymentsMethods());
+    }
+
+    @Test
+    void testOptimizeInfeasible() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "100.00"));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "10.00");
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "80.00", List.of("C0")));
+        orders.add(new Order("B", "60.00", List.of()));
+
+        ExpenseSolver solver = new BranchAndBoundSolver(orders, payments, pointsMethod);
+        assertFalse(solver.optimize());
+        assertEquals(Money.ZERO, payments.get("C0").getSpending());
+        assertEquals(Money.ZERO, pointsMethod.getSpending());
+    }
+
+    @Test
+    void testOptimizeNegativeValue() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "100.00"));
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "-1.00", List.of()));
+
+        ExpenseSolver solver = new BranchAndBoundSolver(orders, payments, new PaymentMethod("PUNKTY", "15", "10.00"));
+        assertThrows(IllegalArgumentException.class, solver::optimize);
+    }
+
+    private static List<Order> copy(List<Order> orders) {
+        List<Order> copy = new ArrayList<>();
+        for (Order order : orders) {
+            copy.add(new Order(order.getId(), order.getValue().toString(), order.getPromotions()));
+        }
+        return copy;
+    }
+
+    private static Map<String, PaymentMethod> copy(Map<String, PaymentMethod> payments) {
+        Map<String, PaymentMethod> copy = new HashMap<>();
+        for (PaymentMethod pm : payments.values()) {
+            PaymentMethod pmCopy = new PaymentMethod(pm.getId(), String.valueOf(pm.getDiscount() / 100), pm.getLimit().toString());
+            pmCopy.setOrdersAmount(pm.getOrdersAmount());
+            copy.put(pm.getId(), pmCopy);
+        }
+        return copy;
+    }
+}
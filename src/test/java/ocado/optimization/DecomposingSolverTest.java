@@ -0,0 +1,178 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecomposingSolverTest {
+    @Test
+    void testIndependentComponents() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "20", "100.00"));
+        payments.put("C1", new PaymentMethod("C1", "10", "100.00"));
+        payments.put("C2", new PaymentMethod("C2", "0", "200.00"));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "30.00");
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "50.00", List.of("C0")));
+        orders.add(new Order("B", "40.00", List.of("C0")));
+        orders.add(new Order("C", "60.00", List.of("C1")));
+        orders.add(new Order("D", "50.00", List.of()));
+        countPromotions(orders, payments);
+
+        DecomposingSolver solver = new DecomposingSolver(orders, payments, pointsMethod);
+        assertTrue(solver.optimize());
+        assertEquals(3, solver.getComponentCount());
+        assertFalse(solver.hasFallenBack());
+
+        // C0 pays both of its orders with its promotion.
+        assertEquals(Money.of("72.00"), payments.get("C0").getSpending());
+        assertEquals(Map.of("C0", Money.of("50.00")), orders.get(0).getUsedPaymentsMethods());
+        assertEquals(0, payments.get("C0").getOrdersAmount());
+        assertEquals(0, payments.get("C1").getOrdersAmount());
+        Money spent = pointsMethod.getSpending();
+        for (PaymentMethod pm : payments.values()) {
+            assertFalse(pm.getLimit().isNegative());
+            spent = spent.add(pm.getSpending());
+        }
+        // The remaining points were spent.
+        assertEquals(Money.ZERO, pointsMethod.getLimit());
+        for (Order order : orders) {
+            assertFalse(order.getUsedPaymentsMethods().isEmpty());
+        }
+        assertTrue(spent.compareTo(Money.of("200.00")) < 0);
+    }
+
+    @Test
+    void testRetryUnpaidComponents() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "0.00"));
+        payments.put("C1", new PaymentMethod("C1", "10", "10.00"));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "5", "100.00");
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "100.00", List.of("C0")));
+        orders.add(new Order("B", "10.00", List.of("C1")));
+        countPromotions(orders, payments);
+
+        // A needs almost all points, but its component only gets points in proportion to its value.
+        DecomposingSolver solver = new DecomposingSolver(orders, payments, pointsMethod);
+        assertTrue(solver.optimize());
+        assertEquals(1, solver.getRetriedCount());
+        assertFalse(solver.hasFallenBack());
+        assertFalse(orders.get(0).getUsedPaymentsMethods().isEmpty());
+        assertFalse(orders.get(0).getUsedPaymentsMethods().containsKey("C0"));
+        assertFalse(pointsMethod.getLimit().isNegative());
+        assertFalse(payments.get("C1").getLimit().isNegative());
+        assertEquals(0, payments.get("C0").getOrdersAmount());
+        assertEquals(0, payments.get("C1").getOrdersAmount());
+    }
+
+    @Test
+    void testFallBackToSingleRun() {
+        Map<String, PaymentMethod> payments = fallBackPayments();
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "5", "10.00");
+        List<Order> orders = fallBackOrders(payments);
+        Map<String, PaymentMethod> expectedPayments = fallBackPayments();
+        PaymentMethod expectedPoints = new PaymentMethod("PUNKTY", "5", "10.00");
+        List<Order> expectedOrders = fallBackOrders(expectedPayments);
+        assertFalse(new ExpenseOptimizer(expectedOrders, expectedPayments, expectedPoints).optimize());
+
+        // Neither component can be paid, so the result is the one of a single run.
+        DecomposingSolver solver = new DecomposingSolver(orders, payments, pointsMethod);
+        assertFalse(solver.optimize());
+        assertEquals(2, solver.getRetriedCount());
+        assertTrue(solver.hasFallenBack());
+        assertEquals(expectedPoints.getSpending(), pointsMethod.getSpending());
+        for (PaymentMethod pm : payments.values()) {
+            assertEquals(expectedPayments.get(pm.getId()).getSpending(), pm.getSpending());
+        }
+        for (int j = 0; j < orders.size(); j++) {
+            assertEquals(expectedOrders.get(j).getUsedPaymentsMethods(), orders.get(j).getUsedPaymentsMethods());
+        }
+    }
+
+    @Test
+    void testRandomInputs() {
+        Random random = new Random(15);
+        for (int run = 0; run < 200; run++) {
+            Map<String, PaymentMethod> payments = new HashMap<>();
+            int cards = 2 + random.nextInt(6);
+            for (int c = 0; c < cards; c++) {
+                payments.put("C" + c, new PaymentMethod("C" + c, String.valueOf(random.nextInt(4) * 5), (50 + random.nextInt(500)) + ".00"));
+            }
+            PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", random.nextInt(200) + ".00");
+            List<Order> orders = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                List<String> promotions = random.nextBoolean() ? List.of("C" + random.nextInt(cards)) : List.of();
+                orders.add(new Order("O" + j, (1 + random.nextInt(100)) + ".00", promotions));
+            }
+            countPromotions(orders, payments);
+            Money before = pointsMethod.getLimit();
+            for (PaymentMethod pm : payments.values()) {
+                before = before.add(pm.getLimit());
+            }
+
+            boolean solved;
+            try {
+                solved = new DecomposingSolver(orders, payments, pointsMethod).optimize();
+            } catch (IllegalArgumentException e) {
+                // The greedy algorithm may pick a card without enough limit in a CARD-CARD tie.
+                continue;
+            }
+            if (!solved) {
+                continue;
+            }
+            Money after = pointsMethod.getLimit().add(pointsMethod.getSpending());
+            assertFalse(pointsMethod.getLimit().isNegative());
+            for (PaymentMethod pm : payments.values()) {
+                assertFalse(pm.getLimit().isNegative());
+                assertEquals(0, pm.getOrdersAmount());
+                after = after.add(pm.getLimit()).add(pm.getSpending());
+            }
+            assertEquals(before, after);
+            for (Order order : orders) {
+                assertFalse(order.getUsedPaymentsMethods().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    void testShare() {
+        assertArrayEquals(new long[]{34, 33, 33}, DecomposingSolver.share(Money.ofCents(100), new long[]{1, 1, 1}));
+        assertArrayEquals(new long[]{75, 25}, DecomposingSolver.share(Money.ofCents(100), new long[]{300, 100}));
+        assertArrayEquals(new long[]{-100, -100}, DecomposingSolver.share(Money.ofCents(-100), new long[]{1, 1}));
+        assertArrayEquals(new long[]{Long.MAX_VALUE / 2 + 1, Long.MAX_VALUE / 2},
+                DecomposingSolver.share(Money.ofCents(Long.MAX_VALUE), new long[]{Long.MAX_VALUE, Long.MAX_VALUE}));
+    }
+
+    private static Map<String, PaymentMethod> fallBackPayments() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "0.00"));
+        payments.put("C1", new PaymentMethod("C1", "10", "0.00"));
+        return payments;
+    }
+
+    private static List<Order> fallBackOrders(Map<String, PaymentMethod> payments) {
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "100.00", List.of("C0")));
+        orders.add(new Order("B", "50.00", List.of("C1")));
+        countPromotions(orders, payments);
+        return orders;
+    }
+
+    private static void countPromotions(List<Order> orders, Map<String, PaymentMethod> payments) {
+        for (Order order : orders) {
+            for (String promotion : order.getPromotions()) {
+                payments.get(promotion).incrementOrdersAmount();
+            }
+        }
+    }
+}
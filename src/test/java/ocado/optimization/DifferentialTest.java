@@ -0,0 +1,438 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.ArrayOrderTable;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares {@link ExpenseOptimizer} with a reference copy of the original {@link BigDecimal} implementation.
+ */
+class DifferentialTest {
+    @Test
+    void testBundledFixtures() throws IOException {
+        assertSameResult("src/test/resources/orders.json", "src/test/resources/paymentmethods.json");
+        assertSameResult("src/test/resources/orderstwo.json", "src/test/resources/paymentmethodtwo.json");
+        assertSameResult("src/test/resources/oneorder.json", "src/test/resources/onepayment.json");
+    }
+
+    @Test
+    void testRandomInputs() {
+        Random random = new Random(20250517L);
+        for (int run = 0; run < 3000; run++) {
+            int ordersCount = 1 + random.nextInt(run < 2500 ? 12 : 300);
+            int cardsCount = 1 + random.nextInt(run < 2500 ? 5 : 40);
+
+            List<String[]> cards = new ArrayList<>();
+            for (int i = 0; i < cardsCount; i++) {
+                // Round limits make ties between cards common, so the final tie-breaks are exercised as well.
+                String limit = random.nextInt(3) == 0
+                        ? String.valueOf(100 * (1 + random.nextInt(3)))
+                        : randomAmount(random, 20_000 * ordersCount / cardsCount + 100);
+                cards.add(new String[] {"CARD" + i, randomDiscount(random), limit});
+            }
+            if (random.nextInt(5) != 0) {
+                cards.add(random.nextInt(cards.size() + 1), new String[] {"PUNKTY", randomDiscount(random), randomAmount(random, 5_000 * ordersCount)});
+            }
+
+            List<String[]> orders = new ArrayList<>();
+            List<List<String>> promotions = new ArrayList<>();
+            for (int i = 0; i < ordersCount; i++) {
+                orders.add(new String[] {"ORDER" + i, randomAmount(random, 50_000)});
+                List<String> orderPromotions = new ArrayList<>();
+                int promotionsCount = random.nextInt(Math.min(cardsCount, 4) + 1);
+                for (int j = 0; j < promotionsCount; j++) {
+                    orderPromotions.add(random.nextInt(10) == 0 ? "UNKNOWN" : "CARD" + random.nextInt(cardsCount));
+                }
+                promotions.add(orderPromotions);
+            }
+
+            String result = runOptimizer(orders, promotions, cards);
+            assertEquals(runReference(orders, promotions, cards), result, "Run " + run);
+            // The table path does not record the payments of single orders, so only the wallet is compared.
+            String wallet = result.lines().limit(2 + cards.size() - (cards.stream().anyMatch(c -> c[0].equals("PUNKTY")) ? 1 : 0))
+                    .collect(Collectors.joining("\n"));
+            assertEquals(wallet, runTableOptimizer(orders, promotions, cards), "Table run " + run);
+        }
+    }
+
+    /**
+     * Loads both fixtures through {@link JsonProcessor} and compares the outcomes of both implementations.
+     */
+    private static void assertSameResult(String ordersPath, String paymentsPath) throws IOException {
+        List<Order> parsedOrders = JsonProcessor.getOrdersAsList(new File(ordersPath));
+        Map<String, PaymentMethod> parsedPayments = JsonProcessor.getPaymentsAsMap(new File(paymentsPath), parsedOrders);
+
+        List<String[]> orders = new ArrayList<>();
+        List<List<String>> promotions = new ArrayList<>();
+        for (Order order : parsedOrders) {
+            orders.add(new String[] {order.getId(), order.getValue().toString()});
+            promotions.add(order.getPromotions());
+        }
+        List<String[]> cards = new ArrayList<>();
+        for (PaymentMethod pm : parsedPayments.values()) {
+            cards.add(new String[] {pm.getId(), BigDecimal.valueOf(pm.getDiscount(), 2).toString(), pm.getLimit().toString()});
+        }
+        assertEquals(runReference(orders, promotions, cards), runOptimizer(orders, promotions, cards));
+    }
+
+    private static String randomAmount(Random random, int maxCents) {
+        int cents = random.nextInt(Math.max(maxCents, 1));
+        if (random.nextInt(4) == 0) {
+            // Values with a third decimal place exercise the HALF_UP rounding of the input.
+            return BigDecimal.valueOf(cents * 10L + random.nextInt(10), 3).toString();
+        }
+        return BigDecimal.valueOf(cents, 2).toString();
+    }
+
+    private static String randomDiscount(Random random) {
+        return switch (random.nextInt(4)) {
+            case 0 -> String.valueOf(random.nextInt(31));
+            case 1 -> "10";
+            case 2 -> BigDecimal.valueOf(random.nextInt(3000), 2).toString();
+            default -> BigDecimal.valueOf(random.nextInt(300) * 5L, 2).toString();
+        };
+    }
+
+    private static String runTableOptimizer(List<String[]> orderData, List<List<String>> promotions, List<String[]> cardData) {
+        ArrayOrderTable table = new ArrayOrderTable();
+        for (int i = 0; i < orderData.size(); i++) {
+            table.add(new Order(orderData.get(i)[0], orderData.get(i)[1], promotions.get(i)));
+        }
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        for (String[] card : cardData) {
+            payments.put(card[0], new PaymentMethod(card[0], card[1], card[2]));
+        }
+        for (Order order : table.toOrders()) {
+            for (String s : order.getPromotions()) {
+                if (payments.containsKey(s)) {
+                    payments.get(s).incrementOrdersAmount();
+                }
+            }
+        }
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        if (pointsMethod == null) {
+            pointsMethod = new PaymentMethod("-1.00", "-1.00");
+        }
+
+        StringBuilder result = new StringBuilder();
+        try {
+            result.append(new ExpenseOptimizer(table, payments, pointsMethod).optimize());
+        }
+        catch (IllegalArgumentException e) {
+            result.append(e.getMessage());
+        }
+        result.append('\n').append(pointsMethod.getSpending()).append(' ').append(pointsMethod.getLimit());
+        for (PaymentMethod pm : payments.values()) {
+            result.append('\n').append(pm.printSpending()).append(' ').append(pm.getLimit());
+        }
+        return result.toString();
+    }
+
+    private static String runOptimizer(List<String[]> orderData, List<List<String>> promotions, List<String[]> cardData) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < orderData.size(); i++) {
+            orders.add(new Order(orderData.get(i)[0], orderData.get(i)[1], promotions.get(i)));
+        }
+        List<PaymentMethod> list = new ArrayList<>();
+        for (String[] card : cardData) {
+            list.add(new PaymentMethod(card[0], card[1], card[2]));
+        }
+        Map<String, PaymentMethod> payments = new HashMap<>(list.stream().collect(Collectors.toMap(PaymentMethod::getId, n -> n)));
+        for (Order order : orders) {
+            for (String s : order.getPromotions()) {
+                if (payments.containsKey(s)) {
+                    payments.get(s).incrementOrdersAmount();
+                }
+            }
+        }
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        if (pointsMethod == null) {
+            pointsMethod = new PaymentMethod("-1.00", "-1.00");
+        }
+
+        StringBuilder result = new StringBuilder();
+        try {
+            result.append(new ExpenseOptimizer(orders, payments, pointsMethod).optimize());
+        }
+        catch (IllegalArgumentException e) {
+            result.append(e.getMessage());
+        }
+        result.append('\n').append(pointsMethod.getSpending()).append(' ').append(pointsMethod.getLimit());
+        for (PaymentMethod pm : payments.values()) {
+            result.append('\n').append(pm.printSpending()).append(' ').append(pm.getLimit());
+        }
+        for (Order order : orders) {
+            result.append('\n').append(order.getId()).append(new TreeMap<>(order.getUsedPaymentsMethods()));
+        }
+        return result.toString();
+    }
+
+    private static String runReference(List<String[]> orderData, List<List<String>> promotions, List<String[]> cardData) {
+        List<RefOrder> orders = new ArrayList<>();
+        for (int i = 0; i < orderData.size(); i++) {
+            orders.add(new RefOrder(orderData.get(i)[0], orderData.get(i)[1], promotions.get(i)));
+        }
+        List<RefMethod> list = new ArrayList<>();
+        for (String[] card : cardData) {
+            list.add(new RefMethod(card[0], card[1], card[2]));
+        }
+        Map<String, RefMethod> payments = new HashMap<>(list.stream().collect(Collectors.toMap(m -> m.id, n -> n)));
+        for (RefOrder order : orders) {
+            for (String s : order.promotions) {
+                if (payments.containsKey(s)) {
+                    payments.get(s).ordersAmount++;
+                }
+            }
+        }
+        RefMethod pointsMethod = payments.remove("PUNKTY");
+        if (pointsMethod == null) {
+            pointsMethod = new RefMethod(null, "-1.00", "-1.00");
+        }
+
+        StringBuilder result = new StringBuilder();
+        try {
+            result.append(new RefOptimizer(orders, payments, pointsMethod).optimize());
+        }
+        catch (IllegalArgumentException e) {
+            result.append(e.getMessage());
+        }
+        result.append('\n').append(pointsMethod.spending).append(' ').append(pointsMethod.limit);
+        for (RefMethod pm : payments.values()) {
+            result.append('\n').append(pm.id).append(' ').append(pm.spending).append(' ').append(pm.limit);
+        }
+        for (RefOrder order : orders) {
+            result.append('\n').append(order.id).append(new TreeMap<>(order.used));
+        }
+        return result.toString();
+    }
+
+    /** Order of the reference implementation */
+    private static class RefOrder {
+        final String id;
+        final BigDecimal value;
+        final List<String> promotions = new ArrayList<>();
+        final Map<String, BigDecimal> used = new HashMap<>();
+
+        RefOrder(String id, String value, List<String> promotions) {
+            this.id = id;
+            this.value = new BigDecimal(value).setScale(2, RoundingMode.HALF_UP);
+            this.promotions.addAll(promotions);
+        }
+
+        void use(String method, BigDecimal value) {
+            used.put(method, value.setScale(2, RoundingMode.HALF_UP));
+        }
+    }
+
+    /** Payment method of the reference implementation */
+    private static class RefMethod {
+        final String id;
+        final BigDecimal discount;
+        BigDecimal limit;
+        int ordersAmount;
+        BigDecimal spending = new BigDecimal("0.00").setScale(2, RoundingMode.HALF_UP);
+
+        RefMethod(String id, String discount, String limit) {
+            this.id = id;
+            this.discount = new BigDecimal(discount).setScale(2, RoundingMode.HALF_UP);
+            this.limit = new BigDecimal(limit).setScale(2, RoundingMode.HALF_UP);
+        }
+
+        void spend(BigDecimal amount) {
+            if (amount.compareTo(new BigDecimal("0.00")) < 0) {
+                throw new IllegalArgumentException("The amount to be spent cannot be a negative number!");
+            }
+            if (amount.compareTo(limit) > 0) {
+                throw new IllegalArgumentException("The amount to be spent exceeds the method limit!");
+            }
+            spending = spending.add(amount).setScale(2, RoundingMode.HALF_UP);
+            limit = limit.subtract(amount).setScale(2, RoundingMode.HALF_UP);
+        }
+
+        void getMoneyBack(BigDecimal amount) {
+            if (amount.compareTo(new BigDecimal("0.00")) < 0) {
+                throw new IllegalArgumentException("The amount to be returned cannot be a negative number!");
+            }
+            if (amount.compareTo(spending) > 0) {
+                throw new IllegalArgumentException("The amount to be returned exceeds the actual expenses!");
+            }
+            spending = spending.subtract(amount).setScale(2, RoundingMode.HALF_UP);
+            limit = limit.add(amount).setScale(2, RoundingMode.HALF_UP);
+        }
+    }
+
+    /** Reference copy of the original {@link BigDecimal} optimizer together with its utility methods */
+    private static class RefOptimizer {
+        final List<RefOrder> orders;
+        final Map<String, RefMethod> payments;
+        final RefMethod pointsMethod;
+
+        RefOptimizer(List<RefOrder> orders, Map<String, RefMethod> payments, RefMethod pointsMethod) {
+            this.orders = orders;
+            this.payments = payments;
+            this.pointsMethod = pointsMethod;
+        }
+
+        boolean optimize() {
+            orders.sort(Comparator.comparing((RefOrder o) -> o.value).reversed());
+
+            boolean wasEverythingPaid = true;
+            for (RefOrder order : orders) {
+                BigDecimal bestPromotion = new BigDecimal("0.00");
+                List<RefMethod> bestMethods = new ArrayList<>();
+                for (String s : order.promotions) {
+                    if (!payments.containsKey(s)) {
+                        continue;
+                    }
+                    RefMethod pm = payments.get(s);
+                    if (pm.ordersAmount > 0) {
+                        pm.ordersAmount--;
+                    }
+                    if (pm.limit.compareTo(order.value) >= 0 && pm.discount.compareTo(bestPromotion) > 0) {
+                        bestPromotion = pm.discount;
+                    }
+                }
+
+                if (pointsMethod.limit.compareTo(order.value) >= 0 && pointsMethod.discount.compareTo(bestPromotion) >= 0) {
+                    bestMethods.add(pointsMethod);
+                    bestPromotion = pointsMethod.discount;
+                }
+                else if (bestPromotion.compareTo(new BigDecimal("0.00")) > 0) {
+                    for (String s : order.promotions) {
+                        if (payments.containsKey(s) && payments.get(s).discount.compareTo(bestPromotion) == 0) {
+                            bestMethods.add(payments.get(s));
+                        }
+                    }
+                }
+
+                if (bestPromotion.compareTo(new BigDecimal("10.00")) > 0) {
+                    RefMethod pm = bestMethods.size() == 1 ? bestMethods.getFirst() : findOptimalCard(bestMethods);
+                    pay(pm, order);
+                    order.use(pm.id, order.value);
+                }
+                else {
+                    BigDecimal toPayByPoints = order.value.multiply(new BigDecimal("0.10").setScale(2, RoundingMode.HALF_UP));
+                    BigDecimal toPayByCard = order.value.subtract(toPayByPoints.multiply(new BigDecimal("2.00")).setScale(2, RoundingMode.HALF_UP)).
+                            setScale(2, RoundingMode.HALF_UP);
+                    RefMethod pm;
+
+                    if (toPayByPoints.compareTo(pointsMethod.limit) <= 0) {
+                        BigDecimal finalToPayByCard = toPayByCard;
+                        pm = findBestCardToPayRest(payments.values().stream().filter(p -> p.limit.compareTo(finalToPayByCard) >= 0).toList());
+                        if (pm == null) {
+                            pm = findBestCardToPayRest(findWithMaxLimit(payments.values().stream().toList()));
+                            if (pm != null && order.value.subtract(pm.limit).compareTo(pointsMethod.limit) <= 0) {
+                                toPayByCard = pm.limit;
+                                toPayByPoints = order.value.multiply(new BigDecimal("0.90")).setScale(2, RoundingMode.HALF_UP).
+                                        subtract(toPayByCard).setScale(2, RoundingMode.HALF_UP);
+                            }
+                            else {
+                                wasEverythingPaid = false;
+                                break;
+                            }
+                        }
+                        pointsMethod.spend(toPayByPoints.setScale(2, RoundingMode.HALF_UP));
+                        pm.spend(toPayByCard.setScale(2, RoundingMode.HALF_UP));
+                        order.use("PUNKTY_10", toPayByPoints);
+                        order.use(pm.id, toPayByCard);
+                    }
+                    else if (!bestMethods.isEmpty()) {
+                        pm = bestMethods.size() == 1 ? bestMethods.getFirst() : findOptimalCard(bestMethods);
+                        pay(pm, order);
+                        order.use(pm.id, order.value);
+                    }
+                    else {
+                        pm = findBestCardToPayRest(payments.values().stream().filter(p -> p.limit.compareTo(order.value) >= 0).toList());
+                        if (pm == null) {
+                            wasEverythingPaid = false;
+                            break;
+                        }
+                        pay(pm, order);
+                        order.use(pm.id, order.value);
+                    }
+                }
+            }
+
+            if (!wasEverythingPaid || pointsMethod.limit.compareTo(new BigDecimal("0.00")) == 0) {
+                return wasEverythingPaid;
+            }
+
+            for (RefOrder order : orders.reversed()) {
+                if (order.used.size() != 2) {
+                    continue;
+                }
+                String usedCard = "";
+                BigDecimal spentAmount = new BigDecimal("0.00").setScale(2, RoundingMode.HALF_UP);
+                for (Map.Entry<String, BigDecimal> entry : order.used.entrySet()) {
+                    if (!entry.getKey().equals("PUNKTY_10")) {
+                        usedCard = entry.getKey();
+                        spentAmount = entry.getValue().setScale(2, RoundingMode.HALF_UP);
+                        break;
+                    }
+                }
+                if (spentAmount.compareTo(pointsMethod.limit) >= 0) {
+                    payments.get(usedCard).getMoneyBack(pointsMethod.limit);
+                    pointsMethod.spend(pointsMethod.limit);
+                    break;
+                }
+                else {
+                    payments.get(usedCard).getMoneyBack(spentAmount);
+                    pointsMethod.spend(spentAmount);
+                }
+            }
+            return true;
+        }
+
+        void pay(RefMethod payment, RefOrder order) {
+            BigDecimal multiplier = new BigDecimal("1.00").subtract(payment.discount.divide(new BigDecimal("100.00"), 2, RoundingMode.HALF_UP));
+            payment.spend(order.value.multiply(multiplier).setScale(2, RoundingMode.HALF_UP));
+        }
+
+        RefMethod findBestCardToPayRest(List<RefMethod> methods) {
+            if (methods.isEmpty()) {
+                return null;
+            }
+            if (methods.size() == 1) {
+                return methods.getFirst();
+            }
+            List<RefMethod> zeroOrdersMethods = methods.stream().filter(pm -> pm.ordersAmount == 0).toList();
+            if (zeroOrdersMethods.size() == 1) {
+                return zeroOrdersMethods.getFirst();
+            }
+            else if (zeroOrdersMethods.size() > 1) {
+                return findWithMinLimit(zeroOrdersMethods).getFirst();
+            }
+            BigDecimal minDiscount = methods.stream().map(pm -> pm.discount).min(BigDecimal::compareTo).orElse(null);
+            List<RefMethod> lowestDiscountMethods = methods.stream().filter(pm -> pm.discount.compareTo(minDiscount) == 0).toList();
+            return lowestDiscountMethods.size() == 1 ? lowestDiscountMethods.getFirst() : findOptimalCard(lowestDiscountMethods);
+        }
+
+        RefMethod findOptimalCard(List<RefMethod> bestMethods) {
+            int minOrdersAmount = bestMethods.stream().mapToInt(pm -> pm.ordersAmount).min().orElse(-1);
+            List<RefMethod> methodsWithMinOrdersAmount = bestMethods.stream().filter(pm -> pm.ordersAmount == minOrdersAmount).toList();
+            return methodsWithMinOrdersAmount.size() == 1 ? methodsWithMinOrdersAmount.getFirst() : findWithMinLimit(methodsWithMinOrdersAmount).getFirst();
+        }
+
+        List<RefMethod> findWithMinLimit(List<RefMethod> toCheck) {
+            BigDecimal minLimit = toCheck.stream().map(pm -> pm.limit).min(BigDecimal::compareTo).orElse(null);
+            return toCheck.stream().filter(pm -> pm.limit.compareTo(minLimit) == 0).toList();
+        }
+
+        List<RefMethod> findWithMaxLimit(List<RefMethod> toCheck) {
+            BigDecimal maxLimit = toCheck.stream().map(pm -> pm.limit).max(BigDecimal::compareTo).orElse(null);
+            return toCheck.stream().filter(pm -> pm.limit.compareTo(maxLimit) == 0).toList();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscountBoundTest {
+    @Test
+    void testBoundOfExample() throws IOException {
+        List<Order> orders = JsonProcessor.getOrdersAsList(new File("src/test/resources/orders.json"));
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"), orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        DiscountBound bound = DiscountBound.of(orders, payments, pointsMethod);
+        assertEquals(Money.of("550.00"), bound.getTotalValue());
+
+        assertTrue(new ExpenseOptimizer(orders, payments, pointsMethod).optimize());
+        Money achieved = bound.getTotalValue().subtract(spent(payments, pointsMethod));
+        Money upper = bound.compute(achieved);
+        // Every order gets its best discount: 30.00 + 22.50 + 16.00 + 24.00.
+        assertTrue(upper.compareTo(Money.of("92.50")) <= 0);
+        assertTrue(upper.compareTo(achieved) >= 0);
+        assertTrue(DiscountBound.gapPercent(achieved, upper) < 15);
+    }
+
+    @Test
+    void testBoundIsAtLeastOptimal() {
+        Random random = new Random(18);
+        for (int run = 0; run < 150; run++) {
+            Map<String, PaymentMethod> payments = new HashMap<>();
+            int cards = 1 + random.nextInt(3);
+            for (int c = 0; c < cards; c++) {
+                payments.put("C" + c, new PaymentMethod("C" + c, String.valueOf(random.nextInt(5) * 5), random.nextInt(300) + ".00"));
+            }
+            PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", String.valueOf(random.nextInt(5) * 5), random.nextInt(150) + ".00");
+            List<Order> orders = new ArrayList<>();
+            for (int j = 0; j < 6; j++) {
+                List<String> promotions = new ArrayList<>();
+                for (int c = 0; c < cards; c++) {
+                    if (random.nextBoolean()) {
+                        promotions.add("C" + c);
+                        payments.get("C" + c).incrementOrdersAmount();
+                    }
+                }
+                orders.add(new Order("O" + j, (1 + random.nextInt(100)) + "." + random.nextInt(100), promotions));
+            }
+
+            DiscountBound bound = DiscountBound.of(orders, payments, pointsMethod);
+            Money upper = bound.compute(Money.ZERO);
+            if (!new BranchAndBoundSolver(orders, payments, pointsMethod).optimize()) {
+                continue;
+            }
+            Money optimal = bound.getTotalValue().subtract(spent(payments, pointsMethod));
+            assertTrue(upper.compareTo(optimal) >= 0, "Bound " + upper + " is below the optimum " + optimal);
+            // Knowing the optimum only helps the steps, the bound stays valid.
+            assertTrue(bound.compute(optimal).compareTo(optimal) >= 0);
+        }
+    }
+
+    @Test
+    void testBoundCoversCardsOutsideThePromotions() {
+        // The greedy algorithm pays O1 with card A at its discount although O1 does not list it.
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("A", new PaymentMethod("A", "10", "200.00"));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "0.00");
+        List<Order> orders = new ArrayList<>(List.of(new Order("O1", "100.00", List.of()), new Order("O2", "50.00", List.of("A"))));
+        payments.get("A").incrementOrdersAmount();
+
+        DiscountBound bound = DiscountBound.of(orders, payments, pointsMethod);
+        assertTrue(new ExpenseOptimizer(orders, payments, pointsMethod).optimize());
+        Money achieved = bound.getTotalValue().subtract(spent(payments, pointsMethod));
+        assertEquals(Money.of("15.00"), achieved);
+        Money upper = bound.compute(achieved);
+        assertTrue(upper.compareTo(achieved) >= 0, "Bound " + upper + " is below the discount " + achieved);
+        assertTrue(DiscountBound.gapPercent(achieved, upper) >= 0);
+    }
+
+    @Test
+    void testBoundIsAtLeastGreedy() {
+        Random random = new Random(1018);
+        for (int run = 0; run < 300; run++) {
+            Map<String, PaymentMethod> payments = new HashMap<>();
+            int cards = 1 + random.nextInt(4);
+            for (int c = 0; c < cards; c++) {
+                payments.put("C" + c, new PaymentMethod("C" + c, String.valueOf(random.nextInt(21)), random.nextInt(1000) + ".00"));
+            }
+            PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", String.valueOf(random.nextInt(21)), random.nextInt(200) + ".00");
+            List<Order> orders = new ArrayList<>();
+            for (int j = 0; j < 1 + random.nextInt(12); j++) {
+                List<String> promotions = new ArrayList<>();
+                for (int c = 0; c < cards; c++) {
+                    if (random.nextInt(3) == 0) {
+                        promotions.add("C" + c);
+                        payments.get("C" + c).incrementOrdersAmount();
+                    }
+                }
+                orders.add(new Order("O" + j, (1 + random.nextInt(200)) + "." + random.nextInt(100), promotions));
+            }
+
+            DiscountBound bound = DiscountBound.of(orders, payments, pointsMethod);
+            boolean solved;
+            try {
+                solved = new ExpenseOptimizer(orders, payments, pointsMethod).optimize();
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (!solved) {
+                continue;
+            }
+            Money achieved = bound.getTotalValue().subtract(spent(payments, pointsMethod));
+            Money upper = bound.compute(achieved);
+            assertTrue(upper.compareTo(achieved) >= 0, "Bound " + upper + " is below the discount " + achieved);
+            assertTrue(bound.compute(Money.ZERO).compareTo(achieved) >= 0);
+        }
+    }
+
+    @Test
+    void testGapPercent() {
+        assertEquals(0, DiscountBound.gapPercent(Money.ZERO, Money.ZERO));
+        assertEquals(25, DiscountBound.gapPercent(Money.of("75.00"), Money.of("100.00")), 1e-9);
+        assertEquals(-1, DiscountBound.gapPercent(Money.of("101.00"), Money.of("100.00")), 1e-9);
+    }
+
+    private static Money spent(Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        Money spent = pointsMethod.getSpending();
+        for (PaymentMethod pm : payments.values()) {
+            spent = spent.add(pm.getSpending());
+        }
+        return spent;
+    }
+}
@@ -1,19 +1,40 @@
 package ocado.optimization;
 
+import ocado.metrics.OptimizerMetrics;
+import ocado.metrics.OptimizerMetrics.Branch;
+import ocado.model.Money;
 import ocado.model.Order;
+import ocado.model.OrderTable;
 import ocado.model.PaymentMethod;
+import ocado.utils.ArrayOrderTable;
+import ocado.utils.BinaryOrderFile;
 import ocado.utils.JsonProcessor;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class ExpenseOptimizerTest {
+    /** Bytes a run over a table may allocate per order once the optimizer is warmed up */
+    private static final double MAX_BYTES_PER_ORDER = 1;
+
+    /**
+     * Bytes a run over a list may allocate per order once the optimizer is warmed up: the entries and {@link Money} of
+     * the used and charged payment methods of every order, about 92 bytes for these orders
+     */
+    private static final double MAX_LIST_BYTES_PER_ORDER = 128;
+
     @Test
     void testOptimize() throws IOException {
         File fileOrders = new File("src/test/resources/orders.json");
@@ -26,9 +47,107 @@ class ExpenseOptimizerTest {
 
         boolean result = optimizer.optimize();
         assertTrue(result);
-        assertEquals(new BigDecimal("170.00"), payments.get("MegaBank").getSpending());
-        assertEquals(new BigDecimal("150.00"), payments.get("SuperKarta").getSpending());
-        assertEquals(new BigDecimal("150.00"), pointsMethod.getSpending());
-        assertEquals(new BigDecimal("0.00"), payments.get("ZwyklaKarta").getSpending());
+        assertEquals(Money.of("170.00"), payments.get("MegaBank").getSpending());
+        assertEquals(Money.of("150.00"), payments.get("SuperKarta").getSpending());
+        assertEquals(Money.of("150.00"), pointsMethod.getSpending());
+        assertEquals(Money.of("0.00"), payments.get("ZwyklaKarta").getSpending());
+    }
+
+    @Test
+    void testOptimizeTable(@TempDir Path tempDir) throws IOException {
+        File binary = tempDir.resolve("orders.bin").toFile();
+        BinaryOrderFile.convert(new File("src/test/resources/orders.json"), binary);
+        Map<String, Integer> promotionCounts = new HashMap<>();
+        OrderTable table = JsonProcessor.getOrdersAsTable(binary, promotionCounts);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"), promotionCounts);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+
+        ExpenseOptimizer optimizer = new ExpenseOptimizer(table, payments, pointsMethod);
+
+        boolean result = optimizer.optimize();
+        assertTrue(result);
+        assertEquals(Money.of("170.00"), payments.get("MegaBank").getSpending());
+        assertEquals(Money.of("150.00"), payments.get("SuperKarta").getSpending());
+        assertEquals(Money.of("150.00"), pointsMethod.getSpending());
+        assertEquals(Money.of("0.00"), payments.get("ZwyklaKarta").getSpending());
+    }
+
+    @Test
+    void testSteadyStateAllocation() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        // Distinct discounts never tie, pairs of equal discounts make the greedy algorithm break CARD-CARD ties.
+        for (boolean ties : new boolean[] {false, true}) {
+            OptimizerMetrics metrics = new OptimizerMetrics();
+            double bytesPerOrder = allocatedPerOrder(threads, metrics, ties, false);
+            assertTrue(bytesPerOrder <= MAX_BYTES_PER_ORDER, "Allocated " + bytesPerOrder + " bytes per order of a table, ties: " + ties);
+            assertEquals(ties, metrics.getCount(Branch.CARD_CARD_TIE) > 0);
+
+            // Orders of a list keep their payments in maps, which is the only allocation left on that path.
+            bytesPerOrder = allocatedPerOrder(threads, new OptimizerMetrics(), ties, true);
+            assertTrue(bytesPerOrder <= MAX_LIST_BYTES_PER_ORDER, "Allocated " + bytesPerOrder + " bytes per order of a list, ties: " + ties);
+        }
+    }
+
+    private static void resetMethod(PaymentMethod pm, long limitCents, int ordersAmount) {
+        pm.setLimitCents(limitCents);
+        pm.setSpendingCents(0);
+        pm.setOrdersAmount(ordersAmount);
+    }
+
+    /**
+     * Runs the greedy algorithm repeatedly over the same orders and returns the bytes allocated per order by the last run.
+     */
+    private static double allocatedPerOrder(com.sun.management.ThreadMXBean threads, OptimizerMetrics metrics, boolean ties, boolean list) {
+        Random random = new Random(16);
+        int cards = 10;
+        List<String> ids = new ArrayList<>();
+        for (int c = 0; c < cards; c++) {
+            ids.add("C" + c);
+        }
+        List<Order> orders = new ArrayList<>();
+        ArrayOrderTable table = new ArrayOrderTable();
+        int[] promotionCounts = new int[cards];
+        long total = 0;
+        for (int j = 0; j < 20_000; j++) {
+            List<String> promotions = new ArrayList<>();
+            for (int c = 0; c < cards; c++) {
+                if (random.nextInt(4) == 0) {
+                    promotions.add(ids.get(c));
+                    promotionCounts[c]++;
+                }
+            }
+            Order order = new Order("O" + j, (1 + random.nextInt(500)) + "." + random.nextInt(10) + "0", promotions);
+            orders.add(order);
+            table.add(order);
+            total += order.getValue().getCents();
+        }
+        Map<String, PaymentMethod> payments = new LinkedHashMap<>();
+        for (int c = 0; c < cards; c++) {
+            // Pairs of cards share a discount above 10%, so orders listing both of them end in a CARD-CARD tie.
+            payments.put(ids.get(c), new PaymentMethod(ids.get(c), String.valueOf(ties ? 15 + c / 2 * 5 : c), "0.00"));
+        }
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "0.00");
+        ExpenseOptimizer optimizer = list ? new ExpenseOptimizer(orders, payments, pointsMethod)
+                : new ExpenseOptimizer(table, payments, pointsMethod);
+        optimizer.setMetrics(metrics);
+
+        // Every card of a tie can pay any order, so no run stops at an exhausted card.
+        long cardLimit = ties ? total : total / cards;
+        long allocated = 0;
+        for (int run = 0; run < 30; run++) {
+            for (int c = 0; c < cards; c++) {
+                resetMethod(payments.get(ids.get(c)), cardLimit, promotionCounts[c]);
+            }
+            resetMethod(pointsMethod, total / 20, 0);
+            for (Order order : orders) {
+                order.clearPayments();
+            }
+            long before = threads.getCurrentThreadAllocatedBytes();
+            assertTrue(optimizer.optimize());
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        }
+        return (double) allocated / orders.size();
     }
 }
@@ -0,0 +1,142 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalOptimizerTest {
+    private static Map<String, PaymentMethod> createWallet(List<String[]> cards) {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        for (String[] card : cards) {
+            payments.put(card[0], new PaymentMethod(card[0], card[1], card[2]));
+        }
+        return payments;
+    }
+
+    private static List<Order> createOrders(List<String[]> orders, List<List<String>> promotions) {
+        List<Order> result = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            result.add(new Order(orders.get(i)[0], orders.get(i)[1], promotions.get(i)));
+        }
+        return result;
+    }
+
+    private static String describe(List<Order> orders, Map<String, PaymentMethod> payments, PaymentMethod pointsMethod) {
+        StringBuilder sb = new StringBuilder(pointsMethod.printSpending());
+        new TreeMap<>(payments).values().forEach(pm -> sb.append('|').append(pm.printSpending()));
+        orders.stream().sorted(Comparator.comparing(Order::getId))
+                .forEach(order -> sb.append('|').append(order.getId()).append(new TreeMap<>(order.getUsedPaymentsMethods())));
+        return sb.toString();
+    }
+
+    @Test
+    void testSubmitFixture() throws IOException {
+        List<Order> orders = JsonProcessor.getOrdersAsList(new File("src/test/resources/orders.json"));
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"), List.of());
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+
+        IncrementalOptimizer optimizer = new IncrementalOptimizer(payments, pointsMethod);
+        assertTrue(optimizer.submit(orders).isEmpty());
+        optimizer.finalizePayments();
+
+        assertEquals(4, optimizer.getPaidOrders());
+        assertEquals(Money.of("170.00"), payments.get("MegaBank").getSpending());
+        assertEquals(Money.of("150.00"), payments.get("SuperKarta").getSpending());
+        assertEquals(Money.of("150.00"), pointsMethod.getSpending());
+        assertEquals(Money.of("0.00"), payments.get("ZwyklaKarta").getSpending());
+    }
+
+    @Test
+    void testSingleBatchMatchesOptimizer() {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            int cardsCount = 1 + random.nextInt(5);
+            List<String[]> cards = new ArrayList<>();
+            for (int i = 0; i < cardsCount; i++) {
+                cards.add(new String[] {"CARD" + i, String.valueOf(random.nextInt(25)), String.valueOf(random.nextInt(2_000))});
+            }
+            String[] points = {"PUNKTY", String.valueOf(random.nextInt(25)), String.valueOf(random.nextInt(500))};
+            List<String[]> orders = new ArrayList<>();
+            List<List<String>> promotions = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(15); i++) {
+                orders.add(new String[] {"ORDER" + i, random.nextInt(500) + "." + (10 + random.nextInt(90))});
+                promotions.add(List.of("CARD" + random.nextInt(cardsCount), "CARD" + random.nextInt(cardsCount)));
+            }
+
+            List<Order> expectedOrders = createOrders(orders, promotions);
+            Map<String, PaymentMethod> expectedPayments = createWallet(cards);
+            for (Order order : expectedOrders) {
+                order.getPromotions().forEach(s -> expectedPayments.get(s).incrementOrdersAmount());
+            }
+            PaymentMethod expectedPoints = new PaymentMethod(points[0], points[1], points[2]);
+            try {
+                if (!new ExpenseOptimizer(expectedOrders, expectedPayments, expectedPoints).optimize()) {
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                // A tie between cards may pick one without a sufficient limit, only successful runs are compared.
+                continue;
+            }
+
+            List<Order> actualOrders = createOrders(orders, promotions);
+            Map<String, PaymentMethod> actualPayments = createWallet(cards);
+            PaymentMethod actualPoints = new PaymentMethod(points[0], points[1], points[2]);
+            IncrementalOptimizer optimizer = new IncrementalOptimizer(actualPayments, actualPoints);
+            assertTrue(optimizer.submit(actualOrders).isEmpty());
+            optimizer.finalizePayments();
+
+            assertEquals(describe(expectedOrders, expectedPayments, expectedPoints),
+                    describe(actualOrders, actualPayments, actualPoints), "Run " + run);
+        }
+    }
+
+    @Test
+    void testSubmitOneAtATime() {
+        Map<String, PaymentMethod> payments = createWallet(List.<String[]>of(new String[] {"CARD", "10", "100.00"}));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "30.00");
+        IncrementalOptimizer optimizer = new IncrementalOptimizer(payments, pointsMethod);
+
+        Order first = new Order("A", "20.00", List.of());
+        assertTrue(optimizer.submit(first));
+        assertEquals(Map.of("PUNKTY", Money.of("20.00")), first.getUsedPaymentsMethods());
+
+        Order second = new Order("B", "50.00", List.of("CARD"));
+        assertTrue(optimizer.submit(second));
+        assertEquals(Map.of("PUNKTY_10", Money.of("5.00"), "CARD", Money.of("40.00")), second.getUsedPaymentsMethods());
+
+        Order tooExpensive = new Order("C", "500.00", List.of());
+        assertFalse(optimizer.submit(tooExpensive));
+        assertTrue(tooExpensive.getUsedPaymentsMethods().isEmpty());
+        assertEquals(Money.of("40.00"), payments.get("CARD").getSpending());
+        assertEquals(2, optimizer.getPaidOrders());
+
+        optimizer.finalizePayments();
+        assertEquals(Money.of("30.00"), pointsMethod.getSpending());
+        assertEquals(Money.of("32.00"), payments.get("CARD").getSpending());
+
+        // The points are spent, so finalizing again changes nothing.
+        optimizer.finalizePayments();
+        assertEquals(Money.of("30.00"), pointsMethod.getSpending());
+        assertEquals(Money.of("32.00"), payments.get("CARD").getSpending());
+    }
+
+    @Test
+    void testSubmitBatchSkipsUnpaidOrders() {
+        Map<String, PaymentMethod> payments = createWallet(List.<String[]>of(new String[] {"CARD", "0", "100.00"}));
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "15", "0.00");
+        IncrementalOptimizer optimizer = new IncrementalOptimizer(payments, pointsMethod);
+
+        Order big = new Order("A", "150.00", List.of());
+        Order small = new Order("B", "60.00", List.of());
+        assertEquals(List.of(big), optimizer.submit(List.of(small, big)));
+        assertEquals(Money.of("60.00"), payments.get("CARD").getSpending());
+    }
+}
@@ -0,0 +1,102 @@
+package ocado.optimization;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSearchSolverTest {
+    @Test
+    void testOptimize() throws IOException {
+        File fileOrders = new File("src/test/resources/orders.json");
+        File filePayments = new File("src/test/resources/paymentmethods.json");
+        List<Order> orders = JsonProcessor.getOrdersAsList(fileOrders);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(filePayments, orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+
+        LocalSearchSolver solver = new LocalSearchSolver(orders, payments, pointsMethod, Duration.ofSeconds(10), 100_000);
+
+        assertTrue(solver.optimize());
+        assertEquals(100_000, solver.getIterations());
+        Money spent = pointsMethod.getSpending();
+        for (PaymentMethod pm : payments.values()) {
+            assertFalse(pm.getLimit().isNegative());
+            spent = spent.add(pm.getSpending());
+        }
+        assertFalse(pointsMethod.getLimit().isNegative());
+        // The greedy optimizer spends 470.00 on these orders worth 550.00.
+        assertTrue(spent.compareTo(Money.of("470.00")) <= 0);
+        for (Order order : orders) {
+            assertFalse(order.getUsedPaymentsMethods().isEmpty());
+        }
+    }
+
+    @Test
+    void testOptimizeImprovesGreedyResult() {
+        PaymentMethod card = new PaymentMethod("C0", "5", "150.00");
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "20", "70.00");
+        List<Order> orders = orders();
+        card.setOrdersAmount(1);
+
+        // The greedy optimizer pays A with PUNKTY_10 and B with points, spending 104.00.
+        assertTrue(new ExpenseOptimizer(orders(), new HashMap<>(Map.of("C0", new PaymentMethod("C0", "5", "150.00"))),
+                new PaymentMethod("PUNKTY", "20", "70.00")).optimize());
+
+        LocalSearchSolver solver = new LocalSearchSolver(orders, new HashMap<>(Map.of("C0", card)), pointsMethod,
+                Duration.ofSeconds(10), 10_000);
+        assertTrue(solver.optimize());
+        assertTrue(solver.getImprovements() > 0);
+        assertEquals(Money.of("30.00"), card.getSpending());
+        assertEquals(Money.of("70.00"), pointsMethod.getSpending());
+        assertEquals(Map.of("PUNKTY", Money.of("80.00")), orders.get(0).getUsedPaymentsMethods());
+        assertEquals(Map.of("PUNKTY_10", Money.of("6.00"), "C0", Money.of("30.00")), orders.get(1).getUsedPaymentsMethods());
+        // The charges of the greedy result are replaced, not added to.
+        assertEquals(Map.of("PUNKTY", Money.of("64.00")), orders.get(0).getChargedPaymentsMethods());
+        assertEquals(Map.of("PUNKTY", Money.of("6.00"), "C0", Money.of("30.00")), orders.get(1).getChargedPaymentsMethods());
+    }
+
+    @Test
+    void testCancel() {
+        PaymentMethod card = new PaymentMethod("C0", "5", "150.00");
+        PaymentMethod pointsMethod = new PaymentMethod("PUNKTY", "20", "70.00");
+        card.setOrdersAmount(1);
+
+        LocalSearchSolver solver = new LocalSearchSolver(orders(), new HashMap<>(Map.of("C0", card)), pointsMethod);
+        solver.cancel();
+        // The search stops at once and the greedy result is kept.
+        assertTrue(solver.optimize());
+        assertEquals(0, solver.getIterations());
+        assertEquals(Money.of("104.00"), card.getSpending().add(pointsMethod.getSpending()));
+
+        LocalSearchSolver expired = new LocalSearchSolver(orders(), new HashMap<>(Map.of("C0", new PaymentMethod("C0", "5", "150.00"))),
+                new PaymentMethod("PUNKTY", "20", "70.00"), Duration.ZERO, Long.MAX_VALUE);
+        assertTrue(expired.optimize());
+        assertEquals(0, expired.getIterations());
+    }
+
+    @Test
+    void testOptimizeNegativeValue() {
+        PaymentMethod card = new PaymentMethod("C0", "5", "150.00");
+        List<Order> orders = List.of(new Order("A", "-1.00", List.of("C0")));
+        ExpenseSolver solver = new LocalSearchSolver(orders, new HashMap<>(Map.of("C0", card)), new PaymentMethod("PUNKTY", "20", "70.00"));
+        assertThrows(IllegalArgumentException.class, solver::optimize);
+    }
+
+    private static List<Order> orders() {
+        List<Order> orders = new ArrayList<>();
+        orders.add(new Order("A", "80.00", List.of("C0")));
+        orders.add(new Order("B", "40.00", List.of()));
+        return orders;
+    }
+}
@@ -0,0 +1,99 @@
+package ocado.scenario;
+
+import ocado.model.Money;
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+import ocado.optimization.ExpenseOptimizer;
+import ocado.utils.JsonProcessor;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioEvaluatorTest {
+    @Test
+    void testScenariosMatchSeparateRuns() throws IOException {
+        Map<String, Integer> promotionCounts = new HashMap<>();
+        OrderTable table = JsonProcessor.getOrdersAsTable(new File("src/test/resources/orders.json"), promotionCounts);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"), promotionCounts);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        WalletSnapshot wallet = WalletSnapshot.of(payments, pointsMethod);
+
+        List<Scenario> scenarios = List.of(Scenario.named("base"),
+                Scenario.parse("more points:PUNKTY+=500", wallet),
+                Scenario.parse("double MegaBank:MegaBank*=2", wallet),
+                Scenario.parse("no cards:SuperKarta=0,MegaBank=0,ZwyklaKarta=0", wallet));
+        List<ScenarioResult> results = new ScenarioEvaluator(table, wallet).evaluate(scenarios);
+
+        assertEquals(4, results.size());
+        assertEquals(Money.of("170.00"), results.get(0).spending().get("MegaBank"));
+        for (int s = 0; s < scenarios.size(); s++) {
+            // Every scenario gives the result of a separate run with the changed limits.
+            Map<String, PaymentMethod> expectedPayments = JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"), promotionCounts);
+            PaymentMethod expectedPoints = expectedPayments.remove("PUNKTY");
+            for (Map.Entry<String, Money> limit : scenarios.get(s).getLimits().entrySet()) {
+                (limit.getKey().equals("PUNKTY") ? expectedPoints : expectedPayments.get(limit.getKey())).setLimit(limit.getValue());
+            }
+            boolean solved;
+            try {
+                solved = new ExpenseOptimizer(table, expectedPayments, expectedPoints).optimize();
+            } catch (IllegalArgumentException e) {
+                solved = false;
+            }
+            ScenarioResult result = results.get(s);
+            assertEquals(scenarios.get(s).getName(), result.name());
+            assertEquals(solved, result.solved());
+            assertEquals(expectedPoints.getSpending(), result.spending().get("PUNKTY"));
+            for (PaymentMethod pm : expectedPayments.values()) {
+                assertEquals(pm.getSpending(), result.spending().get(pm.getId()));
+            }
+        }
+        assertTrue(results.get(1).discount().compareTo(results.get(0).discount()) > 0);
+        assertFalse(results.get(3).solved());
+
+        // Neither the snapshot nor the original payment methods are changed.
+        assertEquals(Money.of("150.00"), wallet.getLimit("PUNKTY"));
+        assertEquals(Money.of("200.00"), payments.get("MegaBank").getLimit());
+        assertEquals(Money.ZERO, payments.get("MegaBank").getSpending());
+    }
+
+    @Test
+    void testParse() {
+        Map<String, PaymentMethod> payments = new HashMap<>();
+        payments.put("C0", new PaymentMethod("C0", "10", "100.00"));
+        WalletSnapshot wallet = WalletSnapshot.of(payments, new PaymentMethod("PUNKTY", "15", "50.00"));
+
+        Scenario scenario = Scenario.parse("mixed: C0*=1.5 , PUNKTY+=-20.5", wallet);
+        assertEquals("mixed", scenario.getName());
+        assertEquals(Map.of("C0", Money.of("150.00"), "PUNKTY", Money.of("29.50")), scenario.getLimits());
+        assertEquals(Map.of("C0", Money.of("400.00")), Scenario.parse("twice:C0*=2,C0*=2", wallet).getLimits());
+        assertEquals(Map.of("C0", Money.of("7.00")), Scenario.parse("set:C0=7", wallet).getLimits());
+
+        // The base scenario is not changed by a derived one.
+        Scenario base = Scenario.named("base");
+        assertTrue(base.withLimit("C0", Money.ZERO).getLimits().containsKey("C0"));
+        assertTrue(base.getLimits().isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> Scenario.parse("no changes", wallet));
+        assertThrows(IllegalArgumentException.class, () -> Scenario.parse("unknown:C1=5", wallet));
+        assertThrows(IllegalArgumentException.class, () -> Scenario.parse("amount:C0+=abc", wallet));
+        assertThrows(IllegalArgumentException.class, () -> Scenario.parse("negative:C0+=-200", wallet));
+    }
+
+    @Test
+    void testFormatTable() {
+        List<ScenarioResult> results = List.of(
+                new ScenarioResult("base", true, Money.of("80.00"), Map.of("PUNKTY", Money.of("150.00")), null),
+                new ScenarioResult("no points", false, Money.ZERO, Map.of("PUNKTY", Money.ZERO), null));
+        String[] lines = ScenarioEvaluator.formatTable(results).split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertEquals("Scenario   Solved  Discount  PUNKTY", lines[0]);
+        assertEquals("base          yes     80.00  150.00", lines[1]);
+        assertEquals("no points      no         -    0.00", lines[2]);
+    }
+}
@@ -0,0 +1,156 @@
+package ocado.server;
+
+import ocado.cache.ResultCache;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizationServerTest {
+    private static final String EXPECTED = """
+            {"type":"order","id":"ZAM1","value":"200.00","payments":[{"method":"MegaBank","amount":"170.00"}]}
+            {"type":"order","id":"ZAM2","value":"150.00","payments":[{"method":"PUNKTY","amount":"120.00"}]}
+            {"type":"order","id":"ZAM4","value":"120.00","payments":[{"method":"PUNKTY","amount":"12.00"},{"method":"SuperKarta","amount":"96.00"}]}
+            {"type":"order","id":"ZAM3","value":"80.00","payments":[{"method":"PUNKTY","amount":"8.00"},{"method":"SuperKarta","amount":"64.00"}]}
+            {"type":"points","id":"ZAM3","from":"SuperKarta","amount":"10.00"}
+            """;
+
+    private OptimizationServer server;
+
+    private HttpClient client;
+
+    private String body;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new OptimizationServer(0);
+        server.start();
+        client = HttpClient.newHttpClient();
+        body = "{\"orders\":" + Files.readString(Path.of("src/test/resources/orders.json"))
+                + ",\"paymentMethods\":" + Files.readString(Path.of("src/test/resources/paymentmethods.json")) + "}";
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    void testOptimize() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/optimize", body);
+        assertEquals(200, response.statusCode());
+        assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElseThrow());
+        assertTrue(response.body().startsWith(EXPECTED));
+        assertTrue(response.body().endsWith("{\"type\":\"status\",\"solved\":true}\n"));
+        assertTrue(response.body().contains("{\"type\":\"total\",\"method\":\"MegaBank\",\"spent\":\"170.00\"}\n"));
+
+        HttpResponse<String> beam = post("/optimize?solver=beam", body);
+        assertEquals(200, beam.statusCode());
+        assertTrue(beam.body().endsWith("{\"type\":\"status\",\"solved\":true}\n"));
+    }
+
+    @Test
+    void testInvalidRequests() throws IOException, InterruptedException {
+        HttpResponse<String> malformed = post("/optimize", "{\"orders\":[");
+        assertEquals(400, malformed.statusCode());
+        assertTrue(malformed.body().startsWith("{\"error\":"));
+
+        assertEquals(400, post("/optimize", "{\"orders\":[]}").statusCode());
+        assertEquals(400, post("/optimize?solver=unknown", body).statusCode());
+        // The exact search is unbounded, so clients cannot choose it.
+        assertEquals(400, post("/optimize?solver=exact", body).statusCode());
+        assertEquals(400, post("/optimize", "{\"orders\":[null],\"paymentMethods\":[]}").statusCode());
+        assertEquals(400, post("/optimize", "{\"orders\":[{\"id\":\"A\",\"value\":\"1.00\",\"promotions\":[null]}],"
+                + "\"paymentMethods\":[]}").statusCode());
+        assertEquals(400, post("/optimize", "{\"orders\":[],\"paymentMethods\":[null]}").statusCode());
+
+        HttpResponse<String> get = client.send(HttpRequest.newBuilder(uri("/optimize")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, get.statusCode());
+    }
+
+    @Test
+    void testConcurrentRequests() throws Exception {
+        // Every request changes its own wallet only, so all of them give the same result.
+        List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 500; i++) {
+                responses.add(clients.submit(() -> post("/optimize", body)));
+            }
+        }
+        for (Future<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get().statusCode());
+            assertTrue(response.get().body().startsWith(EXPECTED));
+        }
+
+        HttpResponse<String> metrics = client.send(HttpRequest.newBuilder(uri("/metrics")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, metrics.statusCode());
+        assertTrue(metrics.body().contains("\"MAIN_LOOP\""));
+    }
+
+    @Test
+    void testCachedResponses() throws IOException, InterruptedException {
+        server.stop();
+        server = new OptimizationServer(0, new ResultCache(16, ResultCache.Policy.LRU));
+        server.start();
+
+        HttpResponse<String> first = post("/optimize", body);
+        HttpResponse<String> second = post("/optimize", body);
+        assertEquals(200, second.statusCode());
+        assertTrue(first.body().startsWith(EXPECTED));
+        assertEquals(first.body(), second.body());
+        // Results of other solvers are cached separately.
+        assertTrue(post("/optimize?solver=beam", body).body().endsWith("{\"type\":\"status\",\"solved\":true}\n"));
+
+        HttpResponse<String> stats = client.send(HttpRequest.newBuilder(uri("/cache")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, stats.statusCode());
+        assertEquals("{\"hits\":1,\"diskHits\":0,\"misses\":2,\"evictions\":0,\"size\":2}", stats.body());
+    }
+
+    @Test
+    void testSolverFailures() throws IOException, InterruptedException {
+        // The discounted value of this order overflows while the greedy algorithm pays it.
+        String overflow = """
+                {"orders":[{"id":"A","value":"90000000000000000.00","promotions":["C"]}],
+                 "paymentMethods":[{"id":"C","discount":"10","limit":"90000000000000000.00"}]}""";
+
+        HttpResponse<String> streamed = post("/optimize", overflow);
+        assertEquals(200, streamed.statusCode());
+        assertTrue(streamed.body().startsWith("{\"type\":\"status\",\"solved\":false,\"error\":\"Optimization failed: "));
+
+        server.stop();
+        server = new OptimizationServer(0, new ResultCache(16, ResultCache.Policy.LRU));
+        server.start();
+        HttpResponse<String> buffered = post("/optimize", overflow);
+        assertEquals(500, buffered.statusCode());
+        assertTrue(buffered.body().startsWith("{\"error\":\"Optimization failed: "));
+        assertEquals(500, post("/optimize", overflow).statusCode());
+        assertEquals(200, post("/optimize", body).statusCode());
+    }
+
+    private HttpResponse<String> post(String path, String requestBody) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+}
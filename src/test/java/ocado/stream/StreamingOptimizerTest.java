@@ -0,0 +1,154 @@
+package ocado.stream;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import ocado.model.Money;
+import ocado.model.PaymentMethod;
+import ocado.utils.JsonProcessor;
+import ocado.utils.NdjsonResultWriter;
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingOptimizerTest {
+    /** Orders of the fixture as newline-delimited JSON */
+    private static final String ORDERS = """
+            {"id": "ZAM1", "value": "200.00", "promotions": ["SuperKarta", "MegaBank"]}
+            {"id": "ZAM2", "value": "150.00", "promotions": ["MegaBank"]}
+            {"id": "ZAM3", "value": "80.00"}
+            {"id": "ZAM4", "value": "120.00", "promotions": ["SuperKarta"]}
+            """;
+
+    /** Linger time long enough for the parser to fill every window of an input read from memory */
+    private static final Duration LINGER = Duration.ofSeconds(5);
+
+    @Test
+    void testSingleWindowMatchesFixture() throws Exception {
+        Map<String, PaymentMethod> payments = readPayments();
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingOptimizer.Summary summary;
+        try (NdjsonResultWriter writer = new NdjsonResultWriter(out)) {
+            summary = new StreamingOptimizer(payments, pointsMethod, 100, LINGER).run(input(ORDERS), writer);
+        }
+
+        assertEquals(new StreamingOptimizer.Summary(4, 0, 1), summary);
+        assertEquals(Money.of("170.00"), payments.get("MegaBank").getSpending());
+        assertEquals(Money.of("150.00"), payments.get("SuperKarta").getSpending());
+        assertEquals(Money.of("150.00"), pointsMethod.getSpending());
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(4, lines.stream().filter(line -> line.contains("\"type\":\"order\"")).count());
+        assertEquals(4, lines.stream().filter(line -> line.contains("\"type\":\"total\"")).count());
+        assertEquals("{\"type\":\"status\",\"solved\":true}", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    void testSmallWindowsPayEveryOrder() throws Exception {
+        for (int window : new int[] {1, 2, 3}) {
+            Map<String, PaymentMethod> payments = readPayments();
+            PaymentMethod pointsMethod = payments.remove("PUNKTY");
+            StreamingOptimizer.Summary summary;
+            try (NdjsonResultWriter writer = new NdjsonResultWriter(OutputStream.nullOutputStream())) {
+                summary = new StreamingOptimizer(payments, pointsMethod, window, LINGER).run(input(ORDERS), writer);
+            }
+            assertEquals(4, summary.paid());
+            assertTrue(summary.solved());
+            assertEquals((4 + window - 1) / window, summary.windows());
+            Money spent = pointsMethod.getSpending();
+            for (PaymentMethod pm : payments.values()) {
+                spent = spent.add(pm.getSpending());
+            }
+            // Every window pays its orders at no more than their value.
+            assertTrue(spent.compareTo(Money.of("550.00")) <= 0);
+        }
+    }
+
+    @Test
+    void testUnpaidOrdersDoNotEndTheStream() throws Exception {
+        Map<String, PaymentMethod> payments = new HashMap<>(Map.of("Card", new PaymentMethod("Card", "0", "100.00")));
+        PaymentMethod pointsMethod = new PaymentMethod("-1.00", "-1.00");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingOptimizer.Summary summary;
+        try (NdjsonResultWriter writer = new NdjsonResultWriter(out)) {
+            summary = new StreamingOptimizer(payments, pointsMethod, 1, LINGER).run(input("""
+                    {"id": "A", "value": "60.00"}
+                    {"id": "B", "value": "60.00"}
+                    {"id": "C", "value": "40.00"}
+                    """), writer);
+        }
+
+        assertEquals(new StreamingOptimizer.Summary(2, 1, 3), summary);
+        String result = out.toString(StandardCharsets.UTF_8);
+        assertTrue(result.contains("{\"type\":\"unpaid\",\"id\":\"B\",\"value\":\"60.00\"}"));
+        assertFalse(result.contains("\"type\":\"total\""));
+        assertTrue(result.endsWith("{\"type\":\"status\",\"solved\":false}\n"));
+    }
+
+    @Test
+    void testPaymentsWrittenBeforeTheInputEnds() throws Exception {
+        Map<String, PaymentMethod> payments = readPayments();
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        PipedOutputStream producer = new PipedOutputStream();
+        PipedInputStream input = new PipedInputStream(producer);
+        PipedOutputStream output = new PipedOutputStream();
+        BufferedReader consumer = new BufferedReader(new InputStreamReader(new PipedInputStream(output), StandardCharsets.UTF_8));
+
+        CompletableFuture<StreamingOptimizer.Summary> run = CompletableFuture.supplyAsync(() -> {
+            try (NdjsonResultWriter writer = new NdjsonResultWriter(output)) {
+                return new StreamingOptimizer(payments, pointsMethod, 100, Duration.ofMillis(10)).run(input, writer);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            producer.write("{\"id\": \"ZAM1\", \"value\": \"200.00\", \"promotions\": [\"SuperKarta\"]}\n".getBytes(StandardCharsets.UTF_8));
+            producer.flush();
+            assertTrue(consumer.readLine().contains("\"id\":\"ZAM1\""));
+
+            producer.write("{\"id\": \"ZAM3\", \"value\": \"80.00\"}\n".getBytes(StandardCharsets.UTF_8));
+            producer.close();
+            assertTrue(consumer.readLine().contains("\"id\":\"ZAM3\""));
+            assertEquals(new StreamingOptimizer.Summary(2, 0, 2), run.join());
+        });
+    }
+
+    @Test
+    void testErrors() throws IOException {
+        Map<String, PaymentMethod> payments = readPayments();
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        assertThrows(IllegalArgumentException.class, () -> new StreamingOptimizer(payments, pointsMethod, 0, LINGER));
+        assertThrows(IllegalArgumentException.class, () -> new StreamingOptimizer(payments, pointsMethod, 1, Duration.ofMillis(-1)));
+        // An invalid value is an error of the input rather than of the parser thread, which would leave the run waiting.
+        for (String malformed : new String[] {"[" + ORDERS + "]", ORDERS + "{\"id\": \"ZAM5\"}", ORDERS + "{\"id\": \"ZAM5\", \"value\"",
+                ORDERS + "{\"id\": \"O1\", \"value\": \"abc\"}"}) {
+            try (NdjsonResultWriter writer = new NdjsonResultWriter(OutputStream.nullOutputStream())) {
+                assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(JsonParseException.class,
+                        () -> new StreamingOptimizer(readPayments(), pointsMethod, 2, LINGER).run(input(malformed), writer)));
+            }
+        }
+    }
+
+    private static Map<String, PaymentMethod> readPayments() throws IOException {
+        return JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"), List.of());
+    }
+
+    private static InputStream input(String orders) {
+        return new ByteArrayInputStream(orders.getBytes(StandardCharsets.UTF_8));
+    }
+}
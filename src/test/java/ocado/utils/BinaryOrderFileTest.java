@@ -0,0 +1,145 @@
+package ocado.utils;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.OrderTable;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryOrderFileTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConvertAndMap() throws IOException {
+        File json = new File("src/test/resources/orderstwo.json");
+        File binary = tempDir.resolve("orders.bin").toFile();
+        assertEquals(4, BinaryOrderFile.convert(json, binary));
+        assertTrue(BinaryOrderFile.isBinary(binary));
+        assertFalse(BinaryOrderFile.isBinary(json));
+
+        OrderTable table = BinaryOrderFile.map(binary);
+        assertEquals(4, table.size());
+        assertEquals(2, table.getPromotionNameCount());
+        assertEquals("ORDER3", table.getId(2));
+        assertEquals(15_000, table.getValueCents(2));
+        assertEquals(2, table.getPromotionCount(2));
+        assertEquals("mZysk", table.getPromotionName(table.getPromotionIndex(2, 0)));
+        assertEquals("BosBankrut", table.getPromotionName(table.getPromotionIndex(2, 1)));
+        assertEquals(0, table.getPromotionCount(3));
+    }
+
+    @Test
+    void testJsonProcessorReadsBinaryFiles() throws IOException {
+        File json = new File("src/test/resources/orders.json");
+        // The header is recognized regardless of the extension.
+        File binary = tempDir.resolve("orders.data").toFile();
+        BinaryOrderFile.convert(json, binary);
+
+        Map<String, Integer> jsonCounts = new HashMap<>();
+        List<Order> expected = JsonProcessor.getOrdersAsList(json, jsonCounts);
+        Map<String, Integer> binaryCounts = new HashMap<>();
+        List<Order> actual = JsonProcessor.getOrdersAsList(binary, binaryCounts);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+            assertEquals(expected.get(i).getPromotions(), actual.get(i).getPromotions());
+        }
+        assertEquals(jsonCounts, binaryCounts);
+
+        Map<String, Integer> tableCounts = new HashMap<>();
+        OrderTable table = JsonProcessor.getOrdersAsTable(binary, tableCounts);
+        assertEquals(expected.size(), table.size());
+        assertEquals(jsonCounts, tableCounts);
+    }
+
+    @Test
+    void testConvertEmptyFile() throws IOException {
+        File binary = tempDir.resolve("empty.bin").toFile();
+        assertEquals(0, BinaryOrderFile.convert(new File("src/test/resources/emptyfile.json"), binary));
+        assertTrue(JsonProcessor.getOrdersAsList(binary).isEmpty());
+    }
+
+    @Test
+    void testConvertLargeFile() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 5_000; i++) {
+            sb.append(i > 0 ? "," : "").append("{\"id\":\"ZAMÓWIENIE").append(i).append("\",\"value\":\"")
+                    .append(i).append(".").append(i % 10).append("5\",\"promotions\":[\"CARD").append(i % 7).append("\"]}");
+        }
+        Path json = tempDir.resolve("orders.json");
+        Files.writeString(json, sb.append("]").toString());
+        File binary = tempDir.resolve("orders.bin").toFile();
+        BinaryOrderFile.convert(json.toFile(), binary);
+
+        OrderTable table = BinaryOrderFile.map(binary);
+        assertEquals(5_000, table.size());
+        assertEquals(7, table.getPromotionNameCount());
+        assertEquals("ZAMÓWIENIE4321", table.getId(4321));
+        assertEquals(Money.of("4321.15").getCents(), table.getValueCents(4321));
+        assertEquals("CARD2", table.getPromotionName(table.getPromotionIndex(4321, 0)));
+    }
+
+    @Test
+    void testMapInvalidFiles() throws IOException {
+        File binary = tempDir.resolve("orders.bin").toFile();
+        BinaryOrderFile.convert(new File("src/test/resources/orders.json"), binary);
+        byte[] bytes = Files.readAllBytes(binary.toPath());
+
+        Path truncated = tempDir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> BinaryOrderFile.map(truncated.toFile()));
+
+        Path wrongMagic = tempDir.resolve("wrong.bin");
+        bytes[0] = 'X';
+        Files.write(wrongMagic, bytes);
+        assertThrows(IOException.class, () -> JsonProcessor.getOrdersAsList(wrongMagic.toFile()));
+    }
+
+    @Test
+    void testMapCorruptedFiles() throws IOException {
+        File binary = tempDir.resolve("orders.bin").toFile();
+        BinaryOrderFile.convert(new File("src/test/resources/orders.json"), binary);
+        byte[] bytes = Files.readAllBytes(binary.toPath());
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int size = header.getInt(8);
+        int nameCount = header.getInt(12);
+        int poolSize = header.getInt(16);
+        int promotionOffsets = BinaryOrderFile.HEADER_SIZE + 8 * size;
+        int pool = promotionOffsets + 4 * (size + 1);
+        int idOffsets = pool + 4 * poolSize;
+
+        // A decreasing promotion offset, a promotion offset past the pool, an id offset past the ids
+        // and a pool entry past the promotion names.
+        int[][] corruptions = {
+                {promotionOffsets + 4, -1},
+                {promotionOffsets + 4 * size, poolSize + 1},
+                {idOffsets + 4 * size, header.getInt(20) + 1},
+                {pool, nameCount}
+        };
+        for (int[] corruption : corruptions) {
+            byte[] corrupted = bytes.clone();
+            ByteBuffer.wrap(corrupted).order(ByteOrder.LITTLE_ENDIAN).putInt(corruption[0], corruption[1]);
+            Path file = tempDir.resolve("corrupted.bin");
+            Files.write(file, corrupted);
+            IOException e = assertThrows(IOException.class, () -> BinaryOrderFile.map(file.toFile()));
+            assertTrue(e.getMessage().startsWith("Binary order file is corrupted"));
+        }
+        assertEquals(size, BinaryOrderFile.map(binary).size());
+    }
+}
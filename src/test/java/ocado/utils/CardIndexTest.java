@@ -0,0 +1,79 @@
+package ocado.utils;
+
+import ocado.model.Money;
+import ocado.model.PaymentMethod;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardIndexTest {
+    private final OptimizerUtils utils = new OptimizerUtils();
+
+    @Test
+    void testFindBestCardToPayRestOnFixture() throws IOException {
+        File fileOrders = new File("src/test/resources/orders.json");
+        File filePayments = new File("src/test/resources/paymentmethods.json");
+        Map<String, PaymentMethod> map =
+                JsonProcessor.getPaymentsAsMap(filePayments, JsonProcessor.getOrdersAsList(fileOrders));
+        map.remove("PUNKTY");
+        CardIndex index = new CardIndex(map.values());
+
+        assertEquals("ZwyklaKarta", index.findBestCardToPayRest(Money.of("100.00")).getId());
+        assertNull(index.findBestCardToPayRest(Money.of("1000.01")));
+        assertEquals("ZwyklaKarta", index.findBestCardWithMaxLimit().getId());
+
+        PaymentMethod zwykla = map.get("ZwyklaKarta");
+        zwykla.spend(Money.of("900.00"));
+        index.refresh(zwykla);
+        assertEquals("SuperKarta", index.findBestCardToPayRest(Money.of("150.00")).getId());
+        assertEquals("SuperKarta", index.findBestCardWithMaxLimit().getId());
+    }
+
+    @Test
+    void testEmptyIndex() {
+        CardIndex index = new CardIndex(new ArrayList<>());
+        assertNull(index.findBestCardToPayRest(Money.ZERO));
+        assertNull(index.findBestCardWithMaxLimit());
+    }
+
+    @Test
+    void testSameChoicesAsOptimizerUtils() {
+        Random random = new Random(7);
+        for (int run = 0; run < 200; run++) {
+            List<PaymentMethod> methods = new ArrayList<>();
+            int size = 1 + random.nextInt(60);
+            for (int i = 0; i < size; i++) {
+                PaymentMethod pm = new PaymentMethod("CARD" + i, String.valueOf(random.nextInt(4) * 5), String.valueOf(random.nextInt(10) * 50));
+                pm.setOrdersAmount(random.nextInt(3));
+                methods.add(pm);
+            }
+            CardIndex index = new CardIndex(methods);
+
+            for (int step = 0; step < 100; step++) {
+                Money minLimit = Money.ofCents(random.nextInt(50_000));
+                List<PaymentMethod> sufficient = methods.stream().filter(p -> p.getLimit().compareTo(minLimit) >= 0).toList();
+                assertSame(utils.findBestCardToPayRest(sufficient), index.findBestCardToPayRest(minLimit));
+                assertSame(utils.findBestCardToPayRest(utils.findWithMaxLimit(methods)), index.findBestCardWithMaxLimit());
+
+                PaymentMethod changed = methods.get(random.nextInt(size));
+                if (random.nextBoolean()) {
+                    changed.decrementOrdersAmount();
+                }
+                else if (random.nextBoolean()) {
+                    changed.spend(Money.ofCents(random.nextLong(changed.getLimit().getCents() + 1)));
+                }
+                else {
+                    changed.getMoneyBack(changed.getSpending());
+                }
+                index.refresh(changed);
+            }
+        }
+    }
+}
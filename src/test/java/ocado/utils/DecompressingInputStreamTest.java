@@ -0,0 +1,141 @@
+package ocado.utils;
+
+import ocado.model.Order;
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecompressingInputStreamTest {
+    @Test
+    void testContentOfSeveralBlocks(@TempDir Path tempDir) throws IOException {
+        Random random = new Random(22);
+        // Exactly one block, an empty content and a content ending inside a block.
+        for (int length : new int[] {DecompressingInputStream.BLOCK_BYTES, 0, 3 * DecompressingInputStream.BLOCK_BYTES + 17}) {
+            byte[] content = new byte[length];
+            for (int i = 0; i < length; i++) {
+                content[i] = (byte) ('a' + random.nextInt(4));
+            }
+            File file = gzip(tempDir.resolve("content.json.gz").toFile(), content);
+
+            try (InputStream input = new DecompressingInputStream(file)) {
+                assertArrayEquals(content, input.readAllBytes());
+                assertEquals(-1, input.read());
+            }
+            try (InputStream input = new DecompressingInputStream(file)) {
+                for (int i = 0; i < Math.min(length, 1000); i++) {
+                    assertEquals(content[i] & 0xFF, input.read());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSameResultsAsUncompressedFiles(@TempDir Path tempDir) throws IOException {
+        File orders = new File("src/test/resources/orders.json");
+        File payments = new File("src/test/resources/paymentmethods.json");
+        File compressedOrders = gzip(tempDir.resolve("orders.json.gz").toFile(), Files.readAllBytes(orders.toPath()));
+        File compressedPayments = gzip(tempDir.resolve("paymentmethods.JSON.GZ").toFile(), Files.readAllBytes(payments.toPath()));
+
+        List<Order> expected = JsonProcessor.getOrdersAsList(orders);
+        List<Order> actual = JsonProcessor.getOrdersAsList(compressedOrders);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+            assertEquals(expected.get(i).getPromotions(), actual.get(i).getPromotions());
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        OrderTable table = new ParallelJsonLoader().getOrdersAsTable(compressedOrders, counts);
+        assertEquals(expected.size(), table.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getValueCents(), table.getValueCents(i));
+        }
+
+        Map<String, PaymentMethod> expectedPayments = JsonProcessor.getPaymentsAsMap(payments, expected);
+        Map<String, PaymentMethod> actualPayments = JsonProcessor.getPaymentsAsMap(compressedPayments, counts);
+        assertEquals(expectedPayments.keySet(), actualPayments.keySet());
+        for (PaymentMethod pm : expectedPayments.values()) {
+            assertEquals(pm.getLimit(), actualPayments.get(pm.getId()).getLimit());
+            assertEquals(pm.getOrdersAmount(), actualPayments.get(pm.getId()).getOrdersAmount());
+        }
+    }
+
+    @Test
+    void testErrors(@TempDir Path tempDir) throws IOException {
+        byte[] content = new byte[2 * DecompressingInputStream.BLOCK_BYTES];
+        Arrays.fill(content, (byte) ' ');
+        File file = gzip(tempDir.resolve("truncated.json.gz").toFile(), content);
+        byte[] compressed = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(compressed, compressed.length - 10));
+        try (InputStream input = new DecompressingInputStream(file)) {
+            IOException e = assertThrows(IOException.class, input::readAllBytes);
+            // The failure is kept, so reading again does not look like the end of a complete file.
+            assertSame(e, assertThrows(IOException.class, input::read));
+            assertSame(e, assertThrows(IOException.class, () -> input.read(new byte[16], 0, 16)));
+        }
+
+        File plain = tempDir.resolve("plain.json.gz").toFile();
+        Files.writeString(plain.toPath(), "[]");
+        assertThrows(IOException.class, () -> JsonProcessor.getOrdersAsList(plain));
+
+        // Closing before the end stops the reader thread waiting for space in the queue.
+        File large = gzip(tempDir.resolve("large.json.gz").toFile(), new byte[16 * DecompressingInputStream.BLOCK_BYTES]);
+        InputStream input = new DecompressingInputStream(large);
+        assertEquals(0, input.read());
+        input.close();
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    void testUncheckedFailureEndsTheContent(@TempDir Path tempDir) throws IOException {
+        byte[] content = new byte[4 * DecompressingInputStream.BLOCK_BYTES];
+        new Random(22).nextBytes(content);
+        File file = gzip(tempDir.resolve("random.json.gz").toFile(), content);
+        byte[] compressed = Files.readAllBytes(file.toPath());
+        // The source fails like an allocation of the reader thread would, after a block was decompressed.
+        InputStream failing = new FilterInputStream(new ByteArrayInputStream(compressed)) {
+            private int reads;
+
+            @Override
+            public int read(byte[] target, int offset, int length) throws IOException {
+                if (++reads > 200) {
+                    throw new OutOfMemoryError("Java heap space");
+                }
+                return super.read(target, offset, Math.min(length, 8192));
+            }
+        };
+
+        try (InputStream input = new DecompressingInputStream(failing, "failing")) {
+            IOException e = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(IOException.class, input::readAllBytes));
+            assertInstanceOf(OutOfMemoryError.class, e.getCause());
+            assertSame(e.getCause(), assertThrows(IOException.class, input::read).getCause());
+        }
+    }
+
+    private static File gzip(File file, byte[] content) throws IOException {
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file.toPath()))) {
+            output.write(content);
+        }
+        return file;
+    }
+}
@@ -1,15 +1,20 @@
 package ocado.utils;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import ocado.model.Money;
 import ocado.model.Order;
 import ocado.model.PaymentMethod;
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -40,7 +45,7 @@ class JsonProcessorTest {
         List<Order> order = JsonProcessor.getOrdersAsList(file);
         assertEquals(1, order.size());
         assertEquals("ZAM1", order.getFirst().getId());
-        assertEquals(new BigDecimal("200.00"), order.getFirst().getValue());
+        assertEquals(Money.of("200.00"), order.getFirst().getValue());
 
         List<String> promotions = order.getFirst().getPromotions();
         assertEquals(2, promotions.size());
@@ -81,9 +86,71 @@ class JsonProcessorTest {
 
         PaymentMethod paymentMethod = paymentMethods.get("SuperKarta");
         assertEquals("SuperKarta", paymentMethod.getId());
-        assertEquals(new BigDecimal("10.00"), paymentMethod.getDiscount());
-        assertEquals(new BigDecimal("250.00"), paymentMethod.getLimit());
+        assertEquals(1000, paymentMethod.getDiscount());
+        assertEquals(Money.of("250.00"), paymentMethod.getLimit());
         assertEquals(1, paymentMethod.getOrdersAmount());
-        assertEquals(new BigDecimal("0.00"), paymentMethod.getSpending());
+        assertEquals(Money.of("0.00"), paymentMethod.getSpending());
+    }
+
+    @Test
+    void testReadOrdersStreamsEveryOrder() throws IOException {
+        File file = new File("src/test/resources/orders.json");
+        List<String> ids = new ArrayList<>();
+        JsonProcessor.readOrders(file, order -> ids.add(order.getId()));
+        assertEquals(List.of("ZAM1", "ZAM2", "ZAM3", "ZAM4"), ids);
+
+        File wrongFile = new File("src/test/resources/wrongextension.txt");
+        assertThrows(IllegalArgumentException.class, () -> JsonProcessor.readOrders(wrongFile, order -> {}));
+    }
+
+    @Test
+    void testGetOrdersAsListCountsPromotions() throws IOException {
+        File file = new File("src/test/resources/orders.json");
+        Map<String, Integer> promotionCounts = new HashMap<>();
+        List<Order> orders = JsonProcessor.getOrdersAsList(file, promotionCounts);
+
+        assertEquals(4, orders.size());
+        assertEquals(2, promotionCounts.size());
+        assertEquals(2, promotionCounts.get("SuperKarta"));
+        assertEquals(2, promotionCounts.get("MegaBank"));
+    }
+
+    @Test
+    void testGetPaymentsAsMapWithPromotionCounts() throws IOException {
+        File fileOrders = new File("src/test/resources/orders.json");
+        Map<String, Integer> promotionCounts = new HashMap<>();
+        JsonProcessor.getOrdersAsList(fileOrders, promotionCounts);
+
+        File filePayments = new File("src/test/resources/paymentmethods.json");
+        Map<String, PaymentMethod> paymentMethods = JsonProcessor.getPaymentsAsMap(filePayments, promotionCounts);
+
+        assertEquals(4, paymentMethods.size());
+        assertEquals(2, paymentMethods.get("SuperKarta").getOrdersAmount());
+        assertEquals(2, paymentMethods.get("MegaBank").getOrdersAmount());
+        assertEquals(0, paymentMethods.get("ZwyklaKarta").getOrdersAmount());
+        assertEquals(0, paymentMethods.get("PUNKTY").getOrdersAmount());
+    }
+
+    @Test
+    void testReadOrderLinesRejectsMalformedPromotions() throws IOException {
+        assertThrows(JsonParseException.class, () -> readLines("{\"id\":\"A\",\"value\":\"1.00\",\"promotions\":[{\"C1\":1}]}"));
+        assertThrows(JsonParseException.class, () -> readLines("{\"id\":\"A\",\"value\":\"1.00\",\"promotions\":[[\"C2\"]]}"));
+        assertThrows(JsonParseException.class, () -> readLines("{\"id\":\"A\",\"value\":\"1.00\",\"promotions\":[1]}"));
+        assertThrows(JsonParseException.class, () -> readLines("{\"id\":\"A\",\"value\":\"1.00\",\"promotions\":[true]}"));
+
+        List<Order> orders = readLines("{\"id\":\"A\",\"value\":\"1.00\",\"promotions\":[\"C1\",null]}");
+        assertEquals(1, orders.size());
+        assertEquals(Arrays.asList("C1", null), orders.getFirst().getPromotions());
+
+        ArrayOrderTable table = new ArrayOrderTable();
+        table.add(orders.getFirst());
+        assertEquals(1, table.getPromotionCount(0));
+        assertEquals("C1", table.getPromotionName(table.getPromotionIndex(0, 0)));
+    }
+
+    private static List<Order> readLines(String json) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        JsonProcessor.readOrderLines(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), orders::add);
+        return orders;
     }
 }
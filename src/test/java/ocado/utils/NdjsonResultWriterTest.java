@@ -0,0 +1,156 @@
+package ocado.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ocado.model.Money;
+import ocado.model.Order;
+import ocado.model.PaymentMethod;
+import ocado.optimization.BranchAndBoundSolver;
+import ocado.optimization.ExpenseOptimizer;
+import ocado.optimization.ExpenseSolver;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NdjsonResultWriterTest {
+    private final File fileOrders = new File("src/test/resources/orders.json");
+    private final File filePayments = new File("src/test/resources/paymentmethods.json");
+
+    private static final List<String> SOLVERS = List.of("greedy", "exact", "local", "decompose", "beam");
+
+    @Test
+    void testStreamedRecords() throws IOException {
+        List<Order> orders = JsonProcessor.getOrdersAsList(fileOrders);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(filePayments, orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (NdjsonResultWriter writer = new NdjsonResultWriter(out)) {
+            ExpenseOptimizer optimizer = new ExpenseOptimizer(orders, payments, pointsMethod);
+            optimizer.setPaymentListener(writer);
+            assertTrue(optimizer.optimize());
+            writer.writeTotals(pointsMethod, payments.values());
+            writer.writeStatus(true);
+        }
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(10, lines.size());
+        assertEquals("{\"type\":\"order\",\"id\":\"ZAM1\",\"value\":\"200.00\",\"payments\":[{\"method\":\"MegaBank\",\"amount\":\"170.00\"}]}", lines.get(0));
+        assertEquals("{\"type\":\"order\",\"id\":\"ZAM3\",\"value\":\"80.00\",\"payments\":[{\"method\":\"PUNKTY\",\"amount\":\"8.00\"},{\"method\":\"SuperKarta\",\"amount\":\"64.00\"}]}", lines.get(3));
+        assertEquals("{\"type\":\"points\",\"id\":\"ZAM3\",\"from\":\"SuperKarta\",\"amount\":\"10.00\"}", lines.get(4));
+        assertEquals("{\"type\":\"status\",\"solved\":true}", lines.get(9));
+        assertEquals(totals(lines), spentPerMethod(lines));
+    }
+
+    @Test
+    void testWriteOrderOfExactSolver() throws IOException {
+        List<Order> orders = JsonProcessor.getOrdersAsList(fileOrders);
+        Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(filePayments, orders);
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        assertTrue(new BranchAndBoundSolver(orders, payments, pointsMethod).optimize());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (NdjsonResultWriter writer = new NdjsonResultWriter(out)) {
+            for (Order order : orders) {
+                writer.writeOrder(order);
+            }
+            writer.writeTotals(pointsMethod, payments.values());
+        }
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(orders.size() + payments.size() + 1, lines.size());
+        assertEquals(totals(lines), spentPerMethod(lines));
+    }
+
+    @Test
+    void testOrderRecordsAddUpToTotals() throws IOException {
+        for (String solverName : SOLVERS) {
+            List<Order> orders = JsonProcessor.getOrdersAsList(fileOrders);
+            Map<String, PaymentMethod> payments = JsonProcessor.getPaymentsAsMap(filePayments, orders);
+            assertRecordsAddUp(solverName, orders, payments);
+
+            List<Order> ordersTwo = JsonProcessor.getOrdersAsList(new File("src/test/resources/orderstwo.json"));
+            assertRecordsAddUp(solverName, ordersTwo,
+                    JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethodtwo.json"), ordersTwo));
+
+            // The greedy algorithm charges C1 its discount although order A does not list it as a promotion.
+            List<Order> unlisted = List.of(new Order("A", "100.00", List.of()), new Order("B", "50.00", List.of("C2")));
+            List<String> lines = assertRecordsAddUp(solverName, new ArrayList<>(unlisted), JsonProcessor.toPaymentsMap(List.of(
+                    new PaymentMethod("PUNKTY", "15", "0.00"),
+                    new PaymentMethod("C1", "10", "500.00"),
+                    new PaymentMethod("C2", "5", "500.00")), unlisted));
+            if (!solverName.equals("exact") && !solverName.equals("beam")) {
+                assertEquals("{\"type\":\"order\",\"id\":\"A\",\"value\":\"100.00\",\"payments\":[{\"method\":\"C1\",\"amount\":\"90.00\"}]}",
+                        lines.stream().filter(line -> line.contains("\"A\"")).findFirst().orElseThrow(), solverName);
+            }
+        }
+    }
+
+    /**
+     * Solves an input with a solver recording its result in the orders, writes the result like the application
+     * and checks that the order records add up to the totals.
+     */
+    private static List<String> assertRecordsAddUp(String solverName, List<Order> orders, Map<String, PaymentMethod> payments)
+            throws IOException {
+        PaymentMethod pointsMethod = payments.remove("PUNKTY");
+        boolean solved = ExpenseSolver.create(solverName, orders, payments, pointsMethod).optimize();
+        assertTrue(solved, solverName);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NdjsonResultWriter writer = new NdjsonResultWriter(out)) {
+            writer.writeResult(solved, orders, payments, pointsMethod);
+        }
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(totals(lines), spentPerMethod(lines), solverName);
+        return lines;
+    }
+
+    /**
+     * Sums the charged amounts per payment method from the order and points records.
+     */
+    private static Map<String, Money> spentPerMethod(List<String> lines) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Money> spent = new HashMap<>();
+        for (String line : lines) {
+            JsonNode node = mapper.readTree(line);
+            switch (node.get("type").asText()) {
+                case "order" -> {
+                    for (JsonNode payment : node.get("payments")) {
+                        spent.merge(payment.get("method").asText(), Money.of(payment.get("amount").asText()), Money::add);
+                    }
+                }
+                case "points" -> {
+                    Money amount = Money.of(node.get("amount").asText());
+                    spent.merge(node.get("from").asText(), Money.ZERO.subtract(amount), Money::add);
+                    spent.merge("PUNKTY", amount, Money::add);
+                }
+                default -> {}
+            }
+        }
+        spent.values().removeIf(amount -> amount.equals(Money.ZERO));
+        return spent;
+    }
+
+    /**
+     * Reads the non-zero total records.
+     */
+    private static Map<String, Money> totals(List<String> lines) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Money> totals = new HashMap<>();
+        for (String line : lines) {
+            JsonNode node = mapper.readTree(line);
+            if (node.get("type").asText().equals("total") && !Money.of(node.get("spent").asText()).equals(Money.ZERO)) {
+                totals.put(node.get("method").asText(), Money.of(node.get("spent").asText()));
+            }
+        }
+        return totals;
+    }
+}
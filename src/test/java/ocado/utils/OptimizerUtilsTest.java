@@ -1,12 +1,12 @@
 package ocado.utils;
 
+import ocado.model.Money;
 import ocado.model.Order;
 import ocado.model.PaymentMethod;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -33,19 +33,19 @@ class OptimizerUtilsTest {
     void testPayWholeOrder() {
         PaymentMethod pm = new PaymentMethod("", "", "");
         Order order = new Order("", "200", new ArrayList<>());
-        pm.setLimit(new BigDecimal("200.00"));
-        pm.setDiscount(new BigDecimal("20.00"));
+        pm.setLimit(Money.of("200.00"));
+        pm.setDiscount(2000);
 
         utils.pay(pm, order);
-        assertEquals(new BigDecimal("160.00"), pm.getSpending());
+        assertEquals(Money.of("160.00"), pm.getSpending());
     }
 
     @Test
     void testPayProvidedAmount() {
         PaymentMethod pm = new PaymentMethod("", "", "");
-        pm.setLimit(new BigDecimal("200.00"));
-        utils.pay(pm, new BigDecimal("100.00"));
-        assertEquals(new BigDecimal("100.00"), pm.getSpending());
+        pm.setLimit(Money.of("200.00"));
+        utils.pay(pm, Money.of("100.00"));
+        assertEquals(Money.of("100.00"), pm.getSpending());
     }
 
     @Test
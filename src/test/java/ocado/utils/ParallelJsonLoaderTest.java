@@ -0,0 +1,128 @@
+package ocado.utils;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import ocado.model.Order;
+import ocado.model.OrderTable;
+import ocado.model.PaymentMethod;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelJsonLoaderTest {
+    /** Pool of the tests, with more threads than the cores of a small machine */
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @Test
+    void testSameOrdersAsSequentialReading(@TempDir Path tempDir) throws IOException {
+        File file = tempDir.resolve("orders.json").toFile();
+        writeOrders(file, 2_000);
+        Map<String, Integer> expectedCounts = new HashMap<>();
+        List<Order> expected = JsonProcessor.getOrdersAsList(file, expectedCounts);
+
+        // Chunks from a few orders to a few hundred, cut inside ids full of brackets, commas and quotes.
+        for (int chunkBytes : new int[] {1, 100, 10_000}) {
+            ParallelJsonLoader loader = new ParallelJsonLoader(POOL, chunkBytes);
+            Map<String, Integer> counts = new HashMap<>();
+            List<Order> orders = loader.getOrdersAsList(file, counts);
+            assertEquals(expected.size(), orders.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getId(), orders.get(i).getId());
+                assertEquals(expected.get(i).getValue(), orders.get(i).getValue());
+                assertEquals(expected.get(i).getPromotions(), orders.get(i).getPromotions());
+            }
+            assertEquals(expectedCounts, counts);
+
+            counts = new HashMap<>();
+            OrderTable table = loader.getOrdersAsTable(file, counts);
+            assertEquals(expected.size(), table.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getId(), table.getId(i));
+                assertEquals(expected.get(i).getValueCents(), table.getValueCents(i));
+                assertEquals(expected.get(i).getPromotionCount(), table.getPromotionCount(i));
+                for (int k = 0; k < table.getPromotionCount(i); k++) {
+                    assertEquals(expected.get(i).getPromotion(k), table.getPromotionName(table.getPromotionIndex(i, k)));
+                }
+            }
+            assertEquals(expectedCounts, counts);
+        }
+    }
+
+    @Test
+    void testLoadBothFiles() throws IOException {
+        ParallelJsonLoader loader = new ParallelJsonLoader(POOL, 16);
+        ParallelJsonLoader.Input input = loader.load(new File("src/test/resources/orders.json"),
+                new File("src/test/resources/paymentmethods.json"), false);
+        assertNull(input.table());
+        assertEquals(4, input.orders().size());
+        Map<String, PaymentMethod> expected = JsonProcessor.getPaymentsAsMap(new File("src/test/resources/paymentmethods.json"),
+                JsonProcessor.getOrdersAsList(new File("src/test/resources/orders.json")));
+        assertEquals(expected.keySet(), input.payments().keySet());
+        for (PaymentMethod pm : expected.values()) {
+            assertEquals(pm.getOrdersAmount(), input.payments().get(pm.getId()).getOrdersAmount());
+            assertEquals(pm.getLimit(), input.payments().get(pm.getId()).getLimit());
+        }
+
+        input = loader.load(new File("src/test/resources/orders.json"), new File("src/test/resources/paymentmethods.json"), true);
+        assertNull(input.orders());
+        assertEquals(4, input.table().size());
+    }
+
+    @Test
+    void testErrors(@TempDir Path tempDir) throws IOException {
+        ParallelJsonLoader loader = new ParallelJsonLoader(POOL, 1);
+        File payments = new File("src/test/resources/paymentmethods.json");
+        assertThrows(FileNotFoundException.class, () -> loader.load(new File("src/test/resources/wrongpath.json"), payments, true));
+        assertThrows(FileNotFoundException.class, () -> loader.load(new File("src/test/resources/orders.json"), new File("src/test/resources/wrongpath.json"), true));
+        assertThrows(IllegalArgumentException.class, () -> loader.load(new File("src/test/resources/wrongextension.txt"), payments, true));
+
+        Map<String, String> malformed = Map.of(
+                "object.json", "{\"id\": \"ORDER1\", \"value\": \"1.00\"}",
+                "truncated.json", "[{\"id\": \"ORDER1\", \"value\": \"1.00\"}, {\"id\": \"ORDER2\"",
+                "field.json", "[{\"id\": \"ORDER1\", \"value\": \"1.00\"}, {\"id\": \"ORDER2\", \"price\": \"1.00\"}]",
+                "novalue.json", "[{\"id\": \"ORDER1\", \"value\": \"1.00\"}, {\"id\": \"ORDER2\"}]");
+        for (Map.Entry<String, String> entry : malformed.entrySet()) {
+            File file = tempDir.resolve(entry.getKey()).toFile();
+            Files.writeString(file.toPath(), entry.getValue());
+            assertThrows(JsonParseException.class, () -> loader.getOrdersAsTable(file, new HashMap<>()), entry.getKey());
+            assertThrows(JsonParseException.class, () -> loader.getOrdersAsList(file, new HashMap<>()), entry.getKey());
+        }
+
+        File empty = tempDir.resolve("empty.json").toFile();
+        Files.writeString(empty.toPath(), " [ ] ");
+        assertTrue(loader.getOrdersAsList(empty, new HashMap<>()).isEmpty());
+    }
+
+    private static void writeOrders(File file, int count) throws IOException {
+        Random random = new Random(21);
+        String[] tricky = {"},{", "\\\"],[", "a,b", "\\\\", "{[\\\"", "zamówienie"};
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(random.nextBoolean() ? ",\n" : " , ");
+            }
+            json.append("{\"id\": \"ORDER").append(i).append(tricky[random.nextInt(tricky.length)])
+                    .append("\", \"value\": \"").append(1 + random.nextInt(500)).append('.').append(random.nextInt(90) + 10)
+                    .append("\", \"promotions\": [");
+            int promotions = random.nextInt(3);
+            for (int k = 0; k < promotions; k++) {
+                json.append(k > 0 ? ", " : "").append("\"CARD").append(random.nextInt(5)).append('"');
+            }
+            json.append("]}");
+        }
+        json.append("\n]\n");
+        Files.writeString(file.toPath(), json, StandardCharsets.UTF_8);
+    }
+}
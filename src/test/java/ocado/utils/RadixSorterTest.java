@@ -0,0 +1,75 @@
+package ocado.utils;
+
+import ocado.model.Money;
+import ocado.model.Order;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RadixSorterTest {
+    @Test
+    void testSameOrderAsStableSort() {
+        Random random = new Random(20);
+        RadixSorter sorter = new RadixSorter();
+        // Narrow ranges have many equal values, wide ones need several passes.
+        long[] ranges = {1, 3, 1_000, 1L << 24, 1L << 40, Long.MAX_VALUE};
+        for (long range : ranges) {
+            for (int n : new int[] {0, 1, 2, 17, 5_000}) {
+                ArrayOrderTable table = new ArrayOrderTable();
+                List<Order> orders = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    Order order = order("O" + i, random.nextLong(range));
+                    table.add(order);
+                    orders.add(order);
+                }
+                List<Order> expected = new ArrayList<>(orders);
+                expected.sort(Comparator.comparing(Order::getValue).reversed());
+
+                int[] sorted = sorter.sortByValue(table);
+                for (int s = 0; s < n; s++) {
+                    assertEquals(expected.get(s).getId(), table.getId(sorted[s]));
+                }
+                sorter.sortByValue(orders);
+                assertEquals(expected, orders);
+            }
+        }
+    }
+
+    @Test
+    void testExtremeValues() {
+        List<Order> orders = new ArrayList<>();
+        long[] values = {0, Long.MAX_VALUE, -1, Long.MIN_VALUE, 5, Long.MAX_VALUE, 0};
+        for (int i = 0; i < values.length; i++) {
+            orders.add(order("O" + i, values[i]));
+        }
+        new RadixSorter().sortByValue(orders);
+        assertEquals(List.of("O1", "O5", "O4", "O0", "O6", "O2", "O3"), orders.stream().map(Order::getId).toList());
+    }
+
+    @Test
+    void testTableKeepsIds() {
+        ArrayOrderTable table = new ArrayOrderTable();
+        String[] ids = {"ORDER1", "", "zamówienie-ż", "ORDER1"};
+        for (String id : ids) {
+            table.add(order(id, 100));
+        }
+        for (int i = 0; i < 3000; i++) {
+            table.add(order("ORDER" + i, i));
+        }
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], table.getId(i));
+        }
+        assertEquals("ORDER2999", table.getId(table.size() - 1));
+    }
+
+    private static Order order(String id, long cents) {
+        Order order = new Order(id, "0", List.of());
+        order.setValue(Money.ofCents(cents));
+        return order;
+    }
+}